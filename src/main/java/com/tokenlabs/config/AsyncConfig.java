@@ -1,18 +1,46 @@
 package com.tokenlabs.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 public class AsyncConfig implements AsyncConfigurer {
-    
+
+    /**
+     * Modo de hilos virtuales de Spring Boot: además de Tomcat, los executors
+     * de esta clase pasan a crear un hilo virtual por tarea.
+     */
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${app.async.external-call.pool-size:50}")
+    private int externalCallPoolSize;
+
+    @Value("${app.async.external-call.queue-capacity:1000}")
+    private int externalCallQueueCapacity;
+
+    @Value("${app.async.persistence.pool-size:20}")
+    private int persistencePoolSize;
+
+    @Value("${app.async.persistence.queue-capacity:1000}")
+    private int persistenceQueueCapacity;
+
+    @Value("${app.latency.digests.queue-capacity:60}")
+    private int latencyDigestQueueCapacity;
+
     @Override
     @Bean(name = "taskExecutor")
     public Executor getAsyncExecutor() {
+        if (virtualThreads) {
+            return buildVirtualExecutor("RequestHistory-", 20);
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(5);
         executor.setMaxPoolSize(20);
@@ -23,4 +51,93 @@ public class AsyncConfig implements AsyncConfigurer {
         executor.initialize();
         return executor;
     }
+
+    /**
+     * Executor para la llamada al servicio externo de porcentajes en el
+     * endpoint asíncrono. Es la fase con mayor latencia, por eso se dimensiona
+     * por separado del pool de Tomcat.
+     */
+    @Bean(name = "externalCallExecutor")
+    public Executor externalCallExecutor() {
+        if (virtualThreads) {
+            // La llamada externa solo espera E/S: sin límite de concurrencia con hilos virtuales
+            return buildVirtualExecutor("ExternalCall-", SimpleAsyncTaskExecutor.UNBOUNDED_CONCURRENCY);
+        }
+        return buildExecutor("ExternalCall-", externalCallPoolSize, externalCallQueueCapacity);
+    }
+
+    /**
+     * Executor para el cálculo y la persistencia en calculation_history
+     * del endpoint asíncrono.
+     */
+    @Bean(name = "persistenceExecutor")
+    public Executor persistenceExecutor() {
+        if (virtualThreads) {
+            return buildVirtualExecutor("Persistence-", persistencePoolSize);
+        }
+        return buildExecutor("Persistence-", persistencePoolSize, persistenceQueueCapacity);
+    }
+
+    /**
+     * Executor de la retención de request_history. Los rollups y el borrado
+     * con límite de filas por segundo pueden durar minutos: fuera del
+     * scheduler de Spring (un solo hilo) no retrasan los tick() de 1 s, el
+     * checkpoint de estadísticas ni el refresh del índice de texto. Con una
+     * ejecución en curso y otra esperando, las siguientes se descartan.
+     */
+    @Bean(name = "retentionExecutor")
+    public Executor retentionExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("RequestHistoryRetention-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Executor que guarda en request_latency_digest los minutos que cierra
+     * EndpointLatencyHistograms.tick(). Un solo hilo, para que los minutos se
+     * escriban en orden; si la base de datos no responde, al llenarse la cola
+     * se rechazan los minutos siguientes en lugar de retrasar el scheduler.
+     */
+    @Bean(name = "latencyDigestExecutor")
+    public Executor latencyDigestExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(latencyDigestQueueCapacity);
+        executor.setThreadNamePrefix("LatencyDigest-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+        return executor;
+    }
+
+    private Executor buildExecutor(String threadNamePrefix, int poolSize, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Executor de hilos virtuales. El límite de concurrencia reemplaza al tamaño
+     * del pool para no saturar recursos acotados como el pool de conexiones JDBC.
+     */
+    private Executor buildVirtualExecutor(String threadNamePrefix, int concurrencyLimit) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        executor.setConcurrencyLimit(concurrencyLimit);
+        executor.setTaskTerminationTimeout(30_000);
+        return executor;
+    }
 }
@@ -0,0 +1,120 @@
+package com.tokenlabs.config;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Copia acotada de un body: guarda como máximo maxBytes y cuenta el total.
+ * El buffer crece bajo demanda, por lo que un body vacío o pequeño no reserva
+ * los maxBytes completos.
+ */
+class BodyCapture {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final int maxBytes;
+    private byte[] buffer = new byte[0];
+    private int captured;
+    private long totalBytes;
+    private String omittedContentType;
+    private Runnable beforeRead;
+
+    BodyCapture(int maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    void write(int b) {
+        totalBytes++;
+        if (omittedContentType == null && captured < maxBytes) {
+            ensureCapacity(captured + 1);
+            buffer[captured++] = (byte) b;
+        }
+    }
+
+    void write(byte[] bytes, int offset, int length) {
+        totalBytes += length;
+        if (omittedContentType == null && captured < maxBytes) {
+            int copy = Math.min(length, maxBytes - captured);
+            ensureCapacity(captured + copy);
+            System.arraycopy(bytes, offset, buffer, captured, copy);
+            captured += copy;
+        }
+    }
+
+    /**
+     * Deja de copiar el body (solo se cuentan los bytes) por su content type.
+     */
+    void omit(String contentType) {
+        this.omittedContentType = contentType;
+        this.buffer = new byte[0];
+        this.captured = 0;
+    }
+
+    /**
+     * Acción que vuelca lo que aún está en buffers intermedios (el writer de
+     * la respuesta) antes de leer lo capturado.
+     */
+    void setBeforeRead(Runnable beforeRead) {
+        this.beforeRead = beforeRead;
+    }
+
+    void reset() {
+        captured = 0;
+        totalBytes = 0;
+        omittedContentType = null;
+    }
+
+    long getTotalBytes() {
+        return totalBytes;
+    }
+
+    boolean isTruncated() {
+        return totalBytes > captured && omittedContentType == null;
+    }
+
+    /**
+     * Body capturado como texto, con marcador de truncado u omisión.
+     *
+     * @return null si no se escribió ningún byte
+     */
+    String toBodyString(Charset charset) {
+        runBeforeRead();
+        if (totalBytes == 0) {
+            return null;
+        }
+        return format(buffer, captured, totalBytes, omittedContentType, charset);
+    }
+
+    /**
+     * Copia lo capturado en un slot del ring buffer sin decodificarlo.
+     */
+    void copyTo(RequestEvent.Field field, String charsetName) {
+        runBeforeRead();
+        field.setBody(buffer, captured, totalBytes, omittedContentType, charsetName);
+    }
+
+    static String format(byte[] bytes, int length, long totalBytes, String omittedContentType, Charset charset) {
+        if (omittedContentType != null) {
+            return "[body omitido: " + omittedContentType + ", " + totalBytes + " bytes]";
+        }
+        String body = new String(bytes, 0, length, charset != null ? charset : StandardCharsets.UTF_8);
+        if (totalBytes > length) {
+            return body + "...[truncado: " + length + " de " + totalBytes + " bytes]";
+        }
+        return body;
+    }
+
+    private void runBeforeRead() {
+        if (beforeRead != null) {
+            beforeRead.run();
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > buffer.length) {
+            int newCapacity = Math.min(maxBytes, Math.max(required, Math.max(INITIAL_CAPACITY, buffer.length * 2)));
+            buffer = Arrays.copyOf(buffer, newCapacity);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.tokenlabs.config;
+
+import com.tokenlabs.service.VirtualThreadPinningMonitor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Endpoint de actuator (/actuator/pinning) con los sitios donde los hilos
+ * virtuales quedaron fijados a su carrier thread.
+ */
+@Component
+@Endpoint(id = "pinning")
+public class PinningEndpoint {
+
+    private final VirtualThreadPinningMonitor pinningMonitor;
+
+    public PinningEndpoint(VirtualThreadPinningMonitor pinningMonitor) {
+        this.pinningMonitor = pinningMonitor;
+    }
+
+    @ReadOperation
+    public VirtualThreadPinningMonitor.PinningReport pinning() {
+        return pinningMonitor.getReport();
+    }
+}
@@ -0,0 +1,399 @@
+package com.tokenlabs.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Captura los bodies de request y respuesta para request_history sin
+ * retenerlos en memoria completos.
+ *
+ * Los streams se envuelven con un "tee": los bytes pasan tal cual hacia la
+ * aplicación o el cliente y solo los primeros max-bytes se copian en un
+ * {@link BodyCapture}. La respuesta nunca se bufferiza: cada write llega al
+ * stream original en el momento. Los content types excluidos solo se cuentan.
+ *
+ * {@link RequestLoggingInterceptor} lee lo capturado con
+ * {@link #getCapturedRequestBody} y {@link #getCapturedResponseBody}.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 100)
+public class RequestBodyCaptureFilter extends OncePerRequestFilter {
+
+    static final String REQUEST_CAPTURE_ATTRIBUTE = RequestBodyCaptureFilter.class.getName() + ".request";
+    static final String RESPONSE_CAPTURE_ATTRIBUTE = RequestBodyCaptureFilter.class.getName() + ".response";
+
+    private final boolean enabled;
+    private final int maxBytes;
+    private final List<MediaType> excludedContentTypes;
+    private final List<String> excludedPaths;
+
+    public RequestBodyCaptureFilter(
+            @Value("${app.request-history.capture.enabled:true}") boolean enabled,
+            @Value("${app.request-history.capture.max-bytes:4096}") int maxBytes,
+            @Value("${app.request-history.capture.excluded-content-types:multipart/*,application/octet-stream,application/cbor,application/pdf,application/zip,image/*,audio/*,video/*,text/event-stream}")
+            List<String> excludedContentTypes,
+            @Value("${app.request-history.capture.excluded-paths:/actuator,/swagger-ui,/v3/api-docs,/ws/}")
+            List<String> excludedPaths) {
+        this.enabled = enabled;
+        this.maxBytes = maxBytes;
+        this.excludedContentTypes = excludedContentTypes.stream()
+                .map(String::trim)
+                .filter(type -> !type.isEmpty())
+                .map(MediaType::parseMediaType)
+                .toList();
+        this.excludedPaths = excludedPaths.stream()
+                .map(String::trim)
+                .filter(path -> !path.isEmpty())
+                .toList();
+    }
+
+    /**
+     * Body del request capturado por el filtro, o null si no se capturó.
+     */
+    public static String getCapturedRequestBody(HttpServletRequest request) {
+        Object capture = request.getAttribute(REQUEST_CAPTURE_ATTRIBUTE);
+        return capture instanceof BodyCapture bodyCapture
+                ? bodyCapture.toBodyString(charset(request.getCharacterEncoding()))
+                : null;
+    }
+
+    /**
+     * Body de la respuesta capturado por el filtro, o null si no se capturó.
+     */
+    public static String getCapturedResponseBody(HttpServletRequest request, HttpServletResponse response) {
+        Object capture = request.getAttribute(RESPONSE_CAPTURE_ATTRIBUTE);
+        return capture instanceof BodyCapture bodyCapture
+                ? bodyCapture.toBodyString(charset(response.getCharacterEncoding()))
+                : null;
+    }
+
+    /**
+     * Copia el body del request capturado en un slot del ring buffer.
+     *
+     * @return false si el filtro no capturó el request
+     */
+    static boolean copyCapturedRequestBody(HttpServletRequest request, RequestEvent.Field field) {
+        Object capture = request.getAttribute(REQUEST_CAPTURE_ATTRIBUTE);
+        if (capture instanceof BodyCapture bodyCapture) {
+            bodyCapture.copyTo(field, request.getCharacterEncoding());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Copia el body de la respuesta capturado en un slot del ring buffer.
+     *
+     * @return false si el filtro no capturó la respuesta
+     */
+    static boolean copyCapturedResponseBody(HttpServletRequest request, HttpServletResponse response,
+                                            RequestEvent.Field field) {
+        Object capture = request.getAttribute(RESPONSE_CAPTURE_ATTRIBUTE);
+        if (capture instanceof BodyCapture bodyCapture) {
+            bodyCapture.copyTo(field, response.getCharacterEncoding());
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!enabled) {
+            return true;
+        }
+        String path = request.getRequestURI();
+        return excludedPaths.stream().anyMatch(path::startsWith);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        BodyCapture requestCapture = new BodyCapture(maxBytes);
+        if (isExcluded(request.getContentType())) {
+            requestCapture.omit(request.getContentType());
+        }
+        BodyCapture responseCapture = new BodyCapture(maxBytes);
+        request.setAttribute(REQUEST_CAPTURE_ATTRIBUTE, requestCapture);
+        request.setAttribute(RESPONSE_CAPTURE_ATTRIBUTE, responseCapture);
+
+        CapturingResponseWrapper wrappedResponse = new CapturingResponseWrapper(response, responseCapture);
+        try {
+            filterChain.doFilter(new CapturingRequestWrapper(request, requestCapture), wrappedResponse);
+        } finally {
+            wrappedResponse.flushWriter();
+        }
+    }
+
+    boolean isExcluded(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        try {
+            MediaType mediaType = MediaType.parseMediaType(contentType);
+            return excludedContentTypes.stream().anyMatch(excluded -> excluded.includes(mediaType));
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+    private static Charset charset(String encoding) {
+        try {
+            return encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+        } catch (IllegalArgumentException e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    private static final class CapturingRequestWrapper extends HttpServletRequestWrapper {
+        private final BodyCapture capture;
+        private ServletInputStream inputStream;
+        private BufferedReader reader;
+
+        private CapturingRequestWrapper(HttpServletRequest request, BodyCapture capture) {
+            super(request);
+            this.capture = capture;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (reader != null) {
+                throw new IllegalStateException("getReader() ya fue invocado para este request");
+            }
+            if (inputStream == null) {
+                inputStream = new TeeInputStream(super.getInputStream(), capture);
+            }
+            return inputStream;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            if (inputStream != null) {
+                throw new IllegalStateException("getInputStream() ya fue invocado para este request");
+            }
+            if (reader == null) {
+                ServletInputStream tee = new TeeInputStream(super.getInputStream(), capture);
+                reader = new BufferedReader(new InputStreamReader(tee, charset(getCharacterEncoding())));
+            }
+            return reader;
+        }
+    }
+
+    private static final class TeeInputStream extends ServletInputStream {
+        private final ServletInputStream delegate;
+        private final BodyCapture capture;
+
+        private TeeInputStream(ServletInputStream delegate, BodyCapture capture) {
+            this.delegate = delegate;
+            this.capture = capture;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = delegate.read();
+            if (b != -1) {
+                capture.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int read = delegate.read(bytes, offset, length);
+            if (read > 0) {
+                capture.write(bytes, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return delegate.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            delegate.setReadListener(readListener);
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+
+    private final class CapturingResponseWrapper extends HttpServletResponseWrapper {
+        private final BodyCapture capture;
+        private TeeOutputStream outputStream;
+        private PrintWriter writer;
+
+        private CapturingResponseWrapper(HttpServletResponse response, BodyCapture capture) {
+            super(response);
+            this.capture = capture;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (writer != null) {
+                throw new IllegalStateException("getWriter() ya fue invocado para esta respuesta");
+            }
+            if (outputStream == null) {
+                outputStream = new TeeOutputStream(super.getOutputStream(), capture, this);
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (outputStream != null && writer == null) {
+                throw new IllegalStateException("getOutputStream() ya fue invocado para esta respuesta");
+            }
+            if (writer == null) {
+                // Fija la codificación antes de crear el writer, como hace el contenedor
+                Charset charset = charset(getCharacterEncoding());
+                outputStream = new TeeOutputStream(super.getOutputStream(), capture, this);
+                writer = new PrintWriter(new OutputStreamWriter(outputStream, charset));
+                // El writer retiene hasta 8 KB: se vuelcan antes de que el interceptor lea la captura
+                capture.setBeforeRead(this::drainWriter);
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            flushWriter();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void resetBuffer() {
+            super.resetBuffer();
+            capture.reset();
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            capture.reset();
+            if (outputStream != null) {
+                // reset() también borra el content type: se vuelve a evaluar en el próximo write
+                outputStream.contentTypeChecked = false;
+            }
+        }
+
+        private void flushWriter() {
+            if (writer != null) {
+                writer.flush();
+            }
+        }
+
+        /**
+         * Pasa al stream lo que retiene el writer sin hacer flush del stream
+         * original, para no confirmar la respuesta antes de tiempo.
+         */
+        private void drainWriter() {
+            if (writer != null) {
+                outputStream.holdFlush = true;
+                try {
+                    writer.flush();
+                } finally {
+                    outputStream.holdFlush = false;
+                }
+            }
+        }
+
+        /**
+         * El content type de la respuesta solo se conoce con certeza en el primer write.
+         */
+        private void checkContentType() {
+            if (isExcluded(getContentType())) {
+                capture.omit(getContentType());
+            }
+        }
+    }
+
+    private static final class TeeOutputStream extends ServletOutputStream {
+        private final ServletOutputStream delegate;
+        private final BodyCapture capture;
+        private final CapturingResponseWrapper response;
+        private boolean contentTypeChecked;
+        private boolean holdFlush;
+
+        private TeeOutputStream(ServletOutputStream delegate, BodyCapture capture, CapturingResponseWrapper response) {
+            this.delegate = delegate;
+            this.capture = capture;
+            this.response = response;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            beforeWrite();
+            delegate.write(b);
+            capture.write(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            beforeWrite();
+            delegate.write(bytes, offset, length);
+            capture.write(bytes, offset, length);
+        }
+
+        private void beforeWrite() {
+            if (!contentTypeChecked) {
+                contentTypeChecked = true;
+                response.checkContentType();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!holdFlush) {
+                delegate.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+    }
+}
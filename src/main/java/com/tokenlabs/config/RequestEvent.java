@@ -0,0 +1,230 @@
+package com.tokenlabs.config;
+
+import com.tokenlabs.util.RequestTimings;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Slot mutable del {@link RequestEventRingBuffer}.
+ *
+ * El hilo del request solo copia primitivos y bytes en buffers que el slot
+ * reutiliza entre requests; los Strings y la entidad RequestHistory se
+ * construyen del lado del consumidor.
+ */
+final class RequestEvent {
+
+    final Field endpoint;
+    final Field httpMethod;
+    final Field requestParameters;
+    final Field requestBody;
+    final Field responseBody;
+    final Field errorMessage;
+    final Field clientIp;
+    final Field userAgent;
+
+    int responseStatus;
+    long executionTimeMs;
+    /**
+     * Microsegundos por fase, indexados por {@link RequestTimings.Phase#ordinal()}.
+     */
+    final long[] phaseMicros = new long[RequestTimings.Phase.values().length];
+    boolean timed;
+    /**
+     * El error es el status HTTP (sin excepción): el mensaje se construye al consumir.
+     */
+    boolean httpError;
+    /**
+     * El productor falló al llenar el slot: se publica igual para no frenar al
+     * consumidor, pero no se registra.
+     */
+    boolean discarded;
+
+    RequestEvent(int maxFieldBytes, int maxBodyBytes) {
+        endpoint = new Field(maxFieldBytes);
+        httpMethod = new Field(16);
+        requestParameters = new Field(maxFieldBytes);
+        requestBody = new Field(maxBodyBytes);
+        responseBody = new Field(maxBodyBytes);
+        errorMessage = new Field(maxFieldBytes);
+        clientIp = new Field(64);
+        userAgent = new Field(maxFieldBytes);
+    }
+
+    void clear() {
+        endpoint.clear();
+        httpMethod.clear();
+        requestParameters.clear();
+        requestBody.clear();
+        responseBody.clear();
+        errorMessage.clear();
+        clientIp.clear();
+        userAgent.clear();
+        responseStatus = 0;
+        executionTimeMs = 0;
+        Arrays.fill(phaseMicros, 0);
+        timed = false;
+        httpError = false;
+        discarded = false;
+    }
+
+    RequestTimings.PhaseMicros phaseTimings() {
+        if (!timed) {
+            return null;
+        }
+        return new RequestTimings.PhaseMicros(
+                phaseMicros[RequestTimings.Phase.HANDLER.ordinal()],
+                phaseMicros[RequestTimings.Phase.EXTERNAL_FETCH.ordinal()],
+                phaseMicros[RequestTimings.Phase.DB_INSERT.ordinal()],
+                phaseMicros[RequestTimings.Phase.SERIALIZATION.ordinal()],
+                phaseMicros[RequestTimings.Phase.TOTAL.ordinal()]);
+    }
+
+    String errorMessageText() {
+        String message = errorMessage.toText();
+        if (message == null && httpError) {
+            return "HTTP Error " + responseStatus;
+        }
+        return message;
+    }
+
+    /**
+     * Valor de texto o body guardado como bytes en un buffer reutilizable. El
+     * buffer empieza pequeño, crece hasta maxBytes y se conserva para los
+     * siguientes requests que usen el slot.
+     */
+    static final class Field {
+
+        private static final int INITIAL_CAPACITY = 64;
+
+        private final int maxBytes;
+        private byte[] bytes;
+        private int length;
+        private long totalBytes;
+        private boolean present;
+        private String charsetName;
+        private String omittedContentType;
+
+        Field(int maxBytes) {
+            this.maxBytes = maxBytes;
+            this.bytes = new byte[Math.min(INITIAL_CAPACITY, maxBytes)];
+        }
+
+        void clear() {
+            length = 0;
+            totalBytes = 0;
+            present = false;
+            charsetName = null;
+            omittedContentType = null;
+        }
+
+        /**
+         * Copia el texto codificado en UTF-8 sin crear objetos intermedios.
+         * Un valor null deja el campo vacío.
+         */
+        void set(CharSequence value) {
+            clear();
+            if (value != null) {
+                append(value, 0, value.length());
+            }
+        }
+
+        void append(CharSequence value) {
+            append(value, 0, value.length());
+        }
+
+        void append(CharSequence value, int start, int end) {
+            present = true;
+            for (int i = start; i < end; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    putByte(c);
+                } else if (c < 0x800) {
+                    putByte(0xC0 | (c >> 6));
+                    putByte(0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < end
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    putByte(0xF0 | (codePoint >> 18));
+                    putByte(0x80 | ((codePoint >> 12) & 0x3F));
+                    putByte(0x80 | ((codePoint >> 6) & 0x3F));
+                    putByte(0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    putByte('?');
+                } else {
+                    putByte(0xE0 | (c >> 12));
+                    putByte(0x80 | ((c >> 6) & 0x3F));
+                    putByte(0x80 | (c & 0x3F));
+                }
+            }
+        }
+
+        void append(char c) {
+            present = true;
+            if (c < 0x80) {
+                putByte(c);
+            } else {
+                append(String.valueOf(c));
+            }
+        }
+
+        /**
+         * Copia un body ya capturado: los primeros bytes, el total y, si se
+         * omitió por content type, el tipo para el marcador.
+         */
+        void setBody(byte[] source, int sourceLength, long sourceTotalBytes,
+                     String sourceOmittedContentType, String sourceCharsetName) {
+            clear();
+            present = sourceTotalBytes > 0;
+            int copy = Math.min(sourceLength, maxBytes);
+            ensureCapacity(copy);
+            System.arraycopy(source, 0, bytes, 0, copy);
+            length = copy;
+            totalBytes = sourceTotalBytes;
+            omittedContentType = sourceOmittedContentType;
+            charsetName = sourceCharsetName;
+        }
+
+        /**
+         * @return el texto del campo, con el mismo formato que {@link BodyCapture}
+         *         para bodies truncados u omitidos, o null si está vacío
+         */
+        String toText() {
+            if (!present) {
+                return null;
+            }
+            long total = Math.max(totalBytes, length);
+            return BodyCapture.format(bytes, length, total, omittedContentType, charset());
+        }
+
+        int length() {
+            return length;
+        }
+
+        private Charset charset() {
+            if (charsetName == null) {
+                return StandardCharsets.UTF_8;
+            }
+            try {
+                return Charset.forName(charsetName);
+            } catch (IllegalArgumentException e) {
+                return StandardCharsets.UTF_8;
+            }
+        }
+
+        private void putByte(int b) {
+            totalBytes++;
+            if (length < maxBytes) {
+                ensureCapacity(length + 1);
+                bytes[length++] = (byte) b;
+            }
+        }
+
+        private void ensureCapacity(int required) {
+            if (required > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.min(maxBytes, Math.max(required, bytes.length * 2)));
+            }
+        }
+    }
+}
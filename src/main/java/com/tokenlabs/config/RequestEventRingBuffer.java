@@ -0,0 +1,217 @@
+package com.tokenlabs.config;
+
+import com.tokenlabs.service.RequestHistoryService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ring buffer de eventos de request al estilo Disruptor.
+ *
+ * Los slots ({@link RequestEvent}) se crean al arrancar y se reutilizan: el
+ * hilo del request reclama una secuencia con CAS, copia primitivos y bytes en
+ * el slot y lo publica. Un único hilo consumidor recorre las secuencias en
+ * orden, construye los Strings y entrega el registro a
+ * {@link RequestHistoryService}, que aplica el muestreo y lo encola en el
+ * escritor por lotes. Así el hilo de Tomcat no crea la entidad ni tareas
+ * asíncronas por request.
+ *
+ * Si el buffer está lleno el evento se descarta (nunca se bloquea al request)
+ * y queda contado en request_history.ring.dropped.
+ */
+@Component
+public class RequestEventRingBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestEventRingBuffer.class);
+
+    static final String METRIC_PREFIX = "request_history.ring";
+
+    private static final int SPIN_TRIES = 100;
+    private static final long MAX_PARK_NANOS = Duration.ofMillis(1).toNanos();
+
+    private final RequestHistoryService requestHistoryService;
+    private final RequestEvent[] slots;
+    private final int mask;
+    /**
+     * Secuencia publicada en cada slot; -1 mientras el slot no tiene evento listo.
+     */
+    private final AtomicLongArray published;
+    private final AtomicLong claimSequence = new AtomicLong();
+    private final AtomicLong consumerSequence = new AtomicLong();
+    private final Duration shutdownTimeout;
+
+    private final Counter publishedEvents;
+    private final Counter droppedEvents;
+
+    private volatile boolean running;
+    private Thread consumerThread;
+
+    @Autowired
+    public RequestEventRingBuffer(
+            RequestHistoryService requestHistoryService,
+            MeterRegistry meterRegistry,
+            @Value("${app.request-history.ring.capacity:1024}") int capacity,
+            @Value("${app.request-history.ring.max-field-bytes:2048}") int maxFieldBytes,
+            @Value("${app.request-history.capture.max-bytes:4096}") int maxBodyBytes,
+            @Value("${app.request-history.ring.shutdown-timeout:PT5S}") Duration shutdownTimeout) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("La capacidad del ring buffer debe ser potencia de 2: " + capacity);
+        }
+        this.requestHistoryService = requestHistoryService;
+        this.slots = new RequestEvent[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new RequestEvent(maxFieldBytes, maxBodyBytes);
+            published.set(i, -1);
+        }
+        this.mask = capacity - 1;
+        this.shutdownTimeout = shutdownTimeout;
+
+        this.publishedEvents = Counter.builder(METRIC_PREFIX + ".published")
+                .description("Eventos de request publicados en el ring buffer")
+                .register(meterRegistry);
+        this.droppedEvents = Counter.builder(METRIC_PREFIX + ".dropped")
+                .description("Eventos de request descartados por ring buffer lleno")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".backlog", this, RequestEventRingBuffer::getBacklog)
+                .description("Eventos pendientes de consumir")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        consumerThread = new Thread(this::runConsumer, "RequestEventConsumer");
+        consumerThread.setDaemon(true);
+        consumerThread.start();
+    }
+
+    /**
+     * Detiene el consumidor después de procesar lo publicado, como máximo durante shutdown-timeout.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (consumerThread == null) {
+            return;
+        }
+        LockSupport.unpark(consumerThread);
+        try {
+            consumerThread.join(shutdownTimeout.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long pending = getBacklog();
+        if (pending > 0) {
+            logger.warn("Se descartaron {} eventos de request pendientes al detener el ring buffer", pending);
+        }
+    }
+
+    /**
+     * Reclama el siguiente slot libre.
+     *
+     * @return la secuencia reclamada, o -1 si el buffer está lleno
+     */
+    long tryClaim() {
+        while (true) {
+            long sequence = claimSequence.get();
+            if (sequence - consumerSequence.get() >= slots.length) {
+                droppedEvents.increment();
+                return -1;
+            }
+            if (claimSequence.compareAndSet(sequence, sequence + 1)) {
+                RequestEvent event = slots[(int) sequence & mask];
+                event.clear();
+                return sequence;
+            }
+        }
+    }
+
+    RequestEvent get(long sequence) {
+        return slots[(int) sequence & mask];
+    }
+
+    /**
+     * Marca el slot como listo para el consumidor. Debe llamarse siempre tras
+     * {@link #tryClaim()}, aunque el evento quede incompleto (marcado como
+     * discarded): el consumidor procesa las secuencias en orden y esperaría
+     * indefinidamente.
+     */
+    void publish(long sequence) {
+        published.set((int) sequence & mask, sequence);
+        publishedEvents.increment();
+    }
+
+    public long getBacklog() {
+        return claimSequence.get() - consumerSequence.get();
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    private void runConsumer() {
+        long sequence = consumerSequence.get();
+        int idle = 0;
+        while (true) {
+            int index = (int) sequence & mask;
+            if (published.get(index) == sequence) {
+                consume(slots[index]);
+                published.set(index, -1);
+                consumerSequence.lazySet(++sequence);
+                idle = 0;
+            } else if (!running && sequence == claimSequence.get()) {
+                return;
+            } else if (!running && idle > SPIN_TRIES && waitedTooLong(idle)) {
+                return;
+            } else {
+                idle = backOff(idle);
+            }
+        }
+    }
+
+    /**
+     * Espera escalonada: primero spin, después park con tiempo creciente hasta 1 ms.
+     */
+    private static int backOff(int idle) {
+        if (idle < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1_000L << Math.min(idle - SPIN_TRIES, 10)));
+        }
+        return idle + 1;
+    }
+
+    private boolean waitedTooLong(int idle) {
+        // Un productor que reclamó un slot y no llegó a publicarlo no debe bloquear el apagado
+        return (long) (idle - SPIN_TRIES) * MAX_PARK_NANOS > shutdownTimeout.toNanos();
+    }
+
+    private void consume(RequestEvent event) {
+        if (event.discarded) {
+            return;
+        }
+        try {
+            requestHistoryService.logRequestAsync(
+                    event.endpoint.toText(), event.httpMethod.toText(),
+                    event.requestParameters.toText(), event.requestBody.toText(),
+                    String.valueOf(event.responseStatus), event.responseBody.toText(),
+                    event.errorMessageText(), event.executionTimeMs,
+                    event.clientIp.toText(), event.userAgent.toText(), event.phaseTimings());
+        } catch (Exception e) {
+            logger.error("Error procesando evento de request: {}", e.getMessage());
+        }
+    }
+}
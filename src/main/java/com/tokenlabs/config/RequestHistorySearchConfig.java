@@ -0,0 +1,34 @@
+package com.tokenlabs.config;
+
+import com.tokenlabs.util.InvertedIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Índice de texto local de request_history (ver RequestHistorySearchIndex).
+ * Como el write-ahead log, usa un directorio por instancia: si no se puede
+ * abrir la aplicación no arranca.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.request-history.search.enabled", havingValue = "true")
+public class RequestHistorySearchConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestHistorySearchConfig.class);
+
+    @Bean(destroyMethod = "close")
+    public InvertedIndex requestHistoryInvertedIndex(
+            @Value("${app.request-history.search.directory:data/request-history-index}") String directory,
+            @Value("${app.request-history.search.merge-factor:10}") int mergeFactor) throws IOException {
+        InvertedIndex index = InvertedIndex.open(Path.of(directory), mergeFactor);
+        logger.info("Índice de texto de request_history en {} ({} segmentos, {} documentos)",
+                Path.of(directory).toAbsolutePath(), index.getSegmentCount(), index.getDocCount());
+        return index;
+    }
+}
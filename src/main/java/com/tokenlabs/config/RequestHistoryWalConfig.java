@@ -0,0 +1,37 @@
+package com.tokenlabs.config;
+
+import com.tokenlabs.util.WriteAheadLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Write-ahead log local de request_history (ver RequestHistoryWriter).
+ * Si el directorio no se puede abrir la aplicación no arranca: con el log
+ * habilitado se espera que ningún registro de auditoría dependa de la base de datos.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.request-history.wal.enabled", havingValue = "true")
+public class RequestHistoryWalConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestHistoryWalConfig.class);
+
+    @Bean(destroyMethod = "close")
+    public WriteAheadLog requestHistoryWriteAheadLog(
+            @Value("${app.request-history.wal.directory:data/request-history-wal}") String directory,
+            @Value("${app.request-history.wal.segment-size:16MB}") DataSize segmentSize,
+            @Value("${app.request-history.wal.max-size:1GB}") DataSize maxSize) throws IOException {
+        WriteAheadLog log = WriteAheadLog.open(Path.of(directory), Math.toIntExact(segmentSize.toBytes()),
+                maxSize.toBytes());
+        logger.info("Write-ahead log de request_history en {} ({} bytes pendientes de replicar)",
+                Path.of(directory).toAbsolutePath(), log.getPendingBytes());
+        return log;
+    }
+}
@@ -1,6 +1,7 @@
 package com.tokenlabs.config;
 
-import com.tokenlabs.service.RequestHistoryService;
+import com.tokenlabs.service.EndpointLatencyHistograms;
+import com.tokenlabs.util.RequestTimings;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
@@ -8,32 +9,62 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.util.ContentCachingRequestWrapper;
 import org.springframework.web.util.ContentCachingResponseWrapper;
 
 import java.nio.charset.StandardCharsets;
-import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Registra cada request en request_history.
+ *
+ * En afterCompletion solo se copian primitivos y bytes en un slot de
+ * {@link RequestEventRingBuffer}; los Strings y la entidad se construyen en
+ * el hilo consumidor del ring buffer. Los tiempos se miden con
+ * System.nanoTime() en un {@link RequestTimings} guardado como atributo del
+ * request, por fases: handler, llamada externa, inserción, serialización y
+ * total. El total se registra también en {@link EndpointLatencyHistograms}
+ * con el patrón de la ruta, antes de reclamar el slot, así que los percentiles
+ * en memoria incluyen los requests descartados por el muestreo o el buffer.
+ * El endpoint guardado es también el patrón de la ruta; solo los requests
+ * sin handler guardan la URI.
+ */
 @Component
 public class RequestLoggingInterceptor implements HandlerInterceptor {
     
     private static final Logger logger = LoggerFactory.getLogger(RequestLoggingInterceptor.class);
     
     @Autowired
-    private RequestHistoryService requestHistoryService;
+    private RequestEventRingBuffer requestEventRingBuffer;
+    
+    @Autowired
+    private EndpointLatencyHistograms endpointLatencyHistograms;
     
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
-        // Almacenar el tiempo de inicio en el request
-        request.setAttribute("startTime", System.currentTimeMillis());
+        // Almacenar los tiempos en el request. En requests asíncronos el
+        // interceptor se vuelve a ejecutar en el dispatch ASYNC: se conserva el inicio original
+        if (request.getAttribute(RequestTimings.ATTRIBUTE) == null) {
+            request.setAttribute(RequestTimings.ATTRIBUTE, RequestTimings.start());
+        }
         return true;
     }
     
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response,
+                           Object handler, ModelAndView modelAndView) {
+        if (request.getAttribute(RequestTimings.ATTRIBUTE) instanceof RequestTimings timings) {
+            timings.markResponseWritten();
+        }
+    }
+    
     @Override
     public void afterCompletion(HttpServletRequest request, HttpServletResponse response, 
                                Object handler, Exception ex) {
+        long sequence = -1;
+        RequestEvent event = null;
         try {
             // Obtener información del request
             String endpoint = request.getRequestURI();
@@ -44,94 +75,126 @@ public class RequestLoggingInterceptor implements HandlerInterceptor {
                 return;
             }
             
-            long startTime = (Long) request.getAttribute("startTime");
-            long executionTime = System.currentTimeMillis() - startTime;
+            RequestTimings timings = (RequestTimings) request.getAttribute(RequestTimings.ATTRIBUTE);
+            timings.finish();
+            // Patrón de la ruta (/api/v1/items/{id}) y no la URI: los valores
+            // distintos quedan acotados por las rutas de la aplicación
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String route = pattern instanceof String matched ? matched : endpoint;
+            endpointLatencyHistograms.record(route, timings.micros(RequestTimings.Phase.TOTAL));
             
-            String httpMethod = request.getMethod();
-            String clientIp = getClientIpAddress(request);
-            String userAgent = request.getHeader("User-Agent");
+            sequence = requestEventRingBuffer.tryClaim();
+            if (sequence < 0) {
+                logger.debug("Ring buffer de requests lleno, evento descartado para endpoint: {}", endpoint);
+                return;
+            }
+            event = requestEventRingBuffer.get(sequence);
+            event.executionTimeMs = timings.nanos(RequestTimings.Phase.TOTAL) / 1_000_000;
+            for (RequestTimings.Phase phase : RequestTimings.Phase.values()) {
+                event.phaseMicros[phase.ordinal()] = timings.micros(phase);
+            }
+            event.timed = true;
+            event.endpoint.set(route);
+            event.httpMethod.set(request.getMethod());
+            copyClientIpAddress(request, event.clientIp);
+            event.userAgent.set(request.getHeader("User-Agent"));
             
-            // Obtener parámetros del request
-            String requestParameters = getRequestParameters(request);
-            String requestBody = getRequestBody(request);
+            // Parámetros y bodies
+            copyRequestParameters(request, event.requestParameters);
+            copyRequestBody(request, event.requestBody);
             
-            // Obtener información de la respuesta
-            String responseStatus = String.valueOf(response.getStatus());
-            String responseBody = getResponseBody(response);
+            // Información de la respuesta
+            int status = response.getStatus();
+            event.responseStatus = status;
+            copyResponseBody(request, response, event.responseBody);
             
             // Determinar si hay error
-            String errorMessage = null;
             if (ex != null) {
-                errorMessage = ex.getMessage();
-            } else if (response.getStatus() >= 400) {
-                errorMessage = "HTTP Error " + response.getStatus();
+                event.errorMessage.set(ex.getMessage());
+            } else if (status >= 400) {
+                event.httpError = true;
             }
             
-            // Registrar de forma asíncrona
-            requestHistoryService.logRequestAsync(
-                    endpoint, httpMethod, requestParameters, requestBody,
-                    responseStatus, responseBody, errorMessage, executionTime,
-                    clientIp, userAgent
-            );
-            
         } catch (Exception e) {
             logger.error("Error in request logging interceptor: {}", e.getMessage());
+            if (event != null) {
+                event.discarded = true;
+            }
+        } finally {
+            if (sequence >= 0) {
+                requestEventRingBuffer.publish(sequence);
+            }
         }
     }
     
-    private String getClientIpAddress(HttpServletRequest request) {
+    private void copyClientIpAddress(HttpServletRequest request, RequestEvent.Field field) {
         String xForwardedFor = request.getHeader("X-Forwarded-For");
         if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-            return xForwardedFor.split(",")[0].trim();
+            // Primera IP de la lista, sin split ni trim para no crear Strings
+            int end = xForwardedFor.indexOf(',');
+            if (end < 0) {
+                end = xForwardedFor.length();
+            }
+            int start = 0;
+            while (start < end && Character.isWhitespace(xForwardedFor.charAt(start))) {
+                start++;
+            }
+            while (end > start && Character.isWhitespace(xForwardedFor.charAt(end - 1))) {
+                end--;
+            }
+            field.clear();
+            field.append(xForwardedFor, start, end);
+            return;
         }
         
         String xRealIp = request.getHeader("X-Real-IP");
         if (xRealIp != null && !xRealIp.isEmpty()) {
-            return xRealIp;
+            field.set(xRealIp);
+            return;
         }
         
-        return request.getRemoteAddr();
+        field.set(request.getRemoteAddr());
     }
     
-    private String getRequestParameters(HttpServletRequest request) {
+    private void copyRequestParameters(HttpServletRequest request, RequestEvent.Field field) {
         Map<String, String[]> parameterMap = request.getParameterMap();
         if (parameterMap.isEmpty()) {
-            return null;
+            return;
         }
         
-        StringBuilder params = new StringBuilder();
+        boolean first = true;
         for (Map.Entry<String, String[]> entry : parameterMap.entrySet()) {
-            if (params.length() > 0) {
-                params.append("&");
+            if (!first) {
+                field.append('&');
             }
-            params.append(entry.getKey()).append("=");
+            first = false;
+            field.append(entry.getKey());
+            field.append('=');
             if (entry.getValue().length > 0) {
-                params.append(entry.getValue()[0]);
+                field.append(entry.getValue()[0]);
             }
         }
-        
-        return params.toString();
     }
     
-    private String getRequestBody(HttpServletRequest request) {
+    private void copyRequestBody(HttpServletRequest request, RequestEvent.Field field) {
+        if (RequestBodyCaptureFilter.copyCapturedRequestBody(request, field)) {
+            return;
+        }
         if (request instanceof ContentCachingRequestWrapper) {
             ContentCachingRequestWrapper wrapper = (ContentCachingRequestWrapper) request;
             byte[] content = wrapper.getContentAsByteArray();
-            if (content.length > 0) {
-                return new String(content, StandardCharsets.UTF_8);
-            }
+            field.setBody(content, content.length, content.length, null, StandardCharsets.UTF_8.name());
         }
-        return null;
     }
     
-    private String getResponseBody(HttpServletResponse response) {
+    private void copyResponseBody(HttpServletRequest request, HttpServletResponse response, RequestEvent.Field field) {
+        if (RequestBodyCaptureFilter.copyCapturedResponseBody(request, response, field)) {
+            return;
+        }
         if (response instanceof ContentCachingResponseWrapper) {
             ContentCachingResponseWrapper wrapper = (ContentCachingResponseWrapper) response;
             byte[] content = wrapper.getContentAsByteArray();
-            if (content.length > 0) {
-                return new String(content, StandardCharsets.UTF_8);
-            }
+            field.setBody(content, content.length, content.length, null, StandardCharsets.UTF_8.name());
         }
-        return null;
     }
 }
@@ -1,7 +1,13 @@
 package com.tokenlabs.config;
 
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -23,4 +29,25 @@ public class WebMvcConfig implements WebMvcConfigurer {
                     "/api/v1/history/**" // Excluir endpoint de historial para evitar recursión
                 );
     }
+    
+    /**
+     * Formato binario CBOR (application/cbor) para requests y respuestas.
+     * Se activa por negociación de contenido (Content-Type / Accept); JSON sigue
+     * siendo el formato por defecto porque el convertidor CBOR se registra
+     * después del de JSON. Se parte del builder de Spring Boot para aplicar la
+     * misma configuración de Jackson (spring.jackson.*, JavaTimeModule) que JSON.
+     *
+     * Con app.cbor.string-references se emiten referencias a cadenas repetidas
+     * (tags 256/25): las páginas de historial se reducen a una cuarta parte,
+     * pero el cliente necesita un decodificador CBOR que soporte stringref.
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(
+            Jackson2ObjectMapperBuilder builder,
+            @Value("${app.cbor.string-references:false}") boolean stringReferences) {
+        CBORFactory factory = CBORFactory.builder()
+                .configure(CBORGenerator.Feature.STRINGREF, stringReferences)
+                .build();
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(factory).build());
+    }
 }
@@ -0,0 +1,23 @@
+package com.tokenlabs.config;
+
+import com.tokenlabs.controller.CalculationWebSocketHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    public static final String CALCULATION_WEBSOCKET_PATH = "/ws/calculate";
+
+    @Autowired
+    private CalculationWebSocketHandler calculationWebSocketHandler;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(calculationWebSocketHandler, CALCULATION_WEBSOCKET_PATH);
+    }
+}
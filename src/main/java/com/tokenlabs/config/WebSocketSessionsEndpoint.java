@@ -0,0 +1,28 @@
+package com.tokenlabs.config;
+
+import com.tokenlabs.controller.CalculationWebSocketHandler;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Endpoint de actuator (/actuator/wssessions) con el throughput de cada
+ * sesión abierta del canal WebSocket de cálculos.
+ */
+@Component
+@Endpoint(id = "wssessions")
+public class WebSocketSessionsEndpoint {
+
+    private final CalculationWebSocketHandler calculationWebSocketHandler;
+
+    public WebSocketSessionsEndpoint(CalculationWebSocketHandler calculationWebSocketHandler) {
+        this.calculationWebSocketHandler = calculationWebSocketHandler;
+    }
+
+    @ReadOperation
+    public List<CalculationWebSocketHandler.SessionMetrics> sessions() {
+        return calculationWebSocketHandler.getSessionMetrics();
+    }
+}
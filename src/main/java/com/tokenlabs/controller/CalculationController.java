@@ -2,13 +2,20 @@ package com.tokenlabs.controller;
 
 import com.tokenlabs.dto.CalculationRequest;
 import com.tokenlabs.dto.CalculationResponse;
+import com.tokenlabs.dto.CursorPage;
 import com.tokenlabs.dto.RequestHistoryFilter;
 import com.tokenlabs.dto.RequestHistoryResponse;
+import com.tokenlabs.dto.RequestStatisticsResponse;
 import com.tokenlabs.model.CalculationHistory;
 import com.tokenlabs.model.RequestHistory;
 import com.tokenlabs.service.CalculationService;
+import com.tokenlabs.service.EndpointLatencyHistograms;
 import com.tokenlabs.service.ExternalPercentageService;
 import com.tokenlabs.service.ExternalServiceFailureSimulator;
+import com.tokenlabs.service.HeavyHitterTracker;
+import com.tokenlabs.service.IdempotencyService;
+import com.tokenlabs.service.RequestHistoryFacetIndex;
+import com.tokenlabs.service.RequestHistoryLiveTail;
 import com.tokenlabs.service.RequestHistoryService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -20,9 +27,12 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,6 +40,7 @@ import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @RestController
@@ -38,9 +49,18 @@ import java.util.stream.Collectors;
 public class CalculationController {
     
     private static final Logger logger = LoggerFactory.getLogger(CalculationController.class);
-    
+
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
+    /** Valores del parámetro paging de los listados de historial */
+    static final List<String> PAGING_MODES = List.of("page", "slice", "cursor");
+
     @Autowired
     private CalculationService calculationService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
     
     @Autowired
     private ExternalPercentageService externalPercentageService;
@@ -51,6 +71,15 @@ public class CalculationController {
     @Autowired
     private RequestHistoryService requestHistoryService;
     
+    @Autowired
+    private EndpointLatencyHistograms endpointLatencyHistograms;
+    
+    @Autowired
+    private HeavyHitterTracker heavyHitterTracker;
+    
+    @Autowired
+    private RequestHistoryLiveTail requestHistoryLiveTail;
+    
     @PostMapping("/calculate")
     @Operation(
         summary = "Realizar cálculo con porcentaje externo",
@@ -60,19 +89,58 @@ public class CalculationController {
         @ApiResponse(responseCode = "200", description = "Cálculo realizado exitosamente",
                     content = @Content(schema = @Schema(implementation = CalculationResponse.class))),
         @ApiResponse(responseCode = "400", description = "Datos de entrada inválidos"),
+        @ApiResponse(responseCode = "409", description = "Existe una ejecución en curso para el Idempotency-Key"),
+        @ApiResponse(responseCode = "422", description = "Idempotency-Key reutilizado con un payload distinto"),
         @ApiResponse(responseCode = "500", description = "Error interno del servidor")
     })
     public ResponseEntity<CalculationResponse> calculate(
+            @Parameter(description = "Clave para reintentos seguros: la misma clave devuelve la respuesta original sin recalcular")
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
             @Parameter(description = "Datos para el cálculo", required = true)
             @Valid @RequestBody CalculationRequest request) {
-        
+
         logger.info("Recibida solicitud de cálculo: {}", request);
-        
+
+        if (idempotencyKey != null) {
+            IdempotencyService.IdempotentResult result = idempotencyService.execute(
+                    idempotencyKey, request, () -> calculationService.calculate(request));
+            logger.info("Cálculo idempotente completado (replay: {}): {}", result.replayed(), result.response());
+            return ResponseEntity.ok()
+                    .header(IDEMPOTENT_REPLAYED_HEADER, String.valueOf(result.replayed()))
+                    .body(result.response());
+        }
+
         CalculationResponse response = calculationService.calculate(request);
         logger.info("Cálculo completado exitosamente: {}", response);
         return ResponseEntity.ok(response);
     }
-    
+
+    @PostMapping("/calculate/async")
+    @Operation(
+        summary = "Realizar cálculo sin bloquear el hilo del servidor",
+        description = "Mismo cálculo que /calculate, pero la llamada al servicio externo y la persistencia " +
+                      "se ejecutan en executors dedicados liberando el hilo de Tomcat mientras tanto"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Cálculo realizado exitosamente",
+                    content = @Content(schema = @Schema(implementation = CalculationResponse.class))),
+        @ApiResponse(responseCode = "400", description = "Datos de entrada inválidos"),
+        @ApiResponse(responseCode = "503", description = "Executors saturados, reintentar más tarde"),
+        @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public CompletableFuture<ResponseEntity<CalculationResponse>> calculateAsync(
+            @Parameter(description = "Datos para el cálculo", required = true)
+            @Valid @RequestBody CalculationRequest request) {
+
+        logger.info("Recibida solicitud de cálculo asíncrono: {}", request);
+
+        return calculationService.calculateAsync(request)
+            .thenApply(response -> {
+                logger.info("Cálculo asíncrono completado exitosamente: {}", response);
+                return ResponseEntity.ok(response);
+            });
+    }
+
     @GetMapping("/health")
     @Operation(
         summary = "Verificar salud de la API",
@@ -226,7 +294,8 @@ public class CalculationController {
     @GetMapping("/history")
     @Operation(
         summary = "Obtener historial detallado de requests",
-        description = "Obtiene el historial completo de requests con paginación, incluyendo fecha, endpoint, parámetros, respuesta/error"
+        description = "Obtiene el historial completo de requests con paginación, incluyendo fecha, endpoint, parámetros, respuesta/error. Los cuerpos se devuelven como hash; el contenido se obtiene en /history/{id}. " +
+                      "paging=page devuelve el total de elementos, paging=slice lo omite para evitar el COUNT(*) y paging=cursor recorre el historial por (requestDate, id) con el token nextCursor, con el mismo coste en cualquier página"
     )
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Historial obtenido exitosamente"),
@@ -236,6 +305,8 @@ public class CalculationController {
     public ResponseEntity<Map<String, Object>> getRequestHistory(
             @Parameter(description = "Número de página (0-based)") @RequestParam(defaultValue = "0") int page,
             @Parameter(description = "Tamaño de página") @RequestParam(defaultValue = "20") int size,
+            @Parameter(description = "Modo de paginación: page, slice o cursor") @RequestParam(defaultValue = "page") String paging,
+            @Parameter(description = "Cursor devuelto en nextCursor (implica paging=cursor)") @RequestParam(required = false) String cursor,
             @Parameter(description = "Campo para ordenar") @RequestParam(defaultValue = "requestDate") String sortBy,
             @Parameter(description = "Dirección de ordenamiento (asc/desc)") @RequestParam(defaultValue = "desc") String sortDirection,
             @Parameter(description = "Filtrar por endpoint") @RequestParam(required = false) String endpoint,
@@ -252,6 +323,17 @@ public class CalculationController {
             if (page < 0) page = 0;
             if (size < 1) size = 20;
             if (size > 100) size = 100; // Límite máximo
+            if (cursor != null) paging = "cursor";
+            if (!PAGING_MODES.contains(paging)) {
+                return pagingError("Modo de paginación inválido. Use page, slice o cursor");
+            }
+            if (paging.equals("cursor") && !sortBy.equals("requestDate")) {
+                return pagingError("La paginación por cursor solo ordena por requestDate");
+            }
+            if (!paging.equals("page")) {
+                return getRequestHistoryWithoutTotal(page, size, sortBy, sortDirection, paging, cursor,
+                        endpoint, httpMethod, responseStatus, hasError, startDate, endDate);
+            }
             
             Page<RequestHistory> historyPage;
             
@@ -319,10 +401,54 @@ public class CalculationController {
         }
     }
     
+    /**
+     * /history en modo slice o cursor: sin COUNT(*) y, con cursor, sin OFFSET.
+     */
+    private ResponseEntity<Map<String, Object>> getRequestHistoryWithoutTotal(
+            int page, int size, String sortBy, String sortDirection, String paging, String cursor,
+            String endpoint, String httpMethod, String responseStatus, Boolean hasError,
+            String startDate, String endDate) {
+        LocalDateTime start = null;
+        LocalDateTime end = null;
+        try {
+            start = startDate != null ? LocalDateTime.parse(startDate) : null;
+        } catch (Exception e) {
+            return pagingError("Formato de fecha de inicio inválido. Use ISO format (yyyy-MM-ddTHH:mm:ss)");
+        }
+        try {
+            end = endDate != null ? LocalDateTime.parse(endDate) : null;
+        } catch (Exception e) {
+            return pagingError("Formato de fecha de fin inválido. Use ISO format (yyyy-MM-ddTHH:mm:ss)");
+        }
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "success");
+        if (paging.equals("slice")) {
+            Slice<RequestHistory> historySlice = requestHistoryService.searchRequestsSlice(
+                endpoint, httpMethod, responseStatus, hasError, start, end, page, size, sortBy, sortDirection
+            );
+            response.put("data", historySlice.getContent());
+            response.put("pagination", slicePagination(historySlice));
+        } else {
+            CursorPage<RequestHistory> historyPage;
+            try {
+                historyPage = requestHistoryService.scrollRequests(
+                    endpoint, httpMethod, responseStatus, hasError, start, end, cursor, size, sortDirection
+                );
+            } catch (IllegalArgumentException e) {
+                return pagingError(e.getMessage());
+            }
+            response.put("data", historyPage.getContent());
+            response.put("pagination", cursorPagination(historyPage));
+        }
+        response.put("timestamp", LocalDateTime.now());
+        return ResponseEntity.ok(response);
+    }
+    
     @GetMapping("/history/stats")
     @Operation(
         summary = "Obtener estadísticas del historial",
-        description = "Obtiene estadísticas detalladas del historial de requests"
+        description = "Obtiene estadísticas de requests de todas las instancias, incluidos los clientes distintos, desde contadores en memoria"
     )
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Estadísticas obtenidas exitosamente"),
@@ -332,13 +458,15 @@ public class CalculationController {
         logger.info("Consultando estadísticas del historial de requests");
         
         try {
-            Object stats = requestHistoryService.getRequestStatistics();
-            long totalRequests = requestHistoryService.getTotalRequests();
+            RequestStatisticsResponse stats = requestHistoryService.getRequestStatistics();
             
             Map<String, Object> response = new HashMap<>();
             response.put("status", "success");
-            response.put("totalRequests", totalRequests);
+            response.put("totalRequests", stats.getTotalRequests());
+            response.put("storedRequests", stats.getStoredRequests());
+            response.put("uniqueClients", stats.getUniqueClients());
             response.put("statistics", stats);
+            response.put("latencyByEndpoint", endpointLatencyHistograms.snapshot());
             response.put("timestamp", LocalDateTime.now());
             
             return ResponseEntity.ok(response);
@@ -353,10 +481,332 @@ public class CalculationController {
         }
     }
     
+    @GetMapping("/history/latency")
+    @Operation(
+        summary = "Obtener percentiles de latencia",
+        description = "Obtiene p50/p90/p99/p99.9 y máximo por endpoint, en microsegundos, de las ventanas de 1m, 5m y 1h. Se sirven desde memoria, sin consultar la base de datos"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Percentiles obtenidos exitosamente"),
+        @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public ResponseEntity<Map<String, Object>> getRequestLatency() {
+        logger.debug("Consultando percentiles de latencia por endpoint");
+        
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "success");
+            response.put("unit", "microseconds");
+            response.put("latencyByEndpoint", endpointLatencyHistograms.snapshot());
+            response.put("timestamp", LocalDateTime.now());
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            logger.error("Error al consultar percentiles de latencia", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", "Error al consultar latencia: " + e.getMessage());
+            response.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    @GetMapping("/history/latency/range")
+    @Operation(
+        summary = "Obtener percentiles de latencia de un rango",
+        description = "Obtiene p50/p90/p99/p99.9 y máximo por endpoint, en microsegundos, fusionando los histogramas por minuto guardados entre from (incluido) y to (excluido)"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Percentiles obtenidos exitosamente"),
+        @ApiResponse(responseCode = "400", description = "Rango de fechas inválido"),
+        @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public ResponseEntity<Map<String, Object>> getRequestLatencyRange(
+            @Parameter(description = "Inicio del rango (ISO format)") @RequestParam String from,
+            @Parameter(description = "Fin del rango, excluido (ISO format)") @RequestParam String to,
+            @Parameter(description = "Filtrar por patrón de ruta") @RequestParam(required = false) String endpoint) {
+        logger.info("Consultando percentiles de latencia entre {} y {}", from, to);
+        
+        LocalDateTime start;
+        LocalDateTime end;
+        try {
+            start = LocalDateTime.parse(from);
+            end = LocalDateTime.parse(to);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", "Formato de fecha inválido. Use ISO format (yyyy-MM-ddTHH:mm:ss)");
+            return ResponseEntity.badRequest().body(response);
+        }
+        if (!start.isBefore(end)) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", "from debe ser anterior a to");
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "success");
+            response.put("unit", "microseconds");
+            response.put("from", start);
+            response.put("to", end);
+            response.put("latencyByEndpoint", endpointLatencyHistograms.percentilesBetween(start, end, endpoint));
+            response.put("timestamp", LocalDateTime.now());
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            logger.error("Error al consultar percentiles de latencia entre {} y {}", from, to, e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", "Error al consultar latencia: " + e.getMessage());
+            response.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    @GetMapping("/history/top")
+    @Operation(
+        summary = "Obtener endpoints y clientes más frecuentes",
+        description = "Obtiene los endpoints y las IPs de cliente con más requests en las ventanas de 1m, 5m y 1h. count es una estimación que nunca es menor que el valor real; guaranteedCount es una cota inferior. Se sirve desde memoria con espacio acotado"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Ranking obtenido exitosamente"),
+        @ApiResponse(responseCode = "400", description = "Límite inválido"),
+        @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public ResponseEntity<Map<String, Object>> getTopTraffic(
+            @Parameter(description = "Número de claves por ventana") @RequestParam(defaultValue = "10") int limit) {
+        logger.debug("Consultando endpoints y clientes más frecuentes (limit={})", limit);
+        
+        if (limit < 1 || limit > heavyHitterTracker.getCapacity()) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", "limit debe estar entre 1 y " + heavyHitterTracker.getCapacity());
+            return ResponseEntity.badRequest().body(response);
+        }
+        
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "success");
+            response.put("limit", limit);
+            for (HeavyHitterTracker.Dimension dimension : HeavyHitterTracker.Dimension.values()) {
+                response.put(dimension.label(), heavyHitterTracker.top(dimension, limit));
+            }
+            response.put("timestamp", LocalDateTime.now());
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            logger.error("Error al consultar endpoints y clientes más frecuentes", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", "Error al consultar ranking: " + e.getMessage());
+            response.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    @GetMapping("/history/facets")
+    @Operation(
+        summary = "Obtener recuentos por faceta del historial reciente",
+        description = "Cuenta los requests recientes que cumplen los filtros y su distribución por endpoint, método HTTP, código de respuesta y error, desde un índice en memoria sin consultar la base de datos. " +
+                      "Los recuentos son estimaciones ponderadas por sample_weight, como en /history/stats; storedRows son las filas guardadas que cumplen los filtros. " +
+                      "La distribución de cada faceta aplica los demás filtros pero no el suyo. El índice es de la instancia que responde: solo cubre las filas desde coveredSince y, con varias instancias, no las que insertaron las demás. Las fechas tienen resolución de segundos. " +
+                      "data contiene la primera página de filas (de mayor a menor id); size=0 devuelve solo los recuentos"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Recuentos obtenidos exitosamente"),
+        @ApiResponse(responseCode = "400", description = "Parámetros inválidos"),
+        @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public ResponseEntity<Map<String, Object>> getRequestHistoryFacets(
+            @Parameter(description = "Filas de la página (0 a 100)") @RequestParam(defaultValue = "20") int size,
+            @Parameter(description = "Cursor devuelto en nextCursor") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Filtrar por endpoint") @RequestParam(required = false) String endpoint,
+            @Parameter(description = "Filtrar por método HTTP") @RequestParam(required = false) String httpMethod,
+            @Parameter(description = "Filtrar por código de respuesta") @RequestParam(required = false) String responseStatus,
+            @Parameter(description = "Filtrar por errores (true/false)") @RequestParam(required = false) Boolean hasError,
+            @Parameter(description = "Fecha de inicio (ISO format)") @RequestParam(required = false) String startDate,
+            @Parameter(description = "Fecha de fin (ISO format)") @RequestParam(required = false) String endDate) {
+        logger.debug("Consultando facetas del historial de requests");
+        
+        if (size < 0 || size > 100) {
+            return pagingError("size debe estar entre 0 y 100");
+        }
+        LocalDateTime start;
+        LocalDateTime end;
+        try {
+            start = startDate != null ? LocalDateTime.parse(startDate) : null;
+        } catch (Exception e) {
+            return pagingError("Formato de fecha de inicio inválido. Use ISO format (yyyy-MM-ddTHH:mm:ss)");
+        }
+        try {
+            end = endDate != null ? LocalDateTime.parse(endDate) : null;
+        } catch (Exception e) {
+            return pagingError("Formato de fecha de fin inválido. Use ISO format (yyyy-MM-ddTHH:mm:ss)");
+        }
+        
+        try {
+            RequestHistoryFacetIndex.FacetCounts counts = requestHistoryService.getFacets(
+                endpoint, httpMethod, responseStatus, hasError, start, end
+            );
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "success");
+            response.put("total", counts.total());
+            response.put("storedRows", counts.storedRows());
+            response.put("facets", counts.facets());
+            response.put("coveredSince", counts.coveredSince());
+            response.put("indexedRows", counts.indexedRows());
+            if (size > 0) {
+                CursorPage<RequestHistory> historyPage;
+                try {
+                    historyPage = requestHistoryService.scrollRecentRequests(
+                        endpoint, httpMethod, responseStatus, hasError, start, end, cursor, size
+                    );
+                } catch (IllegalArgumentException e) {
+                    return pagingError(e.getMessage());
+                }
+                response.put("data", historyPage.getContent());
+                response.put("pagination", cursorPagination(historyPage));
+            }
+            response.put("timestamp", LocalDateTime.now());
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            logger.error("Error al consultar facetas del historial de requests", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", "Error al consultar facetas: " + e.getMessage());
+            response.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    @GetMapping("/history/search")
+    @Operation(
+        summary = "Buscar texto en el historial de requests",
+        description = "Busca en los parámetros, los cuerpos de request y response y los mensajes de error con un índice de texto local, sin recorrer la tabla. " +
+                      "Devuelve los requests que contienen todas las palabras (sin distinguir mayúsculas; \"palabra*\" busca por prefijo), del más reciente al más antiguo, paginados con nextCursor. " +
+                      "Deshabilitada por defecto (app.request-history.search.enabled) y pensada para una única instancia: el índice es de la instancia que responde, " +
+                      "que solo ve los requests de las demás instancias a partir de su último arranque"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Búsqueda realizada exitosamente"),
+        @ApiResponse(responseCode = "400", description = "Consulta o cursor inválidos"),
+        @ApiResponse(responseCode = "503", description = "Búsqueda de texto deshabilitada"),
+        @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public ResponseEntity<Map<String, Object>> searchRequestHistory(
+            @Parameter(description = "Palabras a buscar") @RequestParam String q,
+            @Parameter(description = "Tamaño de página") @RequestParam(defaultValue = "20") int size,
+            @Parameter(description = "Cursor devuelto en nextCursor") @RequestParam(required = false) String cursor) {
+        logger.debug("Buscando texto en el historial de requests: {}", q);
+        
+        if (size < 1) size = 20;
+        if (size > 100) size = 100; // Límite máximo
+        
+        try {
+            CursorPage<RequestHistory> historyPage = requestHistoryService.searchText(q, cursor, size);
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "success");
+            response.put("data", historyPage.getContent());
+            response.put("pagination", cursorPagination(historyPage));
+            response.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.ok(response);
+            
+        } catch (IllegalArgumentException e) {
+            return pagingError(e.getMessage());
+        } catch (IllegalStateException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            response.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        } catch (Exception e) {
+            logger.error("Error al buscar texto en el historial de requests", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", "Error al buscar en el historial: " + e.getMessage());
+            response.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    @GetMapping("/history/live")
+    @Operation(
+        summary = "Seguir en vivo el historial de requests",
+        description = "Abre un stream Server-Sent Events con un evento \"request\" por cada request registrado que cumple los filtros, desde el registro de requests y sin consultar la base de datos. " +
+                      "Incluye los requests que el muestreo no guarda (stored=false) y no tiene ids ni cuerpos. Si el cliente no lee a tiempo se descartan los eventos más antiguos " +
+                      "y recibe un evento \"dropped\" con el número perdido; sin tráfico se envía un comentario de heartbeat"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Stream abierto"),
+        @ApiResponse(responseCode = "400", description = "Parámetros inválidos"),
+        @ApiResponse(responseCode = "503", description = "Máximo de suscriptores alcanzado")
+    })
+    public SseEmitter streamRequestHistory(
+            @Parameter(description = "Filtrar por endpoint") @RequestParam(required = false) String endpoint,
+            @Parameter(description = "Filtrar por método HTTP") @RequestParam(required = false) String httpMethod,
+            @Parameter(description = "Filtrar por código de respuesta") @RequestParam(required = false) String responseStatus,
+            @Parameter(description = "Filtrar por errores (true/false)") @RequestParam(required = false) Boolean hasError,
+            @Parameter(description = "Fecha de inicio (ISO format)") @RequestParam(required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @Parameter(description = "Fecha de fin (ISO format)") @RequestParam(required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+        logger.debug("Abriendo stream en vivo del historial de requests");
+        
+        return requestHistoryLiveTail.subscribe(new RequestHistoryLiveTail.Filter(
+            endpoint, httpMethod, responseStatus, hasError, startDate, endDate
+        ));
+    }
+    
+    @GetMapping("/history/{id:\\d+}")
+    @Operation(
+        summary = "Obtener detalle de un request",
+        description = "Obtiene un request del historial con sus cuerpos de request y response, que los listados solo devuelven como hash"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Request encontrado"),
+        @ApiResponse(responseCode = "404", description = "Request no encontrado"),
+        @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public ResponseEntity<Map<String, Object>> getRequestHistoryDetail(
+            @Parameter(description = "Id del request") @PathVariable Long id) {
+        logger.info("Consultando detalle del request {}", id);
+        
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("timestamp", LocalDateTime.now());
+            return requestHistoryService.getRequestDetail(id)
+                    .map(history -> {
+                        response.put("status", "success");
+                        response.put("data", history);
+                        return ResponseEntity.ok(response);
+                    })
+                    .orElseGet(() -> {
+                        response.put("status", "error");
+                        response.put("message", "Request no encontrado: " + id);
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+                    });
+            
+        } catch (Exception e) {
+            logger.error("Error al consultar detalle del request {}", id, e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", "Error al consultar detalle: " + e.getMessage());
+            response.put("timestamp", LocalDateTime.now());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
     @PostMapping("/history/cleanup")
     @Operation(
         summary = "Limpiar registros antiguos",
-        description = "Elimina registros de historial más antiguos de 30 días"
+        description = "Agrega en rollups horarios y diarios y elimina los registros de historial más antiguos que el periodo de retención"
     )
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Limpieza iniciada exitosamente"),
@@ -389,7 +839,8 @@ public class CalculationController {
     @GetMapping("/calculations/history")
     @Operation(
         summary = "Obtener historial de cálculos",
-        description = "Obtiene el historial paginado de todos los cálculos realizados con filtros opcionales"
+        description = "Obtiene el historial paginado de todos los cálculos realizados con filtros opcionales. " +
+                      "paging=slice omite el total de elementos y paging=cursor recorre el historial por (createdAt, id) con el token nextCursor"
     )
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Historial de cálculos obtenido exitosamente"),
@@ -402,7 +853,9 @@ public class CalculationController {
             @Parameter(description = "Campo para ordenar") @RequestParam(defaultValue = "createdAt") String sortBy,
             @Parameter(description = "Dirección de ordenamiento (asc/desc)") @RequestParam(defaultValue = "desc") String sortDirection,
             @Parameter(description = "Fecha de inicio (ISO format)") @RequestParam(required = false) String startDate,
-            @Parameter(description = "Fecha de fin (ISO format)") @RequestParam(required = false) String endDate) {
+            @Parameter(description = "Fecha de fin (ISO format)") @RequestParam(required = false) String endDate,
+            @Parameter(description = "Modo de paginación: page, slice o cursor") @RequestParam(defaultValue = "page") String paging,
+            @Parameter(description = "Cursor devuelto en nextCursor (implica paging=cursor)") @RequestParam(required = false) String cursor) {
         
         logger.info("Consultando historial de cálculos - página: {}, tamaño: {}", page, size);
         
@@ -424,6 +877,16 @@ public class CalculationController {
                 return ResponseEntity.badRequest().body(response);
             }
             
+            if (cursor != null) {
+                paging = "cursor";
+            }
+            if (!PAGING_MODES.contains(paging)) {
+                return pagingError("Modo de paginación inválido. Use page, slice o cursor");
+            }
+            if (paging.equals("cursor") && !sortBy.equals("createdAt")) {
+                return pagingError("La paginación por cursor solo ordena por createdAt");
+            }
+            
             // Convertir fechas si se proporcionan
             LocalDateTime startDateTime = null;
             LocalDateTime endDateTime = null;
@@ -452,29 +915,49 @@ public class CalculationController {
                 }
             }
             
-            // Obtener historial de cálculos
-            Page<CalculationHistory> calculationHistoryPage = calculationService.getCalculationHistory(
-                page, size, sortBy, sortDirection, startDateTime, endDateTime
-            );
-            
             // Construir respuesta
             Map<String, Object> response = new HashMap<>();
             response.put("status", "success");
             response.put("timestamp", LocalDateTime.now());
             
-            // Información de paginación
-            Map<String, Object> pagination = new HashMap<>();
-            pagination.put("currentPage", calculationHistoryPage.getNumber());
-            pagination.put("totalPages", calculationHistoryPage.getTotalPages());
-            pagination.put("totalElements", calculationHistoryPage.getTotalElements());
-            pagination.put("size", calculationHistoryPage.getSize());
-            pagination.put("numberOfElements", calculationHistoryPage.getNumberOfElements());
-            pagination.put("first", calculationHistoryPage.isFirst());
-            pagination.put("last", calculationHistoryPage.isLast());
-            response.put("pagination", pagination);
+            // Obtener historial de cálculos e información de paginación
+            List<CalculationHistory> content;
+            if (paging.equals("cursor")) {
+                CursorPage<CalculationHistory> calculationHistoryPage;
+                try {
+                    calculationHistoryPage = calculationService.scrollCalculationHistory(
+                        cursor, size, sortDirection, startDateTime, endDateTime
+                    );
+                } catch (IllegalArgumentException e) {
+                    return pagingError(e.getMessage());
+                }
+                content = calculationHistoryPage.getContent();
+                response.put("pagination", cursorPagination(calculationHistoryPage));
+            } else if (paging.equals("slice")) {
+                Slice<CalculationHistory> calculationHistorySlice = calculationService.getCalculationHistorySlice(
+                    page, size, sortBy, sortDirection, startDateTime, endDateTime
+                );
+                content = calculationHistorySlice.getContent();
+                response.put("pagination", slicePagination(calculationHistorySlice));
+            } else {
+                Page<CalculationHistory> calculationHistoryPage = calculationService.getCalculationHistory(
+                    page, size, sortBy, sortDirection, startDateTime, endDateTime
+                );
+                content = calculationHistoryPage.getContent();
+                
+                Map<String, Object> pagination = new HashMap<>();
+                pagination.put("currentPage", calculationHistoryPage.getNumber());
+                pagination.put("totalPages", calculationHistoryPage.getTotalPages());
+                pagination.put("totalElements", calculationHistoryPage.getTotalElements());
+                pagination.put("size", calculationHistoryPage.getSize());
+                pagination.put("numberOfElements", calculationHistoryPage.getNumberOfElements());
+                pagination.put("first", calculationHistoryPage.isFirst());
+                pagination.put("last", calculationHistoryPage.isLast());
+                response.put("pagination", pagination);
+            }
             
             // Datos de cálculos
-            List<Map<String, Object>> calculations = calculationHistoryPage.getContent().stream()
+            List<Map<String, Object>> calculations = content.stream()
                 .map(calc -> {
                     Map<String, Object> calcData = new HashMap<>();
                     calcData.put("id", calc.getId());
@@ -502,6 +985,40 @@ public class CalculationController {
         }
     }
     
+    /**
+     * Paginación de un Slice: como la de Page pero sin totalPages ni
+     * totalElements.
+     */
+    private static Map<String, Object> slicePagination(Slice<?> slice) {
+        Map<String, Object> pagination = new HashMap<>();
+        pagination.put("currentPage", slice.getNumber());
+        pagination.put("size", slice.getSize());
+        pagination.put("numberOfElements", slice.getNumberOfElements());
+        pagination.put("first", slice.isFirst());
+        pagination.put("last", slice.isLast());
+        pagination.put("hasNext", slice.hasNext());
+        return pagination;
+    }
+    
+    /**
+     * Paginación por cursor: nextCursor es null en la última página.
+     */
+    private static Map<String, Object> cursorPagination(CursorPage<?> cursorPage) {
+        Map<String, Object> pagination = new HashMap<>();
+        pagination.put("size", cursorPage.getSize());
+        pagination.put("numberOfElements", cursorPage.getNumberOfElements());
+        pagination.put("hasNext", cursorPage.hasNext());
+        pagination.put("nextCursor", cursorPage.getNextCursor());
+        return pagination;
+    }
+    
+    private static ResponseEntity<Map<String, Object>> pagingError(String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "error");
+        response.put("message", message);
+        response.put("timestamp", LocalDateTime.now());
+        return ResponseEntity.badRequest().body(response);
+    }
     
     // Clases internas para respuestas
     public static class StatsResponse {
@@ -0,0 +1,352 @@
+package com.tokenlabs.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tokenlabs.dto.CalculationFrame;
+import com.tokenlabs.dto.CalculationFrameResponse;
+import com.tokenlabs.dto.CalculationRequest;
+import com.tokenlabs.dto.CalculationResponse;
+import com.tokenlabs.service.CalculationService;
+import com.tokenlabs.util.CalculationFrameCodec;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Canal WebSocket de cálculos (/ws/calculate) para clientes de alta frecuencia.
+ *
+ * Cada frame (JSON de texto o binario, ver {@link CalculationFrameCodec}) es un
+ * cálculo independiente con un id del cliente. Los cálculos se ejecutan con
+ * {@link CalculationService#calculateAsync(CalculationRequest)} y las respuestas
+ * se envían en cuanto terminan, posiblemente fuera de orden (pipelining).
+ *
+ * Backpressure por sesión: como máximo max-in-flight cálculos en curso. Si se
+ * alcanza el límite, el hilo lector espera hasta acquire-timeout (con lo que el
+ * contenedor deja de leer del socket y TCP frena al cliente) y después rechaza
+ * el frame con ServiceOverloaded. Las respuestas pasan por un
+ * ConcurrentWebSocketSessionDecorator: un cliente que no lee se desconecta al
+ * superar send-buffer-size o send-time-limit.
+ */
+@Component
+public class CalculationWebSocketHandler extends AbstractWebSocketHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(CalculationWebSocketHandler.class);
+
+    static final String INVALID_FRAME = "MalformedFrame";
+    static final String VALIDATION_ERROR = "ValidationError";
+    static final String SERVICE_OVERLOADED = "ServiceOverloaded";
+    static final String INTERNAL_ERROR = "InternalError";
+
+    private final CalculationService calculationService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int maxInFlight;
+    private final Duration acquireTimeout;
+    private final int sendTimeLimitMs;
+    private final int sendBufferSizeBytes;
+
+    private final ConcurrentHashMap<String, SessionState> sessions = new ConcurrentHashMap<>();
+
+    public CalculationWebSocketHandler(
+            CalculationService calculationService,
+            ObjectMapper objectMapper,
+            Validator validator,
+            @Value("${app.websocket.max-in-flight:256}") int maxInFlight,
+            @Value("${app.websocket.acquire-timeout:PT1S}") Duration acquireTimeout,
+            @Value("${app.websocket.send-time-limit:PT5S}") Duration sendTimeLimit,
+            @Value("${app.websocket.send-buffer-size:1048576}") int sendBufferSizeBytes) {
+        this.calculationService = calculationService;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.maxInFlight = maxInFlight;
+        this.acquireTimeout = acquireTimeout;
+        this.sendTimeLimitMs = (int) sendTimeLimit.toMillis();
+        this.sendBufferSizeBytes = sendBufferSizeBytes;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        WebSocketSession concurrentSession = new ConcurrentWebSocketSessionDecorator(
+                session, sendTimeLimitMs, sendBufferSizeBytes,
+                ConcurrentWebSocketSessionDecorator.OverflowStrategy.TERMINATE);
+        sessions.put(session.getId(), new SessionState(concurrentSession, maxInFlight));
+        logger.info("Sesión WebSocket de cálculos abierta: {} desde {}", session.getId(), session.getRemoteAddress());
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        SessionState state = sessions.get(session.getId());
+        if (state == null) {
+            return;
+        }
+        CalculationFrame frame;
+        try {
+            frame = objectMapper.readValue(message.getPayload(), CalculationFrame.class);
+        } catch (JsonProcessingException e) {
+            state.received.increment();
+            state.failed.increment();
+            send(state, text(CalculationFrameResponse.error(null, INVALID_FRAME,
+                    "El frame JSON está malformado o contiene datos inválidos")));
+            return;
+        }
+        dispatch(state, frame.toRequest(), new TextReplies(frame.getId()));
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+        SessionState state = sessions.get(session.getId());
+        if (state == null) {
+            return;
+        }
+        CalculationFrameCodec.DecodedRequest decoded;
+        try {
+            decoded = CalculationFrameCodec.decodeRequest(message.getPayload());
+        } catch (IllegalArgumentException e) {
+            state.received.increment();
+            state.failed.increment();
+            send(state, new BinaryMessage(CalculationFrameCodec.encodeError(
+                    CalculationFrameCodec.peekId(message.getPayload()),
+                    CalculationFrameCodec.STATUS_INVALID_REQUEST, e.getMessage())));
+            return;
+        }
+        dispatch(state, decoded.request(), new BinaryReplies(decoded.id()));
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        logger.warn("Error de transporte en la sesión WebSocket {}: {}", session.getId(), exception.getMessage());
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        SessionState state = sessions.remove(session.getId());
+        if (state != null) {
+            SessionMetrics metrics = state.metrics();
+            logger.info("Sesión WebSocket de cálculos cerrada: {} ({}). Recibidos: {}, completados: {}, fallidos: {}, rechazados: {}, {} msg/s",
+                    session.getId(), status, metrics.received(), metrics.completed(), metrics.failed(),
+                    metrics.rejected(), String.format("%.1f", metrics.messagesPerSecond()));
+        }
+    }
+
+    /**
+     * Métricas de throughput de las sesiones abiertas.
+     */
+    public List<SessionMetrics> getSessionMetrics() {
+        List<SessionMetrics> metrics = new ArrayList<>(sessions.size());
+        for (SessionState state : sessions.values()) {
+            metrics.add(state.metrics());
+        }
+        return metrics;
+    }
+
+    private void dispatch(SessionState state, CalculationRequest request, Replies replies) {
+        state.received.increment();
+
+        Set<ConstraintViolation<CalculationRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            state.failed.increment();
+            String message = violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+            send(state, replies.error(CalculationFrameCodec.STATUS_INVALID_REQUEST, VALIDATION_ERROR, message));
+            return;
+        }
+
+        if (!acquire(state)) {
+            state.rejected.increment();
+            send(state, replies.error(CalculationFrameCodec.STATUS_OVERLOADED, SERVICE_OVERLOADED,
+                    "Demasiados cálculos en curso en esta sesión"));
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        CompletableFuture<CalculationResponse> future;
+        try {
+            future = calculationService.calculateAsync(request);
+        } catch (TaskRejectedException e) {
+            state.inFlight.release();
+            state.rejected.increment();
+            send(state, replies.error(CalculationFrameCodec.STATUS_OVERLOADED, SERVICE_OVERLOADED,
+                    "El servicio está saturado temporalmente. Por favor, intente nuevamente."));
+            return;
+        }
+
+        future.whenComplete((response, error) -> {
+            state.inFlight.release();
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                state.failed.increment();
+                // El detalle solo va al log: el cliente recibe un mensaje genérico
+                boolean overloaded = cause instanceof TaskRejectedException;
+                if (overloaded) {
+                    logger.warn("Cálculo por WebSocket rechazado (sesión {}): {}", state.session.getId(), cause.getMessage());
+                    send(state, replies.error(CalculationFrameCodec.STATUS_OVERLOADED, SERVICE_OVERLOADED,
+                            "El servicio está saturado temporalmente. Por favor, intente nuevamente."));
+                } else {
+                    logger.error("Error en cálculo por WebSocket (sesión {})", state.session.getId(), cause);
+                    send(state, replies.error(CalculationFrameCodec.STATUS_INTERNAL_ERROR, INTERNAL_ERROR,
+                            "Error interno del servidor. Por favor, contacte al administrador."));
+                }
+            } else {
+                state.recordCompletion(System.nanoTime() - startNanos);
+                send(state, replies.success(response));
+            }
+        });
+    }
+
+    private boolean acquire(SessionState state) {
+        if (state.inFlight.tryAcquire()) {
+            return true;
+        }
+        try {
+            return state.inFlight.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void send(SessionState state, WebSocketMessage<?> message) {
+        if (message == null || !state.session.isOpen()) {
+            return;
+        }
+        try {
+            state.session.sendMessage(message);
+        } catch (IOException | RuntimeException e) {
+            // Con OverflowStrategy.TERMINATE el decorador ya cerró la sesión del cliente lento
+            logger.warn("No se pudo enviar la respuesta por la sesión WebSocket {}: {}",
+                    state.session.getId(), e.getMessage());
+        }
+    }
+
+    private TextMessage text(CalculationFrameResponse response) {
+        try {
+            return new TextMessage(objectMapper.writeValueAsString(response));
+        } catch (JsonProcessingException e) {
+            logger.error("Error al serializar la respuesta WebSocket: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Construye las respuestas en el mismo formato (texto o binario) que el frame recibido.
+     */
+    private interface Replies {
+        WebSocketMessage<?> success(CalculationResponse response);
+
+        WebSocketMessage<?> error(byte status, String error, String message);
+    }
+
+    private final class TextReplies implements Replies {
+        private final String id;
+
+        private TextReplies(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public WebSocketMessage<?> success(CalculationResponse response) {
+            return text(CalculationFrameResponse.success(id, response));
+        }
+
+        @Override
+        public WebSocketMessage<?> error(byte status, String error, String message) {
+            return text(CalculationFrameResponse.error(id, error, message));
+        }
+    }
+
+    private static final class BinaryReplies implements Replies {
+        private final long id;
+
+        private BinaryReplies(long id) {
+            this.id = id;
+        }
+
+        @Override
+        public WebSocketMessage<?> success(CalculationResponse response) {
+            return new BinaryMessage(CalculationFrameCodec.encodeResponse(id, response));
+        }
+
+        @Override
+        public WebSocketMessage<?> error(byte status, String error, String message) {
+            return new BinaryMessage(CalculationFrameCodec.encodeError(id, status, message));
+        }
+    }
+
+    private static final class SessionState {
+        private final WebSocketSession session;
+        private final int maxInFlight;
+        private final Semaphore inFlight;
+        private final Instant openedAt = Instant.now();
+        private final long openedNanos = System.nanoTime();
+        private final LongAdder received = new LongAdder();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder latencyNanos = new LongAdder();
+        private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+        private SessionState(WebSocketSession session, int maxInFlight) {
+            this.session = session;
+            this.maxInFlight = maxInFlight;
+            this.inFlight = new Semaphore(maxInFlight);
+        }
+
+        private void recordCompletion(long nanos) {
+            completed.increment();
+            latencyNanos.add(nanos);
+            maxLatencyNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        private SessionMetrics metrics() {
+            double seconds = Math.max((System.nanoTime() - openedNanos) / 1_000_000_000.0, 0.001);
+            long completedCount = completed.sum();
+            return new SessionMetrics(
+                    session.getId(),
+                    String.valueOf(session.getRemoteAddress()),
+                    openedAt,
+                    received.sum(),
+                    completedCount,
+                    failed.sum(),
+                    rejected.sum(),
+                    maxInFlight - inFlight.availablePermits(),
+                    completedCount / seconds,
+                    completedCount == 0 ? 0 : latencyNanos.sum() / completedCount / 1_000,
+                    maxLatencyNanos.get() / 1_000);
+        }
+    }
+
+    public record SessionMetrics(String sessionId, String remoteAddress, Instant openedAt,
+                                 long received, long completed, long failed, long rejected,
+                                 int inFlight, double messagesPerSecond,
+                                 long avgLatencyMicros, long maxLatencyMicros) {
+    }
+}
@@ -0,0 +1,52 @@
+package com.tokenlabs.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Frame de texto (JSON) del canal WebSocket de cálculos.
+ * El id lo asigna el cliente y se devuelve en la respuesta correspondiente.
+ */
+public class CalculationFrame {
+
+    private String id;
+    private BigDecimal firstNumber;
+    private BigDecimal secondNumber;
+
+    // Constructores
+    public CalculationFrame() {}
+
+    public CalculationFrame(String id, BigDecimal firstNumber, BigDecimal secondNumber) {
+        this.id = id;
+        this.firstNumber = firstNumber;
+        this.secondNumber = secondNumber;
+    }
+
+    public CalculationRequest toRequest() {
+        return new CalculationRequest(firstNumber, secondNumber);
+    }
+
+    // Getters y Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public BigDecimal getFirstNumber() {
+        return firstNumber;
+    }
+
+    public void setFirstNumber(BigDecimal firstNumber) {
+        this.firstNumber = firstNumber;
+    }
+
+    public BigDecimal getSecondNumber() {
+        return secondNumber;
+    }
+
+    public void setSecondNumber(BigDecimal secondNumber) {
+        this.secondNumber = secondNumber;
+    }
+}
@@ -0,0 +1,66 @@
+package com.tokenlabs.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Respuesta a un {@link CalculationFrame}: lleva el resultado o el error, nunca ambos.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CalculationFrameResponse {
+
+    private String id;
+    private CalculationResponse result;
+    private String error;
+    private String message;
+
+    // Constructores
+    public CalculationFrameResponse() {}
+
+    public static CalculationFrameResponse success(String id, CalculationResponse result) {
+        CalculationFrameResponse response = new CalculationFrameResponse();
+        response.id = id;
+        response.result = result;
+        return response;
+    }
+
+    public static CalculationFrameResponse error(String id, String error, String message) {
+        CalculationFrameResponse response = new CalculationFrameResponse();
+        response.id = id;
+        response.error = error;
+        response.message = message;
+        return response;
+    }
+
+    // Getters y Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public CalculationResponse getResult() {
+        return result;
+    }
+
+    public void setResult(CalculationResponse result) {
+        this.result = result;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
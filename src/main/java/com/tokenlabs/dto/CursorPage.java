@@ -0,0 +1,64 @@
+package com.tokenlabs.dto;
+
+import com.tokenlabs.util.PageCursor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Página de la paginación por cursor: filas, si hay más y el token para pedir
+ * la siguiente. No incluye total de elementos porque calcularlo exige un
+ * COUNT(*) sobre toda la tabla en cada página.
+ */
+public class CursorPage<T> {
+
+    private final List<T> content;
+    private final int size;
+    private final boolean hasNext;
+    private final String nextCursor;
+
+    public CursorPage(List<T> content, int size, boolean hasNext, String nextCursor) {
+        this.content = content;
+        this.size = size;
+        this.hasNext = hasNext;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Construye la página a partir de una consulta que pidió size + 1 filas:
+     * la fila sobrante solo indica que hay más páginas.
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int size, boolean descending,
+                                       Function<T, LocalDateTime> date, Function<T, Long> id) {
+        boolean hasNext = rows.size() > size;
+        List<T> content = hasNext ? List.copyOf(rows.subList(0, size)) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            T last = content.get(content.size() - 1);
+            nextCursor = new PageCursor(date.apply(last), id.apply(last), descending).encode();
+        }
+        return new CursorPage<>(content, size, hasNext, nextCursor);
+    }
+
+    // Getters
+    public List<T> getContent() {
+        return content;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getNumberOfElements() {
+        return content.size();
+    }
+
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
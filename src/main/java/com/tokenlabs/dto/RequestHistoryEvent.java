@@ -0,0 +1,39 @@
+package com.tokenlabs.dto;
+
+import com.tokenlabs.model.RequestHistory;
+
+import java.time.LocalDateTime;
+
+/**
+ * Request registrado, tal como se envía por /history/live. Es una copia
+ * inmutable del {@link RequestHistory} en el momento de registrarlo: todavía
+ * no tiene id y no incluye los cuerpos. stored indica si el muestreo lo
+ * guarda en request_history.
+ */
+public record RequestHistoryEvent(
+        LocalDateTime requestDate,
+        String endpoint,
+        String httpMethod,
+        String requestParameters,
+        String responseStatus,
+        String errorMessage,
+        Long executionTimeMs,
+        String clientIp,
+        String userAgent,
+        boolean stored) {
+
+    public static RequestHistoryEvent of(RequestHistory request) {
+        Double sampleWeight = request.getSampleWeight();
+        return new RequestHistoryEvent(
+                request.getRequestDate(),
+                request.getEndpoint(),
+                request.getHttpMethod(),
+                request.getRequestParameters(),
+                request.getResponseStatus(),
+                request.getErrorMessage(),
+                request.getExecutionTimeMs(),
+                request.getClientIp(),
+                request.getUserAgent(),
+                sampleWeight == null || sampleWeight > 0);
+    }
+}
@@ -0,0 +1,213 @@
+package com.tokenlabs.dto;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Estadísticas de requests mantenidas de forma incremental. Los mapas por
+ * dimensión están ordenados de mayor a menor número de requests. Los totales
+ * son exactos: cuentan todos los requests registrados, también los que el
+ * muestreo no guarda en request_history.
+ */
+public class RequestStatisticsResponse {
+
+    private long totalRequests;
+    private long storedRequests;
+    private Map<String, Long> requestsByEndpoint;
+    private Map<String, Long> requestsByHttpMethod;
+    private Map<String, Long> requestsByResponseStatus;
+    private Map<String, Long> errorsByEndpoint;
+    private Map<String, ExecutionTimeStats> executionTimeStats;
+    private Map<String, PhaseBreakdown> phaseBreakdownByEndpoint;
+    private LocalDateTime checkpointedAt;
+    private int clusterNodes;
+    private Long uniqueClients;
+    private LocalDateTime clusterMergedAt;
+
+    // Constructores
+    public RequestStatisticsResponse() {}
+
+    // Getters y Setters
+    public long getTotalRequests() {
+        return totalRequests;
+    }
+
+    public void setTotalRequests(long totalRequests) {
+        this.totalRequests = totalRequests;
+    }
+
+    /**
+     * Requests guardados en request_history tras el muestreo. La retención
+     * no los descuenta.
+     */
+    public long getStoredRequests() {
+        return storedRequests;
+    }
+
+    public void setStoredRequests(long storedRequests) {
+        this.storedRequests = storedRequests;
+    }
+
+    public Map<String, Long> getRequestsByEndpoint() {
+        return requestsByEndpoint;
+    }
+
+    public void setRequestsByEndpoint(Map<String, Long> requestsByEndpoint) {
+        this.requestsByEndpoint = requestsByEndpoint;
+    }
+
+    public Map<String, Long> getRequestsByHttpMethod() {
+        return requestsByHttpMethod;
+    }
+
+    public void setRequestsByHttpMethod(Map<String, Long> requestsByHttpMethod) {
+        this.requestsByHttpMethod = requestsByHttpMethod;
+    }
+
+    public Map<String, Long> getRequestsByResponseStatus() {
+        return requestsByResponseStatus;
+    }
+
+    public void setRequestsByResponseStatus(Map<String, Long> requestsByResponseStatus) {
+        this.requestsByResponseStatus = requestsByResponseStatus;
+    }
+
+    public Map<String, Long> getErrorsByEndpoint() {
+        return errorsByEndpoint;
+    }
+
+    public void setErrorsByEndpoint(Map<String, Long> errorsByEndpoint) {
+        this.errorsByEndpoint = errorsByEndpoint;
+    }
+
+    public Map<String, ExecutionTimeStats> getExecutionTimeStats() {
+        return executionTimeStats;
+    }
+
+    public void setExecutionTimeStats(Map<String, ExecutionTimeStats> executionTimeStats) {
+        this.executionTimeStats = executionTimeStats;
+    }
+
+    public Map<String, PhaseBreakdown> getPhaseBreakdownByEndpoint() {
+        return phaseBreakdownByEndpoint;
+    }
+
+    public void setPhaseBreakdownByEndpoint(Map<String, PhaseBreakdown> phaseBreakdownByEndpoint) {
+        this.phaseBreakdownByEndpoint = phaseBreakdownByEndpoint;
+    }
+
+    /**
+     * Último volcado de los contadores a request_statistics_summary; los
+     * contadores de las demás instancias están al día hasta ese momento.
+     */
+    public LocalDateTime getCheckpointedAt() {
+        return checkpointedAt;
+    }
+
+    public void setCheckpointedAt(LocalDateTime checkpointedAt) {
+        this.checkpointedAt = checkpointedAt;
+    }
+
+    /**
+     * Instancias cuyos contadores se incluyen, esta incluida.
+     */
+    public int getClusterNodes() {
+        return clusterNodes;
+    }
+
+    public void setClusterNodes(int clusterNodes) {
+        this.clusterNodes = clusterNodes;
+    }
+
+    /**
+     * IPs de cliente distintas en todo el clúster, estimadas con HyperLogLog
+     * (error típico del 0,81%). null sin Redis.
+     */
+    public Long getUniqueClients() {
+        return uniqueClients;
+    }
+
+    public void setUniqueClients(Long uniqueClients) {
+        this.uniqueClients = uniqueClients;
+    }
+
+    /**
+     * Última fusión de los contadores en Redis, o null si no se ha fusionado.
+     */
+    public LocalDateTime getClusterMergedAt() {
+        return clusterMergedAt;
+    }
+
+    public void setClusterMergedAt(LocalDateTime clusterMergedAt) {
+        this.clusterMergedAt = clusterMergedAt;
+    }
+
+    /**
+     * Tiempo de ejecución de un endpoint, en milisegundos.
+     */
+    public static class ExecutionTimeStats {
+        private double average;
+        private long min;
+        private long max;
+
+        public ExecutionTimeStats() {}
+
+        public ExecutionTimeStats(double average, long min, long max) {
+            this.average = average;
+            this.min = min;
+            this.max = max;
+        }
+
+        public double getAverage() { return average; }
+        public void setAverage(double average) { this.average = average; }
+
+        public long getMin() { return min; }
+        public void setMin(long min) { this.min = min; }
+
+        public long getMax() { return max; }
+        public void setMax(long max) { this.max = max; }
+    }
+
+    /**
+     * Tiempo medio por fase de un endpoint, en microsegundos. handler incluye
+     * las fases anidadas (llamada externa e inserción).
+     */
+    public static class PhaseBreakdown {
+        private long timedRequests;
+        private double handlerMicros;
+        private double externalFetchMicros;
+        private double dbInsertMicros;
+        private double serializationMicros;
+        private double totalMicros;
+
+        public PhaseBreakdown() {}
+
+        public PhaseBreakdown(long timedRequests, double handlerMicros, double externalFetchMicros,
+                              double dbInsertMicros, double serializationMicros, double totalMicros) {
+            this.timedRequests = timedRequests;
+            this.handlerMicros = handlerMicros;
+            this.externalFetchMicros = externalFetchMicros;
+            this.dbInsertMicros = dbInsertMicros;
+            this.serializationMicros = serializationMicros;
+            this.totalMicros = totalMicros;
+        }
+
+        public long getTimedRequests() { return timedRequests; }
+        public void setTimedRequests(long timedRequests) { this.timedRequests = timedRequests; }
+
+        public double getHandlerMicros() { return handlerMicros; }
+        public void setHandlerMicros(double handlerMicros) { this.handlerMicros = handlerMicros; }
+
+        public double getExternalFetchMicros() { return externalFetchMicros; }
+        public void setExternalFetchMicros(double externalFetchMicros) { this.externalFetchMicros = externalFetchMicros; }
+
+        public double getDbInsertMicros() { return dbInsertMicros; }
+        public void setDbInsertMicros(double dbInsertMicros) { this.dbInsertMicros = dbInsertMicros; }
+
+        public double getSerializationMicros() { return serializationMicros; }
+        public void setSerializationMicros(double serializationMicros) { this.serializationMicros = serializationMicros; }
+
+        public double getTotalMicros() { return totalMicros; }
+        public void setTotalMicros(double totalMicros) { this.totalMicros = totalMicros; }
+    }
+}
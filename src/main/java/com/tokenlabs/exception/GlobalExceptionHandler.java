@@ -7,6 +7,7 @@ import jakarta.validation.ConstraintViolationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.dao.DataAccessException;
 import org.springframework.data.redis.RedisConnectionFailureException;
 import org.springframework.http.HttpStatus;
@@ -295,6 +296,58 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
     }
 
+    /**
+     * Maneja la saturación de los executors del procesamiento asíncrono
+     */
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<ErrorResponse> handleTaskRejectedException(
+            TaskRejectedException ex,
+            HttpServletRequest request) {
+
+        String traceId = generateTraceId();
+        logger.warn("Executor saturado [{}]: {}", traceId, ex.getMessage());
+
+        ErrorResponse errorResponse = new ErrorResponse(
+            "El servicio está saturado temporalmente. Por favor, intente nuevamente.",
+            "ServiceOverloaded",
+            HttpStatus.SERVICE_UNAVAILABLE.value(),
+            request.getRequestURI(),
+            request.getMethod()
+        );
+        errorResponse.setTraceId(traceId);
+
+        // Persistir el error de forma asíncrona
+        persistErrorAsync(request, ex, HttpStatus.SERVICE_UNAVAILABLE.value(), traceId);
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorResponse);
+    }
+
+    /**
+     * Maneja errores de requests con Idempotency-Key
+     */
+    @ExceptionHandler(IdempotencyException.class)
+    public ResponseEntity<ErrorResponse> handleIdempotencyException(
+            IdempotencyException ex,
+            HttpServletRequest request) {
+
+        String traceId = generateTraceId();
+        logger.warn("Error de idempotencia [{}]: {}", traceId, ex.getMessage());
+
+        ErrorResponse errorResponse = new ErrorResponse(
+            ex.getMessage(),
+            "IdempotencyError",
+            ex.getStatus().value(),
+            request.getRequestURI(),
+            request.getMethod()
+        );
+        errorResponse.setTraceId(traceId);
+
+        // Persistir el error de forma asíncrona
+        persistErrorAsync(request, ex, ex.getStatus().value(), traceId);
+
+        return ResponseEntity.status(ex.getStatus()).body(errorResponse);
+    }
+
     /**
      * Maneja errores genéricos de runtime
      */
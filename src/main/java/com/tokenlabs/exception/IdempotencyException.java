@@ -0,0 +1,21 @@
+package com.tokenlabs.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Error al procesar un request con cabecera Idempotency-Key.
+ * Lleva el código HTTP con el que debe responderse al cliente.
+ */
+public class IdempotencyException extends RuntimeException {
+
+    private final HttpStatus status;
+
+    public IdempotencyException(HttpStatus status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+}
@@ -5,7 +5,8 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "calculation_history")
+@Table(name = "calculation_history",
+       indexes = @Index(name = "idx_calculation_history_created_at_id", columnList = "created_at, id"))
 public class CalculationHistory {
     
     @Id
@@ -1,12 +1,32 @@
 package com.tokenlabs.model;
 
+import com.tokenlabs.repository.RequestHistoryBodyListener;
+import com.tokenlabs.repository.RequestHistoryDictionaryConverter;
+import com.tokenlabs.repository.RequestHistoryDictionaryListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import java.time.LocalDateTime;
 
+/**
+ * Request registrado. endpoint, http_method, response_status y user_agent se
+ * guardan como ids de request_history_dictionary (columnas *_id); la entidad
+ * expone los valores de texto. Los cuerpos de request y response se guardan
+ * una vez en request_history_body y la fila solo guarda sus hashes; los
+ * cuerpos solo se cargan en las lecturas de detalle.
+ *
+ * El índice sobre (request_date, id) sirve los rangos de fechas y la
+ * paginación por cursor; los filtros por endpoint y código de respuesta usan
+ * los índices compuestos con request_date.
+ */
 @Entity
-@Table(name = "request_history")
+@Table(name = "request_history",
+       indexes = {
+           @Index(name = "idx_request_history_request_date_id", columnList = "request_date, id"),
+           @Index(name = "idx_request_history_endpoint_request_date", columnList = "endpoint_id, request_date"),
+           @Index(name = "idx_request_history_response_status_request_date", columnList = "response_status_id, request_date")
+       })
+@EntityListeners({RequestHistoryDictionaryListener.class, RequestHistoryBodyListener.class})
 public class RequestHistory {
     
     @Id
@@ -19,36 +39,76 @@ public class RequestHistory {
     
     @NotNull(message = "El endpoint no puede ser nulo")
     @Size(max = 255, message = "El endpoint no puede exceder 255 caracteres")
-    @Column(name = "endpoint", nullable = false, length = 255)
+    @Convert(converter = RequestHistoryDictionaryConverter.Endpoint.class)
+    @Column(name = "endpoint_id")
     private String endpoint;
     
-    @Column(name = "http_method", length = 10)
+    /** Id del endpoint en el diccionario, solo para filtrar con subconsultas */
+    @Column(name = "endpoint_id", insertable = false, updatable = false)
+    private Integer endpointId;
+    
+    @Convert(converter = RequestHistoryDictionaryConverter.HttpMethod.class)
+    @Column(name = "http_method_id")
     private String httpMethod;
     
     @Column(name = "request_parameters", columnDefinition = "TEXT")
     private String requestParameters;
     
-    @Column(name = "request_body", columnDefinition = "TEXT")
+    @Transient
     private String requestBody;
     
-    @Column(name = "response_status", length = 10)
+    @Column(name = "request_body_hash", length = 64)
+    private String requestBodyHash;
+    
+    @Convert(converter = RequestHistoryDictionaryConverter.ResponseStatus.class)
+    @Column(name = "response_status_id")
     private String responseStatus;
     
-    @Column(name = "response_body", columnDefinition = "TEXT")
+    @Transient
     private String responseBody;
     
+    @Column(name = "response_body_hash", length = 64)
+    private String responseBodyHash;
+    
     @Column(name = "error_message", columnDefinition = "TEXT")
     private String errorMessage;
     
     @Column(name = "execution_time_ms")
     private Long executionTimeMs;
     
+    /**
+     * Tiempos por fase en microsegundos (System.nanoTime()). Null en filas
+     * anteriores a la medición por fases o sin request HTTP.
+     */
+    @Column(name = "handler_micros")
+    private Long handlerMicros;
+    
+    @Column(name = "external_fetch_micros")
+    private Long externalFetchMicros;
+    
+    @Column(name = "db_insert_micros")
+    private Long dbInsertMicros;
+    
+    @Column(name = "serialization_micros")
+    private Long serializationMicros;
+    
+    @Column(name = "total_micros")
+    private Long totalMicros;
+    
     @Column(name = "client_ip", length = 45)
     private String clientIp;
     
-    @Column(name = "user_agent", columnDefinition = "TEXT")
+    @Convert(converter = RequestHistoryDictionaryConverter.UserAgent.class)
+    @Column(name = "user_agent_id")
     private String userAgent;
     
+    /**
+     * Requests que representa esta fila según el muestreo (1 / tasa).
+     * Null en filas anteriores al muestreo, que cuentan como 1.
+     */
+    @Column(name = "sample_weight")
+    private Double sampleWeight;
+    
     @PrePersist
     protected void onCreate() {
         if (requestDate == null) {
@@ -121,6 +181,14 @@ public class RequestHistory {
         this.requestBody = requestBody;
     }
     
+    public String getRequestBodyHash() {
+        return requestBodyHash;
+    }
+    
+    public void setRequestBodyHash(String requestBodyHash) {
+        this.requestBodyHash = requestBodyHash;
+    }
+    
     public String getResponseStatus() {
         return responseStatus;
     }
@@ -137,6 +205,14 @@ public class RequestHistory {
         this.responseBody = responseBody;
     }
     
+    public String getResponseBodyHash() {
+        return responseBodyHash;
+    }
+    
+    public void setResponseBodyHash(String responseBodyHash) {
+        this.responseBodyHash = responseBodyHash;
+    }
+    
     public String getErrorMessage() {
         return errorMessage;
     }
@@ -153,6 +229,46 @@ public class RequestHistory {
         this.executionTimeMs = executionTimeMs;
     }
     
+    public Long getHandlerMicros() {
+        return handlerMicros;
+    }
+    
+    public void setHandlerMicros(Long handlerMicros) {
+        this.handlerMicros = handlerMicros;
+    }
+    
+    public Long getExternalFetchMicros() {
+        return externalFetchMicros;
+    }
+    
+    public void setExternalFetchMicros(Long externalFetchMicros) {
+        this.externalFetchMicros = externalFetchMicros;
+    }
+    
+    public Long getDbInsertMicros() {
+        return dbInsertMicros;
+    }
+    
+    public void setDbInsertMicros(Long dbInsertMicros) {
+        this.dbInsertMicros = dbInsertMicros;
+    }
+    
+    public Long getSerializationMicros() {
+        return serializationMicros;
+    }
+    
+    public void setSerializationMicros(Long serializationMicros) {
+        this.serializationMicros = serializationMicros;
+    }
+    
+    public Long getTotalMicros() {
+        return totalMicros;
+    }
+    
+    public void setTotalMicros(Long totalMicros) {
+        this.totalMicros = totalMicros;
+    }
+    
     public String getClientIp() {
         return clientIp;
     }
@@ -169,6 +285,14 @@ public class RequestHistory {
         this.userAgent = userAgent;
     }
     
+    public Double getSampleWeight() {
+        return sampleWeight;
+    }
+    
+    public void setSampleWeight(Double sampleWeight) {
+        this.sampleWeight = sampleWeight;
+    }
+    
     // Métodos equals, hashCode y toString
     @Override
     public boolean equals(Object o) {
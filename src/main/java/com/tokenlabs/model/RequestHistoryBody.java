@@ -0,0 +1,84 @@
+package com.tokenlabs.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Cuerpo de request o response guardado una sola vez, direccionado por el
+ * hash SHA-256 de su contenido. Las filas de request_history guardan solo el
+ * hash; el contenido se comprime con Zstandard cuando ocupa menos así.
+ */
+@Entity
+@Table(name = "request_history_body",
+       indexes = @Index(name = "idx_request_history_body_last_referenced", columnList = "last_referenced"))
+public class RequestHistoryBody {
+
+    /** Sin compresión */
+    public static final short CODEC_NONE = 0;
+
+    /** Zstandard */
+    public static final short CODEC_ZSTD = 1;
+
+    @Id
+    @Column(name = "hash", length = 64)
+    private String hash;
+
+    @Column(name = "content", nullable = false, length = 16 * 1024 * 1024)
+    private byte[] content;
+
+    @Column(name = "codec", nullable = false)
+    private Short codec;
+
+    @Column(name = "original_size", nullable = false)
+    private Integer originalSize;
+
+    /**
+     * Último día en que se escribió una fila que referencia el cuerpo. La
+     * retención borra los cuerpos que ya no puede referenciar ninguna fila.
+     */
+    @Column(name = "last_referenced", nullable = false)
+    private LocalDate lastReferenced;
+
+    public RequestHistoryBody() {
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public byte[] getContent() {
+        return content;
+    }
+
+    public void setContent(byte[] content) {
+        this.content = content;
+    }
+
+    public Short getCodec() {
+        return codec;
+    }
+
+    public void setCodec(Short codec) {
+        this.codec = codec;
+    }
+
+    public Integer getOriginalSize() {
+        return originalSize;
+    }
+
+    public void setOriginalSize(Integer originalSize) {
+        this.originalSize = originalSize;
+    }
+
+    public LocalDate getLastReferenced() {
+        return lastReferenced;
+    }
+
+    public void setLastReferenced(LocalDate lastReferenced) {
+        this.lastReferenced = lastReferenced;
+    }
+}
@@ -0,0 +1,14 @@
+package com.tokenlabs.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Agregado de request_history por día.
+ */
+@Entity
+@Table(name = "request_history_rollup_daily",
+       uniqueConstraints = @UniqueConstraint(
+           name = "uk_request_history_rollup_daily",
+           columnNames = {"bucket_start", "endpoint", "http_method", "response_status"}))
+public class RequestHistoryDailyRollup extends RequestHistoryRollup {
+}
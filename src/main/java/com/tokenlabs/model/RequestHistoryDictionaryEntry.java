@@ -0,0 +1,56 @@
+package com.tokenlabs.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Valor interno de una columna de baja cardinalidad de request_history
+ * (endpoint, método, código de respuesta, user agent). Las filas de
+ * request_history guardan solo el id.
+ */
+@Entity
+@Table(name = "request_history_dictionary",
+       uniqueConstraints = @UniqueConstraint(name = "uk_request_history_dictionary", columnNames = {"kind", "entry_value"}))
+public class RequestHistoryDictionaryEntry {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+    
+    @Column(name = "kind", nullable = false, length = 20)
+    private String kind;
+    
+    @Column(name = "entry_value", nullable = false, length = 2048)
+    private String value;
+    
+    public RequestHistoryDictionaryEntry() {
+    }
+    
+    public RequestHistoryDictionaryEntry(String kind, String value) {
+        this.kind = kind;
+        this.value = value;
+    }
+    
+    public Integer getId() {
+        return id;
+    }
+    
+    public void setId(Integer id) {
+        this.id = id;
+    }
+    
+    public String getKind() {
+        return kind;
+    }
+    
+    public void setKind(String kind) {
+        this.kind = kind;
+    }
+    
+    public String getValue() {
+        return value;
+    }
+    
+    public void setValue(String value) {
+        this.value = value;
+    }
+}
@@ -0,0 +1,14 @@
+package com.tokenlabs.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Agregado de request_history por hora.
+ */
+@Entity
+@Table(name = "request_history_rollup_hourly",
+       uniqueConstraints = @UniqueConstraint(
+           name = "uk_request_history_rollup_hourly",
+           columnNames = {"bucket_start", "endpoint", "http_method", "response_status"}))
+public class RequestHistoryHourlyRollup extends RequestHistoryRollup {
+}
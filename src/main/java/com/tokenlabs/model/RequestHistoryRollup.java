@@ -0,0 +1,220 @@
+package com.tokenlabs.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Agregado de request_history por periodo, endpoint, método y código de
+ * respuesta. Los conteos y sumas están ponderados con el peso de muestreo,
+ * igual que las estadísticas sobre las filas originales.
+ */
+@MappedSuperclass
+public abstract class RequestHistoryRollup {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+    
+    @Column(name = "endpoint", nullable = false, length = 255)
+    private String endpoint;
+    
+    @Column(name = "http_method", length = 10)
+    private String httpMethod;
+    
+    @Column(name = "response_status", length = 10)
+    private String responseStatus;
+    
+    /** Requests estimados (suma de pesos de muestreo) */
+    @Column(name = "request_count", nullable = false)
+    private Double requestCount;
+    
+    /** Requests estimados con error_message */
+    @Column(name = "error_count", nullable = false)
+    private Double errorCount;
+    
+    /** Suma ponderada de execution_time_ms */
+    @Column(name = "execution_time_sum", nullable = false)
+    private Double executionTimeSum;
+    
+    /** Requests estimados con execution_time_ms, divisor del promedio */
+    @Column(name = "execution_time_count", nullable = false)
+    private Double executionTimeCount;
+    
+    @Column(name = "min_execution_time_ms")
+    private Long minExecutionTimeMs;
+    
+    @Column(name = "max_execution_time_ms")
+    private Long maxExecutionTimeMs;
+    
+    /** Sumas ponderadas de los tiempos por fase (microsegundos) */
+    @Column(name = "handler_micros_sum")
+    private Double handlerMicrosSum;
+    
+    @Column(name = "external_fetch_micros_sum")
+    private Double externalFetchMicrosSum;
+    
+    @Column(name = "db_insert_micros_sum")
+    private Double dbInsertMicrosSum;
+    
+    @Column(name = "serialization_micros_sum")
+    private Double serializationMicrosSum;
+    
+    @Column(name = "total_micros_sum")
+    private Double totalMicrosSum;
+    
+    /** Requests estimados con tiempos por fase, divisor de sus promedios */
+    @Column(name = "phase_timing_count")
+    private Double phaseTimingCount;
+    
+    /** Filas de request_history agregadas */
+    @Column(name = "stored_rows", nullable = false)
+    private Long storedRows;
+    
+    // Getters y Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public LocalDateTime getBucketStart() {
+        return bucketStart;
+    }
+    
+    public void setBucketStart(LocalDateTime bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+    
+    public String getEndpoint() {
+        return endpoint;
+    }
+    
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+    
+    public String getHttpMethod() {
+        return httpMethod;
+    }
+    
+    public void setHttpMethod(String httpMethod) {
+        this.httpMethod = httpMethod;
+    }
+    
+    public String getResponseStatus() {
+        return responseStatus;
+    }
+    
+    public void setResponseStatus(String responseStatus) {
+        this.responseStatus = responseStatus;
+    }
+    
+    public Double getRequestCount() {
+        return requestCount;
+    }
+    
+    public void setRequestCount(Double requestCount) {
+        this.requestCount = requestCount;
+    }
+    
+    public Double getErrorCount() {
+        return errorCount;
+    }
+    
+    public void setErrorCount(Double errorCount) {
+        this.errorCount = errorCount;
+    }
+    
+    public Double getExecutionTimeSum() {
+        return executionTimeSum;
+    }
+    
+    public void setExecutionTimeSum(Double executionTimeSum) {
+        this.executionTimeSum = executionTimeSum;
+    }
+    
+    public Double getExecutionTimeCount() {
+        return executionTimeCount;
+    }
+    
+    public void setExecutionTimeCount(Double executionTimeCount) {
+        this.executionTimeCount = executionTimeCount;
+    }
+    
+    public Long getMinExecutionTimeMs() {
+        return minExecutionTimeMs;
+    }
+    
+    public void setMinExecutionTimeMs(Long minExecutionTimeMs) {
+        this.minExecutionTimeMs = minExecutionTimeMs;
+    }
+    
+    public Long getMaxExecutionTimeMs() {
+        return maxExecutionTimeMs;
+    }
+    
+    public void setMaxExecutionTimeMs(Long maxExecutionTimeMs) {
+        this.maxExecutionTimeMs = maxExecutionTimeMs;
+    }
+    
+    public Long getStoredRows() {
+        return storedRows;
+    }
+    
+    public void setStoredRows(Long storedRows) {
+        this.storedRows = storedRows;
+    }
+    
+    public Double getHandlerMicrosSum() {
+        return handlerMicrosSum;
+    }
+    
+    public void setHandlerMicrosSum(Double handlerMicrosSum) {
+        this.handlerMicrosSum = handlerMicrosSum;
+    }
+    
+    public Double getExternalFetchMicrosSum() {
+        return externalFetchMicrosSum;
+    }
+    
+    public void setExternalFetchMicrosSum(Double externalFetchMicrosSum) {
+        this.externalFetchMicrosSum = externalFetchMicrosSum;
+    }
+    
+    public Double getDbInsertMicrosSum() {
+        return dbInsertMicrosSum;
+    }
+    
+    public void setDbInsertMicrosSum(Double dbInsertMicrosSum) {
+        this.dbInsertMicrosSum = dbInsertMicrosSum;
+    }
+    
+    public Double getSerializationMicrosSum() {
+        return serializationMicrosSum;
+    }
+    
+    public void setSerializationMicrosSum(Double serializationMicrosSum) {
+        this.serializationMicrosSum = serializationMicrosSum;
+    }
+    
+    public Double getTotalMicrosSum() {
+        return totalMicrosSum;
+    }
+    
+    public void setTotalMicrosSum(Double totalMicrosSum) {
+        this.totalMicrosSum = totalMicrosSum;
+    }
+    
+    public Double getPhaseTimingCount() {
+        return phaseTimingCount;
+    }
+    
+    public void setPhaseTimingCount(Double phaseTimingCount) {
+        this.phaseTimingCount = phaseTimingCount;
+    }
+}
@@ -0,0 +1,93 @@
+package com.tokenlabs.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Histograma HDR de latencia de un endpoint durante un minuto en una
+ * instancia, serializado con la codificación comprimida de HdrHistogram.
+ * Los histogramas se pueden sumar, así que los percentiles de cualquier rango
+ * se calculan fusionando los minutos que lo cubren.
+ */
+@Entity
+@Table(name = "request_latency_digest",
+       indexes = {
+           @Index(name = "idx_request_latency_digest_endpoint_bucket", columnList = "endpoint, bucket_start"),
+           @Index(name = "idx_request_latency_digest_bucket", columnList = "bucket_start")
+       })
+public class RequestLatencyDigest {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** Inicio del minuto */
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    /** Patrón de la ruta */
+    @Column(name = "endpoint", nullable = false, length = 255)
+    private String endpoint;
+
+    /** Instancia que registró el minuto */
+    @Column(name = "node_id", nullable = false, length = 64)
+    private String nodeId;
+
+    @Column(name = "request_count", nullable = false)
+    private Long requestCount;
+
+    /** Latencias en microsegundos */
+    @Column(name = "histogram", nullable = false, length = 1024 * 1024)
+    private byte[] histogram;
+
+    public RequestLatencyDigest() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public LocalDateTime getBucketStart() {
+        return bucketStart;
+    }
+
+    public void setBucketStart(LocalDateTime bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public Long getRequestCount() {
+        return requestCount;
+    }
+
+    public void setRequestCount(Long requestCount) {
+        this.requestCount = requestCount;
+    }
+
+    public byte[] getHistogram() {
+        return histogram;
+    }
+
+    public void setHistogram(byte[] histogram) {
+        this.histogram = histogram;
+    }
+}
@@ -0,0 +1,220 @@
+package com.tokenlabs.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Contadores acumulados de requests de una instancia para un valor de una
+ * dimensión (endpoint, método o código de respuesta). Cada instancia guarda
+ * periódicamente sus contadores en memoria; las estadísticas suman las filas
+ * de todas las instancias.
+ */
+@Entity
+@Table(name = "request_statistics_summary",
+       uniqueConstraints = @UniqueConstraint(name = "uk_request_statistics_summary",
+                                             columnNames = {"node_id", "dimension", "dimension_value"}))
+public class RequestStatisticsSummary {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "node_id", nullable = false, length = 64)
+    private String nodeId;
+
+    @Column(name = "dimension", nullable = false, length = 20)
+    private String dimension;
+
+    @Column(name = "dimension_value", nullable = false, length = 2048)
+    private String dimensionValue;
+
+    @Column(name = "request_count", nullable = false)
+    private Long requestCount;
+
+    @Column(name = "error_count", nullable = false)
+    private Long errorCount;
+
+    /** Requests guardados en request_history tras el muestreo */
+    @Column(name = "stored_count", nullable = false)
+    private Long storedCount;
+
+    @Column(name = "execution_time_sum", nullable = false)
+    private Long executionTimeSum;
+
+    @Column(name = "execution_time_count", nullable = false)
+    private Long executionTimeCount;
+
+    @Column(name = "min_execution_time_ms")
+    private Long minExecutionTimeMs;
+
+    @Column(name = "max_execution_time_ms")
+    private Long maxExecutionTimeMs;
+
+    @Column(name = "handler_micros_sum", nullable = false)
+    private Long handlerMicrosSum;
+
+    @Column(name = "external_fetch_micros_sum", nullable = false)
+    private Long externalFetchMicrosSum;
+
+    @Column(name = "db_insert_micros_sum", nullable = false)
+    private Long dbInsertMicrosSum;
+
+    @Column(name = "serialization_micros_sum", nullable = false)
+    private Long serializationMicrosSum;
+
+    @Column(name = "total_micros_sum", nullable = false)
+    private Long totalMicrosSum;
+
+    @Column(name = "phase_timing_count", nullable = false)
+    private Long phaseTimingCount;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public RequestStatisticsSummary() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public String getDimension() {
+        return dimension;
+    }
+
+    public void setDimension(String dimension) {
+        this.dimension = dimension;
+    }
+
+    public String getDimensionValue() {
+        return dimensionValue;
+    }
+
+    public void setDimensionValue(String dimensionValue) {
+        this.dimensionValue = dimensionValue;
+    }
+
+    public Long getRequestCount() {
+        return requestCount;
+    }
+
+    public void setRequestCount(Long requestCount) {
+        this.requestCount = requestCount;
+    }
+
+    public Long getErrorCount() {
+        return errorCount;
+    }
+
+    public void setErrorCount(Long errorCount) {
+        this.errorCount = errorCount;
+    }
+
+    public Long getStoredCount() {
+        return storedCount;
+    }
+
+    public void setStoredCount(Long storedCount) {
+        this.storedCount = storedCount;
+    }
+
+    public Long getExecutionTimeSum() {
+        return executionTimeSum;
+    }
+
+    public void setExecutionTimeSum(Long executionTimeSum) {
+        this.executionTimeSum = executionTimeSum;
+    }
+
+    public Long getExecutionTimeCount() {
+        return executionTimeCount;
+    }
+
+    public void setExecutionTimeCount(Long executionTimeCount) {
+        this.executionTimeCount = executionTimeCount;
+    }
+
+    public Long getMinExecutionTimeMs() {
+        return minExecutionTimeMs;
+    }
+
+    public void setMinExecutionTimeMs(Long minExecutionTimeMs) {
+        this.minExecutionTimeMs = minExecutionTimeMs;
+    }
+
+    public Long getMaxExecutionTimeMs() {
+        return maxExecutionTimeMs;
+    }
+
+    public void setMaxExecutionTimeMs(Long maxExecutionTimeMs) {
+        this.maxExecutionTimeMs = maxExecutionTimeMs;
+    }
+
+    public Long getHandlerMicrosSum() {
+        return handlerMicrosSum;
+    }
+
+    public void setHandlerMicrosSum(Long handlerMicrosSum) {
+        this.handlerMicrosSum = handlerMicrosSum;
+    }
+
+    public Long getExternalFetchMicrosSum() {
+        return externalFetchMicrosSum;
+    }
+
+    public void setExternalFetchMicrosSum(Long externalFetchMicrosSum) {
+        this.externalFetchMicrosSum = externalFetchMicrosSum;
+    }
+
+    public Long getDbInsertMicrosSum() {
+        return dbInsertMicrosSum;
+    }
+
+    public void setDbInsertMicrosSum(Long dbInsertMicrosSum) {
+        this.dbInsertMicrosSum = dbInsertMicrosSum;
+    }
+
+    public Long getSerializationMicrosSum() {
+        return serializationMicrosSum;
+    }
+
+    public void setSerializationMicrosSum(Long serializationMicrosSum) {
+        this.serializationMicrosSum = serializationMicrosSum;
+    }
+
+    public Long getTotalMicrosSum() {
+        return totalMicrosSum;
+    }
+
+    public void setTotalMicrosSum(Long totalMicrosSum) {
+        this.totalMicrosSum = totalMicrosSum;
+    }
+
+    public Long getPhaseTimingCount() {
+        return phaseTimingCount;
+    }
+
+    public void setPhaseTimingCount(Long phaseTimingCount) {
+        this.phaseTimingCount = phaseTimingCount;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -1,10 +1,13 @@
 package com.tokenlabs.repository;
 
 import com.tokenlabs.model.CalculationHistory;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -25,6 +28,32 @@ public interface CalculationHistoryRepository extends JpaRepository<CalculationH
     
     Page<CalculationHistory> findByCreatedAtBefore(LocalDateTime endDate, Pageable pageable);
     
+    // Métodos sin total (Slice): una fila de más en lugar de COUNT(*)
+    Slice<CalculationHistory> findSliceByCreatedAtBetween(LocalDateTime startDate, LocalDateTime endDate, Pageable pageable);
+    
+    // Métodos por cursor sobre (created_at, id), sin OFFSET
+    @Query("SELECT ch FROM CalculationHistory ch WHERE " +
+           "ch.createdAt >= :startDate AND ch.createdAt <= :endDate AND " +
+           "(ch.createdAt, ch.id) < (:cursorDate, :cursorId) " +
+           "ORDER BY ch.createdAt DESC, ch.id DESC")
+    List<CalculationHistory> findByCreatedAtBetweenBefore(
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate,
+            @Param("cursorDate") LocalDateTime cursorDate,
+            @Param("cursorId") long cursorId,
+            Limit limit);
+    
+    @Query("SELECT ch FROM CalculationHistory ch WHERE " +
+           "ch.createdAt >= :startDate AND ch.createdAt <= :endDate AND " +
+           "(ch.createdAt, ch.id) > (:cursorDate, :cursorId) " +
+           "ORDER BY ch.createdAt ASC, ch.id ASC")
+    List<CalculationHistory> findByCreatedAtBetweenAfter(
+            @Param("startDate") LocalDateTime startDate,
+            @Param("endDate") LocalDateTime endDate,
+            @Param("cursorDate") LocalDateTime cursorDate,
+            @Param("cursorId") long cursorId,
+            Limit limit);
+    
     @Query("SELECT COUNT(ch) FROM CalculationHistory ch")
     Long countAllCalculations();
 }
@@ -0,0 +1,132 @@
+package com.tokenlabs.repository;
+
+import com.tokenlabs.model.RequestHistory;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inserciones por lotes en request_history con JDBC.
+ *
+ * Evita el coste por fila de JPA (persist, flush y una transacción por
+ * registro). En PostgreSQL, con reWriteBatchedInserts=true en la URL, el
+ * driver reescribe el lote como INSERT multi-fila. Los valores de baja
+ * cardinalidad se guardan como ids de {@link RequestHistoryDictionary},
+ * resueltos en memoria salvo la primera vez que aparece cada valor, y los
+ * cuerpos se guardan en {@link RequestHistoryBodyStore}, en la misma
+ * transacción, antes de insertar las filas que los referencian.
+ *
+ * Los ids generados se leen en el mismo lote (RETURNING id en PostgreSQL) y
+ * se asignan a los registros, para que quien los recibe tras el insert pueda
+ * referirse a las filas.
+ */
+@Repository
+public class RequestHistoryBatchRepository {
+
+    private static final String INSERT_SQL = "INSERT INTO request_history "
+            + "(request_date, endpoint_id, http_method_id, request_parameters, request_body_hash, response_status_id, "
+            + "response_body_hash, error_message, execution_time_ms, client_ip, user_agent_id, sample_weight, "
+            + "handler_micros, external_fetch_micros, db_insert_micros, serialization_micros, total_micros) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String[] ID_COLUMN = {"id"};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RequestHistoryDictionary dictionary;
+    private final RequestHistoryBodyStore bodyStore;
+
+    public RequestHistoryBatchRepository(JdbcTemplate jdbcTemplate, RequestHistoryDictionary dictionary,
+                                         RequestHistoryBodyStore bodyStore) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dictionary = dictionary;
+        this.bodyStore = bodyStore;
+    }
+
+    /**
+     * Inserta todos los registros en una sola transacción.
+     *
+     * @return número de registros insertados
+     */
+    @Transactional
+    public int insertAll(List<RequestHistory> records) {
+        if (records.isEmpty()) {
+            return 0;
+        }
+        bodyStore.storeBodies(records);
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(INSERT_SQL, ID_COLUMN),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setRow(ps, records.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return records.size();
+                    }
+                }, keyHolder);
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < records.size() && i < keys.size(); i++) {
+            Object id = keys.get(i).values().iterator().next();
+            records.get(i).setId(((Number) id).longValue());
+        }
+        return records.size();
+    }
+
+    private void setRow(PreparedStatement ps, RequestHistory history) throws SQLException {
+        if (history.getRequestDate() == null) {
+            history.setRequestDate(LocalDateTime.now());
+        }
+        ps.setTimestamp(1, Timestamp.valueOf(history.getRequestDate()));
+        setId(ps, 2, RequestHistoryDictionary.Kind.ENDPOINT, history.getEndpoint());
+        setId(ps, 3, RequestHistoryDictionary.Kind.HTTP_METHOD, history.getHttpMethod());
+        ps.setString(4, history.getRequestParameters());
+        ps.setString(5, history.getRequestBodyHash());
+        setId(ps, 6, RequestHistoryDictionary.Kind.RESPONSE_STATUS, history.getResponseStatus());
+        ps.setString(7, history.getResponseBodyHash());
+        ps.setString(8, history.getErrorMessage());
+        setLong(ps, 9, history.getExecutionTimeMs());
+        ps.setString(10, history.getClientIp());
+        setId(ps, 11, RequestHistoryDictionary.Kind.USER_AGENT, history.getUserAgent());
+        if (history.getSampleWeight() != null) {
+            ps.setDouble(12, history.getSampleWeight());
+        } else {
+            ps.setNull(12, Types.DOUBLE);
+        }
+        setLong(ps, 13, history.getHandlerMicros());
+        setLong(ps, 14, history.getExternalFetchMicros());
+        setLong(ps, 15, history.getDbInsertMicros());
+        setLong(ps, 16, history.getSerializationMicros());
+        setLong(ps, 17, history.getTotalMicros());
+    }
+
+    private static void setLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value != null) {
+            ps.setLong(index, value);
+        } else {
+            ps.setNull(index, Types.BIGINT);
+        }
+    }
+
+    private void setId(PreparedStatement ps, int index, RequestHistoryDictionary.Kind kind, String value)
+            throws SQLException {
+        Integer id = dictionary.idFor(kind, value);
+        if (id != null) {
+            ps.setInt(index, id);
+        } else {
+            ps.setNull(index, Types.INTEGER);
+        }
+    }
+}
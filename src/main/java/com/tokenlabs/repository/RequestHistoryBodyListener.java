@@ -0,0 +1,26 @@
+package com.tokenlabs.repository;
+
+import com.tokenlabs.model.RequestHistory;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+
+import java.util.List;
+
+/**
+ * Guarda en request_history_body los cuerpos de un RequestHistory antes de
+ * que JPA lo inserte o actualice, y le asigna sus hashes.
+ */
+public class RequestHistoryBodyListener {
+
+    private final RequestHistoryBodyStore bodyStore;
+
+    public RequestHistoryBodyListener(RequestHistoryBodyStore bodyStore) {
+        this.bodyStore = bodyStore;
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void storeBodies(RequestHistory history) {
+        bodyStore.storeBodies(List.of(history));
+    }
+}
@@ -0,0 +1,329 @@
+package com.tokenlabs.repository;
+
+import com.github.luben.zstd.Zstd;
+import com.tokenlabs.model.RequestHistory;
+import com.tokenlabs.model.RequestHistoryBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Almacén direccionado por contenido de los cuerpos de request y response.
+ *
+ * Cada cuerpo distinto se guarda una vez en request_history_body, con clave
+ * el SHA-256 de su contenido, y las filas de request_history solo guardan el
+ * hash: el mismo payload de error repetido miles de veces ocupa una fila. Los
+ * hashes ya escritos hoy se recuerdan en una caché LRU, así que un cuerpo
+ * repetido no genera ninguna escritura adicional. Las escrituras van en la
+ * transacción del llamador para que un lote que hace rollback no deje hashes
+ * en caché que no existen en la tabla.
+ */
+@Repository
+public class RequestHistoryBodyStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestHistoryBodyStore.class);
+
+    static final String TABLE = "request_history_body";
+
+    private static final String TOUCH_SQL = "UPDATE " + TABLE
+            + " SET last_referenced = ? WHERE hash = ? AND last_referenced < ?";
+    private static final String COLUMNS = " (hash, content, codec, original_size, last_referenced) ";
+    /** Inserciones que no fallan si otra instancia insertó el mismo hash a la vez */
+    private static final String POSTGRESQL_INSERT_SQL = "INSERT INTO " + TABLE + COLUMNS
+            + "VALUES (?, ?, ?, ?, ?) ON CONFLICT (hash) DO NOTHING";
+    private static final String H2_INSERT_SQL = "MERGE INTO " + TABLE + COLUMNS
+            + "KEY (hash) VALUES (?, ?, ?, ?, ?)";
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int compressionLevel;
+    private final int minCompressBytes;
+    private final int migrationChunkSize;
+    private final Map<String, LocalDate> writtenHashes;
+    private volatile String insertSql;
+
+    @Autowired
+    public RequestHistoryBodyStore(
+            JdbcTemplate jdbcTemplate,
+            @Value("${app.request-history.bodies.compression-level:3}") int compressionLevel,
+            @Value("${app.request-history.bodies.min-compress-bytes:64}") int minCompressBytes,
+            @Value("${app.request-history.bodies.cache-size:10000}") int cacheSize,
+            @Value("${app.request-history.bodies.migration-chunk-size:1000}") int migrationChunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.compressionLevel = compressionLevel;
+        this.minCompressBytes = minCompressBytes;
+        this.migrationChunkSize = migrationChunkSize;
+        this.writtenHashes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LocalDate> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Guarda los cuerpos de los registros y les asigna sus hashes. Los
+     * registros sin cuerpo conservan el hash que ya tuvieran.
+     */
+    public void storeBodies(Collection<RequestHistory> records) {
+        LocalDate today = LocalDate.now();
+        Map<String, String> pending = new LinkedHashMap<>();
+        for (RequestHistory history : records) {
+            if (history.getRequestBody() != null) {
+                history.setRequestBodyHash(collect(history.getRequestBody(), today, pending));
+            }
+            if (history.getResponseBody() != null) {
+                history.setResponseBodyHash(collect(history.getResponseBody(), today, pending));
+            }
+        }
+        write(pending, today);
+    }
+
+    /**
+     * Guarda un cuerpo y devuelve su hash, o null si el cuerpo es null.
+     */
+    public String store(String body) {
+        if (body == null) {
+            return null;
+        }
+        LocalDate today = LocalDate.now();
+        Map<String, String> pending = new LinkedHashMap<>();
+        String hash = collect(body, today, pending);
+        write(pending, today);
+        return hash;
+    }
+
+    /**
+     * Contenido de un cuerpo, o null si el hash es null o ya no existe.
+     */
+    public String load(String hash) {
+        if (hash == null) {
+            return null;
+        }
+        List<String> bodies = jdbcTemplate.query(
+                "SELECT content, codec, original_size FROM " + TABLE + " WHERE hash = ?",
+                (rs, rowNum) -> decode(rs.getBytes(1), rs.getShort(2), rs.getInt(3)),
+                hash);
+        return bodies.isEmpty() ? null : bodies.get(0);
+    }
+
+    /**
+     * Rellena requestBody y responseBody a partir de los hashes. Solo lo usan
+     * las lecturas de detalle; los listados devuelven únicamente los hashes.
+     */
+    public RequestHistory resolveBodies(RequestHistory history) {
+        if (history.getRequestBody() == null) {
+            history.setRequestBody(load(history.getRequestBodyHash()));
+        }
+        if (history.getResponseBody() == null) {
+            history.setResponseBody(load(history.getResponseBodyHash()));
+        }
+        return history;
+    }
+
+    /**
+     * Borra los cuerpos que no se han referenciado desde antes de day.
+     *
+     * @return número de cuerpos borrados
+     */
+    public int deleteUnreferencedBefore(LocalDate day) {
+        return jdbcTemplate.update("DELETE FROM " + TABLE + " WHERE last_referenced < ?", Date.valueOf(day));
+    }
+
+    /**
+     * SHA-256 en hexadecimal del cuerpo codificado en UTF-8.
+     */
+    public static String hash(String body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HEX.formatHex(digest.digest(body.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    /**
+     * Migra una tabla request_history creada antes de la deduplicación: pasa
+     * los cuerpos de las columnas request_body y response_body al almacén en
+     * lotes, rellena los hashes y borra las columnas de texto. Solo la
+     * ejecuta, una vez y de forma coordinada, RequestHistoryLegacyMigration.
+     */
+    public void migrateLegacyColumns() {
+        try {
+            if (!hasColumn("request_body") || !hasColumn("response_body")) {
+                return;
+            }
+            logger.warn("Migrando request_history.request_body/response_body a {}", TABLE);
+            long migrated = 0;
+            int chunk;
+            do {
+                chunk = migrateChunk();
+                migrated += chunk;
+            } while (chunk > 0);
+            jdbcTemplate.execute("ALTER TABLE request_history DROP COLUMN request_body");
+            jdbcTemplate.execute("ALTER TABLE request_history DROP COLUMN response_body");
+            logger.warn("Cuerpos de request_history migrados: {} filas", migrated);
+        } catch (DataAccessException e) {
+            logger.error("No se pudieron migrar los cuerpos de request_history: {}", e.getMessage());
+        }
+    }
+
+    private int migrateChunk() {
+        List<RequestHistory> rows = jdbcTemplate.query(
+                "SELECT id, request_body, response_body FROM request_history "
+                        + "WHERE (request_body IS NOT NULL AND request_body_hash IS NULL) "
+                        + "OR (response_body IS NOT NULL AND response_body_hash IS NULL) "
+                        + "ORDER BY id LIMIT ?",
+                (rs, rowNum) -> {
+                    RequestHistory history = new RequestHistory();
+                    history.setId(rs.getLong(1));
+                    history.setRequestBody(rs.getString(2));
+                    history.setResponseBody(rs.getString(3));
+                    return history;
+                },
+                migrationChunkSize);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        storeBodies(rows);
+        jdbcTemplate.batchUpdate(
+                "UPDATE request_history SET request_body_hash = ?, response_body_hash = ?, "
+                        + "request_body = NULL, response_body = NULL WHERE id = ?",
+                rows, rows.size(), (ps, history) -> {
+                    ps.setString(1, history.getRequestBodyHash());
+                    ps.setString(2, history.getResponseBodyHash());
+                    ps.setLong(3, history.getId());
+                });
+        return rows.size();
+    }
+
+    private boolean hasColumn(String column) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.columns WHERE LOWER(table_name) = 'request_history' "
+                        + "AND LOWER(column_name) = ? AND table_schema = CURRENT_SCHEMA",
+                Integer.class, column);
+        return count != null && count > 0;
+    }
+
+    /**
+     * Calcula el hash y, si no se ha escrito hoy, lo deja pendiente de escritura.
+     */
+    private String collect(String body, LocalDate today, Map<String, String> pending) {
+        String hash = hash(body);
+        if (!today.equals(cachedDay(hash))) {
+            pending.putIfAbsent(hash, body);
+        }
+        return hash;
+    }
+
+    /**
+     * Marca como referenciados hoy los cuerpos pendientes que ya existen e
+     * inserta los que faltan. Si otra instancia inserta el mismo hash a la
+     * vez, la inserción lo ignora: el contenido es el mismo y el lote de
+     * request_history sigue adelante.
+     */
+    private void write(Map<String, String> pending, LocalDate today) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Date day = Date.valueOf(today);
+        List<String> hashes = new ArrayList<>(pending.keySet());
+        jdbcTemplate.batchUpdate(TOUCH_SQL, hashes, hashes.size(), (ps, hash) -> {
+            ps.setDate(1, day);
+            ps.setString(2, hash);
+            ps.setDate(3, day);
+        });
+        jdbcTemplate.batchUpdate(insertSql(), hashes, hashes.size(), (ps, hash) -> {
+            byte[] raw = pending.get(hash).getBytes(StandardCharsets.UTF_8);
+            byte[] compressed = compress(raw);
+            ps.setString(1, hash);
+            ps.setBytes(2, compressed != null ? compressed : raw);
+            ps.setShort(3, compressed != null ? RequestHistoryBody.CODEC_ZSTD : RequestHistoryBody.CODEC_NONE);
+            ps.setInt(4, raw.length);
+            ps.setDate(5, day);
+        });
+        afterCommit(() -> {
+            synchronized (writtenHashes) {
+                for (String hash : hashes) {
+                    writtenHashes.put(hash, today);
+                }
+            }
+        });
+    }
+
+    /**
+     * INSERT ... ON CONFLICT en PostgreSQL y MERGE ... KEY en H2 (tests),
+     * según la base de datos de la primera escritura.
+     */
+    private String insertSql() {
+        String sql = insertSql;
+        if (sql == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            sql = "PostgreSQL".equalsIgnoreCase(product) ? POSTGRESQL_INSERT_SQL : H2_INSERT_SQL;
+            insertSql = sql;
+        }
+        return sql;
+    }
+
+    /**
+     * Versión comprimida, o null si no compensa comprimir.
+     */
+    private byte[] compress(byte[] raw) {
+        if (raw.length < minCompressBytes) {
+            return null;
+        }
+        byte[] compressed = Zstd.compress(raw, compressionLevel);
+        return compressed.length < raw.length ? compressed : null;
+    }
+
+    private static String decode(byte[] content, short codec, int originalSize) {
+        byte[] raw = codec == RequestHistoryBody.CODEC_ZSTD ? Zstd.decompress(content, originalSize) : content;
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    private LocalDate cachedDay(String hash) {
+        synchronized (writtenHashes) {
+            return writtenHashes.get(hash);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    int getCachedHashCount() {
+        synchronized (writtenHashes) {
+            return writtenHashes.size();
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.tokenlabs.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Diccionario de valores de baja cardinalidad de request_history.
+ *
+ * Cada valor distinto de endpoint, método, código de respuesta y user agent
+ * se guarda una vez en request_history_dictionary y las filas guardan su id
+ * entero. La caché en memoria es bidireccional: tras el calentamiento las
+ * escrituras y lecturas resuelven ids sin ir a la base de datos. Los valores
+ * nuevos se insertan en su propia transacción para que un rollback del
+ * lote no deje ids en caché que no existen en la tabla.
+ *
+ * Cada tipo admite hasta app.request-history.dictionary.max-values valores;
+ * a partir de ahí los valores nuevos (user agents, URIs sin ruta) se guardan
+ * como {@link #OTHER_VALUE}, así que ni la tabla ni la caché crecen sin
+ * límite. El límite es por instancia: con varias instancias la tabla puede
+ * superarlo en lo que cada una inserte antes de ver los valores de las demás.
+ */
+@Repository
+public class RequestHistoryDictionary {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestHistoryDictionary.class);
+
+    static final String TABLE = "request_history_dictionary";
+    static final String SEARCH_INDEX = "idx_request_history_dictionary_value_trgm";
+
+    /** Id que no corresponde a ningún valor: las consultas por un valor desconocido no encuentran filas */
+    public static final int UNKNOWN_ID = -1;
+
+    /** Valor que agrupa los valores nuevos de un tipo que ya llegó a app.request-history.dictionary.max-values */
+    public static final String OTHER_VALUE = "(other)";
+
+    static final int MAX_VALUE_LENGTH = 2048;
+
+    /** Carácter de escape de los patrones de {@link #containsPattern} */
+    public static final char LIKE_ESCAPE = '\\';
+
+    /**
+     * Columnas codificadas; column es el nombre de la columna original y
+     * column + "_id" el de la columna con el id.
+     */
+    public enum Kind {
+        ENDPOINT("endpoint"),
+        HTTP_METHOD("http_method"),
+        RESPONSE_STATUS("response_status"),
+        USER_AGENT("user_agent");
+
+        private final String column;
+
+        Kind(String column) {
+            this.column = column;
+        }
+
+        public String column() {
+            return column;
+        }
+
+        public String idColumn() {
+            return column + "_id";
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectProvider<PlatformTransactionManager> transactionManager;
+    private final int maxValues;
+    private volatile TransactionTemplate newTransaction;
+    private final Map<Kind, Map<String, Integer>> idsByValue = new EnumMap<>(Kind.class);
+    private final Map<Integer, String> valuesById = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    /**
+     * El gestor de transacciones se obtiene al primer uso: depende del
+     * EntityManagerFactory, que a su vez crea los conversores que usan este
+     * diccionario.
+     */
+    public RequestHistoryDictionary(JdbcTemplate jdbcTemplate,
+                                    ObjectProvider<PlatformTransactionManager> transactionManager,
+                                    @Value("${app.request-history.dictionary.max-values:10000}") int maxValues) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionManager = transactionManager;
+        this.maxValues = maxValues;
+        for (Kind kind : Kind.values()) {
+            idsByValue.put(kind, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Id del valor, insertándolo si todavía no existe. Si el tipo ya tiene
+     * app.request-history.dictionary.max-values valores devuelve el id de
+     * {@link #OTHER_VALUE}.
+     *
+     * @return id, o null si el valor es null
+     */
+    public Integer idFor(Kind kind, String value) {
+        if (value == null) {
+            return null;
+        }
+        String key = normalize(value);
+        Integer id = idsByValue.get(kind).get(key);
+        if (id != null) {
+            return id;
+        }
+        ensureLoaded();
+        id = idsByValue.get(kind).get(key);
+        if (id != null) {
+            return id;
+        }
+        if (idsByValue.get(kind).size() >= maxValues && !OTHER_VALUE.equals(key)) {
+            return idFor(kind, OTHER_VALUE);
+        }
+        return insert(kind, key);
+    }
+
+    /**
+     * Id de un valor existente, sin insertarlo. Se usa al consultar.
+     *
+     * @return id, {@link #UNKNOWN_ID} si el valor no existe o null si el valor es null
+     */
+    public Integer find(Kind kind, String value) {
+        if (value == null) {
+            return null;
+        }
+        String key = normalize(value);
+        Integer id = idsByValue.get(kind).get(key);
+        if (id == null) {
+            id = select(kind, key);
+        }
+        return id != null ? id : UNKNOWN_ID;
+    }
+
+    /**
+     * Valor de un id. Los ids creados por otra instancia se leen de la tabla.
+     */
+    public String valueOf(Integer id) {
+        if (id == null || id == UNKNOWN_ID) {
+            return null;
+        }
+        String value = valuesById.get(id);
+        if (value != null) {
+            return value;
+        }
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT kind, entry_value FROM " + TABLE + " WHERE id = ?", id);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        value = (String) rows.get(0).get("entry_value");
+        cache(Kind.valueOf((String) rows.get(0).get("kind")), value, id);
+        return value;
+    }
+
+    /**
+     * Valores que contienen el texto (sin distinguir mayúsculas). Consulta la
+     * tabla, pequeña, en lugar de request_history; en PostgreSQL el índice
+     * de trigramas de {@link #createSearchIndex} resuelve el LIKE.
+     */
+    public List<String> findValuesContaining(Kind kind, String text) {
+        return jdbcTemplate.queryForList(
+                "SELECT entry_value FROM " + TABLE + " WHERE kind = ? AND LOWER(entry_value) LIKE ? ESCAPE '\\'",
+                String.class, kind.name(), containsPattern(text));
+    }
+
+    /**
+     * Patrón LIKE, con {@link #LIKE_ESCAPE} como carácter de escape, que
+     * encuentra el texto en minúsculas en cualquier posición. %, _ y el
+     * propio carácter de escape del texto se buscan literalmente.
+     */
+    public static String containsPattern(String text) {
+        StringBuilder pattern = new StringBuilder(text.length() + 2).append('%');
+        for (char c : text.toLowerCase().toCharArray()) {
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+                pattern.append(LIKE_ESCAPE);
+            }
+            pattern.append(c);
+        }
+        return pattern.append('%').toString();
+    }
+
+    public int getCachedValueCount() {
+        return valuesById.size();
+    }
+
+    /**
+     * Crea en PostgreSQL un índice GIN de trigramas (pg_trgm) sobre
+     * LOWER(entry_value), que sirve los LIKE '%texto%' y 'prefijo%' de
+     * {@link #findValuesContaining} sin recorrer la tabla. Sin permisos para
+     * la extensión la búsqueda sigue funcionando recorriendo el diccionario.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void createSearchIndex() {
+        try {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            if (!"PostgreSQL".equalsIgnoreCase(product)) {
+                return;
+            }
+            jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + SEARCH_INDEX + " ON " + TABLE
+                    + " USING gin (LOWER(entry_value) gin_trgm_ops)");
+        } catch (DataAccessException e) {
+            logger.warn("No se pudo crear el índice de trigramas de {}: {}", TABLE, e.getMessage());
+        }
+    }
+
+    /**
+     * Migra una tabla request_history creada antes de la codificación: pasa
+     * los valores de las columnas de texto al diccionario, rellena las
+     * columnas _id y borra las columnas de texto. Hibernate ya ha añadido las
+     * columnas _id (ddl-auto update). Solo la ejecuta, una vez y de forma
+     * coordinada, RequestHistoryLegacyMigration; si un valor nuevo del
+     * escritor choca con los que inserta la migración, la columna se
+     * reintenta.
+     */
+    public void migrateLegacyColumns() {
+        for (Kind kind : Kind.values()) {
+            try {
+                if (hasColumn("request_history", kind.column()) && hasColumn("request_history", kind.idColumn())) {
+                    try {
+                        migrate(kind);
+                    } catch (DuplicateKeyException e) {
+                        migrate(kind);
+                    }
+                }
+            } catch (DataAccessException e) {
+                logger.error("No se pudo migrar request_history.{} al diccionario: {}", kind.column(), e.getMessage());
+            }
+        }
+    }
+
+    private void migrate(Kind kind) {
+        logger.warn("Migrando request_history.{} a {}", kind.column(), kind.idColumn());
+        newTransaction().executeWithoutResult(status -> {
+            jdbcTemplate.update("INSERT INTO " + TABLE + " (kind, entry_value) "
+                    + "SELECT DISTINCT ?, SUBSTRING(" + kind.column() + ", 1, " + MAX_VALUE_LENGTH + ") "
+                    + "FROM request_history r WHERE " + kind.column() + " IS NOT NULL "
+                    + "AND NOT EXISTS (SELECT 1 FROM " + TABLE + " d WHERE d.kind = ? "
+                    + "AND d.entry_value = SUBSTRING(r." + kind.column() + ", 1, " + MAX_VALUE_LENGTH + "))",
+                    kind.name(), kind.name());
+            int updated = jdbcTemplate.update("UPDATE request_history SET " + kind.idColumn() + " = "
+                    + "(SELECT d.id FROM " + TABLE + " d WHERE d.kind = ? "
+                    + "AND d.entry_value = SUBSTRING(request_history." + kind.column() + ", 1, " + MAX_VALUE_LENGTH + ")) "
+                    + "WHERE " + kind.idColumn() + " IS NULL AND " + kind.column() + " IS NOT NULL", kind.name());
+            jdbcTemplate.execute("ALTER TABLE request_history DROP COLUMN " + kind.column());
+            logger.warn("request_history.{} migrada: {} filas", kind.column(), updated);
+        });
+        loaded = false;
+    }
+
+    private TransactionTemplate newTransaction() {
+        TransactionTemplate template = newTransaction;
+        if (template == null) {
+            template = new TransactionTemplate(transactionManager.getObject());
+            template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            newTransaction = template;
+        }
+        return template;
+    }
+
+    private boolean hasColumn(String table, String column) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.columns WHERE LOWER(table_name) = ? "
+                        + "AND LOWER(column_name) = ? AND table_schema = CURRENT_SCHEMA",
+                Integer.class, table, column);
+        return count != null && count > 0;
+    }
+
+    /**
+     * Carga todo el diccionario la primera vez que falta un valor en caché.
+     */
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            jdbcTemplate.query("SELECT id, kind, entry_value FROM " + TABLE,
+                    rs -> {
+                        cache(Kind.valueOf(rs.getString(2)), rs.getString(3), rs.getInt(1));
+                    });
+            loaded = true;
+        }
+    }
+
+    private Integer insert(Kind kind, String value) {
+        try {
+            Integer id = newTransaction().execute(status -> {
+                KeyHolder keyHolder = new GeneratedKeyHolder();
+                jdbcTemplate.update(connection -> {
+                    PreparedStatement ps = connection.prepareStatement(
+                            "INSERT INTO " + TABLE + " (kind, entry_value) VALUES (?, ?)", new String[]{"id"});
+                    ps.setString(1, kind.name());
+                    ps.setString(2, value);
+                    return ps;
+                }, keyHolder);
+                return keyHolder.getKey().intValue();
+            });
+            cache(kind, value, id);
+            return id;
+        } catch (DuplicateKeyException e) {
+            // Otra instancia o hilo lo insertó primero
+            Integer id = select(kind, value);
+            if (id == null) {
+                throw e;
+            }
+            return id;
+        }
+    }
+
+    private Integer select(Kind kind, String value) {
+        List<Integer> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM " + TABLE + " WHERE kind = ? AND entry_value = ?", Integer.class, kind.name(), value);
+        if (ids.isEmpty()) {
+            return null;
+        }
+        cache(kind, value, ids.get(0));
+        return ids.get(0);
+    }
+
+    private void cache(Kind kind, String value, int id) {
+        idsByValue.get(kind).put(value, id);
+        valuesById.put(id, value);
+    }
+
+    private static String normalize(String value) {
+        return value.length() > MAX_VALUE_LENGTH ? value.substring(0, MAX_VALUE_LENGTH) : value;
+    }
+}
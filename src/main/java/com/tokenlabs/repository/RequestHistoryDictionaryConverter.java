@@ -0,0 +1,58 @@
+package com.tokenlabs.repository;
+
+import jakarta.persistence.AttributeConverter;
+
+/**
+ * Convierte una columna de texto de request_history en el id del
+ * diccionario. Al consultar no inserta valores: un valor desconocido se
+ * convierte en {@link RequestHistoryDictionary#UNKNOWN_ID} y no encuentra
+ * filas. Los valores nuevos se registran antes del INSERT en
+ * {@link RequestHistoryDictionaryListener}.
+ *
+ * Hibernate crea los conversores a través de Spring, que inyecta el diccionario.
+ */
+public abstract class RequestHistoryDictionaryConverter implements AttributeConverter<String, Integer> {
+
+    private final RequestHistoryDictionary dictionary;
+    private final RequestHistoryDictionary.Kind kind;
+
+    protected RequestHistoryDictionaryConverter(RequestHistoryDictionary dictionary,
+                                                RequestHistoryDictionary.Kind kind) {
+        this.dictionary = dictionary;
+        this.kind = kind;
+    }
+
+    @Override
+    public Integer convertToDatabaseColumn(String value) {
+        return dictionary.find(kind, value);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer id) {
+        return dictionary.valueOf(id);
+    }
+
+    public static class Endpoint extends RequestHistoryDictionaryConverter {
+        public Endpoint(RequestHistoryDictionary dictionary) {
+            super(dictionary, RequestHistoryDictionary.Kind.ENDPOINT);
+        }
+    }
+
+    public static class HttpMethod extends RequestHistoryDictionaryConverter {
+        public HttpMethod(RequestHistoryDictionary dictionary) {
+            super(dictionary, RequestHistoryDictionary.Kind.HTTP_METHOD);
+        }
+    }
+
+    public static class ResponseStatus extends RequestHistoryDictionaryConverter {
+        public ResponseStatus(RequestHistoryDictionary dictionary) {
+            super(dictionary, RequestHistoryDictionary.Kind.RESPONSE_STATUS);
+        }
+    }
+
+    public static class UserAgent extends RequestHistoryDictionaryConverter {
+        public UserAgent(RequestHistoryDictionary dictionary) {
+            super(dictionary, RequestHistoryDictionary.Kind.USER_AGENT);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.tokenlabs.repository;
+
+import com.tokenlabs.model.RequestHistory;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+
+/**
+ * Registra en el diccionario los valores de un RequestHistory antes de que
+ * JPA lo inserte o actualice, para que el conversor encuentre sus ids.
+ */
+public class RequestHistoryDictionaryListener {
+
+    private final RequestHistoryDictionary dictionary;
+
+    public RequestHistoryDictionaryListener(RequestHistoryDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void registerValues(RequestHistory history) {
+        dictionary.idFor(RequestHistoryDictionary.Kind.ENDPOINT, history.getEndpoint());
+        dictionary.idFor(RequestHistoryDictionary.Kind.HTTP_METHOD, history.getHttpMethod());
+        dictionary.idFor(RequestHistoryDictionary.Kind.RESPONSE_STATUS, history.getResponseStatus());
+        dictionary.idFor(RequestHistoryDictionary.Kind.USER_AGENT, history.getUserAgent());
+    }
+}
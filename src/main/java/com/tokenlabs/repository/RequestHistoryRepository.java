@@ -1,18 +1,27 @@
 package com.tokenlabs.repository;
 
 import com.tokenlabs.model.RequestHistory;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface RequestHistoryRepository extends JpaRepository<RequestHistory, Long> {
+public interface RequestHistoryRepository extends JpaRepository<RequestHistory, Long>,
+        JpaSpecificationExecutor<RequestHistory> {
     
     /**
      * Busca el historial de requests ordenado por fecha descendente con paginación
@@ -20,10 +29,12 @@ public interface RequestHistoryRepository extends JpaRepository<RequestHistory,
     Page<RequestHistory> findAllByOrderByRequestDateDesc(Pageable pageable);
     
     /**
-     * Busca el historial de requests por endpoint con paginación
+     * Busca el historial de requests de varios endpoints con paginación. Los
+     * endpoints se comparan por id del diccionario; las búsquedas por texto
+     * usan RequestHistorySpecifications.endpointContains.
      */
-    Page<RequestHistory> findByEndpointContainingIgnoreCaseOrderByRequestDateDesc(
-            String endpoint, Pageable pageable);
+    Page<RequestHistory> findByEndpointInOrderByRequestDateDesc(
+            Collection<String> endpoints, Pageable pageable);
     
     /**
      * Busca el historial de requests por rango de fechas con paginación
@@ -33,6 +44,7 @@ public interface RequestHistoryRepository extends JpaRepository<RequestHistory,
     
     /**
      * Busca el historial de requests por método HTTP con paginación
+     * (comparación por id del diccionario)
      */
     Page<RequestHistory> findByHttpMethodOrderByRequestDateDesc(
             String httpMethod, Pageable pageable);
@@ -54,53 +66,67 @@ public interface RequestHistoryRepository extends JpaRepository<RequestHistory,
     Page<RequestHistory> findByErrorMessageIsNullOrderByRequestDateDesc(Pageable pageable);
     
     /**
-     * Cuenta el total de requests por endpoint
+     * Estima el total de requests por endpoint (suma de pesos de muestreo)
      */
-    @Query("SELECT r.endpoint, COUNT(r) FROM RequestHistory r GROUP BY r.endpoint ORDER BY COUNT(r) DESC")
+    @Query("SELECT r.endpoint, CAST(ROUND(SUM(COALESCE(r.sampleWeight, 1.0)), 0) AS Long) AS total " +
+           "FROM RequestHistory r GROUP BY r.endpoint ORDER BY total DESC")
     List<Object[]> countRequestsByEndpoint();
     
     /**
-     * Cuenta el total de requests por método HTTP
+     * Estima el total de requests por método HTTP (suma de pesos de muestreo)
      */
-    @Query("SELECT r.httpMethod, COUNT(r) FROM RequestHistory r GROUP BY r.httpMethod ORDER BY COUNT(r) DESC")
+    @Query("SELECT r.httpMethod, CAST(ROUND(SUM(COALESCE(r.sampleWeight, 1.0)), 0) AS Long) AS total " +
+           "FROM RequestHistory r GROUP BY r.httpMethod ORDER BY total DESC")
     List<Object[]> countRequestsByHttpMethod();
     
     /**
-     * Cuenta el total de requests por código de respuesta
+     * Estima el total de requests por código de respuesta (suma de pesos de muestreo)
      */
-    @Query("SELECT r.responseStatus, COUNT(r) FROM RequestHistory r GROUP BY r.responseStatus ORDER BY COUNT(r) DESC")
+    @Query("SELECT r.responseStatus, CAST(ROUND(SUM(COALESCE(r.sampleWeight, 1.0)), 0) AS Long) AS total " +
+           "FROM RequestHistory r GROUP BY r.responseStatus ORDER BY total DESC")
     List<Object[]> countRequestsByResponseStatus();
     
     /**
-     * Obtiene estadísticas de tiempo de ejecución por endpoint
+     * Obtiene estadísticas de tiempo de ejecución por endpoint. El promedio se
+     * pondera con el peso de muestreo; mínimo y máximo son exactos para los
+     * requests lentos porque siempre se guardan.
      */
-    @Query("SELECT r.endpoint, AVG(r.executionTimeMs), MIN(r.executionTimeMs), MAX(r.executionTimeMs) " +
+    @Query("SELECT r.endpoint, " +
+           "SUM(r.executionTimeMs * COALESCE(r.sampleWeight, 1.0)) / SUM(COALESCE(r.sampleWeight, 1.0)), " +
+           "MIN(r.executionTimeMs), MAX(r.executionTimeMs) " +
            "FROM RequestHistory r WHERE r.executionTimeMs IS NOT NULL GROUP BY r.endpoint")
     List<Object[]> getExecutionTimeStatsByEndpoint();
     
     /**
-     * Busca requests con filtros múltiples
+     * Estima el total de requests atendidos (suma de pesos de muestreo)
      */
-    @Query("SELECT r FROM RequestHistory r WHERE " +
-           "(:endpoint IS NULL OR LOWER(r.endpoint) LIKE LOWER(CONCAT('%', :endpoint, '%'))) AND " +
-           "(:httpMethod IS NULL OR r.httpMethod = :httpMethod) AND " +
-           "(:responseStatus IS NULL OR r.responseStatus = :responseStatus) AND " +
-           "(:hasError IS NULL OR (:hasError = true AND r.errorMessage IS NOT NULL) OR (:hasError = false AND r.errorMessage IS NULL)) AND " +
-           "(:startDate IS NULL OR r.requestDate >= :startDate) AND " +
-           "(:endDate IS NULL OR r.requestDate <= :endDate) " +
-           "ORDER BY r.requestDate DESC")
-    Page<RequestHistory> findWithFilters(
-            @Param("endpoint") String endpoint,
-            @Param("httpMethod") String httpMethod,
-            @Param("responseStatus") String responseStatus,
-            @Param("hasError") Boolean hasError,
-            @Param("startDate") LocalDateTime startDate,
-            @Param("endDate") LocalDateTime endDate,
-            Pageable pageable);
+    @Query("SELECT COALESCE(CAST(ROUND(SUM(COALESCE(r.sampleWeight, 1.0)), 0) AS Long), 0) FROM RequestHistory r")
+    long estimateTotalRequests();
     
     /**
-     * Elimina registros antiguos (más de X días)
+     * Las filas de una Specification en el orden indicado, como mucho
+     * limit, sin COUNT(*). Con {@link RequestHistorySpecifications#seek} da
+     * la paginación por cursor.
      */
+    default List<RequestHistory> findAll(Specification<RequestHistory> spec, Sort sort, Limit limit) {
+        return findBy(spec, query -> query.sortBy(sort).limit(limit.max()).all());
+    }
+    
+    /**
+     * Página de una Specification sin total: pide una fila de más para saber
+     * si hay página siguiente en lugar de lanzar COUNT(*).
+     */
+    default Slice<RequestHistory> findSlice(Specification<RequestHistory> spec, Pageable pageable) {
+        return findBy(spec, query -> query.slice(pageable));
+    }
+    
+    /**
+     * Elimina registros antiguos (más de X días). Con request_history
+     * particionada la retención se hace borrando particiones completas
+     * (RequestHistoryPartitionManager).
+     */
+    @Modifying
+    @Transactional
     @Query("DELETE FROM RequestHistory r WHERE r.requestDate < :cutoffDate")
     int deleteOldRecords(@Param("cutoffDate") LocalDateTime cutoffDate);
 }
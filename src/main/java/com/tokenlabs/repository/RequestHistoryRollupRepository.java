@@ -0,0 +1,320 @@
+package com.tokenlabs.repository;
+
+import com.tokenlabs.util.RequestTimings;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Rollups horarios y diarios de request_history con JDBC.
+ *
+ * Los rollups horarios se calculan desde request_history y los diarios desde
+ * los horarios. Las estadísticas combinan tres rangos disjuntos: rollups
+ * diarios hasta {@link Coverage#dailyUntil()}, horarios hasta
+ * {@link Coverage#hourlyUntil()} y filas originales desde ahí, así que una
+ * consulta de meses lee miles de filas en lugar de millones.
+ */
+@Repository
+public class RequestHistoryRollupRepository {
+
+    public static final String HOURLY_TABLE = "request_history_rollup_hourly";
+    public static final String DAILY_TABLE = "request_history_rollup_daily";
+
+    /** Límite inferior usado cuando todavía no hay rollups */
+    public static final LocalDateTime NO_COVERAGE = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static final String ROLLUP_COLUMNS = "(bucket_start, endpoint, http_method, response_status, "
+            + "request_count, error_count, execution_time_sum, execution_time_count, "
+            + "min_execution_time_ms, max_execution_time_ms, stored_rows, "
+            + phaseColumns(phase -> phase.column() + "_sum") + ", phase_timing_count)";
+
+    /** Sumas ponderadas de los tiempos por fase sobre filas originales */
+    private static final String RAW_PHASE_SUMS = phaseColumns(phase ->
+            "SUM(" + phase.column() + " * COALESCE(sample_weight, 1.0))")
+            + ", SUM(CASE WHEN total_micros IS NOT NULL THEN COALESCE(sample_weight, 1.0) ELSE 0.0 END)";
+
+    /** Sumas de los tiempos por fase sobre rollups */
+    private static final String ROLLUP_PHASE_SUMS = phaseColumns(phase ->
+            "SUM(" + phase.column() + "_sum)") + ", SUM(phase_timing_count)";
+
+    private static final String ROLLUP_HOUR_SQL = "INSERT INTO " + HOURLY_TABLE + " " + ROLLUP_COLUMNS + " "
+            + "SELECT CAST(? AS TIMESTAMP), endpoint, http_method, response_status, "
+            + "SUM(COALESCE(sample_weight, 1.0)), "
+            + "SUM(CASE WHEN error_message IS NOT NULL THEN COALESCE(sample_weight, 1.0) ELSE 0.0 END), "
+            + "SUM(CASE WHEN execution_time_ms IS NOT NULL THEN execution_time_ms * COALESCE(sample_weight, 1.0) ELSE 0.0 END), "
+            + "SUM(CASE WHEN execution_time_ms IS NOT NULL THEN COALESCE(sample_weight, 1.0) ELSE 0.0 END), "
+            + "MIN(execution_time_ms), MAX(execution_time_ms), COUNT(*), " + RAW_PHASE_SUMS + " "
+            + "FROM (" + rawRequests("r.request_date >= ? AND r.request_date < ?") + ") raw "
+            + "WHERE NOT EXISTS (SELECT 1 FROM " + HOURLY_TABLE + " WHERE bucket_start = ?) "
+            + "GROUP BY endpoint, http_method, response_status";
+
+    private static final String ROLLUP_DAY_SQL = "INSERT INTO " + DAILY_TABLE + " " + ROLLUP_COLUMNS + " "
+            + "SELECT CAST(? AS TIMESTAMP), endpoint, http_method, response_status, "
+            + "SUM(request_count), SUM(error_count), SUM(execution_time_sum), SUM(execution_time_count), "
+            + "MIN(min_execution_time_ms), MAX(max_execution_time_ms), SUM(stored_rows), " + ROLLUP_PHASE_SUMS + " "
+            + "FROM " + HOURLY_TABLE + " WHERE bucket_start >= ? AND bucket_start < ? "
+            + "AND NOT EXISTS (SELECT 1 FROM " + DAILY_TABLE + " WHERE bucket_start = ?) "
+            + "GROUP BY endpoint, http_method, response_status";
+
+    /**
+     * Dimensiones por las que se agrupan las estadísticas
+     */
+    public enum Dimension {
+        ENDPOINT("endpoint"),
+        HTTP_METHOD("http_method"),
+        RESPONSE_STATUS("response_status");
+
+        private final String column;
+
+        Dimension(String column) {
+            this.column = column;
+        }
+    }
+
+    /**
+     * Tiempo medio por fase de un endpoint, en microsegundos. HANDLER incluye
+     * las fases anidadas (llamada externa e inserción).
+     */
+    public record PhaseBreakdown(String endpoint, long timedRequests, double handlerMicros,
+                                 double externalFetchMicros, double dbInsertMicros,
+                                 double serializationMicros, double totalMicros) {
+    }
+
+    /**
+     * Rango cubierto por los rollups: diarios antes de dailyUntil, horarios
+     * entre dailyUntil y hourlyUntil; a partir de hourlyUntil se leen las
+     * filas originales.
+     */
+    public record Coverage(LocalDateTime dailyUntil, LocalDateTime hourlyUntil) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RequestHistoryRollupRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Agrega las filas de request_history de la hora que empieza en hourStart.
+     * No hace nada si esa hora ya tiene rollup.
+     *
+     * @return grupos (endpoint, método, código) insertados
+     */
+    @Transactional
+    public int rollupHour(LocalDateTime hourStart) {
+        Timestamp start = Timestamp.valueOf(hourStart);
+        return jdbcTemplate.update(ROLLUP_HOUR_SQL, start, start, Timestamp.valueOf(hourStart.plusHours(1)), start);
+    }
+
+    /**
+     * Agrega los rollups horarios del día que empieza en dayStart. No hace
+     * nada si ese día ya tiene rollup.
+     *
+     * @return grupos (endpoint, método, código) insertados
+     */
+    @Transactional
+    public int rollupDay(LocalDateTime dayStart) {
+        Timestamp start = Timestamp.valueOf(dayStart);
+        return jdbcTemplate.update(ROLLUP_DAY_SQL, start, start, Timestamp.valueOf(dayStart.plusDays(1)), start);
+    }
+
+    /**
+     * Rango cubierto actualmente por los rollups.
+     */
+    public Coverage findCoverage() {
+        LocalDateTime latestDaily = findLatestBucket(DAILY_TABLE);
+        LocalDateTime latestHourly = findLatestBucket(HOURLY_TABLE);
+        LocalDateTime dailyUntil = latestDaily != null ? latestDaily.plusDays(1) : NO_COVERAGE;
+        LocalDateTime hourlyUntil = latestHourly != null ? latestHourly.plusHours(1) : NO_COVERAGE;
+        return new Coverage(dailyUntil, hourlyUntil.isBefore(dailyUntil) ? dailyUntil : hourlyUntil);
+    }
+
+    public LocalDateTime findLatestHourlyBucket() {
+        return findLatestBucket(HOURLY_TABLE);
+    }
+
+    public LocalDateTime findLatestDailyBucket() {
+        return findLatestBucket(DAILY_TABLE);
+    }
+
+    /**
+     * Primer request_date igual o posterior a from, o null si no hay filas.
+     */
+    public LocalDateTime findFirstRequestDate(LocalDateTime from) {
+        return toLocalDateTime(jdbcTemplate.queryForObject(
+                "SELECT MIN(request_date) FROM request_history WHERE request_date >= ?",
+                Timestamp.class, Timestamp.valueOf(from)));
+    }
+
+    /**
+     * Primer rollup horario igual o posterior a from, o null si no hay.
+     */
+    public LocalDateTime findFirstHourlyBucket(LocalDateTime from) {
+        return toLocalDateTime(jdbcTemplate.queryForObject(
+                "SELECT MIN(bucket_start) FROM " + HOURLY_TABLE + " WHERE bucket_start >= ?",
+                Timestamp.class, Timestamp.valueOf(from)));
+    }
+
+    /**
+     * Borra los rollups horarios anteriores a before.
+     */
+    @Transactional
+    public int deleteHourlyRollupsBefore(LocalDateTime before) {
+        return jdbcTemplate.update("DELETE FROM " + HOURLY_TABLE + " WHERE bucket_start < ?",
+                Timestamp.valueOf(before));
+    }
+
+    /**
+     * Borra como máximo limit filas de request_history anteriores a before.
+     * Cada llamada es una transacción corta para no bloquear la tabla.
+     *
+     * @return filas borradas
+     */
+    @Transactional
+    public int deleteRequestsBefore(LocalDateTime before, int limit) {
+        Timestamp cutoff = Timestamp.valueOf(before);
+        return jdbcTemplate.update("DELETE FROM request_history WHERE request_date < ? AND id IN "
+                + "(SELECT id FROM request_history WHERE request_date < ? ORDER BY request_date LIMIT ?)",
+                cutoff, cutoff, limit);
+    }
+
+    /**
+     * Requests estimados por dimensión, de mayor a menor.
+     *
+     * @return filas [valor, total (Long)]
+     */
+    public List<Object[]> countRequestsBy(Dimension dimension, Coverage coverage) {
+        String column = dimension.column;
+        String sql = "SELECT k, CAST(ROUND(SUM(n), 0) AS BIGINT) AS total FROM ("
+                + "SELECT " + column + " AS k, SUM(request_count) AS n FROM " + DAILY_TABLE
+                + " WHERE bucket_start < ? GROUP BY " + column
+                + " UNION ALL SELECT " + column + ", SUM(request_count) FROM " + HOURLY_TABLE
+                + " WHERE bucket_start >= ? AND bucket_start < ? GROUP BY " + column
+                + " UNION ALL SELECT " + column + ", SUM(COALESCE(sample_weight, 1.0)) FROM ("
+                + rawRequests("r.request_date >= ?") + ") raw GROUP BY " + column
+                + ") combined GROUP BY k ORDER BY total DESC";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new Object[]{rs.getString(1), rs.getLong(2)},
+                coverageArguments(coverage));
+    }
+
+    /**
+     * Errores estimados por endpoint, solo endpoints con algún error.
+     *
+     * @return filas [endpoint, errores (Long)]
+     */
+    public List<Object[]> countErrorsByEndpoint(Coverage coverage) {
+        String sql = "SELECT endpoint, CAST(ROUND(SUM(n), 0) AS BIGINT) AS total FROM ("
+                + "SELECT endpoint, SUM(error_count) AS n FROM " + DAILY_TABLE
+                + " WHERE bucket_start < ? GROUP BY endpoint"
+                + " UNION ALL SELECT endpoint, SUM(error_count) FROM " + HOURLY_TABLE
+                + " WHERE bucket_start >= ? AND bucket_start < ? GROUP BY endpoint"
+                + " UNION ALL SELECT endpoint, SUM(COALESCE(sample_weight, 1.0)) FROM ("
+                + rawRequests("r.request_date >= ? AND r.error_message IS NOT NULL") + ") raw GROUP BY endpoint"
+                + ") combined GROUP BY endpoint HAVING SUM(n) > 0 ORDER BY total DESC";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new Object[]{rs.getString(1), rs.getLong(2)},
+                coverageArguments(coverage));
+    }
+
+    /**
+     * Tiempo de ejecución por endpoint: promedio ponderado, mínimo y máximo.
+     *
+     * @return filas [endpoint, promedio (Double), mínimo (Long), máximo (Long)]
+     */
+    public List<Object[]> getExecutionTimeStatsByEndpoint(Coverage coverage) {
+        String sql = "SELECT endpoint, SUM(s) / SUM(c), MIN(mn), MAX(mx) FROM ("
+                + "SELECT endpoint, SUM(execution_time_sum) AS s, SUM(execution_time_count) AS c, "
+                + "MIN(min_execution_time_ms) AS mn, MAX(max_execution_time_ms) AS mx FROM " + DAILY_TABLE
+                + " WHERE bucket_start < ? GROUP BY endpoint"
+                + " UNION ALL SELECT endpoint, SUM(execution_time_sum), SUM(execution_time_count), "
+                + "MIN(min_execution_time_ms), MAX(max_execution_time_ms) FROM " + HOURLY_TABLE
+                + " WHERE bucket_start >= ? AND bucket_start < ? GROUP BY endpoint"
+                + " UNION ALL SELECT endpoint, SUM(execution_time_ms * COALESCE(sample_weight, 1.0)), "
+                + "SUM(COALESCE(sample_weight, 1.0)), MIN(execution_time_ms), MAX(execution_time_ms) "
+                + "FROM (" + rawRequests("r.request_date >= ? AND r.execution_time_ms IS NOT NULL") + ") raw GROUP BY endpoint"
+                + ") combined GROUP BY endpoint HAVING SUM(c) > 0";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new Object[]{
+                rs.getString(1), rs.getDouble(2), rs.getLong(3), rs.getLong(4)}, coverageArguments(coverage));
+    }
+
+    /**
+     * Tiempos medios por fase y endpoint, ponderados por el peso de muestreo.
+     * Solo cuentan los requests medidos por fases.
+     */
+    public List<PhaseBreakdown> getPhaseBreakdownByEndpoint(Coverage coverage) {
+        String sums = phaseColumns(phase -> "SUM(" + phase.label() + ") / SUM(c)");
+        String aliases = phaseColumns(phase -> "SUM(" + phase.column() + "_sum) AS " + phase.label())
+                + ", SUM(phase_timing_count) AS c";
+        String sql = "SELECT endpoint, SUM(c), " + sums + " FROM ("
+                + "SELECT endpoint, " + aliases + " FROM " + DAILY_TABLE
+                + " WHERE bucket_start < ? GROUP BY endpoint"
+                + " UNION ALL SELECT endpoint, " + ROLLUP_PHASE_SUMS + " FROM " + HOURLY_TABLE
+                + " WHERE bucket_start >= ? AND bucket_start < ? GROUP BY endpoint"
+                + " UNION ALL SELECT endpoint, " + RAW_PHASE_SUMS + " FROM ("
+                + rawRequests("r.request_date >= ? AND r.total_micros IS NOT NULL") + ") raw GROUP BY endpoint"
+                + ") combined GROUP BY endpoint HAVING SUM(c) > 0 ORDER BY SUM(" + RequestTimings.Phase.TOTAL.label()
+                + ") / SUM(c) DESC";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new PhaseBreakdown(rs.getString(1),
+                Math.round(rs.getDouble(2)), rs.getDouble(3), rs.getDouble(4), rs.getDouble(5),
+                rs.getDouble(6), rs.getDouble(7)), coverageArguments(coverage));
+    }
+
+    /**
+     * Total estimado de requests combinando rollups y filas originales.
+     */
+    public long estimateTotalRequests(Coverage coverage) {
+        String sql = "SELECT COALESCE(SUM(n), 0) FROM ("
+                + "SELECT SUM(request_count) AS n FROM " + DAILY_TABLE + " WHERE bucket_start < ?"
+                + " UNION ALL SELECT SUM(request_count) FROM " + HOURLY_TABLE
+                + " WHERE bucket_start >= ? AND bucket_start < ?"
+                + " UNION ALL SELECT SUM(COALESCE(sample_weight, 1.0)) FROM request_history WHERE request_date >= ?"
+                + ") combined";
+        Double total = jdbcTemplate.queryForObject(sql, Double.class, coverageArguments(coverage));
+        return total != null ? Math.round(total) : 0L;
+    }
+
+    /**
+     * Filas de request_history con endpoint, método y código decodificados
+     * desde el diccionario.
+     */
+    private static String rawRequests(String condition) {
+        String dictionary = RequestHistoryDictionary.TABLE;
+        return "SELECT r.request_date, e.entry_value AS endpoint, m.entry_value AS http_method, "
+                + "s.entry_value AS response_status, "
+                + "r.error_message, r.execution_time_ms, r.sample_weight, "
+                + phaseColumns(phase -> "r." + phase.column()) + " FROM request_history r "
+                + "LEFT JOIN " + dictionary + " e ON e.id = r.endpoint_id "
+                + "LEFT JOIN " + dictionary + " m ON m.id = r.http_method_id "
+                + "LEFT JOIN " + dictionary + " s ON s.id = r.response_status_id "
+                + "WHERE " + condition;
+    }
+
+    /**
+     * Lista separada por comas con una expresión por fase, en el orden de
+     * {@link RequestTimings.Phase}.
+     */
+    private static String phaseColumns(Function<RequestTimings.Phase, String> expression) {
+        return Arrays.stream(RequestTimings.Phase.values()).map(expression).collect(Collectors.joining(", "));
+    }
+
+    private LocalDateTime findLatestBucket(String table) {
+        return toLocalDateTime(jdbcTemplate.queryForObject(
+                "SELECT MAX(bucket_start) FROM " + table, Timestamp.class));
+    }
+
+    private static Object[] coverageArguments(Coverage coverage) {
+        Timestamp dailyUntil = Timestamp.valueOf(coverage.dailyUntil());
+        Timestamp hourlyUntil = Timestamp.valueOf(coverage.hourlyUntil());
+        return new Object[]{dailyUntil, dailyUntil, hourlyUntil, hourlyUntil};
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
@@ -0,0 +1,103 @@
+package com.tokenlabs.repository;
+
+import com.tokenlabs.model.RequestHistory;
+import com.tokenlabs.model.RequestHistoryDictionaryEntry;
+import com.tokenlabs.util.PageCursor;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Filtros de request_history como Specifications. Solo se añaden los
+ * predicados de los filtros indicados: un "(:param IS NULL OR ...)" en SQL
+ * impide usar índices y, en PostgreSQL, descartar particiones, porque el plan
+ * se prepara sin saber qué parámetros son nulos.
+ *
+ * Con endpoint o código de respuesta el planificador puede usar los índices
+ * (endpoint_id, request_date) y (response_status_id, request_date); sin ellos,
+ * el de (request_date, id).
+ */
+public final class RequestHistorySpecifications {
+
+    private RequestHistorySpecifications() {
+    }
+
+    /**
+     * @param endpoints endpoints aceptados, o null para cualquiera
+     * @param hasError true solo con error, false solo sin error, null ambos
+     */
+    public static Specification<RequestHistory> withFilters(Collection<String> endpoints, String httpMethod,
+                                                            String responseStatus, Boolean hasError,
+                                                            LocalDateTime startDate, LocalDateTime endDate) {
+        List<Specification<RequestHistory>> filters = new ArrayList<>();
+        if (endpoints != null) {
+            filters.add((root, query, cb) -> root.get("endpoint").in(endpoints));
+        }
+        if (httpMethod != null) {
+            filters.add((root, query, cb) -> cb.equal(root.get("httpMethod"), httpMethod));
+        }
+        if (responseStatus != null) {
+            filters.add((root, query, cb) -> cb.equal(root.get("responseStatus"), responseStatus));
+        }
+        if (hasError != null) {
+            filters.add((root, query, cb) -> hasError
+                    ? cb.isNotNull(root.get("errorMessage"))
+                    : cb.isNull(root.get("errorMessage")));
+        }
+        if (startDate != null) {
+            filters.add((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("requestDate"), startDate));
+        }
+        if (endDate != null) {
+            filters.add((root, query, cb) -> cb.lessThanOrEqualTo(root.get("requestDate"), endDate));
+        }
+        return Specification.allOf(filters);
+    }
+
+    /**
+     * Requests cuyo endpoint contiene el texto, sin distinguir mayúsculas.
+     * Los endpoints se buscan con una subconsulta sobre
+     * request_history_dictionary (con %, _ y \\ escapados), así que sus ids
+     * no pasan por la aplicación ni por la lista de parámetros de la consulta
+     * por muchos que coincidan, y request_history se filtra por endpoint_id.
+     */
+    public static Specification<RequestHistory> endpointContains(String text) {
+        return (root, query, cb) -> {
+            Subquery<Integer> endpointIds = query.subquery(Integer.class);
+            Root<RequestHistoryDictionaryEntry> entry = endpointIds.from(RequestHistoryDictionaryEntry.class);
+            endpointIds.select(entry.get("id")).where(
+                    cb.equal(entry.get("kind"), RequestHistoryDictionary.Kind.ENDPOINT.name()),
+                    cb.like(cb.lower(entry.get("value")), RequestHistoryDictionary.containsPattern(text),
+                            RequestHistoryDictionary.LIKE_ESCAPE));
+            return root.get("endpointId").in(endpointIds);
+        };
+    }
+
+    /**
+     * Requests posteriores al cursor en su sentido de recorrido sobre
+     * (request_date, id). La condición redundante sobre request_date sola
+     * permite empezar el recorrido del índice en el cursor en lugar de
+     * filtrar desde el principio.
+     */
+    public static Specification<RequestHistory> seek(PageCursor cursor) {
+        return (root, query, cb) -> {
+            Path<LocalDateTime> requestDate = root.get("requestDate");
+            Path<Long> id = root.get("id");
+            if (cursor.descending()) {
+                return cb.and(
+                        cb.lessThanOrEqualTo(requestDate, cursor.date()),
+                        cb.or(cb.lessThan(requestDate, cursor.date()),
+                                cb.and(cb.equal(requestDate, cursor.date()), cb.lessThan(id, cursor.id()))));
+            }
+            return cb.and(
+                    cb.greaterThanOrEqualTo(requestDate, cursor.date()),
+                    cb.or(cb.greaterThan(requestDate, cursor.date()),
+                            cb.and(cb.equal(requestDate, cursor.date()), cb.greaterThan(id, cursor.id()))));
+        };
+    }
+}
@@ -0,0 +1,95 @@
+package com.tokenlabs.repository;
+
+import org.HdrHistogram.Histogram;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.zip.DataFormatException;
+
+/**
+ * Histogramas de latencia por minuto en request_latency_digest, con JDBC.
+ *
+ * Cada fila es un histograma HDR comprimido de un endpoint, un minuto y una
+ * instancia. Una consulta de percentiles sobre un rango lee una fila por
+ * endpoint, minuto e instancia, sin depender del número de requests.
+ */
+@Repository
+public class RequestLatencyDigestRepository {
+
+    public static final String TABLE = "request_latency_digest";
+
+    private static final String INSERT_SQL = "INSERT INTO " + TABLE
+            + " (bucket_start, endpoint, node_id, request_count, histogram) VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RequestLatencyDigestRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Guarda los histogramas de un minuto, uno por endpoint.
+     */
+    public void saveMinute(LocalDateTime bucketStart, String nodeId, Map<String, Histogram> histograms) {
+        if (histograms.isEmpty()) {
+            return;
+        }
+        Timestamp bucket = Timestamp.valueOf(bucketStart);
+        List<Map.Entry<String, Histogram>> entries = new ArrayList<>(histograms.entrySet());
+        jdbcTemplate.batchUpdate(INSERT_SQL, entries, entries.size(), (ps, entry) -> {
+            ps.setTimestamp(1, bucket);
+            ps.setString(2, entry.getKey());
+            ps.setString(3, nodeId);
+            ps.setLong(4, entry.getValue().getTotalCount());
+            ps.setBytes(5, encode(entry.getValue()));
+        });
+    }
+
+    /**
+     * Recorre los histogramas con bucket_start en [from, to), de todos los
+     * endpoints si endpoint es null. Las filas se decodifican de una en una,
+     * sin cargar el rango completo en memoria.
+     */
+    public void forEachDigest(LocalDateTime from, LocalDateTime to, String endpoint,
+                              long highestTrackableValue, BiConsumer<String, Histogram> consumer) {
+        String sql = "SELECT endpoint, histogram FROM " + TABLE + " WHERE bucket_start >= ? AND bucket_start < ?"
+                + (endpoint != null ? " AND endpoint = ?" : "");
+        Object[] args = endpoint != null
+                ? new Object[]{Timestamp.valueOf(from), Timestamp.valueOf(to), endpoint}
+                : new Object[]{Timestamp.valueOf(from), Timestamp.valueOf(to)};
+        jdbcTemplate.query(sql, rs -> {
+            consumer.accept(rs.getString(1), decode(rs.getBytes(2), highestTrackableValue));
+        }, args);
+    }
+
+    /**
+     * Borra los minutos anteriores a before.
+     *
+     * @return filas borradas
+     */
+    public int deleteBefore(LocalDateTime before) {
+        return jdbcTemplate.update("DELETE FROM " + TABLE + " WHERE bucket_start < ?", Timestamp.valueOf(before));
+    }
+
+    static byte[] encode(Histogram histogram) {
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        return Arrays.copyOf(buffer.array(), length);
+    }
+
+    static Histogram decode(byte[] encoded, long highestTrackableValue) {
+        try {
+            return Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(encoded), highestTrackableValue);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Histograma de latencia corrupto en " + TABLE, e);
+        }
+    }
+}
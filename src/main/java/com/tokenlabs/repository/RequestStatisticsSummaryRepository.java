@@ -0,0 +1,133 @@
+package com.tokenlabs.repository;
+
+import com.tokenlabs.util.RequestTimings;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Contadores de requests por instancia en request_statistics_summary, con
+ * JDBC. La tabla tiene una fila por instancia, dimensión y valor, así que
+ * leerla entera no depende del número de requests.
+ */
+@Repository
+public class RequestStatisticsSummaryRepository {
+
+    public static final String TABLE = "request_statistics_summary";
+
+    private static final String PHASE_COLUMNS = Arrays.stream(RequestTimings.Phase.values())
+            .map(phase -> phase.column() + "_sum").collect(Collectors.joining(", "));
+
+    private static final String COUNTER_COLUMNS = "request_count, error_count, stored_count, "
+            + "execution_time_sum, execution_time_count, min_execution_time_ms, max_execution_time_ms, "
+            + PHASE_COLUMNS + ", phase_timing_count";
+
+    private static final int COUNTER_PARAMETERS = 8 + RequestTimings.Phase.values().length;
+
+    private static final String UPDATE_SQL = "UPDATE " + TABLE + " SET "
+            + Arrays.stream(COUNTER_COLUMNS.split(", ")).map(column -> column + " = ?").collect(Collectors.joining(", "))
+            + ", updated_at = CAST(? AS TIMESTAMP) WHERE node_id = ? AND dimension = ? AND dimension_value = ?";
+
+    private static final String INSERT_SQL = "INSERT INTO " + TABLE
+            + " (" + COUNTER_COLUMNS + ", updated_at, node_id, dimension, dimension_value) "
+            + "SELECT " + "?, ".repeat(COUNTER_PARAMETERS) + "CAST(? AS TIMESTAMP), ?, ?, ? "
+            + "WHERE NOT EXISTS (SELECT 1 FROM " + TABLE + " s "
+            + "WHERE s.node_id = ? AND s.dimension = ? AND s.dimension_value = ?)";
+
+    /**
+     * Contadores acumulados de una instancia para un valor de una dimensión.
+     * minExecutionTimeMs y maxExecutionTimeMs son null sin tiempos.
+     *
+     * @param phaseMicrosSums sumas por fase, en el orden de {@link RequestTimings.Phase}
+     */
+    public record SummaryRow(String nodeId, RequestHistoryRollupRepository.Dimension dimension, String value,
+                             long requests, long errors, long stored,
+                             long executionTimeSum, long executionTimeCount,
+                             Long minExecutionTimeMs, Long maxExecutionTimeMs,
+                             long[] phaseMicrosSums, long phaseTimingCount) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RequestStatisticsSummaryRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public List<SummaryRow> findAll() {
+        return jdbcTemplate.query("SELECT node_id, dimension, dimension_value, " + COUNTER_COLUMNS + " FROM " + TABLE,
+                (rs, rowNum) -> toRow(rs));
+    }
+
+    /**
+     * Sustituye los contadores de las filas dadas, insertando las que faltan.
+     */
+    @Transactional
+    public void saveAll(List<SummaryRow> rows, LocalDateTime updatedAt) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Timestamp timestamp = Timestamp.valueOf(updatedAt);
+        jdbcTemplate.batchUpdate(UPDATE_SQL, rows, rows.size(), (ps, row) -> {
+            int index = setCounters(ps, row);
+            ps.setTimestamp(index++, timestamp);
+            setKey(ps, index, row);
+        });
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(), (ps, row) -> {
+            int index = setCounters(ps, row);
+            ps.setTimestamp(index++, timestamp);
+            index = setKey(ps, index, row);
+            setKey(ps, index, row);
+        });
+    }
+
+    private static int setCounters(PreparedStatement ps, SummaryRow row) throws SQLException {
+        int index = 1;
+        ps.setLong(index++, row.requests());
+        ps.setLong(index++, row.errors());
+        ps.setLong(index++, row.stored());
+        ps.setLong(index++, row.executionTimeSum());
+        ps.setLong(index++, row.executionTimeCount());
+        setLong(ps, index++, row.minExecutionTimeMs());
+        setLong(ps, index++, row.maxExecutionTimeMs());
+        for (long sum : row.phaseMicrosSums()) {
+            ps.setLong(index++, sum);
+        }
+        ps.setLong(index++, row.phaseTimingCount());
+        return index;
+    }
+
+    private static int setKey(PreparedStatement ps, int index, SummaryRow row) throws SQLException {
+        ps.setString(index++, row.nodeId());
+        ps.setString(index++, row.dimension().name());
+        ps.setString(index++, row.value());
+        return index;
+    }
+
+    private static void setLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value != null) {
+            ps.setLong(index, value);
+        } else {
+            ps.setNull(index, Types.BIGINT);
+        }
+    }
+
+    private static SummaryRow toRow(ResultSet rs) throws SQLException {
+        long[] phaseSums = new long[RequestTimings.Phase.values().length];
+        for (int i = 0; i < phaseSums.length; i++) {
+            phaseSums[i] = rs.getLong(11 + i);
+        }
+        return new SummaryRow(rs.getString(1), RequestHistoryRollupRepository.Dimension.valueOf(rs.getString(2)),
+                rs.getString(3), rs.getLong(4), rs.getLong(5), rs.getLong(6), rs.getLong(7), rs.getLong(8),
+                rs.getObject(9, Long.class), rs.getObject(10, Long.class), phaseSums, rs.getLong(11 + phaseSums.length));
+    }
+}
@@ -2,10 +2,15 @@ package com.tokenlabs.service;
 
 import com.tokenlabs.dto.CalculationRequest;
 import com.tokenlabs.dto.CalculationResponse;
+import com.tokenlabs.dto.CursorPage;
 import com.tokenlabs.model.CalculationHistory;
 import com.tokenlabs.repository.CalculationHistoryRepository;
+import com.tokenlabs.util.PageCursor;
+import com.tokenlabs.util.RequestTimings;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,9 +19,13 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.List;
 import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 
 @Service
@@ -31,6 +40,14 @@ public class CalculationService {
     @Autowired
     private CalculationHistoryRepository calculationHistoryRepository;
     
+    @Autowired
+    @Qualifier("externalCallExecutor")
+    private Executor externalCallExecutor;
+    
+    @Autowired
+    @Qualifier("persistenceExecutor")
+    private Executor persistenceExecutor;
+    
     /**
      * Realiza el cálculo principal: suma dos números y aplica un porcentaje
      * obtenido del servicio externo como se especifica por tenpo
@@ -42,9 +59,47 @@ public class CalculationService {
         logger.info("Iniciando cálculo para números: {} y {}", 
                    request.getFirstNumber(), request.getSecondNumber());
         
+        RequestTimings timings = RequestTimings.current();
+        
         // Obtener porcentaje del servicio externo (con caché)
+        long fetchStart = System.nanoTime();
         BigDecimal percentage = externalPercentageService.getPercentage();
+        timings.record(RequestTimings.Phase.EXTERNAL_FETCH, fetchStart);
+        
+        return applyAndSave(request, percentage, timings);
+    }
+    
+    /**
+     * Variante no bloqueante de {@link #calculate(CalculationRequest)}.
+     * La llamada al servicio externo se ejecuta en externalCallExecutor y el
+     * cálculo con su persistencia en persistenceExecutor, de modo que el hilo
+     * del contenedor queda libre mientras tanto. Los tiempos del request se
+     * capturan aquí porque los executors no tienen el request en su hilo.
+     * 
+     * @param request Request con los dos números a sumar
+     * @return CompletableFuture que se completa con el resultado del cálculo
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CompletableFuture<CalculationResponse> calculateAsync(CalculationRequest request) {
+        logger.info("Iniciando cálculo asíncrono para números: {} y {}", 
+                   request.getFirstNumber(), request.getSecondNumber());
         
+        RequestTimings timings = RequestTimings.current();
+        return CompletableFuture
+            .supplyAsync(() -> {
+                long fetchStart = System.nanoTime();
+                BigDecimal percentage = externalPercentageService.getPercentage();
+                timings.record(RequestTimings.Phase.EXTERNAL_FETCH, fetchStart);
+                return percentage;
+            }, externalCallExecutor)
+            .thenApplyAsync(percentage -> applyAndSave(request, percentage, timings), persistenceExecutor);
+    }
+    
+    /**
+     * Suma los números, aplica el porcentaje y guarda el cálculo en el historial.
+     */
+    private CalculationResponse applyAndSave(CalculationRequest request, BigDecimal percentage,
+                                             RequestTimings timings) {
         // Realizar la suma
         BigDecimal sum = request.getFirstNumber().add(request.getSecondNumber());
         
@@ -62,7 +117,9 @@ public class CalculationService {
             percentage,
             result
         );
+        long insertStart = System.nanoTime();
         calculationHistoryRepository.save(history);
+        timings.record(RequestTimings.Phase.DB_INSERT, insertStart);
         
         logger.info("Cálculo guardado en historial con ID: {}", history.getId());
         
@@ -155,4 +212,68 @@ public class CalculationService {
             return calculationHistoryRepository.findAll(pageable);
         }
     }
+    
+    /**
+     * Obtiene el historial de cálculos paginado sin total de elementos, por lo
+     * que no ejecuta COUNT(*) en cada página.
+     * 
+     * @param page Número de página (0-based)
+     * @param size Tamaño de página
+     * @param sortBy Campo para ordenar
+     * @param sortDirection Dirección de ordenamiento (asc/desc)
+     * @param startDate Fecha de inicio (opcional)
+     * @param endDate Fecha de fin (opcional)
+     * @return Slice de CalculationHistory
+     */
+    @Transactional(readOnly = true)
+    public Slice<CalculationHistory> getCalculationHistorySlice(
+            int page, int size, String sortBy, String sortDirection,
+            LocalDateTime startDate, LocalDateTime endDate) {
+        
+        logger.info("Obteniendo historial de cálculos sin total - página: {}, tamaño: {}, orden: {} {}", 
+                   page, size, sortBy, sortDirection);
+        
+        Sort.Direction direction = sortDirection.equalsIgnoreCase("desc") ? 
+            Sort.Direction.DESC : Sort.Direction.ASC;
+        Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sortBy).and(Sort.by("id")));
+        return calculationHistoryRepository.findSliceByCreatedAtBetween(
+            startDate != null ? startDate : PageCursor.MIN_DATE,
+            endDate != null ? endDate : PageCursor.MAX_DATE, pageable);
+    }
+    
+    /**
+     * Recorre el historial de cálculos con paginación por cursor sobre
+     * (created_at, id): sin OFFSET, cualquier página cuesta lo mismo.
+     * 
+     * @param cursor Token de la página anterior, o null para la primera
+     * @param size Tamaño de página
+     * @param sortDirection Dirección de ordenamiento (asc/desc)
+     * @param startDate Fecha de inicio (opcional)
+     * @param endDate Fecha de fin (opcional)
+     * @return Página con el cursor de la siguiente
+     * @throws IllegalArgumentException si el cursor no es válido o se generó
+     *         con el otro sentido de ordenamiento
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<CalculationHistory> scrollCalculationHistory(
+            String cursor, int size, String sortDirection,
+            LocalDateTime startDate, LocalDateTime endDate) {
+        
+        logger.info("Obteniendo historial de cálculos por cursor - tamaño: {}, orden: {}", size, sortDirection);
+        
+        boolean descending = sortDirection.equalsIgnoreCase("desc");
+        PageCursor position = cursor != null ? PageCursor.decode(cursor) : PageCursor.first(descending);
+        if (position.descending() != descending) {
+            throw new IllegalArgumentException("El cursor se generó con otro sentido de ordenamiento");
+        }
+        
+        LocalDateTime start = startDate != null ? startDate : PageCursor.MIN_DATE;
+        LocalDateTime end = endDate != null ? endDate : PageCursor.MAX_DATE;
+        List<CalculationHistory> rows = descending
+            ? calculationHistoryRepository.findByCreatedAtBetweenBefore(
+                start, end, position.date(), position.id(), Limit.of(size + 1))
+            : calculationHistoryRepository.findByCreatedAtBetweenAfter(
+                start, end, position.date(), position.id(), Limit.of(size + 1));
+        return CursorPage.of(rows, size, descending, CalculationHistory::getCreatedAt, CalculationHistory::getId);
+    }
 }
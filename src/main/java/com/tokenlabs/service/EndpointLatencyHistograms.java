@@ -0,0 +1,337 @@
+package com.tokenlabs.service;
+
+import com.tokenlabs.repository.RequestLatencyDigestRepository;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Histogramas HDR de latencia por endpoint en memoria, por ventanas
+ * deslizantes de 1 minuto, 5 minutos y 1 hora.
+ *
+ * El hilo del request registra en un {@link Recorder} de HdrHistogram, que
+ * no bloquea. Al final de cada app.latency.slice (alineado con el reloj) se
+ * rota: el intervalo se guarda como un tramo y se suma a las ventanas, y el
+ * tramo que sale de cada ventana se resta, así que leer los percentiles no
+ * recorre los tramos ni toca la base de datos. Las ventanas de 1 y 5 minutos
+ * se componen de tramos; la de 1 hora, de los 59 minutos completos anteriores
+ * más el minuto en curso. Los datos tienen hasta un tramo de retraso.
+ *
+ * Cada minuto completo se guarda además en request_latency_digest, de modo
+ * que los percentiles de cualquier rango pasado se calculan fusionando un
+ * histograma por endpoint, minuto e instancia. La escritura va a
+ * latencyDigestExecutor: tick() corre en el scheduler de Spring (un solo
+ * hilo) y no debe esperar a la base de datos.
+ */
+@Service
+public class EndpointLatencyHistograms {
+
+    private static final Logger logger = LoggerFactory.getLogger(EndpointLatencyHistograms.class);
+
+    /** Endpoint que agrupa las rutas por encima de app.latency.max-endpoints */
+    public static final String OTHER_ENDPOINT = "(other)";
+
+    private static final int MINUTES_PER_HOUR = 60;
+
+    /**
+     * Ventanas servidas; label es la clave de la respuesta.
+     */
+    public enum Window {
+        ONE_MINUTE("1m"),
+        FIVE_MINUTES("5m"),
+        ONE_HOUR("1h");
+
+        private final String label;
+
+        Window(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    /**
+     * Percentiles de una ventana, en microsegundos.
+     */
+    public record Percentiles(long count, long p50, long p90, long p99, long p999, long max) {
+
+        static final Percentiles EMPTY = new Percentiles(0, 0, 0, 0, 0, 0);
+
+        static Percentiles of(Histogram histogram) {
+            if (histogram.getTotalCount() == 0) {
+                return EMPTY;
+            }
+            return new Percentiles(histogram.getTotalCount(),
+                    histogram.getValueAtPercentile(50.0),
+                    histogram.getValueAtPercentile(90.0),
+                    histogram.getValueAtPercentile(99.0),
+                    histogram.getValueAtPercentile(99.9),
+                    histogram.getValueAtPercentile(100.0));
+        }
+    }
+
+    private final ConcurrentHashMap<String, EndpointLatency> endpoints = new ConcurrentHashMap<>();
+    private final RequestLatencyDigestRepository digestRepository;
+    private final Executor digestExecutor;
+    private final Clock clock;
+    private final long sliceMillis;
+    private final int slicesPerMinute;
+    private final long highestTrackableMicros;
+    private final int significantDigits;
+    private final int maxEndpoints;
+    private final boolean digestsEnabled;
+    private final String nodeId;
+    private final Duration digestRetention;
+
+    private long lastSliceIndex;
+
+    @Autowired
+    public EndpointLatencyHistograms(
+            RequestLatencyDigestRepository digestRepository,
+            @Qualifier("latencyDigestExecutor") Executor digestExecutor,
+            @Value("${app.latency.slice:PT10S}") Duration slice,
+            @Value("${app.latency.highest-trackable:PT60S}") Duration highestTrackable,
+            @Value("${app.latency.significant-digits:2}") int significantDigits,
+            @Value("${app.latency.max-endpoints:200}") int maxEndpoints,
+            @Value("${app.latency.digests.enabled:true}") boolean digestsEnabled,
+            @Value("${app.latency.digests.node-id:${HOSTNAME:local}}") String nodeId,
+            @Value("${app.latency.digests.retention:P90D}") Duration digestRetention) {
+        this(digestRepository, digestExecutor, slice, highestTrackable, significantDigits, maxEndpoints,
+                digestsEnabled, nodeId, digestRetention, Clock.systemDefaultZone());
+    }
+
+    EndpointLatencyHistograms(RequestLatencyDigestRepository digestRepository, Executor digestExecutor,
+                              Duration slice, Duration highestTrackable, int significantDigits, int maxEndpoints,
+                              boolean digestsEnabled, String nodeId, Duration digestRetention, Clock clock) {
+        long sliceMillis = slice.toMillis();
+        if (sliceMillis <= 0 || Duration.ofMinutes(1).toMillis() % sliceMillis != 0) {
+            throw new IllegalArgumentException("app.latency.slice debe dividir un minuto: " + slice);
+        }
+        this.digestRepository = digestRepository;
+        this.digestExecutor = digestExecutor;
+        this.clock = clock;
+        this.sliceMillis = sliceMillis;
+        this.slicesPerMinute = (int) (Duration.ofMinutes(1).toMillis() / sliceMillis);
+        this.highestTrackableMicros = highestTrackable.toNanos() / 1_000;
+        this.significantDigits = significantDigits;
+        this.maxEndpoints = maxEndpoints;
+        this.digestsEnabled = digestsEnabled;
+        this.nodeId = nodeId;
+        this.digestRetention = digestRetention;
+        this.lastSliceIndex = clock.millis() / sliceMillis;
+    }
+
+    /**
+     * Registra la latencia de un request. No bloquea; los valores por encima
+     * de app.latency.highest-trackable se registran como el máximo.
+     */
+    public void record(String endpoint, long micros) {
+        EndpointLatency latency = endpoints.get(endpoint);
+        if (latency == null) {
+            String key = endpoints.size() < maxEndpoints ? endpoint : OTHER_ENDPOINT;
+            latency = endpoints.computeIfAbsent(key, ignored -> new EndpointLatency());
+        }
+        latency.recorder.recordValue(Math.max(0, Math.min(micros, highestTrackableMicros)));
+    }
+
+    /**
+     * Rota cuando el reloj cruza el final de un tramo. Se comprueba cada
+     * segundo para que los tramos, y con ellos los minutos guardados, queden
+     * alineados con el reloj y no con el arranque de la aplicación.
+     *
+     * Si el hilo se retrasa (pausa de GC, suspensión del host) se rota una
+     * vez por cada tramo transcurrido: los requests del retraso quedan en el
+     * primero, los demás tramos quedan vacíos y cada minuto se cierra con su
+     * propio inicio. Pasada una hora de tramos todas las ventanas están
+     * vacías y el resto del retraso se salta sin rotar.
+     */
+    @Scheduled(fixedRate = 1000)
+    public synchronized void tick() {
+        long sliceIndex = clock.millis() / sliceMillis;
+        long maxRotations = (long) slicesPerMinute * MINUTES_PER_HOUR;
+        for (long rotations = 0; lastSliceIndex < sliceIndex; rotations++) {
+            if (rotations == maxRotations) {
+                lastSliceIndex = sliceIndex;
+                break;
+            }
+            rotate(lastSliceIndex++);
+        }
+    }
+
+    /**
+     * Cierra el tramo sliceIndex de todos los endpoints y, si es el último
+     * de su minuto, encola el guardado del minuto completo.
+     */
+    private void rotate(long sliceIndex) {
+        boolean minuteEnded = (sliceIndex + 1) % slicesPerMinute == 0;
+        Map<String, Histogram> completed = new TreeMap<>();
+        endpoints.forEach((endpoint, latency) -> {
+            Histogram minute = latency.rotate(minuteEnded);
+            if (minute != null) {
+                completed.put(endpoint, minute);
+            }
+        });
+        if (minuteEnded) {
+            saveMinute(minuteOf(sliceIndex), completed);
+        }
+    }
+
+    /**
+     * Percentiles por endpoint (ordenados) y ventana.
+     */
+    public Map<String, Map<String, Percentiles>> snapshot() {
+        Map<String, Map<String, Percentiles>> snapshot = new TreeMap<>();
+        endpoints.forEach((endpoint, latency) -> snapshot.put(endpoint, latency.snapshot()));
+        return snapshot;
+    }
+
+    /**
+     * Percentiles por endpoint de los minutos guardados cuyo inicio está en
+     * [from, to), de todas las instancias. Lee un histograma por endpoint,
+     * minuto e instancia, sin depender del número de requests.
+     *
+     * @param endpoint patrón de la ruta, o null para todos
+     */
+    public Map<String, Percentiles> percentilesBetween(LocalDateTime from, LocalDateTime to, String endpoint) {
+        Map<String, Histogram> merged = new TreeMap<>();
+        digestRepository.forEachDigest(from, to, endpoint, highestTrackableMicros, (name, histogram) ->
+                merged.computeIfAbsent(name, ignored -> new Histogram(significantDigits)).add(histogram));
+        Map<String, Percentiles> percentiles = new LinkedHashMap<>();
+        merged.forEach((name, histogram) -> percentiles.put(name, Percentiles.of(histogram)));
+        return percentiles;
+    }
+
+    /**
+     * Borra los minutos guardados más antiguos que app.latency.digests.retention.
+     */
+    @Scheduled(cron = "${app.latency.digests.purge-cron:0 30 0 * * *}")
+    public void purgeDigests() {
+        try {
+            int deleted = digestRepository.deleteBefore(LocalDateTime.now(clock).minus(digestRetention));
+            logger.info("Histogramas de latencia por minuto borrados: {}", deleted);
+        } catch (DataAccessException e) {
+            logger.error("No se pudieron borrar los histogramas de latencia: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Encola el minuto en latencyDigestExecutor. Los histogramas son copias
+     * que ya no toca la rotación, así que se escriben fuera del lock de tick().
+     */
+    private void saveMinute(LocalDateTime bucket, Map<String, Histogram> completed) {
+        if (!digestsEnabled || completed.isEmpty()) {
+            return;
+        }
+        try {
+            digestExecutor.execute(() -> writeMinute(bucket, completed));
+        } catch (RejectedExecutionException e) {
+            // Cola llena (base de datos caída o lenta): el minuto sigue en las ventanas en memoria
+            logger.warn("Se descartó la latencia del minuto {}: cola de escritura llena", bucket);
+        }
+    }
+
+    private void writeMinute(LocalDateTime bucket, Map<String, Histogram> completed) {
+        try {
+            digestRepository.saveMinute(bucket, nodeId, completed);
+        } catch (DataAccessException e) {
+            // El minuto no queda en la tabla pero sigue en las ventanas en memoria
+            logger.warn("No se pudo guardar la latencia del minuto {}: {}", bucket, e.getMessage());
+        }
+    }
+
+    private LocalDateTime minuteOf(long sliceIndex) {
+        long minuteStartMillis = (sliceIndex - sliceIndex % slicesPerMinute) * sliceMillis;
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(minuteStartMillis), clock.getZone())
+                .truncatedTo(ChronoUnit.MINUTES);
+    }
+
+    /**
+     * Tramos y ventanas de un endpoint. Rotar y leer se sincronizan sobre la
+     * instancia; registrar solo usa el Recorder.
+     */
+    private final class EndpointLatency {
+
+        private final Recorder recorder = new Recorder(1, highestTrackableMicros, significantDigits);
+        private final Histogram[] slices = new Histogram[5 * slicesPerMinute];
+        private final Histogram[] minutes = new Histogram[MINUTES_PER_HOUR - 1];
+        private final Histogram oneMinute = newHistogram();
+        private final Histogram fiveMinutes = newHistogram();
+        private final Histogram completedMinutes = newHistogram();
+        private final Histogram currentMinute = newHistogram();
+        private Histogram recycled;
+        private int slicePosition;
+        private int minutePosition;
+
+        /**
+         * @return el minuto completo si minuteEnded y tuvo requests, o null
+         */
+        synchronized Histogram rotate(boolean minuteEnded) {
+            recycled = recorder.getIntervalHistogram(recycled);
+            Histogram slice = recycled.getTotalCount() > 0 ? recycled.copy() : null;
+
+            subtract(oneMinute, slices[(slicePosition + slices.length - slicesPerMinute) % slices.length]);
+            subtract(fiveMinutes, slices[slicePosition]);
+            slices[slicePosition] = slice;
+            slicePosition = (slicePosition + 1) % slices.length;
+            if (slice != null) {
+                oneMinute.add(slice);
+                fiveMinutes.add(slice);
+                currentMinute.add(slice);
+            }
+
+            if (!minuteEnded) {
+                return null;
+            }
+            subtract(completedMinutes, minutes[minutePosition]);
+            Histogram minute = currentMinute.getTotalCount() > 0 ? currentMinute.copy() : null;
+            minutes[minutePosition] = minute;
+            minutePosition = (minutePosition + 1) % minutes.length;
+            if (minute != null) {
+                completedMinutes.add(minute);
+            }
+            currentMinute.reset();
+            return minute;
+        }
+
+        synchronized Map<String, Percentiles> snapshot() {
+            Histogram hour = completedMinutes.copy();
+            hour.add(currentMinute);
+            Map<String, Percentiles> windows = new LinkedHashMap<>();
+            windows.put(Window.ONE_MINUTE.label(), Percentiles.of(oneMinute));
+            windows.put(Window.FIVE_MINUTES.label(), Percentiles.of(fiveMinutes));
+            windows.put(Window.ONE_HOUR.label(), Percentiles.of(hour));
+            return windows;
+        }
+
+        private Histogram newHistogram() {
+            return new Histogram(1, highestTrackableMicros, significantDigits);
+        }
+
+        private static void subtract(Histogram window, Histogram leaving) {
+            if (leaving != null) {
+                window.subtract(leaving);
+            }
+        }
+    }
+}
@@ -6,6 +6,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 
 @Service
 public class ExternalServiceFailureSimulator {
@@ -15,6 +16,9 @@ public class ExternalServiceFailureSimulator {
     @Value("${app.external.percentage:15.75}")
     private BigDecimal configuredPercentage;
     
+    @Value("${app.external.latency:PT0.1S}")
+    private Duration latency = Duration.ofMillis(100);
+    
     private boolean simulateFailure = false;
     
     /**
@@ -31,7 +35,7 @@ public class ExternalServiceFailureSimulator {
         
         // Simular latencia de red
         try {
-            Thread.sleep(100);
+            Thread.sleep(latency);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             logger.warn("Interrupción durante la simulación de latencia");
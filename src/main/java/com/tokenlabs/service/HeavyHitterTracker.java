@@ -0,0 +1,280 @@
+package com.tokenlabs.service;
+
+import com.tokenlabs.model.RequestHistory;
+import com.tokenlabs.util.CountMinSketch;
+import com.tokenlabs.util.SpaceSaving;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Endpoints y clientes (IP) con más requests en ventanas deslizantes de 1
+ * minuto, 5 minutos y 1 hora, con memoria acotada sea cual sea el número de
+ * valores distintos.
+ *
+ * Cada tramo de app.heavy-hitters.slice tiene, por dimensión, un
+ * {@link CountMinSketch} que estima la frecuencia de cualquier clave y un
+ * resumen {@link SpaceSaving} con las claves candidatas. Igual que en
+ * {@link EndpointLatencyHistograms}, al rotar el tramo se suma a las
+ * ventanas y se resta el que sale (el sketch es lineal), y la ventana de 1
+ * hora se compone de los 59 minutos completos anteriores más el minuto en
+ * curso. Los datos tienen hasta un tramo de retraso.
+ *
+ * Se alimenta con los requests que registra RequestLoggingInterceptor, a
+ * través de {@link RequestLogListener} en el hilo consumidor del ring
+ * buffer, así que el hilo del request no paga nada.
+ */
+@Service
+public class HeavyHitterTracker implements RequestLogListener {
+
+    private static final int MINUTES_PER_HOUR = 60;
+
+    /**
+     * Dimensiones seguidas; label es la clave de la respuesta.
+     */
+    public enum Dimension {
+        ENDPOINT("endpoints"),
+        CLIENT_IP("clients");
+
+        private final String label;
+
+        Dimension(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    /**
+     * Clave frecuente de una ventana. count es la estimación del sketch (nunca
+     * menor que el valor real), guaranteedCount una cota inferior y share la
+     * fracción de requests de la ventana.
+     */
+    public record HeavyHitter(String key, long count, long guaranteedCount, double share) {
+    }
+
+    private final EnumMap<Dimension, DimensionWindows> dimensions = new EnumMap<>(Dimension.class);
+    private final Clock clock;
+    private final long sliceMillis;
+    private final int slicesPerMinute;
+    private final int width;
+    private final int depth;
+    private final int capacity;
+
+    private long lastSliceIndex;
+
+    @Autowired
+    public HeavyHitterTracker(@Value("${app.heavy-hitters.slice:PT10S}") Duration slice,
+                              @Value("${app.heavy-hitters.width:512}") int width,
+                              @Value("${app.heavy-hitters.depth:4}") int depth,
+                              @Value("${app.heavy-hitters.capacity:100}") int capacity) {
+        this(slice, width, depth, capacity, Clock.systemDefaultZone());
+    }
+
+    HeavyHitterTracker(Duration slice, int width, int depth, int capacity, Clock clock) {
+        long sliceMillis = slice.toMillis();
+        if (sliceMillis <= 0 || Duration.ofMinutes(1).toMillis() % sliceMillis != 0) {
+            throw new IllegalArgumentException("app.heavy-hitters.slice debe dividir un minuto: " + slice);
+        }
+        this.clock = clock;
+        this.sliceMillis = sliceMillis;
+        this.slicesPerMinute = (int) (Duration.ofMinutes(1).toMillis() / sliceMillis);
+        this.width = width;
+        this.depth = depth;
+        this.capacity = capacity;
+        this.lastSliceIndex = clock.millis() / sliceMillis;
+        for (Dimension dimension : Dimension.values()) {
+            dimensions.put(dimension, new DimensionWindows());
+        }
+    }
+
+    @Override
+    public synchronized void onRequestLogged(RequestHistory request) {
+        if (request.getEndpoint() != null) {
+            dimensions.get(Dimension.ENDPOINT).add(request.getEndpoint());
+        }
+        if (request.getClientIp() != null) {
+            dimensions.get(Dimension.CLIENT_IP).add(request.getClientIp());
+        }
+    }
+
+    /**
+     * Rota cuando el reloj cruza el final de un tramo, alineado con el reloj.
+     * Si el hilo se retrasa se rota una vez por cada tramo transcurrido, con
+     * tramos vacíos para los que no tuvieron requests, como en
+     * {@link EndpointLatencyHistograms#tick()}. Pasada una hora de tramos
+     * todas las ventanas están vacías y el resto del retraso se salta.
+     */
+    @Scheduled(fixedRate = 1000)
+    public synchronized void tick() {
+        long sliceIndex = clock.millis() / sliceMillis;
+        long maxRotations = (long) slicesPerMinute * MINUTES_PER_HOUR;
+        for (long rotations = 0; lastSliceIndex < sliceIndex; rotations++) {
+            if (rotations == maxRotations) {
+                lastSliceIndex = sliceIndex;
+                break;
+            }
+            rotate(lastSliceIndex++);
+        }
+    }
+
+    /**
+     * Cierra el tramo sliceIndex y, si es el último de su minuto, el minuto.
+     */
+    private void rotate(long sliceIndex) {
+        boolean minuteEnded = (sliceIndex + 1) % slicesPerMinute == 0;
+        dimensions.values().forEach(windows -> windows.rotate(minuteEnded));
+    }
+
+    /**
+     * Las limit claves más frecuentes de una dimensión por ventana.
+     */
+    public synchronized Map<String, List<HeavyHitter>> top(Dimension dimension, int limit) {
+        return dimensions.get(dimension).top(Math.min(limit, capacity));
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Sketch y candidatos de un tramo o de un minuto.
+     */
+    private final class Summary {
+        final CountMinSketch sketch = new CountMinSketch(width, depth);
+        SpaceSaving candidates = new SpaceSaving(capacity);
+
+        void add(String key) {
+            sketch.add(key, 1);
+            candidates.add(key, 1);
+        }
+
+        void merge(Summary other) {
+            sketch.merge(other.sketch);
+            candidates = SpaceSaving.merge(capacity, List.of(candidates, other.candidates));
+        }
+
+        boolean isEmpty() {
+            return sketch.getTotal() == 0;
+        }
+    }
+
+    /**
+     * Tramos, minutos y ventanas de una dimensión. Las ventanas de 1 y 5
+     * minutos y la de los minutos completos son sketches con la suma de sus
+     * miembros; los candidatos se unen al consultar.
+     */
+    private final class DimensionWindows {
+        private final Summary[] slices = new Summary[5 * slicesPerMinute];
+        private final Summary[] minutes = new Summary[MINUTES_PER_HOUR - 1];
+        private final CountMinSketch oneMinute = new CountMinSketch(width, depth);
+        private final CountMinSketch fiveMinutes = new CountMinSketch(width, depth);
+        private final CountMinSketch completedMinutes = new CountMinSketch(width, depth);
+        private Summary current = new Summary();
+        private Summary currentMinute = new Summary();
+        private int slicePosition;
+        private int minutePosition;
+
+        void add(String key) {
+            current.add(key);
+        }
+
+        void rotate(boolean minuteEnded) {
+            Summary slice = null;
+            if (!current.isEmpty()) {
+                slice = current;
+                current = new Summary();
+            }
+
+            subtract(oneMinute, slices[(slicePosition + slices.length - slicesPerMinute) % slices.length]);
+            subtract(fiveMinutes, slices[slicePosition]);
+            slices[slicePosition] = slice;
+            slicePosition = (slicePosition + 1) % slices.length;
+            if (slice != null) {
+                oneMinute.merge(slice.sketch);
+                fiveMinutes.merge(slice.sketch);
+                currentMinute.merge(slice);
+            }
+
+            if (!minuteEnded) {
+                return;
+            }
+            subtract(completedMinutes, minutes[minutePosition]);
+            Summary minute = null;
+            if (!currentMinute.isEmpty()) {
+                minute = currentMinute;
+                currentMinute = new Summary();
+            }
+            minutes[minutePosition] = minute;
+            minutePosition = (minutePosition + 1) % minutes.length;
+            if (minute != null) {
+                completedMinutes.merge(minute.sketch);
+            }
+        }
+
+        Map<String, List<HeavyHitter>> top(int limit) {
+            List<Summary> lastMinute = new ArrayList<>();
+            for (int i = 1; i <= slicesPerMinute; i++) {
+                lastMinute.add(slices[(slicePosition + slices.length - i) % slices.length]);
+            }
+            List<Summary> hour = new ArrayList<>(Arrays.asList(minutes));
+            hour.add(currentMinute);
+
+            Map<String, List<HeavyHitter>> windows = new LinkedHashMap<>();
+            windows.put(EndpointLatencyHistograms.Window.ONE_MINUTE.label(),
+                    top(lastMinute, List.of(oneMinute), limit));
+            windows.put(EndpointLatencyHistograms.Window.FIVE_MINUTES.label(),
+                    top(Arrays.asList(slices), List.of(fiveMinutes), limit));
+            windows.put(EndpointLatencyHistograms.Window.ONE_HOUR.label(),
+                    top(hour, List.of(completedMinutes, currentMinute.sketch), limit));
+            return windows;
+        }
+
+        /**
+         * Ordena los candidatos de los miembros de la ventana por la
+         * estimación de los sketches de la ventana.
+         */
+        private List<HeavyHitter> top(List<Summary> members, List<CountMinSketch> sketches, int limit) {
+            long total = sketches.stream().mapToLong(CountMinSketch::getTotal).sum();
+            if (total == 0) {
+                return List.of();
+            }
+            Map<String, Long> guaranteed = new HashMap<>();
+            for (Summary member : members) {
+                if (member != null) {
+                    for (SpaceSaving.Entry entry : member.candidates.entries()) {
+                        guaranteed.merge(entry.key(), entry.count() - entry.error(), Long::sum);
+                    }
+                }
+            }
+            List<HeavyHitter> hitters = new ArrayList<>(guaranteed.size());
+            guaranteed.forEach((key, lowerBound) -> {
+                long count = sketches.stream().mapToLong(sketch -> sketch.estimate(key)).sum();
+                hitters.add(new HeavyHitter(key, count, lowerBound, (double) count / total));
+            });
+            hitters.sort(Comparator.comparingLong(HeavyHitter::count).reversed()
+                    .thenComparing(HeavyHitter::key));
+            return hitters.size() > limit ? List.copyOf(hitters.subList(0, limit)) : hitters;
+        }
+
+        private static void subtract(CountMinSketch window, Summary leaving) {
+            if (leaving != null) {
+                window.subtract(leaving.sketch);
+            }
+        }
+    }
+}
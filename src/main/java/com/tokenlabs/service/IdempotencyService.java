@@ -0,0 +1,316 @@
+package com.tokenlabs.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tokenlabs.dto.CalculationRequest;
+import com.tokenlabs.dto.CalculationResponse;
+import com.tokenlabs.exception.IdempotencyException;
+import com.tokenlabs.util.BloomFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+@Service
+public class IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final long REDIS_RETRY_BACKOFF_MS = 30_000;
+    private static final long REMOTE_POLL_INTERVAL_MS = 50;
+
+    private final ObjectMapper objectMapper;
+    private final IdempotencyStore redisStore;
+    private final LocalIdempotencyStore localStore;
+    private final Duration ttl;
+    private final Duration waitTimeout;
+    private final long bloomExpectedInsertions;
+    private final double bloomFalsePositiveRate;
+
+    // Ejecuciones en curso en este nodo: los duplicados concurrentes esperan este resultado
+    private final ConcurrentHashMap<String, CompletableFuture<IdempotencyStore.IdempotencyRecord>> inFlight = new ConcurrentHashMap<>();
+
+    // Dos generaciones de filtro de Bloom: se rotan cada ventana de retención
+    private volatile BloomFilter currentKeys;
+    private volatile BloomFilter previousKeys;
+    private volatile long currentKeysCreatedAt;
+
+    private volatile long redisUnavailableUntil = 0;
+
+    @Autowired
+    public IdempotencyService(ObjectMapper objectMapper,
+                              @Autowired(required = false) StringRedisTemplate redisTemplate,
+                              @Value("${app.idempotency.store:auto}") String storeMode,
+                              @Value("${app.idempotency.ttl:PT24H}") Duration ttl,
+                              @Value("${app.idempotency.wait-timeout:PT10S}") Duration waitTimeout,
+                              @Value("${app.idempotency.local-max-entries:10000}") int localMaxEntries,
+                              @Value("${app.idempotency.bloom.expected-insertions:1000000}") long bloomExpectedInsertions,
+                              @Value("${app.idempotency.bloom.false-positive-rate:0.01}") double bloomFalsePositiveRate) {
+        this.objectMapper = objectMapper;
+        this.redisStore = redisTemplate != null && !"local".equalsIgnoreCase(storeMode)
+                ? new RedisIdempotencyStore(redisTemplate) : null;
+        this.localStore = new LocalIdempotencyStore(localMaxEntries);
+        this.ttl = ttl;
+        this.waitTimeout = waitTimeout;
+        this.bloomExpectedInsertions = bloomExpectedInsertions;
+        this.bloomFalsePositiveRate = bloomFalsePositiveRate;
+        this.currentKeys = new BloomFilter(bloomExpectedInsertions, bloomFalsePositiveRate);
+        this.previousKeys = new BloomFilter(bloomExpectedInsertions, bloomFalsePositiveRate);
+        this.currentKeysCreatedAt = System.currentTimeMillis();
+        logger.info("Idempotencia configurada con almacenamiento {} y ventana {}",
+                redisStore != null ? "Redis (fallback local)" : "local", ttl);
+    }
+
+    /**
+     * Ejecuta el cálculo una sola vez por Idempotency-Key.
+     *
+     * La primera ejecución almacena la respuesta; los reintentos con la misma
+     * clave la reciben sin recalcular ni insertar historial. Los duplicados
+     * concurrentes esperan el resultado en curso en lugar de competir.
+     *
+     * @param key Valor de la cabecera Idempotency-Key
+     * @param request Request del cálculo, usado para detectar reutilización de la clave
+     * @param action Cálculo a ejecutar si la clave no fue vista
+     * @return Resultado con la respuesta y si proviene de una ejecución anterior
+     * @throws IdempotencyException si la clave es inválida, se reutiliza con otro payload
+     *                              o la ejecución original no termina a tiempo
+     */
+    public IdempotentResult execute(String key, CalculationRequest request, Supplier<CalculationResponse> action) {
+        validateKey(key);
+        String fingerprint = fingerprint(request);
+
+        CompletableFuture<IdempotencyStore.IdempotencyRecord> ownFuture = new CompletableFuture<>();
+        CompletableFuture<IdempotencyStore.IdempotencyRecord> existing = inFlight.putIfAbsent(key, ownFuture);
+        if (existing != null) {
+            logger.debug("Idempotency-Key {} en curso en este nodo, esperando resultado", key);
+            return replay(awaitLocal(key, existing), fingerprint);
+        }
+
+        try {
+            // Solo consultar el almacenamiento si el filtro indica que la clave pudo verse antes
+            if (mightHaveSeen(key)) {
+                IdempotencyStore.IdempotencyRecord stored = storeGet(key);
+                if (stored != null && stored.isCompleted()) {
+                    ownFuture.complete(stored);
+                    return replay(stored, fingerprint);
+                }
+            }
+
+            if (!storeClaim(key, fingerprint)) {
+                // Otro nodo reclamó la clave: esperar su respuesta
+                IdempotencyStore.IdempotencyRecord remote = awaitRemote(key);
+                ownFuture.complete(remote);
+                return replay(remote, fingerprint);
+            }
+            rememberKey(key);
+
+            CalculationResponse response;
+            try {
+                response = action.get();
+            } catch (RuntimeException e) {
+                storeRelease(key);
+                throw e;
+            }
+
+            IdempotencyStore.IdempotencyRecord completed =
+                    new IdempotencyStore.IdempotencyRecord(fingerprint, toJson(response));
+            storeComplete(key, completed);
+            ownFuture.complete(completed);
+            return new IdempotentResult(response, false);
+
+        } catch (RuntimeException e) {
+            ownFuture.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, ownFuture);
+        }
+    }
+
+    private IdempotentResult replay(IdempotencyStore.IdempotencyRecord record, String fingerprint) {
+        if (!record.fingerprint().equals(fingerprint)) {
+            throw new IdempotencyException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    "El Idempotency-Key ya fue utilizado con un payload distinto");
+        }
+        logger.info("Reutilizando respuesta almacenada para Idempotency-Key");
+        return new IdempotentResult(fromJson(record.responseJson()), true);
+    }
+
+    private IdempotencyStore.IdempotencyRecord awaitLocal(String key,
+                                                          CompletableFuture<IdempotencyStore.IdempotencyRecord> future) {
+        try {
+            return future.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw inProgress(key);
+        } catch (ExecutionException e) {
+            // La ejecución original falló: el cliente puede reintentar con la misma clave
+            throw new IdempotencyException(HttpStatus.CONFLICT,
+                    "La ejecución original para este Idempotency-Key falló, reintente la operación");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw inProgress(key);
+        }
+    }
+
+    private IdempotencyStore.IdempotencyRecord awaitRemote(String key) {
+        long deadline = System.currentTimeMillis() + waitTimeout.toMillis();
+        while (System.currentTimeMillis() < deadline) {
+            IdempotencyStore.IdempotencyRecord record = storeGet(key);
+            if (record == null) {
+                throw new IdempotencyException(HttpStatus.CONFLICT,
+                        "La ejecución original para este Idempotency-Key falló, reintente la operación");
+            }
+            if (record.isCompleted()) {
+                return record;
+            }
+            try {
+                Thread.sleep(REMOTE_POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        throw inProgress(key);
+    }
+
+    private IdempotencyException inProgress(String key) {
+        logger.warn("Idempotency-Key {} sigue en curso tras {}", key, waitTimeout);
+        return new IdempotencyException(HttpStatus.CONFLICT,
+                "Existe una ejecución en curso para este Idempotency-Key");
+    }
+
+    private boolean mightHaveSeen(String key) {
+        // Un negativo evita la lectura; la reclamación atómica posterior sigue detectando
+        // claves vistas por otros nodos (el filtro es local a este nodo)
+        rotateBloomFiltersIfNeeded();
+        return currentKeys.mightContain(key) || previousKeys.mightContain(key);
+    }
+
+    private void rememberKey(String key) {
+        rotateBloomFiltersIfNeeded();
+        currentKeys.put(key);
+    }
+
+    private void rotateBloomFiltersIfNeeded() {
+        long now = System.currentTimeMillis();
+        if (now - currentKeysCreatedAt < ttl.toMillis()) {
+            return;
+        }
+        synchronized (this) {
+            if (now - currentKeysCreatedAt >= ttl.toMillis()) {
+                previousKeys = currentKeys;
+                currentKeys = new BloomFilter(bloomExpectedInsertions, bloomFalsePositiveRate);
+                currentKeysCreatedAt = now;
+            }
+        }
+    }
+
+    // Operaciones sobre el almacenamiento con fallback local si Redis falla
+
+    private boolean isRedisActive() {
+        return redisStore != null && System.currentTimeMillis() >= redisUnavailableUntil;
+    }
+
+    private IdempotencyStore.IdempotencyRecord storeGet(String key) {
+        if (isRedisActive()) {
+            try {
+                return redisStore.get(key);
+            } catch (Exception e) {
+                markRedisUnavailable(e);
+            }
+        }
+        return localStore.get(key);
+    }
+
+    private boolean storeClaim(String key, String fingerprint) {
+        // La reclamación expira tras el tiempo de espera para no bloquear la clave si el nodo cae
+        Duration claimTtl = waitTimeout.multipliedBy(2);
+        if (isRedisActive()) {
+            try {
+                return redisStore.claim(key, fingerprint, claimTtl);
+            } catch (Exception e) {
+                markRedisUnavailable(e);
+            }
+        }
+        return localStore.claim(key, fingerprint, claimTtl);
+    }
+
+    private void storeComplete(String key, IdempotencyStore.IdempotencyRecord record) {
+        if (isRedisActive()) {
+            try {
+                redisStore.complete(key, record.fingerprint(), record.responseJson(), ttl);
+                return;
+            } catch (Exception e) {
+                markRedisUnavailable(e);
+            }
+        }
+        localStore.complete(key, record.fingerprint(), record.responseJson(), ttl);
+    }
+
+    private void storeRelease(String key) {
+        if (isRedisActive()) {
+            try {
+                redisStore.release(key);
+            } catch (Exception e) {
+                markRedisUnavailable(e);
+            }
+        }
+        localStore.release(key);
+    }
+
+    private void markRedisUnavailable(Exception e) {
+        logger.warn("Redis no disponible para idempotencia, usando almacenamiento local: {}", e.getMessage());
+        redisUnavailableUntil = System.currentTimeMillis() + REDIS_RETRY_BACKOFF_MS;
+    }
+
+    private void validateKey(String key) {
+        if (key == null || key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IdempotencyException(HttpStatus.BAD_REQUEST,
+                    "El Idempotency-Key debe tener entre 1 y " + MAX_KEY_LENGTH + " caracteres");
+        }
+    }
+
+    static String fingerprint(CalculationRequest request) {
+        return normalize(request.getFirstNumber()) + ":" + normalize(request.getSecondNumber());
+    }
+
+    private static String normalize(java.math.BigDecimal value) {
+        return value == null ? "null" : value.stripTrailingZeros().toPlainString();
+    }
+
+    private String toJson(CalculationResponse response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar la respuesta idempotente", e);
+        }
+    }
+
+    private CalculationResponse fromJson(String json) {
+        try {
+            return objectMapper.readValue(json, CalculationResponse.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo leer la respuesta idempotente almacenada", e);
+        }
+    }
+
+    /**
+     * Respuesta de un cálculo idempotente.
+     *
+     * @param response Respuesta del cálculo
+     * @param replayed true si la respuesta proviene de una ejecución anterior
+     */
+    public record IdempotentResult(CalculationResponse response, boolean replayed) {
+    }
+}
@@ -0,0 +1,41 @@
+package com.tokenlabs.service;
+
+import java.time.Duration;
+
+/**
+ * Almacenamiento de respuestas asociadas a un Idempotency-Key.
+ *
+ * Un registro sin respuesta representa una ejecución en curso (reclamada
+ * por algún nodo); un registro con respuesta es el resultado definitivo.
+ */
+interface IdempotencyStore {
+
+    /**
+     * Obtiene el registro asociado a la clave, o null si no existe o expiró.
+     */
+    IdempotencyRecord get(String key);
+
+    /**
+     * Reclama la clave de forma atómica para ejecutar la operación.
+     *
+     * @return true si la clave no existía y quedó reclamada por este llamador
+     */
+    boolean claim(String key, String fingerprint, Duration ttl);
+
+    /**
+     * Almacena la respuesta definitiva durante la ventana configurada.
+     */
+    void complete(String key, String fingerprint, String responseJson, Duration ttl);
+
+    /**
+     * Libera una clave reclamada cuya ejecución falló, para permitir reintentos.
+     */
+    void release(String key);
+
+    record IdempotencyRecord(String fingerprint, String responseJson) {
+
+        boolean isCompleted() {
+            return responseJson != null;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.tokenlabs.service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Almacenamiento local acotado (LRU) usado cuando Redis no está disponible.
+ */
+class LocalIdempotencyStore implements IdempotencyStore {
+
+    private final Map<String, Entry> entries;
+
+    LocalIdempotencyStore(int maxEntries) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public synchronized IdempotencyRecord get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtMillis < System.currentTimeMillis()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.record;
+    }
+
+    @Override
+    public synchronized boolean claim(String key, String fingerprint, Duration ttl) {
+        if (get(key) != null) {
+            return false;
+        }
+        entries.put(key, new Entry(new IdempotencyRecord(fingerprint, null), expiresAt(ttl)));
+        return true;
+    }
+
+    @Override
+    public synchronized void complete(String key, String fingerprint, String responseJson, Duration ttl) {
+        entries.put(key, new Entry(new IdempotencyRecord(fingerprint, responseJson), expiresAt(ttl)));
+    }
+
+    @Override
+    public synchronized void release(String key) {
+        entries.remove(key);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private static long expiresAt(Duration ttl) {
+        return System.currentTimeMillis() + ttl.toMillis();
+    }
+
+    private record Entry(IdempotencyRecord record, long expiresAtMillis) {
+    }
+}
@@ -0,0 +1,57 @@
+package com.tokenlabs.service;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+
+/**
+ * Almacenamiento compartido en Redis: permite que un reintento llegue a
+ * cualquier nodo y encuentre la respuesta original.
+ *
+ * Formato del valor: "P|fingerprint" (en curso) o "C|fingerprint|json" (completado).
+ */
+class RedisIdempotencyStore implements IdempotencyStore {
+
+    private static final String KEY_PREFIX = "idempotency:calculate:";
+
+    private final StringRedisTemplate redisTemplate;
+
+    RedisIdempotencyStore(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public IdempotencyRecord get(String key) {
+        return decode(redisTemplate.opsForValue().get(KEY_PREFIX + key));
+    }
+
+    @Override
+    public boolean claim(String key, String fingerprint, Duration ttl) {
+        Boolean claimed = redisTemplate.opsForValue().setIfAbsent(KEY_PREFIX + key, "P|" + fingerprint, ttl);
+        return Boolean.TRUE.equals(claimed);
+    }
+
+    @Override
+    public void complete(String key, String fingerprint, String responseJson, Duration ttl) {
+        redisTemplate.opsForValue().set(KEY_PREFIX + key, "C|" + fingerprint + "|" + responseJson, ttl);
+    }
+
+    @Override
+    public void release(String key) {
+        redisTemplate.delete(KEY_PREFIX + key);
+    }
+
+    static IdempotencyRecord decode(String value) {
+        if (value == null || value.length() < 2) {
+            return null;
+        }
+        if (value.startsWith("P|")) {
+            return new IdempotencyRecord(value.substring(2), null);
+        }
+        int separator = value.indexOf('|', 2);
+        if (!value.startsWith("C|") || separator < 0) {
+            return null;
+        }
+        return new IdempotencyRecord(value.substring(2, separator), value.substring(separator + 1));
+    }
+}
@@ -0,0 +1,207 @@
+package com.tokenlabs.service;
+
+import com.tokenlabs.repository.RequestHistoryRollupRepository.Dimension;
+import com.tokenlabs.repository.RequestStatisticsSummaryRepository.SummaryRow;
+import com.tokenlabs.util.RequestTimings;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Contadores de estadísticas de todas las instancias en Redis, como
+ * G-counters: cada instancia escribe solo en su hash y la fusión conserva el
+ * mayor valor de cada campo (el menor para el mínimo de tiempo), así que
+ * reenviar un estado antiguo o repetido no resta nada. El total del clúster
+ * es la suma de los hashes.
+ *
+ * Los clientes distintos se cuentan con un HyperLogLog compartido.
+ *
+ * Formato de los campos: "contador|DIMENSIÓN|valor".
+ */
+class RedisRequestStatisticsStore {
+
+    static final String NODES_KEY = "request-stats:nodes";
+    static final String NODE_KEY_PREFIX = "request-stats:node:";
+    static final String CLIENTS_KEY = "request-stats:clients";
+
+    private static final String MIN_COUNTER = "min";
+    private static final String MAX_COUNTER = "max";
+    private static final RequestTimings.Phase[] PHASES = RequestTimings.Phase.values();
+
+    // Fusión campo a campo en una sola llamada: máximo, o mínimo para los campos min|
+    private static final RedisScript<Long> MERGE_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, #ARGV, 2 do "
+            + "local current = tonumber(redis.call('HGET', KEYS[1], ARGV[i])) "
+            + "local value = tonumber(ARGV[i + 1]) "
+            + "local isMin = string.sub(ARGV[i], 1, 4) == 'min|' "
+            + "if current == nil or (isMin and value < current) or (not isMin and value > current) then "
+            + "redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end "
+            + "end "
+            + "return #ARGV / 2", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    RedisRequestStatisticsStore(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * Fusiona los contadores de una instancia con los guardados.
+     */
+    void merge(String nodeId, List<SummaryRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        redisTemplate.opsForSet().add(NODES_KEY, nodeId);
+        redisTemplate.execute(MERGE_SCRIPT, List.of(NODE_KEY_PREFIX + nodeId), encode(rows).toArray());
+    }
+
+    /**
+     * Contadores de todas las instancias que han escrito alguna vez.
+     */
+    List<SummaryRow> findAll() {
+        Set<String> nodes = redisTemplate.opsForSet().members(NODES_KEY);
+        List<SummaryRow> rows = new ArrayList<>();
+        if (nodes != null) {
+            for (String nodeId : nodes) {
+                rows.addAll(findNode(nodeId));
+            }
+        }
+        return rows;
+    }
+
+    List<SummaryRow> findNode(String nodeId) {
+        return decode(nodeId, redisTemplate.opsForHash().entries(NODE_KEY_PREFIX + nodeId));
+    }
+
+    void addClients(Collection<String> clientIps) {
+        if (!clientIps.isEmpty()) {
+            redisTemplate.opsForHyperLogLog().add(CLIENTS_KEY, clientIps.toArray(String[]::new));
+        }
+    }
+
+    long countClients() {
+        Long count = redisTemplate.opsForHyperLogLog().size(CLIENTS_KEY);
+        return count != null ? count : 0L;
+    }
+
+    /**
+     * Argumentos del script: pares campo, valor. Los extremos sin tiempos se omiten.
+     */
+    static List<String> encode(List<SummaryRow> rows) {
+        List<String> arguments = new ArrayList<>();
+        for (SummaryRow row : rows) {
+            String suffix = "|" + row.dimension().name() + "|" + row.value();
+            add(arguments, "requests" + suffix, row.requests());
+            add(arguments, "errors" + suffix, row.errors());
+            add(arguments, "stored" + suffix, row.stored());
+            add(arguments, "execSum" + suffix, row.executionTimeSum());
+            add(arguments, "execCount" + suffix, row.executionTimeCount());
+            if (row.minExecutionTimeMs() != null) {
+                add(arguments, MIN_COUNTER + suffix, row.minExecutionTimeMs());
+            }
+            if (row.maxExecutionTimeMs() != null) {
+                add(arguments, MAX_COUNTER + suffix, row.maxExecutionTimeMs());
+            }
+            for (int i = 0; i < PHASES.length; i++) {
+                add(arguments, PHASES[i].label() + suffix, row.phaseMicrosSums()[i]);
+            }
+            add(arguments, "phaseCount" + suffix, row.phaseTimingCount());
+        }
+        return arguments;
+    }
+
+    static List<SummaryRow> decode(String nodeId, Map<Object, Object> hash) {
+        Map<String, DecodedRow> rows = new LinkedHashMap<>();
+        for (Map.Entry<Object, Object> entry : hash.entrySet()) {
+            String[] parts = entry.getKey().toString().split("\\|", 3);
+            if (parts.length < 3) {
+                continue;
+            }
+            Dimension dimension;
+            try {
+                dimension = Dimension.valueOf(parts[1]);
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            DecodedRow row = rows.computeIfAbsent(parts[1] + "|" + parts[2],
+                    k -> new DecodedRow(dimension, parts[2]));
+            row.set(parts[0], Long.parseLong(entry.getValue().toString()));
+        }
+        return rows.values().stream().map(row -> row.toRow(nodeId)).toList();
+    }
+
+    /**
+     * Unión de dos estados de la misma instancia y valor: el mayor de cada
+     * contador y el menor mínimo.
+     */
+    static SummaryRow join(SummaryRow a, SummaryRow b) {
+        long[] phaseSums = new long[PHASES.length];
+        for (int i = 0; i < phaseSums.length; i++) {
+            phaseSums[i] = Math.max(a.phaseMicrosSums()[i], b.phaseMicrosSums()[i]);
+        }
+        return new SummaryRow(a.nodeId(), a.dimension(), a.value(),
+                Math.max(a.requests(), b.requests()), Math.max(a.errors(), b.errors()),
+                Math.max(a.stored(), b.stored()),
+                Math.max(a.executionTimeSum(), b.executionTimeSum()),
+                Math.max(a.executionTimeCount(), b.executionTimeCount()),
+                a.minExecutionTimeMs() == null ? b.minExecutionTimeMs()
+                        : b.minExecutionTimeMs() == null ? a.minExecutionTimeMs()
+                        : Long.valueOf(Math.min(a.minExecutionTimeMs(), b.minExecutionTimeMs())),
+                a.maxExecutionTimeMs() == null ? b.maxExecutionTimeMs()
+                        : b.maxExecutionTimeMs() == null ? a.maxExecutionTimeMs()
+                        : Long.valueOf(Math.max(a.maxExecutionTimeMs(), b.maxExecutionTimeMs())),
+                phaseSums, Math.max(a.phaseTimingCount(), b.phaseTimingCount()));
+    }
+
+    private static void add(List<String> arguments, String field, long value) {
+        arguments.add(field);
+        arguments.add(Long.toString(value));
+    }
+
+    private static final class DecodedRow {
+        final Dimension dimension;
+        final String value;
+        long requests, errors, stored, executionTimeSum, executionTimeCount, phaseTimingCount;
+        Long minExecutionTimeMs, maxExecutionTimeMs;
+        final long[] phaseMicrosSums = new long[PHASES.length];
+
+        DecodedRow(Dimension dimension, String value) {
+            this.dimension = dimension;
+            this.value = value;
+        }
+
+        void set(String counter, long count) {
+            switch (counter) {
+                case "requests" -> requests = count;
+                case "errors" -> errors = count;
+                case "stored" -> stored = count;
+                case "execSum" -> executionTimeSum = count;
+                case "execCount" -> executionTimeCount = count;
+                case MIN_COUNTER -> minExecutionTimeMs = count;
+                case MAX_COUNTER -> maxExecutionTimeMs = count;
+                case "phaseCount" -> phaseTimingCount = count;
+                default -> {
+                    for (int i = 0; i < PHASES.length; i++) {
+                        if (PHASES[i].label().equals(counter)) {
+                            phaseMicrosSums[i] = count;
+                        }
+                    }
+                }
+            }
+        }
+
+        SummaryRow toRow(String nodeId) {
+            return new SummaryRow(nodeId, dimension, value, requests, errors, stored,
+                    executionTimeSum, executionTimeCount, minExecutionTimeMs, maxExecutionTimeMs,
+                    phaseMicrosSums, phaseTimingCount);
+        }
+    }
+}
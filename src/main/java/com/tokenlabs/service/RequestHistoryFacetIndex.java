@@ -0,0 +1,423 @@
+package com.tokenlabs.service;
+
+import com.tokenlabs.model.RequestHistory;
+import com.tokenlabs.repository.RequestHistoryDictionary;
+import com.tokenlabs.util.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice en memoria de las filas recientes de request_history para contar
+ * requests por endpoint, método, código de respuesta y error con cualquier
+ * combinación de filtros sin consultar la base de datos.
+ *
+ * Cada valor de cada faceta tiene un {@link RoaringBitmap} con los ids de
+ * sus filas; un filtro es la intersección de los bitmaps de los valores
+ * pedidos y el recuento de una faceta, la cardinalidad de su intersección
+ * con el filtro. Cada fila pesa su sample_weight (1 / tasa de muestreo): un
+ * bitmap por peso distinto, que son pocos, da el recuento ponderado como la
+ * suma de peso por cardinalidad, así que los recuentos estiman los requests
+ * atendidos y no solo las filas guardadas. Como en una búsqueda facetada, la distribución de cada
+ * faceta se calcula con los demás filtros pero no con el suyo, para que el
+ * cliente pueda mostrar las alternativas al valor elegido. Las fechas se
+ * resuelven con bitmaps por segundo y por minuto, así que los filtros de
+ * fecha tienen resolución de segundos.
+ *
+ * Cubre la ventana app.request-history.facets.window: se alimenta de los
+ * lotes que inserta {@link RequestHistoryWriter}, a través de
+ * {@link RequestHistoryInsertListener}, y al arrancar carga de la base de
+ * datos las filas de la ventana. Cada minuto se descartan los minutos que
+ * salen de ella. Las filas que insertan otras instancias solo se ven tras un
+ * reinicio; los recuentos exactos de todo el historial siguen en
+ * {@link RequestHistoryService#searchRequests}.
+ */
+@Service
+public class RequestHistoryFacetIndex implements RequestHistoryInsertListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestHistoryFacetIndex.class);
+
+    private static final String WARM_UP_SQL = "SELECT id, request_date, endpoint_id, http_method_id, "
+            + "response_status_id, CASE WHEN error_message IS NULL THEN 0 ELSE 1 END AS has_error, "
+            + "COALESCE(sample_weight, 1.0) AS sample_weight "
+            + "FROM request_history WHERE request_date >= ?";
+    private static final int WARM_UP_CHUNK = 1000;
+    private static final long SECONDS_PER_MINUTE = 60;
+
+    /**
+     * Facetas indexadas; label es la clave de la respuesta y del filtro.
+     */
+    public enum Facet {
+        ENDPOINT("endpoint"),
+        HTTP_METHOD("httpMethod"),
+        RESPONSE_STATUS("responseStatus"),
+        HAS_ERROR("hasError");
+
+        private final String label;
+
+        Facet(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    /**
+     * Filtro de la consulta; un campo null no filtra.
+     *
+     * @param endpoints endpoints aceptados, o null para cualquiera
+     */
+    public record Query(Collection<String> endpoints, String httpMethod, String responseStatus,
+                        Boolean hasError, LocalDateTime startDate, LocalDateTime endDate) {
+    }
+
+    /**
+     * Resultado de {@link #count}: requests estimados que cumplen el filtro
+     * (suma de sample_weight, redondeada) y, por faceta, estimación por valor
+     * de mayor a menor. storedRows son las filas guardadas que cumplen el
+     * filtro. coveredSince es el inicio de los datos del índice: las filas
+     * anteriores, y las que insertaron otras instancias desde el arranque,
+     * no se cuentan.
+     */
+    public record FacetCounts(long total, long storedRows, Map<String, Map<String, Long>> facets,
+                              LocalDateTime coveredSince, long indexedRows) {
+    }
+
+    private record Row(long id, LocalDateTime date, String endpoint, String httpMethod,
+                       String responseStatus, boolean hasError, double sampleWeight) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RequestHistoryDictionary dictionary;
+    private final Duration window;
+    private final boolean warmUp;
+    private final Clock clock;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final EnumMap<Facet, Map<String, RoaringBitmap>> values = new EnumMap<>(Facet.class);
+    private final TreeMap<Long, RoaringBitmap> seconds = new TreeMap<>();
+    private final TreeMap<Long, RoaringBitmap> minutes = new TreeMap<>();
+    private final Map<Double, RoaringBitmap> weights = new HashMap<>();
+    private RoaringBitmap all = new RoaringBitmap();
+    private LocalDateTime coveredSince;
+
+    @Autowired
+    public RequestHistoryFacetIndex(JdbcTemplate jdbcTemplate, RequestHistoryDictionary dictionary,
+                                    @Value("${app.request-history.facets.window:PT1H}") Duration window,
+                                    @Value("${app.request-history.facets.warm-up:true}") boolean warmUp) {
+        this(jdbcTemplate, dictionary, window, warmUp, Clock.systemDefaultZone());
+    }
+
+    RequestHistoryFacetIndex(JdbcTemplate jdbcTemplate, RequestHistoryDictionary dictionary,
+                             Duration window, boolean warmUp, Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dictionary = dictionary;
+        this.window = window;
+        this.warmUp = warmUp;
+        this.clock = clock;
+        this.coveredSince = LocalDateTime.now(clock);
+        for (Facet facet : Facet.values()) {
+            values.put(facet, new HashMap<>());
+        }
+    }
+
+    @Override
+    public void onInserted(List<RequestHistory> batch) {
+        List<Row> rows = new ArrayList<>(batch.size());
+        for (RequestHistory history : batch) {
+            if (history.getId() != null && history.getRequestDate() != null) {
+                rows.add(new Row(history.getId(), history.getRequestDate(), history.getEndpoint(),
+                        history.getHttpMethod(), history.getResponseStatus(), history.getErrorMessage() != null,
+                        history.getSampleWeight() != null ? history.getSampleWeight() : 1.0));
+            }
+        }
+        index(rows);
+    }
+
+    /**
+     * Carga las filas de la ventana guardadas antes del arranque. Un id ya
+     * indexado por el escritor se añade de nuevo sin efecto.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!warmUp) {
+            return;
+        }
+        LocalDateTime since = LocalDateTime.now(clock).minus(window);
+        List<Row> chunk = new ArrayList<>(WARM_UP_CHUNK);
+        long[] loaded = {0};
+        try {
+            jdbcTemplate.query(WARM_UP_SQL, rs -> {
+                chunk.add(new Row(rs.getLong(1), rs.getTimestamp(2).toLocalDateTime(),
+                        dictionary.valueOf(nullableInt(rs.getObject(3))),
+                        dictionary.valueOf(nullableInt(rs.getObject(4))),
+                        dictionary.valueOf(nullableInt(rs.getObject(5))),
+                        rs.getInt(6) == 1,
+                        rs.getDouble(7)));
+                if (chunk.size() == WARM_UP_CHUNK) {
+                    index(chunk);
+                    loaded[0] += chunk.size();
+                    chunk.clear();
+                }
+            }, Timestamp.valueOf(since));
+        } catch (DataAccessException e) {
+            logger.warn("No se pudo cargar request_history en el índice de facetas: {}", e.getMessage());
+            return;
+        }
+        index(chunk);
+        loaded[0] += chunk.size();
+        lock.writeLock().lock();
+        try {
+            coveredSince = since;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Índice de facetas cargado con {} filas de request_history desde {}", loaded[0], since);
+    }
+
+    /**
+     * Descarta los minutos completos anteriores a la ventana.
+     */
+    @Scheduled(fixedRate = 60000)
+    public void evict() {
+        long cutoffMinute = Math.floorDiv(epochSecond(LocalDateTime.now(clock).minus(window)), SECONDS_PER_MINUTE);
+        lock.writeLock().lock();
+        try {
+            Map<Long, RoaringBitmap> expiredMinutes = minutes.headMap(cutoffMinute);
+            if (expiredMinutes.isEmpty()) {
+                return;
+            }
+            RoaringBitmap expired = union(new RoaringBitmap(), expiredMinutes.values());
+            expiredMinutes.clear();
+            seconds.headMap(cutoffMinute * SECONDS_PER_MINUTE).clear();
+            all = all.andNot(expired);
+            for (Map<String, RoaringBitmap> facetValues : values.values()) {
+                facetValues.replaceAll((value, ids) -> ids.andNot(expired));
+                facetValues.values().removeIf(RoaringBitmap::isEmpty);
+            }
+            weights.replaceAll((weight, ids) -> ids.andNot(expired));
+            weights.values().removeIf(RoaringBitmap::isEmpty);
+            LocalDateTime cutoff = LocalDateTime.ofEpochSecond(cutoffMinute * SECONDS_PER_MINUTE, 0, ZoneOffset.UTC);
+            if (cutoff.isAfter(coveredSince)) {
+                coveredSince = cutoff;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Requests estimados que cumplen el filtro y distribución de cada faceta.
+     */
+    public FacetCounts count(Query query) {
+        lock.readLock().lock();
+        try {
+            EnumMap<Facet, RoaringBitmap> filters = filters(query);
+            RoaringBitmap dates = dateRange(query.startDate(), query.endDate());
+            Map<String, Map<String, Long>> facets = new LinkedHashMap<>();
+            for (Facet facet : Facet.values()) {
+                Map<Double, RoaringBitmap> others = byWeight(intersect(filters, dates, facet));
+                List<Map.Entry<String, Long>> counts = new ArrayList<>();
+                for (Map.Entry<String, RoaringBitmap> entry : values.get(facet).entrySet()) {
+                    long count = weightedCardinality(others, entry.getValue());
+                    if (count > 0) {
+                        counts.add(Map.entry(entry.getKey(), count));
+                    }
+                }
+                counts.sort(Map.Entry.<String, Long>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()));
+                Map<String, Long> sorted = new LinkedHashMap<>();
+                counts.forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+                facets.put(facet.label(), sorted);
+            }
+            RoaringBitmap matching = intersect(filters, dates, null);
+            long total = weightedCardinality(byWeight(matching), all);
+            return new FacetCounts(total, matching.cardinality(), facets, coveredSince, all.cardinality());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids de las filas que cumplen el filtro, de mayor a menor, para cargar
+     * una página con findAllById.
+     *
+     * @param beforeId solo ids menores que este; Long.MAX_VALUE para empezar
+     */
+    public long[] matchingIds(Query query, long beforeId, int limit) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap matching = intersect(filters(query), dateRange(query.startDate(), query.endDate()), null);
+            return matching.descending(beforeId, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public LocalDateTime getCoveredSince() {
+        lock.readLock().lock();
+        try {
+            return coveredSince;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void index(List<Row> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (Row row : rows) {
+                long id = row.id();
+                long second = epochSecond(row.date());
+                all.add(id);
+                seconds.computeIfAbsent(second, key -> new RoaringBitmap()).add(id);
+                minutes.computeIfAbsent(Math.floorDiv(second, SECONDS_PER_MINUTE), key -> new RoaringBitmap()).add(id);
+                add(Facet.ENDPOINT, row.endpoint(), id);
+                add(Facet.HTTP_METHOD, row.httpMethod(), id);
+                add(Facet.RESPONSE_STATUS, row.responseStatus(), id);
+                add(Facet.HAS_ERROR, String.valueOf(row.hasError()), id);
+                weights.computeIfAbsent(row.sampleWeight(), key -> new RoaringBitmap()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void add(Facet facet, String value, long id) {
+        if (value != null) {
+            values.get(facet).computeIfAbsent(value, key -> new RoaringBitmap()).add(id);
+        }
+    }
+
+    private EnumMap<Facet, RoaringBitmap> filters(Query query) {
+        EnumMap<Facet, RoaringBitmap> filters = new EnumMap<>(Facet.class);
+        if (query.endpoints() != null) {
+            RoaringBitmap endpoints = new RoaringBitmap();
+            for (String endpoint : query.endpoints()) {
+                RoaringBitmap ids = values.get(Facet.ENDPOINT).get(endpoint);
+                if (ids != null) {
+                    endpoints = RoaringBitmap.or(endpoints, ids);
+                }
+            }
+            filters.put(Facet.ENDPOINT, endpoints);
+        }
+        if (query.httpMethod() != null) {
+            filters.put(Facet.HTTP_METHOD, valueIds(Facet.HTTP_METHOD, query.httpMethod()));
+        }
+        if (query.responseStatus() != null) {
+            filters.put(Facet.RESPONSE_STATUS, valueIds(Facet.RESPONSE_STATUS, query.responseStatus()));
+        }
+        if (query.hasError() != null) {
+            filters.put(Facet.HAS_ERROR, valueIds(Facet.HAS_ERROR, query.hasError().toString()));
+        }
+        return filters;
+    }
+
+    /**
+     * Filas del bitmap separadas por sample_weight.
+     */
+    private Map<Double, RoaringBitmap> byWeight(RoaringBitmap ids) {
+        Map<Double, RoaringBitmap> split = new HashMap<>(weights.size() * 2);
+        for (Map.Entry<Double, RoaringBitmap> weight : weights.entrySet()) {
+            split.put(weight.getKey(), RoaringBitmap.and(ids, weight.getValue()));
+        }
+        return split;
+    }
+
+    /**
+     * Suma de sample_weight de las filas de ids que están en la intersección
+     * con byWeight, redondeada.
+     */
+    private static long weightedCardinality(Map<Double, RoaringBitmap> byWeight, RoaringBitmap ids) {
+        double sum = 0;
+        for (Map.Entry<Double, RoaringBitmap> weight : byWeight.entrySet()) {
+            sum += weight.getKey() * RoaringBitmap.andCardinality(weight.getValue(), ids);
+        }
+        return Math.round(sum);
+    }
+
+    private RoaringBitmap valueIds(Facet facet, String value) {
+        return values.get(facet).getOrDefault(value, new RoaringBitmap());
+    }
+
+    /**
+     * Intersección de los filtros salvo el de excluded; sin filtros, todas
+     * las filas. No modifica los bitmaps del índice.
+     */
+    private RoaringBitmap intersect(EnumMap<Facet, RoaringBitmap> filters, RoaringBitmap dates, Facet excluded) {
+        RoaringBitmap result = dates;
+        for (Map.Entry<Facet, RoaringBitmap> filter : filters.entrySet()) {
+            if (filter.getKey() != excluded) {
+                result = result == null ? filter.getValue() : RoaringBitmap.and(result, filter.getValue());
+            }
+        }
+        return result != null ? result : all;
+    }
+
+    /**
+     * Ids con fecha en [start, end] al segundo: minutos completos del rango
+     * más los segundos sueltos de sus extremos. Null si no hay filtro de fecha.
+     */
+    private RoaringBitmap dateRange(LocalDateTime start, LocalDateTime end) {
+        if (start == null && end == null) {
+            return null;
+        }
+        long from = start != null ? epochSecond(start) : Long.MIN_VALUE / 2;
+        long to = end != null ? epochSecond(end) : Long.MAX_VALUE / 2;
+        RoaringBitmap range = new RoaringBitmap();
+        if (from > to) {
+            return range;
+        }
+        long firstMinute = Math.ceilDiv(from, SECONDS_PER_MINUTE);
+        long endMinute = Math.floorDiv(to + 1, SECONDS_PER_MINUTE);
+        if (firstMinute >= endMinute) {
+            return union(range, seconds.subMap(from, true, to, true).values());
+        }
+        range = union(range, seconds.subMap(from, true, firstMinute * SECONDS_PER_MINUTE, false).values());
+        range = union(range, minutes.subMap(firstMinute, true, endMinute, false).values());
+        return union(range, seconds.subMap(endMinute * SECONDS_PER_MINUTE, true, to, true).values());
+    }
+
+    private static RoaringBitmap union(RoaringBitmap range, Collection<RoaringBitmap> bitmaps) {
+        for (RoaringBitmap bitmap : bitmaps) {
+            range = RoaringBitmap.or(range, bitmap);
+        }
+        return range;
+    }
+
+    private static long epochSecond(LocalDateTime date) {
+        return date.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static Integer nullableInt(Object value) {
+        return value != null ? ((Number) value).intValue() : null;
+    }
+}
@@ -0,0 +1,22 @@
+package com.tokenlabs.service;
+
+import com.tokenlabs.model.RequestHistory;
+
+import java.util.List;
+
+/**
+ * Recibe cada lote que {@link RequestHistoryWriter} inserta en
+ * request_history, después del commit y con los ids generados ya asignados.
+ * A diferencia de {@link RequestLogListener}, solo ve los registros que el
+ * muestreo guarda y que llegaron a la base de datos.
+ *
+ * Se invoca en el hilo escritor: las implementaciones deben ser rápidas y no
+ * conservar la lista, que se reutiliza para el siguiente lote. Una excepción
+ * se registra y no afecta al resto de listeners. Si el proceso cae entre el
+ * insert y el checkpoint del write-ahead log, el lote se inserta de nuevo con
+ * otros ids y se vuelve a notificar.
+ */
+public interface RequestHistoryInsertListener {
+
+    void onInserted(List<RequestHistory> batch);
+}
@@ -0,0 +1,104 @@
+package com.tokenlabs.service;
+
+import com.tokenlabs.repository.RequestHistoryBodyStore;
+import com.tokenlabs.repository.RequestHistoryDictionary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Migración única de una tabla request_history creada antes del diccionario
+ * y del almacén de cuerpos: pasa las columnas de texto (endpoint,
+ * http_method, response_status, user_agent, request_body y response_body) a
+ * sus tablas y borra las columnas.
+ *
+ * Está desactivada por defecto (app.request-history.legacy-migration.enabled)
+ * y se activa solo para el despliegue que migra, idealmente en una única
+ * instancia. En PostgreSQL se ejecuta con un advisory lock, así que si
+ * varias instancias la tienen activa la hacen de una en una y las
+ * siguientes no encuentran columnas que migrar. Corre antes que la
+ * conversión a tabla particionada de {@link RequestHistoryPartitionManager}
+ * en la misma instancia; entre instancias las dos quedan serializadas por
+ * los bloqueos de tabla de PostgreSQL. Mientras dura, los lotes del
+ * escritor que choquen con ella fallan y se reintentan desde el
+ * write-ahead log.
+ */
+@Service
+public class RequestHistoryLegacyMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestHistoryLegacyMigration.class);
+
+    /** Clave del advisory lock de PostgreSQL que serializa la migración entre instancias */
+    static final long LOCK_KEY = 0x7265715f6d696772L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RequestHistoryDictionary dictionary;
+    private final RequestHistoryBodyStore bodyStore;
+    private final boolean enabled;
+
+    public RequestHistoryLegacyMigration(
+            JdbcTemplate jdbcTemplate,
+            RequestHistoryDictionary dictionary,
+            RequestHistoryBodyStore bodyStore,
+            @Value("${app.request-history.legacy-migration.enabled:false}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dictionary = dictionary;
+        this.bodyStore = bodyStore;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Se ejecuta con la aplicación lista, después de que Hibernate añada las
+     * columnas nuevas y antes que el resto de tareas de arranque.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void migrate() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                boolean locked = isPostgreSql(connection);
+                if (locked) {
+                    advisoryLock(connection, "SELECT pg_advisory_lock(?)");
+                }
+                try {
+                    logger.warn("Migrando las columnas antiguas de request_history");
+                    dictionary.migrateLegacyColumns();
+                    bodyStore.migrateLegacyColumns();
+                } finally {
+                    if (locked) {
+                        advisoryLock(connection, "SELECT pg_advisory_unlock(?)");
+                    }
+                }
+                return null;
+            });
+        } catch (DataAccessException e) {
+            logger.error("No se pudo migrar request_history: {}", e.getMessage());
+        }
+    }
+
+    private static boolean isPostgreSql(Connection connection) throws SQLException {
+        return "PostgreSQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+    }
+
+    private static void advisoryLock(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setLong(1, LOCK_KEY);
+            ps.execute();
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.tokenlabs.service;
+
+import com.tokenlabs.dto.RequestHistoryEvent;
+import com.tokenlabs.model.RequestHistory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Difunde en vivo, por Server-Sent Events, los requests que se registran,
+ * sin consultar request_history.
+ *
+ * Se alimenta a través de {@link RequestLogListener} en el hilo consumidor
+ * del ring buffer, así que también ve los requests que el muestreo no
+ * guarda. Cada suscriptor tiene su filtro, un buffer de
+ * app.request-history.live.buffer-size eventos y un hilo virtual que los
+ * envía. El hilo consumidor solo copia el evento en los buffers: si un
+ * cliente lento llena el suyo se descarta el evento más antiguo y el
+ * cliente recibe un evento "dropped" con los que ha perdido antes de los
+ * siguientes. Sin eventos se envía un comentario cada
+ * app.request-history.live.heartbeat para detectar conexiones cerradas.
+ */
+@Service
+public class RequestHistoryLiveTail implements RequestLogListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestHistoryLiveTail.class);
+
+    static final String METRIC_PREFIX = "request_history.live";
+
+    static final String REQUEST_EVENT = "request";
+    static final String DROPPED_EVENT = "dropped";
+
+    /**
+     * Filtros de una suscripción, con el mismo significado que en /history;
+     * null acepta cualquier valor.
+     *
+     * @param endpoint texto contenido en el endpoint, sin distinguir mayúsculas
+     * @param hasError true solo con error, false solo sin error
+     */
+    public record Filter(String endpoint, String httpMethod, String responseStatus, Boolean hasError,
+                         LocalDateTime startDate, LocalDateTime endDate) {
+
+        public boolean matches(RequestHistoryEvent event) {
+            if (endpoint != null && (event.endpoint() == null
+                    || !event.endpoint().toLowerCase().contains(endpoint.toLowerCase()))) {
+                return false;
+            }
+            if (httpMethod != null && !httpMethod.equals(event.httpMethod())) {
+                return false;
+            }
+            if (responseStatus != null && !responseStatus.equals(event.responseStatus())) {
+                return false;
+            }
+            if (hasError != null && hasError != (event.errorMessage() != null)) {
+                return false;
+            }
+            if (startDate != null && (event.requestDate() == null || event.requestDate().isBefore(startDate))) {
+                return false;
+            }
+            return endDate == null || (event.requestDate() != null && !event.requestDate().isAfter(endDate));
+        }
+    }
+
+    /**
+     * Eventos pendientes de un suscriptor y los descartados desde el último
+     * envío.
+     */
+    record Batch(List<RequestHistoryEvent> events, long dropped) {
+
+        boolean isEmpty() {
+            return events.isEmpty() && dropped == 0;
+        }
+    }
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicLong subscriberIds = new AtomicLong();
+    private final int maxSubscribers;
+    private final int bufferSize;
+    private final Duration heartbeat;
+    private final Duration timeout;
+    private final Counter droppedCounter;
+
+    public RequestHistoryLiveTail(
+            MeterRegistry meterRegistry,
+            @Value("${app.request-history.live.max-subscribers:100}") int maxSubscribers,
+            @Value("${app.request-history.live.buffer-size:1000}") int bufferSize,
+            @Value("${app.request-history.live.heartbeat:PT15S}") Duration heartbeat,
+            @Value("${app.request-history.live.timeout:PT30M}") Duration timeout) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("app.request-history.live.buffer-size debe ser mayor que 0");
+        }
+        this.maxSubscribers = maxSubscribers;
+        this.bufferSize = bufferSize;
+        this.heartbeat = heartbeat;
+        this.timeout = timeout;
+        this.droppedCounter = Counter.builder(METRIC_PREFIX + ".dropped")
+                .description("Eventos descartados por suscriptores que no los leen a tiempo")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".subscribers", subscribers, List::size)
+                .description("Suscriptores conectados a /history/live")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void onRequestLogged(RequestHistory request) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        RequestHistoryEvent event = RequestHistoryEvent.of(request);
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.filter.matches(event) && !subscriber.offer(event)) {
+                droppedCounter.increment();
+            }
+        }
+    }
+
+    /**
+     * Abre una suscripción con el filtro dado.
+     *
+     * @throws TaskRejectedException si ya hay app.request-history.live.max-subscribers
+     */
+    public SseEmitter subscribe(Filter filter) {
+        return subscribe(filter, new SseEmitter(timeout.toMillis()));
+    }
+
+    SseEmitter subscribe(Filter filter, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter, filter, bufferSize);
+        synchronized (subscribers) {
+            if (subscribers.size() >= maxSubscribers) {
+                throw new TaskRejectedException("Se alcanzó el máximo de " + maxSubscribers
+                        + " suscriptores de /history/live");
+            }
+            subscribers.add(subscriber);
+        }
+        emitter.onCompletion(() -> close(subscriber));
+        emitter.onTimeout(() -> close(subscriber));
+        emitter.onError(error -> close(subscriber));
+        Thread.ofVirtual()
+                .name("RequestHistoryLiveTail-" + subscriberIds.incrementAndGet())
+                .start(() -> deliver(subscriber));
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Cierra las suscripciones abiertas al detener la aplicación.
+     */
+    @PreDestroy
+    public void shutdown() {
+        for (Subscriber subscriber : subscribers) {
+            close(subscriber);
+            subscriber.emitter.complete();
+        }
+    }
+
+    private void deliver(Subscriber subscriber) {
+        try {
+            while (true) {
+                Batch batch = subscriber.await(heartbeat);
+                if (batch == null) {
+                    return;
+                }
+                if (batch.isEmpty()) {
+                    subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+                    continue;
+                }
+                if (batch.dropped() > 0) {
+                    subscriber.emitter.send(SseEmitter.event()
+                            .name(DROPPED_EVENT)
+                            .data(Map.of("count", batch.dropped()), MediaType.APPLICATION_JSON));
+                }
+                for (RequestHistoryEvent event : batch.events()) {
+                    subscriber.emitter.send(SseEmitter.event()
+                            .name(REQUEST_EVENT)
+                            .data(event, MediaType.APPLICATION_JSON));
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            // El cliente cerró la conexión o el emitter ya terminó
+            logger.debug("Suscriptor de /history/live desconectado: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        close(subscriber);
+    }
+
+    private void close(Subscriber subscriber) {
+        subscriber.close();
+        subscribers.remove(subscriber);
+    }
+
+    /**
+     * Buffer acotado de un suscriptor: el hilo consumidor del ring buffer
+     * añade y el hilo de envío vacía.
+     */
+    static final class Subscriber {
+        private final SseEmitter emitter;
+        private final Filter filter;
+        private final int capacity;
+        private final ArrayDeque<RequestHistoryEvent> buffer = new ArrayDeque<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition available = lock.newCondition();
+        private long dropped;
+        private boolean closed;
+
+        Subscriber(SseEmitter emitter, Filter filter, int capacity) {
+            this.emitter = emitter;
+            this.filter = filter;
+            this.capacity = capacity;
+        }
+
+        /**
+         * @return false si se descartó el evento más antiguo para hacer sitio
+         */
+        boolean offer(RequestHistoryEvent event) {
+            lock.lock();
+            try {
+                if (closed) {
+                    return true;
+                }
+                boolean full = buffer.size() >= capacity;
+                if (full) {
+                    buffer.pollFirst();
+                    dropped++;
+                }
+                buffer.addLast(event);
+                available.signal();
+                return !full;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Espera eventos hasta maxWait y los saca del buffer.
+         *
+         * @return un lote vacío si no llegó nada, o null si se cerró
+         */
+        Batch await(Duration maxWait) throws InterruptedException {
+            lock.lock();
+            try {
+                long nanos = maxWait.toNanos();
+                while (!closed && buffer.isEmpty() && dropped == 0 && nanos > 0) {
+                    nanos = available.awaitNanos(nanos);
+                }
+                if (closed) {
+                    return null;
+                }
+                Batch batch = new Batch(List.copyOf(buffer), dropped);
+                buffer.clear();
+                dropped = 0;
+                return batch;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void close() {
+            lock.lock();
+            try {
+                closed = true;
+                buffer.clear();
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.tokenlabs.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Particionado por rango de request_date para request_history (solo PostgreSQL).
+ *
+ * Al arrancar convierte la tabla a particionada si todavía es una tabla
+ * normal: la tabla existente queda como partición "legacy" que cubre todo lo
+ * anterior a dos periodos después del actual. Después mantiene creadas las particiones de
+ * los próximos periodos (diarios o semanales). La retención
+ * (RequestHistoryRetentionService) desvincula y borra particiones completas,
+ * sin DELETE fila a fila. Una partición DEFAULT recibe cualquier fila fuera de
+ * los rangos creados.
+ *
+ * Con otra base de datos (H2 en tests) el gestor queda inactivo y la
+ * retención borra filas en lotes.
+ */
+@Service
+public class RequestHistoryPartitionManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestHistoryPartitionManager.class);
+
+    static final String TABLE = "request_history";
+    static final String LEGACY_PARTITION = TABLE + "_legacy";
+    static final String DEFAULT_PARTITION = TABLE + "_default";
+    static final String LEGACY_KEY_INDEX = LEGACY_PARTITION + "_id_request_date_key";
+    static final String LEGACY_BOUND_CONSTRAINT = LEGACY_PARTITION + "_bound";
+
+    private static final String PARTITION_PREFIX = TABLE + "_p";
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter BOUND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final Pattern RANGE_BOUND = Pattern.compile(
+            "FOR VALUES FROM \\((MINVALUE|'[^']+')\\) TO \\((MAXVALUE|'[^']+')\\)");
+
+    public enum Interval {
+        DAILY,
+        WEEKLY
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Interval interval;
+    private final int premake;
+
+    private volatile boolean active;
+
+    @Autowired
+    public RequestHistoryPartitionManager(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            @Value("${app.request-history.partitioning.enabled:false}") boolean enabled,
+            @Value("${app.request-history.partitioning.interval:DAILY}") Interval interval,
+            @Value("${app.request-history.partitioning.premake:7}") int premake) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.interval = interval;
+        this.premake = premake;
+    }
+
+    /**
+     * Se ejecuta con la aplicación lista, después de que Hibernate actualice el esquema.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        if (!enabled) {
+            return;
+        }
+        if (!isPostgreSql()) {
+            logger.warn("Particionado de {} deshabilitado: requiere PostgreSQL", TABLE);
+            return;
+        }
+        try {
+            if ("r".equals(relationKind())) {
+                convertToPartitioned(LocalDateTime.now());
+            }
+            active = "p".equals(relationKind());
+            if (active) {
+                maintain();
+            }
+        } catch (DataAccessException e) {
+            logger.error("No se pudo preparar el particionado de {}: {}", TABLE, e.getMessage());
+        }
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Crea las particiones de los próximos periodos. Las vencidas se borran
+     * desde la retención, después de agregarlas en rollups.
+     */
+    @Scheduled(cron = "${app.request-history.partitioning.maintenance-cron:0 15 0 * * *}")
+    public void maintain() {
+        if (!active) {
+            return;
+        }
+        try {
+            int created = createUpcomingPartitions(LocalDateTime.now());
+            logger.info("Mantenimiento de particiones de {}: {} creadas", TABLE, created);
+        } catch (DataAccessException e) {
+            logger.error("Error en el mantenimiento de particiones de {}: {}", TABLE, e.getMessage());
+        }
+    }
+
+    /**
+     * Crea las particiones desde el periodo actual hasta premake periodos
+     * adelante, sin solaparse con las existentes.
+     *
+     * @return particiones creadas
+     */
+    int createUpcomingPartitions(LocalDateTime now) {
+        List<Partition> partitions = partitions();
+        int created = 0;
+        LocalDateTime start = periodStart(now);
+        for (int i = 0; i <= premake; i++) {
+            LocalDateTime end = next(start);
+            if (!overlaps(partitions, start, end)) {
+                String name = partitionName(start);
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + TABLE
+                        + " FOR VALUES FROM ('" + BOUND_FORMAT.format(start) + "') TO ('" + BOUND_FORMAT.format(end) + "')");
+                partitions.add(new Partition(name, start, end));
+                created++;
+            }
+            start = end;
+        }
+        return created;
+    }
+
+    /**
+     * Desvincula y borra las particiones cuyo rango termina antes del corte.
+     *
+     * @return particiones eliminadas
+     */
+    public int dropExpiredPartitions(LocalDateTime cutoff) {
+        if (!active) {
+            return 0;
+        }
+        int dropped = 0;
+        for (Partition partition : partitions()) {
+            if (partition.end() != null && !partition.end().isAfter(cutoff)) {
+                jdbcTemplate.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + partition.name());
+                jdbcTemplate.execute("DROP TABLE " + partition.name());
+                logger.info("Partición {} eliminada por retención (hasta {})", partition.name(), partition.end());
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Convierte la tabla normal en particionada. Las filas existentes no se
+     * copian: la tabla pasa a ser la partición legacy, cuyo rango termina dos
+     * periodos después del actual (margen para que la conversión no cruce el
+     * límite mientras se valida).
+     *
+     * Lo costoso se hace antes del bloqueo exclusivo y sin impedir escrituras:
+     * el índice único (id, request_date) se crea con CONCURRENTLY y el CHECK
+     * con el rango de la partición se añade NOT VALID y se valida. Después,
+     * en una transacción con ACCESS EXCLUSIVE, el índice sustituye a la clave
+     * primaria (id), y el ATTACH no recorre la tabla porque el CHECK validado
+     * ya prueba el rango. Si la conversión falla se quita el CHECK, que
+     * rechazaría los inserts al pasar el límite.
+     */
+    void convertToPartitioned(LocalDateTime now) {
+        LocalDateTime legacyEnd = next(next(periodStart(now)));
+        String bound = BOUND_FORMAT.format(legacyEnd);
+        logger.warn("Convirtiendo {} en tabla particionada; las filas existentes quedan en {} (hasta {})",
+                TABLE, LEGACY_PARTITION, legacyEnd);
+        try {
+            createLegacyKeyIndex();
+            if (!constraintExists(LEGACY_BOUND_CONSTRAINT)) {
+                jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD CONSTRAINT " + LEGACY_BOUND_CONSTRAINT
+                        + " CHECK (request_date IS NOT NULL AND request_date < '" + bound + "') NOT VALID");
+            }
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " VALIDATE CONSTRAINT " + LEGACY_BOUND_CONSTRAINT);
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.execute("LOCK TABLE " + TABLE + " IN ACCESS EXCLUSIVE MODE");
+                // Otra instancia pudo convertirla mientras se esperaba el bloqueo
+                if (!"r".equals(relationKind())) {
+                    return;
+                }
+                jdbcTemplate.execute("ALTER TABLE " + TABLE + " RENAME TO " + LEGACY_PARTITION);
+                // La clave primaria de una partición debe incluir la columna de partición
+                jdbcTemplate.execute("ALTER TABLE " + LEGACY_PARTITION + " DROP CONSTRAINT " + TABLE + "_pkey");
+                jdbcTemplate.execute("ALTER TABLE " + LEGACY_PARTITION + " ADD CONSTRAINT " + LEGACY_PARTITION
+                        + "_pkey PRIMARY KEY USING INDEX " + LEGACY_KEY_INDEX);
+                // La identidad de la tabla original no puede pasar a una partición:
+                // los ids siguen con una secuencia nueva a partir del máximo actual
+                jdbcTemplate.execute("ALTER TABLE " + LEGACY_PARTITION + " ALTER COLUMN id DROP IDENTITY IF EXISTS");
+                jdbcTemplate.execute("ALTER TABLE " + LEGACY_PARTITION + " ALTER COLUMN id DROP DEFAULT");
+                jdbcTemplate.execute("CREATE SEQUENCE " + TABLE + "_partitioned_id_seq");
+                jdbcTemplate.execute("SELECT setval('" + TABLE + "_partitioned_id_seq', "
+                        + "COALESCE((SELECT MAX(id) FROM " + LEGACY_PARTITION + "), 0) + 1, false)");
+                jdbcTemplate.execute("CREATE TABLE " + TABLE + " (LIKE " + LEGACY_PARTITION + " INCLUDING DEFAULTS)"
+                        + " PARTITION BY RANGE (request_date)");
+                jdbcTemplate.execute("ALTER TABLE " + TABLE + " ALTER COLUMN id SET DEFAULT nextval('"
+                        + TABLE + "_partitioned_id_seq')");
+                jdbcTemplate.execute("ALTER SEQUENCE " + TABLE + "_partitioned_id_seq OWNED BY " + TABLE + ".id");
+                jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD PRIMARY KEY (id, request_date)");
+                jdbcTemplate.execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + LEGACY_PARTITION
+                        + " FOR VALUES FROM (MINVALUE) TO ('" + bound + "')");
+                jdbcTemplate.execute("CREATE TABLE " + DEFAULT_PARTITION + " PARTITION OF " + TABLE + " DEFAULT");
+            });
+        } catch (DataAccessException e) {
+            if ("r".equals(relationKind())) {
+                jdbcTemplate.execute("ALTER TABLE " + TABLE + " DROP CONSTRAINT IF EXISTS " + LEGACY_BOUND_CONSTRAINT);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Crea sin bloquear escrituras el índice único (id, request_date) que
+     * será la clave primaria de la partición legacy. Un índice inválido de
+     * un intento anterior interrumpido se borra y se vuelve a crear.
+     */
+    private void createLegacyKeyIndex() {
+        List<Boolean> valid = jdbcTemplate.queryForList(
+                "SELECT i.indisvalid FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid "
+                        + "WHERE c.relname = ? AND c.relnamespace = to_regnamespace(current_schema())::oid",
+                Boolean.class, LEGACY_KEY_INDEX);
+        if (!valid.isEmpty() && Boolean.TRUE.equals(valid.get(0))) {
+            return;
+        }
+        if (!valid.isEmpty()) {
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY " + LEGACY_KEY_INDEX);
+        }
+        jdbcTemplate.execute("CREATE UNIQUE INDEX CONCURRENTLY " + LEGACY_KEY_INDEX
+                + " ON " + TABLE + " (id, request_date)");
+    }
+
+    private boolean constraintExists(String name) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_constraint WHERE conname = ? "
+                        + "AND connamespace = to_regnamespace(current_schema())::oid",
+                Integer.class, name);
+        return count != null && count > 0;
+    }
+
+    LocalDateTime periodStart(LocalDateTime time) {
+        LocalDate date = time.toLocalDate();
+        if (interval == Interval.WEEKLY) {
+            date = date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        }
+        return date.atStartOfDay();
+    }
+
+    LocalDateTime next(LocalDateTime periodStart) {
+        return interval == Interval.WEEKLY ? periodStart.plusWeeks(1) : periodStart.plusDays(1);
+    }
+
+    static String partitionName(LocalDateTime start) {
+        return PARTITION_PREFIX + NAME_FORMAT.format(start);
+    }
+
+    private static boolean overlaps(List<Partition> partitions, LocalDateTime start, LocalDateTime end) {
+        for (Partition partition : partitions) {
+            boolean startsBeforeEnd = partition.start() == null || partition.start().isBefore(end);
+            boolean endsAfterStart = partition.end() == null || partition.end().isAfter(start);
+            if (startsBeforeEnd && endsAfterStart) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Particiones de rango de request_history (la DEFAULT no se incluye).
+     */
+    List<Partition> partitions() {
+        List<Partition> partitions = new ArrayList<>();
+        jdbcTemplate.query(
+                "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) FROM pg_inherits i "
+                        + "JOIN pg_class c ON c.oid = i.inhrelid "
+                        + "JOIN pg_class p ON p.oid = i.inhparent "
+                        + "WHERE p.relname = ? AND p.relnamespace = to_regnamespace(current_schema())::oid",
+                rs -> {
+                    Partition partition = parseBound(rs.getString(1), rs.getString(2));
+                    if (partition != null) {
+                        partitions.add(partition);
+                    }
+                },
+                TABLE);
+        return partitions;
+    }
+
+    static Partition parseBound(String name, String bound) {
+        Matcher matcher = bound != null ? RANGE_BOUND.matcher(bound) : null;
+        if (matcher == null || !matcher.find()) {
+            return null;
+        }
+        return new Partition(name, parseTimestamp(matcher.group(1)), parseTimestamp(matcher.group(2)));
+    }
+
+    private static LocalDateTime parseTimestamp(String value) {
+        if (value.endsWith("VALUE")) {
+            return null;
+        }
+        String timestamp = value.substring(1, value.length() - 1);
+        return LocalDateTime.parse(timestamp.length() > 19 ? timestamp.substring(0, 19) : timestamp, BOUND_FORMAT);
+    }
+
+    private String relationKind() {
+        List<String> kinds = jdbcTemplate.queryForList(
+                "SELECT c.relkind::text FROM pg_class c WHERE c.relname = ? "
+                        + "AND c.relnamespace = to_regnamespace(current_schema())::oid",
+                String.class, TABLE);
+        return kinds.isEmpty() ? null : kinds.get(0);
+    }
+
+    private boolean isPostgreSql() {
+        try {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            return "PostgreSQL".equalsIgnoreCase(product);
+        } catch (DataAccessException e) {
+            logger.warn("No se pudo determinar la base de datos: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Partición de rango; start o end null para MINVALUE / MAXVALUE.
+     */
+    record Partition(String name, LocalDateTime start, LocalDateTime end) {
+    }
+}
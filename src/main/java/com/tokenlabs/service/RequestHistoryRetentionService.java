@@ -0,0 +1,260 @@
+package com.tokenlabs.service;
+
+import com.tokenlabs.repository.RequestHistoryBodyStore;
+import com.tokenlabs.repository.RequestHistoryRollupRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Retención de request_history con agregación previa.
+ *
+ * Cada ejecución agrega primero las horas completas en rollups horarios y los
+ * días completos en rollups diarios; después borra las filas originales más
+ * antiguas que la retención, nunca las que aún no tienen rollup. El borrado
+ * se hace en lotes cortos con un límite de filas por segundo (o borrando
+ * particiones completas si request_history está particionada) para no
+ * competir con las escrituras de la aplicación. Por último borra los cuerpos
+ * de request_history_body que ya no puede referenciar ninguna fila.
+ */
+@Service
+public class RequestHistoryRetentionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestHistoryRetentionService.class);
+
+    static final String METRIC_PREFIX = "request_history.retention";
+
+    private final RequestHistoryRollupRepository rollupRepository;
+    private final RequestHistoryPartitionManager partitionManager;
+    private final RequestHistoryBodyStore bodyStore;
+    private final Duration retention;
+    private final Duration rollupDelay;
+    private final int maxHoursPerRun;
+    private final Duration hourlyRetention;
+    private final int chunkSize;
+    private final int maxRowsPerSecond;
+    private final Duration maxPurgeDuration;
+
+    private RequestHistorySearchIndex searchIndex;
+
+    private final ReentrantLock runLock = new ReentrantLock();
+    private final Counter hoursRolledUp;
+    private final Counter daysRolledUp;
+    private final Counter rowsDeleted;
+    private final Counter partitionsDropped;
+    private final Counter bodiesDeleted;
+
+    @Autowired
+    public RequestHistoryRetentionService(
+            RequestHistoryRollupRepository rollupRepository,
+            RequestHistoryPartitionManager partitionManager,
+            RequestHistoryBodyStore bodyStore,
+            MeterRegistry meterRegistry,
+            @Value("${app.request-history.retention:P30D}") Duration retention,
+            @Value("${app.request-history.rollup.delay:PT10M}") Duration rollupDelay,
+            @Value("${app.request-history.rollup.max-hours-per-run:168}") int maxHoursPerRun,
+            @Value("${app.request-history.rollup.hourly-retention:P90D}") Duration hourlyRetention,
+            @Value("${app.request-history.purge.chunk-size:5000}") int chunkSize,
+            @Value("${app.request-history.purge.max-rows-per-second:20000}") int maxRowsPerSecond,
+            @Value("${app.request-history.purge.max-duration:PT5M}") Duration maxPurgeDuration) {
+        if (chunkSize <= 0 || maxRowsPerSecond <= 0) {
+            throw new IllegalArgumentException("chunk-size y max-rows-per-second deben ser positivos");
+        }
+        this.rollupRepository = rollupRepository;
+        this.partitionManager = partitionManager;
+        this.bodyStore = bodyStore;
+        this.retention = retention;
+        this.rollupDelay = rollupDelay;
+        this.maxHoursPerRun = maxHoursPerRun;
+        this.hourlyRetention = hourlyRetention;
+        this.chunkSize = chunkSize;
+        this.maxRowsPerSecond = maxRowsPerSecond;
+        this.maxPurgeDuration = maxPurgeDuration;
+        this.hoursRolledUp = Counter.builder(METRIC_PREFIX + ".rollups")
+                .tag("granularity", "hourly")
+                .description("Horas agregadas en rollups")
+                .register(meterRegistry);
+        this.daysRolledUp = Counter.builder(METRIC_PREFIX + ".rollups")
+                .tag("granularity", "daily")
+                .description("Días agregados en rollups")
+                .register(meterRegistry);
+        this.rowsDeleted = Counter.builder(METRIC_PREFIX + ".deleted.rows")
+                .description("Filas de request_history borradas por retención")
+                .register(meterRegistry);
+        this.partitionsDropped = Counter.builder(METRIC_PREFIX + ".deleted.partitions")
+                .description("Particiones de request_history borradas por retención")
+                .register(meterRegistry);
+        this.bodiesDeleted = Counter.builder(METRIC_PREFIX + ".deleted.bodies")
+                .description("Cuerpos de request_history_body sin referencias borrados")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Aplica la misma retención al índice de texto, si está habilitado.
+     */
+    @Autowired(required = false)
+    public void setSearchIndex(RequestHistorySearchIndex searchIndex) {
+        this.searchIndex = searchIndex;
+    }
+
+    /**
+     * Se ejecuta en retentionExecutor: el scheduler solo la encola.
+     */
+    @Async("retentionExecutor")
+    @Scheduled(cron = "${app.request-history.rollup.cron:0 5 * * * *}")
+    public void scheduledRun() {
+        run(LocalDateTime.now());
+    }
+
+    /**
+     * Agrega lo pendiente y aplica la retención. Si ya hay una ejecución en
+     * curso no hace nada.
+     */
+    public RetentionResult run(LocalDateTime now) {
+        if (!runLock.tryLock()) {
+            logger.debug("Retención de request_history ya en curso");
+            return RetentionResult.EMPTY;
+        }
+        try {
+            int hours = rollupHours(now.minus(rollupDelay).truncatedTo(ChronoUnit.HOURS));
+            RequestHistoryRollupRepository.Coverage coverage = rollupRepository.findCoverage();
+            int days = rollupDays(coverage.hourlyUntil().truncatedTo(ChronoUnit.DAYS));
+            coverage = rollupRepository.findCoverage();
+
+            // Nunca se borran filas que todavía no están en un rollup horario
+            LocalDateTime cutoff = earliest(now.minus(retention), coverage.hourlyUntil());
+            long deletedRows = 0;
+            int droppedPartitions = 0;
+            if (partitionManager.isActive()) {
+                droppedPartitions = partitionManager.dropExpiredPartitions(cutoff);
+                partitionsDropped.increment(droppedPartitions);
+            } else {
+                deletedRows = purgeRequests(cutoff);
+            }
+            int hourlyDeleted = rollupRepository.deleteHourlyRollupsBefore(
+                    earliest(now.minus(hourlyRetention), coverage.dailyUntil()));
+            int deletedBodies = purgeBodies(cutoff);
+            if (searchIndex != null) {
+                searchIndex.deleteBefore(cutoff);
+            }
+
+            RetentionResult result = new RetentionResult(hours, days, deletedRows, droppedPartitions,
+                    hourlyDeleted, deletedBodies);
+            logger.info("Retención de request_history: {}", result);
+            return result;
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    /**
+     * Agrega las horas completas anteriores a limit, a partir de la última
+     * hora con rollup. Las horas sin filas se saltan hasta el siguiente request.
+     */
+    int rollupHours(LocalDateTime limit) {
+        LocalDateTime latest = rollupRepository.findLatestHourlyBucket();
+        LocalDateTime hour = latest != null ? latest.plusHours(1) : firstRequestHour(RequestHistoryRollupRepository.NO_COVERAGE);
+        int processed = 0;
+        while (hour != null && hour.isBefore(limit) && processed < maxHoursPerRun) {
+            int groups = rollupRepository.rollupHour(hour);
+            processed++;
+            hour = groups > 0 ? hour.plusHours(1) : firstRequestHour(hour.plusHours(1));
+        }
+        hoursRolledUp.increment(processed);
+        return processed;
+    }
+
+    /**
+     * Agrega en rollups diarios los días completos anteriores a limit.
+     */
+    int rollupDays(LocalDateTime limit) {
+        LocalDateTime latest = rollupRepository.findLatestDailyBucket();
+        LocalDateTime day = latest != null ? latest.plusDays(1) : firstHourlyDay(RequestHistoryRollupRepository.NO_COVERAGE);
+        int processed = 0;
+        while (day != null && day.isBefore(limit)) {
+            int groups = rollupRepository.rollupDay(day);
+            processed++;
+            day = groups > 0 ? day.plusDays(1) : firstHourlyDay(day.plusDays(1));
+        }
+        daysRolledUp.increment(processed);
+        return processed;
+    }
+
+    /**
+     * Borra filas anteriores al corte en lotes de chunkSize, esperando entre
+     * lotes para no superar maxRowsPerSecond y parando al agotar maxPurgeDuration.
+     */
+    long purgeRequests(LocalDateTime cutoff) {
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos + maxPurgeDuration.toNanos();
+        long total = 0;
+        while (System.nanoTime() < deadlineNanos) {
+            int deleted = rollupRepository.deleteRequestsBefore(cutoff, chunkSize);
+            total += deleted;
+            rowsDeleted.increment(deleted);
+            if (deleted < chunkSize) {
+                break;
+            }
+            long earliestNextNanos = startNanos + total * 1_000_000_000L / maxRowsPerSecond;
+            long waitNanos = Math.min(earliestNextNanos, deadlineNanos) - System.nanoTime();
+            if (waitNanos > 0) {
+                try {
+                    Thread.sleep(Duration.ofNanos(waitNanos));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Borra los cuerpos referenciados por última vez antes del día de la fila
+     * más antigua que queda (o del corte, si es anterior). Un cuerpo se marca
+     * como referenciado el día en que se escribe cada fila que lo usa, así que
+     * ninguna fila restante puede apuntar a ellos aunque el borrado por lotes
+     * haya quedado a medias.
+     */
+    int purgeBodies(LocalDateTime cutoff) {
+        LocalDateTime oldest = rollupRepository.findFirstRequestDate(RequestHistoryRollupRepository.NO_COVERAGE);
+        LocalDateTime limit = oldest != null ? earliest(oldest, cutoff) : cutoff;
+        int deleted = bodyStore.deleteUnreferencedBefore(limit.toLocalDate());
+        bodiesDeleted.increment(deleted);
+        return deleted;
+    }
+
+    private LocalDateTime firstRequestHour(LocalDateTime from) {
+        LocalDateTime first = rollupRepository.findFirstRequestDate(from);
+        return first != null ? first.truncatedTo(ChronoUnit.HOURS) : null;
+    }
+
+    private LocalDateTime firstHourlyDay(LocalDateTime from) {
+        LocalDateTime first = rollupRepository.findFirstHourlyBucket(from);
+        return first != null ? first.truncatedTo(ChronoUnit.DAYS) : null;
+    }
+
+    private static LocalDateTime earliest(LocalDateTime a, LocalDateTime b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    /**
+     * Resultado de una ejecución de la retención.
+     */
+    public record RetentionResult(int hoursRolledUp, int daysRolledUp, long rowsDeleted,
+                                  int partitionsDropped, int hourlyRollupsDeleted, int bodiesDeleted) {
+
+        static final RetentionResult EMPTY = new RetentionResult(0, 0, 0, 0, 0, 0);
+    }
+}
@@ -0,0 +1,208 @@
+package com.tokenlabs.service;
+
+import com.tokenlabs.model.RequestHistory;
+import com.tokenlabs.repository.RequestHistoryBodyStore;
+import com.tokenlabs.util.InvertedIndex;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Búsqueda de texto en request_parameters, los cuerpos de request y
+ * response y error_message de request_history, sin LIKE '%...%' sobre la
+ * tabla.
+ *
+ * Cada registro se indexa en un {@link InvertedIndex} en disco local cuando
+ * {@link RequestHistoryWriter} lo inserta (a través de
+ * {@link RequestHistoryInsertListener}), con los cuerpos aún en memoria. Es
+ * buscable de inmediato y se persiste como segmento cada
+ * app.request-history.search.refresh-interval. Los registros del buffer que
+ * se pierden en una caída, y los que insertaron otras instancias, se
+ * recuperan al arrancar leyendo de la base de datos las filas con id mayor
+ * que el último indexado. {@link RequestHistoryRetentionService} borra los
+ * segmentos anteriores al mismo corte que aplica a la tabla.
+ *
+ * La consulta se divide en términos (letras y dígitos, sin distinguir
+ * mayúsculas) y devuelve los ids que los contienen todos, del más reciente
+ * al más antiguo; "térm*" acepta cualquier término con ese prefijo.
+ *
+ * El índice es de la instancia: está pensado para un único nodo y viene
+ * deshabilitado por defecto. Con varias instancias cada una responde con lo
+ * que ha insertado más lo que recuperó de las demás en su último arranque.
+ */
+@Service
+@ConditionalOnProperty(name = "app.request-history.search.enabled", havingValue = "true")
+public class RequestHistorySearchIndex implements RequestHistoryInsertListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestHistorySearchIndex.class);
+
+    static final String METRIC_PREFIX = "request_history.search";
+
+    private static final String CATCH_UP_SQL = "SELECT id, request_date, request_parameters, request_body_hash, "
+            + "response_body_hash, error_message FROM request_history "
+            + "WHERE id > ? AND request_date >= ? ORDER BY id LIMIT ?";
+    private static final int CATCH_UP_CHUNK = 1000;
+
+    private final InvertedIndex index;
+    private final JdbcTemplate jdbcTemplate;
+    private final RequestHistoryBodyStore bodyStore;
+    private final Duration retention;
+    private final boolean catchUp;
+    private final int maxTermLength;
+
+    public RequestHistorySearchIndex(
+            InvertedIndex index,
+            JdbcTemplate jdbcTemplate,
+            RequestHistoryBodyStore bodyStore,
+            MeterRegistry meterRegistry,
+            @Value("${app.request-history.retention:P30D}") Duration retention,
+            @Value("${app.request-history.search.catch-up:true}") boolean catchUp,
+            @Value("${app.request-history.search.max-term-length:64}") int maxTermLength) {
+        this.index = index;
+        this.jdbcTemplate = jdbcTemplate;
+        this.bodyStore = bodyStore;
+        this.retention = retention;
+        this.catchUp = catchUp;
+        this.maxTermLength = maxTermLength;
+        Gauge.builder(METRIC_PREFIX + ".segments", index, InvertedIndex::getSegmentCount)
+                .description("Segmentos del índice de texto en disco")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".documents", index, InvertedIndex::getDocCount)
+                .description("Registros de request_history en el índice de texto")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".size.bytes", index, InvertedIndex::getSizeInBytes)
+                .description("Bytes en disco del índice de texto")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void onInserted(List<RequestHistory> batch) {
+        for (RequestHistory history : batch) {
+            if (history.getId() != null && history.getRequestDate() != null) {
+                add(history.getId(), history.getRequestDate(), history.getRequestParameters(),
+                        history.getRequestBody(), history.getResponseBody(), history.getErrorMessage());
+            }
+        }
+    }
+
+    /**
+     * Ids de los registros que contienen todos los términos de la consulta,
+     * de mayor a menor.
+     *
+     * @param beforeId solo ids menores que este; Long.MAX_VALUE para empezar
+     * @throws IllegalArgumentException si la consulta no tiene términos
+     */
+    public long[] search(String query, long beforeId, int limit) {
+        List<String> terms = new ArrayList<>();
+        for (String word : query.trim().split("\\s+")) {
+            List<String> wordTerms = InvertedIndex.tokenize(word, maxTermLength);
+            if (!wordTerms.isEmpty() && word.charAt(word.length() - 1) == InvertedIndex.PREFIX_WILDCARD) {
+                wordTerms.set(wordTerms.size() - 1, wordTerms.get(wordTerms.size() - 1) + InvertedIndex.PREFIX_WILDCARD);
+            }
+            terms.addAll(wordTerms);
+        }
+        if (terms.isEmpty()) {
+            throw new IllegalArgumentException("La búsqueda necesita al menos una palabra");
+        }
+        return index.search(terms, beforeId, limit);
+    }
+
+    /**
+     * Persiste lo indexado desde el último refresh como un segmento.
+     */
+    @Scheduled(fixedDelayString = "${app.request-history.search.refresh-interval:PT1S}",
+            initialDelayString = "${app.request-history.search.refresh-interval:PT1S}")
+    public void refresh() {
+        try {
+            index.refresh();
+        } catch (IOException e) {
+            logger.error("Error escribiendo segmento del índice de texto de request_history: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Borra los segmentos cuyos registros son todos anteriores al corte de
+     * la retención de request_history.
+     */
+    public int deleteBefore(LocalDateTime cutoff) {
+        int deleted = index.deleteBefore(epochSecond(cutoff));
+        if (deleted > 0) {
+            logger.info("Borrados {} segmentos del índice de texto anteriores a {}", deleted, cutoff);
+        }
+        return deleted;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startCatchUp() {
+        if (catchUp) {
+            Thread.ofVirtual().name("RequestHistorySearchCatchUp").start(this::catchUp);
+        }
+    }
+
+    /**
+     * Indexa las filas de la retención con id mayor que el último indexado.
+     */
+    void catchUp() {
+        long lastId = index.getMaxId();
+        Timestamp since = Timestamp.valueOf(LocalDateTime.now().minus(retention));
+        long indexed = 0;
+        try {
+            while (true) {
+                List<Long> ids = new ArrayList<>();
+                jdbcTemplate.query(CATCH_UP_SQL, rs -> {
+                    long id = rs.getLong(1);
+                    ids.add(id);
+                    add(id, rs.getTimestamp(2).toLocalDateTime(), rs.getString(3),
+                            bodyStore.load(rs.getString(4)), bodyStore.load(rs.getString(5)), rs.getString(6));
+                }, lastId, since, CATCH_UP_CHUNK);
+                indexed += ids.size();
+                if (ids.size() < CATCH_UP_CHUNK) {
+                    break;
+                }
+                lastId = ids.get(ids.size() - 1);
+            }
+        } catch (DataAccessException e) {
+            logger.warn("No se pudo completar el índice de texto desde request_history: {}", e.getMessage());
+        }
+        if (indexed > 0) {
+            logger.info("Índice de texto completado con {} registros de request_history", indexed);
+        }
+    }
+
+    @PreDestroy
+    public void flush() {
+        refresh();
+    }
+
+    private void add(long id, LocalDateTime requestDate, String... fields) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String field : fields) {
+            terms.addAll(InvertedIndex.tokenize(field, maxTermLength));
+        }
+        index.add(id, epochSecond(requestDate), terms);
+    }
+
+    private static long epochSecond(LocalDateTime date) {
+        return date.toEpochSecond(ZoneOffset.UTC);
+    }
+}
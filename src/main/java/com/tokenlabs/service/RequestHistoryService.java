@@ -1,18 +1,34 @@
 package com.tokenlabs.service;
 
+import com.tokenlabs.dto.CursorPage;
+import com.tokenlabs.dto.RequestStatisticsResponse;
 import com.tokenlabs.model.RequestHistory;
+import com.tokenlabs.repository.RequestHistoryBodyStore;
+import com.tokenlabs.repository.RequestHistoryDictionary;
 import com.tokenlabs.repository.RequestHistoryRepository;
+import com.tokenlabs.repository.RequestHistorySpecifications;
+import com.tokenlabs.util.PageCursor;
+import com.tokenlabs.util.RequestTimings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
 @Service
@@ -23,15 +39,60 @@ public class RequestHistoryService {
     @Autowired
     private RequestHistoryRepository requestHistoryRepository;
     
+    @Autowired
+    private RequestHistoryWriter requestHistoryWriter;
+    
+    @Autowired
+    private RequestLogSampler requestLogSampler;
+    
+    @Autowired
+    private RequestHistoryDictionary dictionary;
+    
+    @Autowired
+    private RequestHistoryRetentionService retentionService;
+    
+    @Autowired
+    private RequestHistoryBodyStore bodyStore;
+    
+    @Autowired
+    private RequestStatisticsAggregator statisticsAggregator;
+    
+    @Autowired
+    private RequestHistoryFacetIndex facetIndex;
+    
+    @Autowired(required = false)
+    private RequestHistorySearchIndex searchIndex;
+    
+    @Autowired(required = false)
+    private List<RequestLogListener> requestLogListeners = List.of();
+    
     /**
-     * Registra un request de forma asíncrona
+     * Registra un request sin tiempos por fase.
      */
-    @Async
     public CompletableFuture<Void> logRequestAsync(String endpoint, String httpMethod, 
                                                    String requestParameters, String requestBody,
                                                    String responseStatus, String responseBody,
                                                    String errorMessage, Long executionTimeMs,
                                                    String clientIp, String userAgent) {
+        return logRequestAsync(endpoint, httpMethod, requestParameters, requestBody, responseStatus,
+                responseBody, errorMessage, executionTimeMs, clientIp, userAgent, null);
+    }
+    
+    /**
+     * Registra un request de forma asíncrona. {@link RequestLogSampler} decide
+     * si se guarda y con qué peso, y cada {@link RequestLogListener} lo recibe
+     * en cualquier caso. El registro se encola en {@link RequestHistoryWriter},
+     * que lo inserta por lotes. Si la cola está llena se aplica su política de
+     * descarte.
+     *
+     * @param phaseMicros tiempos por fase, o null si el request no se midió por fases
+     */
+    public CompletableFuture<Void> logRequestAsync(String endpoint, String httpMethod, 
+                                                   String requestParameters, String requestBody,
+                                                   String responseStatus, String responseBody,
+                                                   String errorMessage, Long executionTimeMs,
+                                                   String clientIp, String userAgent,
+                                                   RequestTimings.PhaseMicros phaseMicros) {
         try {
             RequestHistory requestHistory = new RequestHistory();
             requestHistory.setRequestDate(LocalDateTime.now());
@@ -45,9 +106,24 @@ public class RequestHistoryService {
             requestHistory.setExecutionTimeMs(executionTimeMs);
             requestHistory.setClientIp(clientIp);
             requestHistory.setUserAgent(userAgent);
+            if (phaseMicros != null) {
+                requestHistory.setHandlerMicros(phaseMicros.handler());
+                requestHistory.setExternalFetchMicros(phaseMicros.externalFetch());
+                requestHistory.setDbInsertMicros(phaseMicros.dbInsert());
+                requestHistory.setSerializationMicros(phaseMicros.serialization());
+                requestHistory.setTotalMicros(phaseMicros.total());
+            }
+            
+            double sampleWeight = requestLogSampler.sampleWeight(endpoint, responseStatus, errorMessage, executionTimeMs);
+            requestHistory.setSampleWeight(sampleWeight);
+            notifyListeners(requestHistory);
+            if (sampleWeight == RequestLogSampler.SKIP) {
+                return CompletableFuture.completedFuture(null);
+            }
             
-            requestHistoryRepository.save(requestHistory);
-            logger.debug("Request logged successfully for endpoint: {}", endpoint);
+            if (requestHistoryWriter.enqueue(requestHistory)) {
+                logger.debug("Request queued for logging for endpoint: {}", endpoint);
+            }
             
         } catch (Exception e) {
             logger.error("Error logging request for endpoint: {} - Error: {}", endpoint, e.getMessage());
@@ -56,6 +132,17 @@ public class RequestHistoryService {
         return CompletableFuture.completedFuture(null);
     }
     
+    private void notifyListeners(RequestHistory requestHistory) {
+        for (RequestLogListener listener : requestLogListeners) {
+            try {
+                listener.onRequestLogged(requestHistory);
+            } catch (Exception e) {
+                logger.error("Request log listener {} failed for endpoint: {} - Error: {}",
+                        listener.getClass().getSimpleName(), requestHistory.getEndpoint(), e.getMessage());
+            }
+        }
+    }
+    
     /**
      * Obtiene el historial de requests con paginación
      */
@@ -67,7 +154,17 @@ public class RequestHistoryService {
     }
     
     /**
-     * Busca requests con filtros múltiples
+     * Obtiene un request con sus cuerpos de request y response. Los listados
+     * paginados solo devuelven los hashes de los cuerpos.
+     */
+    public Optional<RequestHistory> getRequestDetail(Long id) {
+        return requestHistoryRepository.findById(id).map(bodyStore::resolveBodies);
+    }
+    
+    /**
+     * Busca requests con filtros múltiples. Solo llegan a SQL los predicados
+     * de los filtros indicados ({@link RequestHistorySpecifications}), así que
+     * con fechas PostgreSQL recorre solo las particiones afectadas.
      */
     public Page<RequestHistory> searchRequests(String endpoint, String httpMethod, 
                                                String responseStatus, Boolean hasError,
@@ -76,33 +173,168 @@ public class RequestHistoryService {
         Sort sort = Sort.by(Sort.Direction.fromString(sortDirection), sortBy);
         Pageable pageable = PageRequest.of(page, size, sort);
         
-        return requestHistoryRepository.findWithFilters(
-                endpoint, httpMethod, responseStatus, hasError, 
-                startDate, endDate, pageable);
+        return requestHistoryRepository.findAll(
+                filters(endpoint, httpMethod, responseStatus, hasError, startDate, endDate), pageable);
+    }
+    
+    /**
+     * Como {@link #searchRequests} pero sin total de elementos: no lanza el
+     * COUNT(*) de cada página. Sigue usando OFFSET, así que las páginas
+     * profundas conviene recorrerlas con {@link #scrollRequests}.
+     */
+    public Slice<RequestHistory> searchRequestsSlice(String endpoint, String httpMethod,
+                                                     String responseStatus, Boolean hasError,
+                                                     LocalDateTime startDate, LocalDateTime endDate,
+                                                     int page, int size, String sortBy, String sortDirection) {
+        Sort sort = Sort.by(Sort.Direction.fromString(sortDirection), sortBy).and(Sort.by("id"));
+        Pageable pageable = PageRequest.of(page, size, sort);
+        
+        return requestHistoryRepository.findSlice(
+                filters(endpoint, httpMethod, responseStatus, hasError, startDate, endDate), pageable);
+    }
+    
+    /**
+     * Recorre el historial con paginación por cursor sobre (request_date, id):
+     * cada página continúa donde terminó la anterior sin OFFSET ni COUNT(*).
+     *
+     * @param cursor token de la página anterior, o null para la primera
+     * @throws IllegalArgumentException si el cursor no es válido o se generó
+     *         con el otro sentido de ordenamiento
+     */
+    public CursorPage<RequestHistory> scrollRequests(String endpoint, String httpMethod,
+                                                     String responseStatus, Boolean hasError,
+                                                     LocalDateTime startDate, LocalDateTime endDate,
+                                                     String cursor, int size, String sortDirection) {
+        Sort.Direction direction = Sort.Direction.fromString(sortDirection);
+        PageCursor position = cursor != null ? PageCursor.decode(cursor) : null;
+        if (position != null && position.descending() != direction.isDescending()) {
+            throw new IllegalArgumentException("El cursor se generó con otro sentido de ordenamiento");
+        }
+        
+        Specification<RequestHistory> spec = filters(endpoint, httpMethod, responseStatus, hasError, startDate, endDate);
+        if (position != null) {
+            spec = spec.and(RequestHistorySpecifications.seek(position));
+        }
+        List<RequestHistory> rows = requestHistoryRepository.findAll(
+                spec, Sort.by(direction, "requestDate", "id"), Limit.of(size + 1));
+        return CursorPage.of(rows, size, direction.isDescending(), RequestHistory::getRequestDate, RequestHistory::getId);
+    }
+    
+    /**
+     * Recuentos por endpoint, método, código de respuesta y error de las
+     * filas recientes que cumplen los filtros, calculados en memoria por
+     * {@link RequestHistoryFacetIndex} sin consultar request_history.
+     */
+    public RequestHistoryFacetIndex.FacetCounts getFacets(String endpoint, String httpMethod,
+                                                          String responseStatus, Boolean hasError,
+                                                          LocalDateTime startDate, LocalDateTime endDate) {
+        return facetIndex.count(facetQuery(endpoint, httpMethod, responseStatus, hasError, startDate, endDate));
+    }
+    
+    /**
+     * Recorre las filas recientes que cumplen los filtros, de mayor a menor
+     * id: el índice de facetas da los ids de la página y solo esas filas se
+     * leen por clave primaria.
+     *
+     * @param cursor token de la página anterior, o null para la primera
+     * @throws IllegalArgumentException si el cursor no es válido o es ascendente
+     */
+    public CursorPage<RequestHistory> scrollRecentRequests(String endpoint, String httpMethod,
+                                                           String responseStatus, Boolean hasError,
+                                                           LocalDateTime startDate, LocalDateTime endDate,
+                                                           String cursor, int size) {
+        PageCursor position = cursor != null ? PageCursor.decode(cursor) : PageCursor.first(true);
+        if (!position.descending()) {
+            throw new IllegalArgumentException("El cursor se generó con otro sentido de ordenamiento");
+        }
+        long[] ids = facetIndex.matchingIds(
+                facetQuery(endpoint, httpMethod, responseStatus, hasError, startDate, endDate),
+                position.id(), size + 1);
+        return hydrate(ids, size);
+    }
+    
+    /**
+     * Busca texto en los parámetros, cuerpos y mensajes de error con
+     * {@link RequestHistorySearchIndex}, del registro más reciente al más
+     * antiguo, y lee solo las filas de la página por clave primaria.
+     *
+     * @param cursor token de la página anterior, o null para la primera
+     * @throws IllegalArgumentException si la consulta no tiene palabras o el cursor no es válido
+     * @throws IllegalStateException si la búsqueda de texto está deshabilitada
+     */
+    public CursorPage<RequestHistory> searchText(String query, String cursor, int size) {
+        if (searchIndex == null) {
+            throw new IllegalStateException("La búsqueda de texto está deshabilitada (app.request-history.search.enabled)");
+        }
+        PageCursor position = cursor != null ? PageCursor.decode(cursor) : PageCursor.first(true);
+        if (!position.descending()) {
+            throw new IllegalArgumentException("El cursor se generó con otro sentido de ordenamiento");
+        }
+        return hydrate(searchIndex.search(query, position.id(), size + 1), size);
+    }
+    
+    /**
+     * Página con las filas de size + 1 ids ordenados de mayor a menor.
+     */
+    private CursorPage<RequestHistory> hydrate(long[] ids, int size) {
+        if (ids.length == 0) {
+            return new CursorPage<>(List.of(), size, false, null);
+        }
+        Map<Long, RequestHistory> rowsById = new HashMap<>();
+        for (RequestHistory row : requestHistoryRepository.findAllById(Arrays.stream(ids).boxed().toList())) {
+            rowsById.put(row.getId(), row);
+        }
+        // Las filas borradas por la retención desde que se indexaron no aparecen
+        List<RequestHistory> rows = Arrays.stream(ids)
+                .mapToObj(rowsById::get)
+                .filter(Objects::nonNull)
+                .toList();
+        return CursorPage.of(rows, size, true, RequestHistory::getRequestDate, RequestHistory::getId);
+    }
+    
+    /**
+     * Filtros de /history. El texto de endpoint se resuelve en SQL con una
+     * subconsulta sobre el diccionario, sin traer la lista de endpoints.
+     */
+    private static Specification<RequestHistory> filters(String endpoint, String httpMethod, String responseStatus,
+                                                         Boolean hasError, LocalDateTime startDate,
+                                                         LocalDateTime endDate) {
+        Specification<RequestHistory> spec = RequestHistorySpecifications.withFilters(
+                null, httpMethod, responseStatus, hasError, startDate, endDate);
+        return endpoint != null ? spec.and(RequestHistorySpecifications.endpointContains(endpoint)) : spec;
+    }
+    
+    private RequestHistoryFacetIndex.Query facetQuery(String endpoint, String httpMethod, String responseStatus,
+                                                      Boolean hasError, LocalDateTime startDate,
+                                                      LocalDateTime endDate) {
+        List<String> endpoints = endpoint != null
+                ? dictionary.findValuesContaining(RequestHistoryDictionary.Kind.ENDPOINT, endpoint) : null;
+        return new RequestHistoryFacetIndex.Query(endpoints, httpMethod, responseStatus, hasError, startDate, endDate);
     }
     
     /**
-     * Obtiene estadísticas de requests
+     * Obtiene estadísticas de requests desde los contadores incrementales de
+     * {@link RequestStatisticsAggregator}, sin consultar request_history.
+     * phaseBreakdownByEndpoint da el tiempo medio por fase en microsegundos.
      */
-    public Object getRequestStatistics() {
-        return new Object() {
-            public final Object requestsByEndpoint = requestHistoryRepository.countRequestsByEndpoint();
-            public final Object requestsByHttpMethod = requestHistoryRepository.countRequestsByHttpMethod();
-            public final Object requestsByResponseStatus = requestHistoryRepository.countRequestsByResponseStatus();
-            public final Object executionTimeStats = requestHistoryRepository.getExecutionTimeStatsByEndpoint();
-        };
+    public RequestStatisticsResponse getRequestStatistics() {
+        return statisticsAggregator.snapshot();
     }
     
     /**
-     * Limpia registros antiguos (más de 30 días)
+     * Agrega en rollups y borra los registros más antiguos que
+     * app.request-history.retention.
+     *
+     * @return filas borradas, o particiones si la tabla está particionada
      */
     @Async
     public CompletableFuture<Integer> cleanOldRecords() {
         try {
-            LocalDateTime cutoffDate = LocalDateTime.now().minusDays(30);
-            int deletedCount = requestHistoryRepository.deleteOldRecords(cutoffDate);
-            logger.info("Cleaned {} old request records", deletedCount);
-            return CompletableFuture.completedFuture(deletedCount);
+            RequestHistoryRetentionService.RetentionResult result = retentionService.run(LocalDateTime.now());
+            int removed = result.partitionsDropped() > 0
+                    ? result.partitionsDropped() : (int) Math.min(result.rowsDeleted(), Integer.MAX_VALUE);
+            logger.info("Cleaned {} old request records ({} hours rolled up)", removed, result.hoursRolledUp());
+            return CompletableFuture.completedFuture(removed);
         } catch (Exception e) {
             logger.error("Error cleaning old records: {}", e.getMessage());
             return CompletableFuture.completedFuture(0);
@@ -110,10 +342,10 @@ public class RequestHistoryService {
     }
     
     /**
-     * Obtiene el total de requests registrados
+     * Obtiene el total de requests atendidos por todas las instancias
      */
     public long getTotalRequests() {
-        return requestHistoryRepository.count();
+        return statisticsAggregator.snapshot().getTotalRequests();
     }
     
     /**
@@ -121,7 +353,7 @@ public class RequestHistoryService {
      */
     public Page<RequestHistory> getRequestsByEndpoint(String endpoint, int page, int size) {
         Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "requestDate"));
-        return requestHistoryRepository.findByEndpointContainingIgnoreCaseOrderByRequestDateDesc(endpoint, pageable);
+        return requestHistoryRepository.findAll(RequestHistorySpecifications.endpointContains(endpoint), pageable);
     }
     
     /**
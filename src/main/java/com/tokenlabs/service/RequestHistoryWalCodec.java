@@ -0,0 +1,138 @@
+package com.tokenlabs.service;
+
+import com.tokenlabs.model.RequestHistory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Serialización binaria de {@link RequestHistory} para el write-ahead log.
+ * La versión viaja en la cabecera de cada registro; al cambiar el formato se
+ * incrementa VERSION y se mantiene la lectura de las versiones anteriores
+ * mientras puedan quedar registros sin replicar en disco.
+ */
+final class RequestHistoryWalCodec {
+
+    static final byte VERSION = 2;
+
+    /** Versión sin tiempos por fase */
+    static final byte VERSION_1 = 1;
+
+    private RequestHistoryWalCodec() {
+    }
+
+    static byte[] encode(RequestHistory history) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            LocalDateTime requestDate = history.getRequestDate();
+            out.writeBoolean(requestDate != null);
+            if (requestDate != null) {
+                out.writeLong(requestDate.toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(requestDate.getNano());
+            }
+            writeString(out, history.getEndpoint());
+            writeString(out, history.getHttpMethod());
+            writeString(out, history.getRequestParameters());
+            writeString(out, history.getRequestBody());
+            writeString(out, history.getResponseStatus());
+            writeString(out, history.getResponseBody());
+            writeString(out, history.getErrorMessage());
+            out.writeBoolean(history.getExecutionTimeMs() != null);
+            if (history.getExecutionTimeMs() != null) {
+                out.writeLong(history.getExecutionTimeMs());
+            }
+            writeString(out, history.getClientIp());
+            writeString(out, history.getUserAgent());
+            out.writeBoolean(history.getSampleWeight() != null);
+            if (history.getSampleWeight() != null) {
+                out.writeDouble(history.getSampleWeight());
+            }
+            writeLong(out, history.getHandlerMicros());
+            writeLong(out, history.getExternalFetchMicros());
+            writeLong(out, history.getDbInsertMicros());
+            writeLong(out, history.getSerializationMicros());
+            writeLong(out, history.getTotalMicros());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException si la versión no es conocida o el registro está incompleto
+     */
+    static RequestHistory decode(byte version, byte[] payload) {
+        if (version != VERSION && version != VERSION_1) {
+            throw new IllegalArgumentException("Versión de registro desconocida: " + version);
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            RequestHistory history = new RequestHistory();
+            if (in.readBoolean()) {
+                history.setRequestDate(LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC));
+            }
+            history.setEndpoint(readString(in));
+            history.setHttpMethod(readString(in));
+            history.setRequestParameters(readString(in));
+            history.setRequestBody(readString(in));
+            history.setResponseStatus(readString(in));
+            history.setResponseBody(readString(in));
+            history.setErrorMessage(readString(in));
+            if (in.readBoolean()) {
+                history.setExecutionTimeMs(in.readLong());
+            }
+            history.setClientIp(readString(in));
+            history.setUserAgent(readString(in));
+            if (in.readBoolean()) {
+                history.setSampleWeight(in.readDouble());
+            }
+            if (version >= VERSION) {
+                history.setHandlerMicros(readLong(in));
+                history.setExternalFetchMicros(readLong(in));
+                history.setDbInsertMicros(readLong(in));
+                history.setSerializationMicros(readLong(in));
+                history.setTotalMicros(readLong(in));
+            }
+            return history;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Registro incompleto", e);
+        }
+    }
+
+    private static void writeLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
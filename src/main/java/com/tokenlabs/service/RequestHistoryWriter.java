@@ -0,0 +1,455 @@
+package com.tokenlabs.service;
+
+import com.tokenlabs.model.RequestHistory;
+import com.tokenlabs.repository.RequestHistoryBatchRepository;
+import com.tokenlabs.util.WriteAheadLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Escritor por lotes de request_history.
+ *
+ * Los hilos de request encolan en una cola acotada (varios productores) y un
+ * único hilo escritor vacía la cola e inserta con JDBC batch cada batch-size
+ * registros o cada flush-interval, lo que ocurra primero.
+ *
+ * Cuando la cola está llena se aplica overflow-policy:
+ * <ul>
+ *   <li>DROP_NEWEST: se descarta el registro nuevo.</li>
+ *   <li>DROP_OLDEST: se descarta el registro más antiguo de la cola.</li>
+ *   <li>BLOCK: el hilo de request espera hasta block-timeout (backpressure) y
+ *       después descarta el registro nuevo.</li>
+ * </ul>
+ * Todo descarte queda contado en request_history.writer.dropped.
+ *
+ * Con app.request-history.wal.enabled los registros no pasan por la cola: se
+ * agregan al {@link WriteAheadLog} en disco (un append sobre un segmento
+ * mapeado en memoria) y el hilo escritor los replica desde el log. Si la base
+ * de datos falla, el lote queda en disco y se reintenta con espera creciente;
+ * el checkpoint solo avanza tras un insert correcto, por lo que un registro
+ * puede insertarse dos veces si el proceso cae entre el insert y el checkpoint.
+ * La cola en memoria queda como respaldo cuando el log no acepta el registro.
+ */
+@Service
+public class RequestHistoryWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestHistoryWriter.class);
+
+    static final String METRIC_PREFIX = "request_history.writer";
+
+    private static final Duration MIN_RETRY_BACKOFF = Duration.ofMillis(500);
+    private static final Duration MAX_RETRY_BACKOFF = Duration.ofSeconds(30);
+    /** Espera máxima de cada poll a la cola antes de volver a mirar si el escritor se está deteniendo. */
+    private static final long STOP_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    public enum OverflowPolicy {
+        DROP_NEWEST,
+        DROP_OLDEST,
+        BLOCK
+    }
+
+    private final RequestHistoryBatchRepository batchRepository;
+    private final BlockingQueue<RequestHistory> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final Duration blockTimeout;
+    private final Duration shutdownTimeout;
+
+    private final Counter enqueued;
+    private final Counter flushed;
+    private final Counter droppedQueueFull;
+    private final Counter droppedFlushError;
+    private final Counter droppedShutdown;
+    private final Counter droppedCorrupt;
+    private final Counter walAppendErrors;
+    private final Counter walReplayErrors;
+    private final Counter walCheckpointErrors;
+    private final Timer flushTimer;
+    private final MeterRegistry meterRegistry;
+
+    private WriteAheadLog writeAheadLog;
+    private List<RequestHistoryInsertListener> insertListeners = List.of();
+    private final AtomicInteger appendedSinceWakeUp = new AtomicInteger();
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    @Autowired
+    public RequestHistoryWriter(
+            RequestHistoryBatchRepository batchRepository,
+            MeterRegistry meterRegistry,
+            @Value("${app.request-history.writer.queue-capacity:10000}") int queueCapacity,
+            @Value("${app.request-history.writer.batch-size:500}") int batchSize,
+            @Value("${app.request-history.writer.flush-interval:PT0.2S}") Duration flushInterval,
+            @Value("${app.request-history.writer.overflow-policy:DROP_NEWEST}") OverflowPolicy overflowPolicy,
+            @Value("${app.request-history.writer.block-timeout:PT0.05S}") Duration blockTimeout,
+            @Value("${app.request-history.writer.shutdown-timeout:PT10S}") Duration shutdownTimeout) {
+        this.batchRepository = batchRepository;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeout = blockTimeout;
+        this.shutdownTimeout = shutdownTimeout;
+
+        this.enqueued = Counter.builder(METRIC_PREFIX + ".enqueued")
+                .description("Registros de request_history aceptados en la cola")
+                .register(meterRegistry);
+        this.flushed = Counter.builder(METRIC_PREFIX + ".flushed")
+                .description("Registros de request_history insertados en la base de datos")
+                .register(meterRegistry);
+        this.droppedQueueFull = droppedCounter(meterRegistry, "queue_full");
+        this.droppedFlushError = droppedCounter(meterRegistry, "flush_error");
+        this.droppedShutdown = droppedCounter(meterRegistry, "shutdown");
+        this.droppedCorrupt = droppedCounter(meterRegistry, "wal_corrupt");
+        this.walAppendErrors = Counter.builder(METRIC_PREFIX + ".wal.append.errors")
+                .description("Registros que el write-ahead log no aceptó (se usó la cola en memoria)")
+                .register(meterRegistry);
+        this.walReplayErrors = Counter.builder(METRIC_PREFIX + ".wal.replay.errors")
+                .description("Lotes del write-ahead log que fallaron al insertarse y se reintentarán")
+                .register(meterRegistry);
+        this.walCheckpointErrors = Counter.builder(METRIC_PREFIX + ".wal.checkpoint.errors")
+                .description("Checkpoints del write-ahead log que no se pudieron guardar tras insertar el lote")
+                .register(meterRegistry);
+        this.meterRegistry = meterRegistry;
+        this.flushTimer = Timer.builder(METRIC_PREFIX + ".flush")
+                .description("Duración de cada inserción por lotes")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".queue.size", queue, BlockingQueue::size)
+                .description("Registros pendientes de escritura")
+                .register(meterRegistry);
+    }
+
+    private static Counter droppedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder(METRIC_PREFIX + ".dropped")
+                .description("Registros de request_history descartados")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Activa el write-ahead log; sin él los registros solo pasan por la cola en memoria.
+     */
+    @Autowired(required = false)
+    public void setWriteAheadLog(WriteAheadLog writeAheadLog) {
+        this.writeAheadLog = writeAheadLog;
+        Gauge.builder(METRIC_PREFIX + ".wal.pending.bytes", writeAheadLog, WriteAheadLog::getPendingBytes)
+                .description("Bytes del write-ahead log pendientes de replicar")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".wal.segments", writeAheadLog, WriteAheadLog::getSegmentCount)
+                .description("Segmentos del write-ahead log en disco")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Listeners avisados con cada lote insertado, ya con sus ids.
+     */
+    @Autowired(required = false)
+    public void setInsertListeners(List<RequestHistoryInsertListener> insertListeners) {
+        this.insertListeners = List.copyOf(insertListeners);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writerThread = new Thread(this::runWriter, "RequestHistoryWriter");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Detiene el escritor y vuelca lo pendiente, como máximo durante shutdown-timeout.
+     * No se interrumpe al hilo escritor: sus esperas a la cola se trocean en intervalos cortos
+     * para que note la parada sin esperar a que venza flush-interval.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (writerThread == null) {
+            return;
+        }
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(shutdownTimeout.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int pending = queue.size();
+        if (pending > 0) {
+            queue.clear();
+            droppedShutdown.increment(pending);
+            logger.warn("Se descartaron {} registros de request_history pendientes al detener el escritor", pending);
+        }
+    }
+
+    /**
+     * Encola un registro para su escritura por lotes. No bloquea salvo con la política BLOCK.
+     *
+     * @return true si el registro quedó encolado, false si se descartó
+     */
+    public boolean enqueue(RequestHistory requestHistory) {
+        if (writeAheadLog != null && appendToLog(requestHistory)) {
+            enqueued.increment();
+            return true;
+        }
+        boolean accepted = switch (overflowPolicy) {
+            case DROP_NEWEST -> queue.offer(requestHistory);
+            case DROP_OLDEST -> offerDroppingOldest(requestHistory);
+            case BLOCK -> offerWithTimeout(requestHistory);
+        };
+        if (accepted) {
+            enqueued.increment();
+        } else {
+            droppedQueueFull.increment();
+            logger.debug("Cola de request_history llena, registro descartado para endpoint: {}",
+                    requestHistory.getEndpoint());
+        }
+        return accepted;
+    }
+
+    private boolean offerDroppingOldest(RequestHistory requestHistory) {
+        while (!queue.offer(requestHistory)) {
+            if (queue.poll() != null) {
+                droppedQueueFull.increment();
+            }
+        }
+        return true;
+    }
+
+    private boolean offerWithTimeout(RequestHistory requestHistory) {
+        try {
+            return queue.offer(requestHistory, blockTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean appendToLog(RequestHistory requestHistory) {
+        try {
+            writeAheadLog.append(RequestHistoryWalCodec.VERSION, RequestHistoryWalCodec.encode(requestHistory));
+        } catch (IOException | IllegalArgumentException e) {
+            walAppendErrors.increment();
+            logger.warn("Write-ahead log no disponible, se usa la cola en memoria: {}", e.getMessage());
+            return false;
+        }
+        // Se despierta al escritor cuando hay un lote completo; si no, espera a flush-interval
+        if (appendedSinceWakeUp.incrementAndGet() >= batchSize) {
+            appendedSinceWakeUp.set(0);
+            Thread thread = writerThread;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+        return true;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    private void runWriter() {
+        if (writeAheadLog != null) {
+            runLogReplayer();
+            return;
+        }
+        List<RequestHistory> batch = new ArrayList<>(batchSize);
+        long shutdownDeadline = Long.MAX_VALUE;
+        while (true) {
+            if (!running && shutdownDeadline == Long.MAX_VALUE) {
+                shutdownDeadline = System.nanoTime() + shutdownTimeout.toNanos();
+            }
+            if (!running && (queue.isEmpty() || System.nanoTime() > shutdownDeadline)) {
+                break;
+            }
+            try {
+                fillBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            flush(batch);
+        }
+        flush(batch);
+    }
+
+    /**
+     * Llena el lote hasta batch-size o hasta que vence flush-interval desde el primer registro.
+     */
+    private void fillBatch(List<RequestHistory> batch) throws InterruptedException {
+        RequestHistory first = pollWhileRunning(flushIntervalNanos);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize) {
+            if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || !running) {
+                return;
+            }
+            RequestHistory next = pollWhileRunning(remaining);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * Espera hasta timeoutNanos a un registro, pero deja de esperar en cuanto el escritor se detiene:
+     * LockSupport.unpark no despierta a un poll bloqueado en la cola.
+     */
+    private RequestHistory pollWhileRunning(long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (running) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            RequestHistory next = queue.poll(Math.min(remaining, STOP_CHECK_NANOS), TimeUnit.NANOSECONDS);
+            if (next != null) {
+                return next;
+            }
+        }
+        return queue.poll();
+    }
+
+    /**
+     * Replica el write-ahead log en la base de datos. Al detenerse deja en
+     * disco lo que no se pudo insertar; se replica en el próximo arranque.
+     * Si falla el checkpoint de un lote ya insertado la lectura sigue
+     * avanzando y el checkpoint se reintenta en la siguiente vuelta: las filas
+     * ya están en la base de datos y solo se repetirían tras un reinicio.
+     */
+    private void runLogReplayer() {
+        List<RequestHistory> batch = new ArrayList<>(batchSize);
+        List<WriteAheadLog.LogRecord> records = new ArrayList<>(batchSize);
+        WriteAheadLog.Position position = writeAheadLog.getCheckpoint();
+        boolean checkpointPending = false;
+        Duration backoff = Duration.ZERO;
+        long shutdownDeadline = Long.MAX_VALUE;
+        while (true) {
+            if (!running && shutdownDeadline == Long.MAX_VALUE) {
+                shutdownDeadline = System.nanoTime() + shutdownTimeout.toNanos();
+            }
+            // Registros que no entraron en el log
+            queue.drainTo(batch, batchSize);
+            flush(batch);
+            if (checkpointPending) {
+                checkpointPending = !acknowledge(position);
+            }
+
+            records.clear();
+            WriteAheadLog.Position next = writeAheadLog.read(position, batchSize, records);
+            boolean caughtUp = next.equals(position);
+            boolean replayed = true;
+            if (!caughtUp) {
+                for (WriteAheadLog.LogRecord record : records) {
+                    try {
+                        batch.add(RequestHistoryWalCodec.decode(record.version(), record.payload()));
+                    } catch (IllegalArgumentException e) {
+                        droppedCorrupt.increment();
+                        logger.error("Registro del write-ahead log descartado: {}", e.getMessage());
+                    }
+                }
+                replayed = insert(batch);
+                if (replayed) {
+                    position = next;
+                    checkpointPending = !acknowledge(position);
+                } else {
+                    walReplayErrors.increment();
+                }
+                batch.clear();
+            }
+
+            if (!running && (!replayed || caughtUp && queue.isEmpty() && !checkpointPending
+                    || System.nanoTime() > shutdownDeadline)) {
+                break;
+            }
+            if (!replayed) {
+                backoff = backoff.isZero() ? MIN_RETRY_BACKOFF : min(backoff.multipliedBy(2), MAX_RETRY_BACKOFF);
+                logger.warn("Replicación de request_history pausada {} ms, los registros siguen en el write-ahead log",
+                        backoff.toMillis());
+                LockSupport.parkNanos(backoff.toNanos());
+            } else {
+                backoff = Duration.ZERO;
+                if (records.size() < batchSize && running) {
+                    LockSupport.parkNanos(flushIntervalNanos);
+                }
+            }
+        }
+    }
+
+    private boolean acknowledge(WriteAheadLog.Position position) {
+        try {
+            writeAheadLog.acknowledge(position);
+            return true;
+        } catch (IOException e) {
+            // Sin checkpoint el lote se volverá a insertar tras un reinicio
+            walCheckpointErrors.increment();
+            logger.error("No se pudo guardar el checkpoint del write-ahead log: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    private void flush(List<RequestHistory> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (!insert(batch)) {
+            droppedFlushError.increment(batch.size());
+        }
+        batch.clear();
+    }
+
+    private boolean insert(List<RequestHistory> batch) {
+        if (batch.isEmpty()) {
+            return true;
+        }
+        try {
+            int inserted = flushTimer.recordCallable(() -> batchRepository.insertAll(batch));
+            flushed.increment(inserted);
+            logger.debug("Insertados {} registros de request_history", inserted);
+        } catch (Exception e) {
+            logger.error("Error insertando lote de {} registros de request_history: {}", batch.size(), e.getMessage());
+            return false;
+        }
+        for (RequestHistoryInsertListener listener : insertListeners) {
+            try {
+                listener.onInserted(batch);
+            } catch (RuntimeException e) {
+                logger.warn("Error en listener de request_history insertados {}: {}",
+                        listener.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,20 @@
+package com.tokenlabs.service;
+
+import com.tokenlabs.model.RequestHistory;
+
+/**
+ * Recibe cada request que registra {@link RequestHistoryService}, antes de
+ * que el muestreo decida si se guarda. Permite mantener agregados exactos sin
+ * volver a leer request_history.
+ *
+ * Se invoca en el hilo consumidor del ring buffer, uno a uno y en orden: las
+ * implementaciones deben ser rápidas y no bloquear. Una excepción se registra
+ * y no afecta al resto de listeners ni a la escritura.
+ */
+public interface RequestLogListener {
+
+    /**
+     * @param request datos del request; sampleWeight es 0 si no se guarda
+     */
+    void onRequestLogged(RequestHistory request);
+}
@@ -0,0 +1,170 @@
+package com.tokenlabs.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decide qué requests se guardan en request_history.
+ *
+ * Reglas de cola (tail-based), siempre se guardan:
+ * <ul>
+ *   <li>respuestas con status &gt;= 400,</li>
+ *   <li>requests con excepción o mensaje de error,</li>
+ *   <li>requests más lentos que slow-threshold.</li>
+ * </ul>
+ * El resto se muestrea con la tasa configurada para el endpoint (o la tasa por
+ * defecto). Cada fila guardada lleva su peso (1 / tasa) en sample_weight para
+ * que las estadísticas estimen los totales reales.
+ */
+@Component
+public class RequestLogSampler {
+
+    /**
+     * Peso de un request descartado por el muestreo.
+     */
+    public static final double SKIP = 0.0;
+
+    private final double defaultRate;
+    private final List<EndpointRate> endpointRates;
+    private final long slowThresholdMs;
+
+    private final Counter keptError;
+    private final Counter keptSlow;
+    private final Counter keptSampled;
+    private final Counter skipped;
+
+    @Autowired
+    public RequestLogSampler(
+            MeterRegistry meterRegistry,
+            @Value("${app.request-history.sampling.default-rate:1.0}") double defaultRate,
+            @Value("${app.request-history.sampling.rates:}") String rates,
+            @Value("${app.request-history.sampling.slow-threshold:PT1S}") Duration slowThreshold) {
+        this.defaultRate = validateRate(defaultRate, "default-rate");
+        this.endpointRates = parseRates(rates);
+        this.slowThresholdMs = slowThreshold.toMillis();
+
+        this.keptError = keptCounter(meterRegistry, "error");
+        this.keptSlow = keptCounter(meterRegistry, "slow");
+        this.keptSampled = keptCounter(meterRegistry, "sampled");
+        this.skipped = Counter.builder("request_history.sampling.skipped")
+                .description("Requests no guardados por el muestreo")
+                .register(meterRegistry);
+    }
+
+    private static Counter keptCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("request_history.sampling.kept")
+                .description("Requests guardados en request_history")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return peso con el que se guarda el request, o {@link #SKIP} si no se guarda
+     */
+    public double sampleWeight(String endpoint, String responseStatus, String errorMessage, Long executionTimeMs) {
+        if (errorMessage != null || isErrorStatus(responseStatus)) {
+            keptError.increment();
+            return 1.0;
+        }
+        if (executionTimeMs != null && executionTimeMs >= slowThresholdMs) {
+            keptSlow.increment();
+            return 1.0;
+        }
+        double rate = rateFor(endpoint);
+        if (rate >= 1.0) {
+            keptSampled.increment();
+            return 1.0;
+        }
+        if (rate > 0.0 && ThreadLocalRandom.current().nextDouble() < rate) {
+            keptSampled.increment();
+            return 1.0 / rate;
+        }
+        skipped.increment();
+        return SKIP;
+    }
+
+    /**
+     * Tasa del patrón más específico que coincide: ruta exacta o prefijo terminado en *.
+     */
+    double rateFor(String endpoint) {
+        if (endpoint != null) {
+            for (EndpointRate endpointRate : endpointRates) {
+                if (endpointRate.matches(endpoint)) {
+                    return endpointRate.rate();
+                }
+            }
+        }
+        return defaultRate;
+    }
+
+    private static boolean isErrorStatus(String responseStatus) {
+        if (responseStatus == null) {
+            return false;
+        }
+        try {
+            return Integer.parseInt(responseStatus.trim()) >= 400;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static List<EndpointRate> parseRates(String rates) {
+        Map<String, Double> parsed = new LinkedHashMap<>();
+        if (rates != null) {
+            for (String entry : rates.split(",")) {
+                if (entry.isBlank()) {
+                    continue;
+                }
+                int separator = entry.lastIndexOf('=');
+                if (separator <= 0) {
+                    throw new IllegalArgumentException("Tasa de muestreo inválida: '" + entry.trim() + "' (formato ruta=tasa)");
+                }
+                String pattern = entry.substring(0, separator).trim();
+                double rate;
+                try {
+                    rate = Double.parseDouble(entry.substring(separator + 1).trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Tasa de muestreo inválida para " + pattern);
+                }
+                parsed.put(pattern, validateRate(rate, pattern));
+            }
+        }
+        List<EndpointRate> result = new ArrayList<>();
+        parsed.forEach((pattern, rate) -> result.add(new EndpointRate(pattern, rate)));
+        // Las rutas exactas primero; entre prefijos, el más largo gana
+        result.sort(Comparator.comparing(EndpointRate::isPrefix)
+                .thenComparing(Comparator.comparingInt((EndpointRate rate) -> rate.pattern().length()).reversed()));
+        return List.copyOf(result);
+    }
+
+    private static double validateRate(double rate, String name) {
+        if (rate < 0.0 || rate > 1.0) {
+            throw new IllegalArgumentException("La tasa de muestreo de " + name + " debe estar entre 0 y 1");
+        }
+        return rate;
+    }
+
+    private record EndpointRate(String pattern, double rate) {
+
+        boolean isPrefix() {
+            return pattern.endsWith("*");
+        }
+
+        boolean matches(String endpoint) {
+            return isPrefix()
+                    ? endpoint.startsWith(pattern.substring(0, pattern.length() - 1))
+                    : endpoint.equals(pattern);
+        }
+    }
+}
@@ -0,0 +1,550 @@
+package com.tokenlabs.service;
+
+import com.tokenlabs.dto.RequestStatisticsResponse;
+import com.tokenlabs.model.RequestHistory;
+import com.tokenlabs.repository.RequestHistoryRollupRepository;
+import com.tokenlabs.repository.RequestHistoryRollupRepository.Dimension;
+import com.tokenlabs.repository.RequestStatisticsSummaryRepository;
+import com.tokenlabs.repository.RequestStatisticsSummaryRepository.SummaryRow;
+import com.tokenlabs.util.RequestTimings;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Estadísticas de requests mantenidas de forma incremental.
+ *
+ * Cada request registrado suma en contadores {@link LongAdder} por endpoint,
+ * método y código de respuesta, así que las cifras son exactas aunque el
+ * muestreo no guarde el request. Cada app.request-history.statistics.checkpoint-interval
+ * los contadores de esta instancia se vuelcan a request_statistics_summary
+ * (una fila por instancia y valor) y se leen las filas de las demás
+ * instancias. {@link #snapshot()} suma ambas partes en memoria, sin consultar
+ * la base de datos.
+ *
+ * Con Redis disponible, cada app.request-history.statistics.cluster.merge-interval
+ * los contadores se fusionan además en {@link RedisRequestStatisticsStore}
+ * como G-counters por instancia, y las IPs de cliente nuevas se añaden a un
+ * HyperLogLog. Las filas de las demás instancias leídas de Redis y de la base
+ * de datos se unen campo a campo (el mayor valor gana), así que la fuente más
+ * reciente prevalece y la caída de Redis solo retrasa los datos hasta el
+ * siguiente checkpoint.
+ *
+ * Al arrancar se cargan las filas propias como punto de partida. Si la tabla
+ * está vacía se siembra una vez desde los rollups y request_history, con la
+ * instancia {@link #SEED_NODE}.
+ */
+@Service
+public class RequestStatisticsAggregator implements RequestLogListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestStatisticsAggregator.class);
+
+    /** Valor que agrupa los que superan app.request-history.statistics.max-values */
+    public static final String OTHER_VALUE = "(other)";
+
+    /** Instancia con la que se guardan los contadores sembrados desde los rollups */
+    public static final String SEED_NODE = "(seed)";
+
+    private static final RequestTimings.Phase[] PHASES = RequestTimings.Phase.values();
+    private static final long REDIS_RETRY_BACKOFF_MS = 30_000;
+
+    private final EnumMap<Dimension, ConcurrentHashMap<String, Counters>> counters = new EnumMap<>(Dimension.class);
+    private final RequestStatisticsSummaryRepository summaryRepository;
+    private final RequestHistoryRollupRepository rollupRepository;
+    private final String nodeId;
+    private final int maxValues;
+    private final RedisRequestStatisticsStore clusterStore;
+    private final int maxPendingClients;
+    private final Clock clock;
+
+    // IPs vistas desde la última fusión, pendientes de añadir al HyperLogLog
+    private final Set<String> pendingClients = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean loaded;
+    private volatile List<SummaryRow> databaseNodes = List.of();
+    private volatile List<SummaryRow> clusterNodes = List.of();
+    private volatile List<SummaryRow> otherNodes = List.of();
+    private volatile LocalDateTime checkpointedAt;
+    private volatile LocalDateTime clusterMergedAt;
+    private volatile Long uniqueClients;
+    private volatile long redisUnavailableUntil = 0;
+
+    @Autowired
+    public RequestStatisticsAggregator(
+            RequestStatisticsSummaryRepository summaryRepository,
+            RequestHistoryRollupRepository rollupRepository,
+            @Autowired(required = false) StringRedisTemplate redisTemplate,
+            @Value("${app.request-history.statistics.node-id:${HOSTNAME:local}}") String nodeId,
+            @Value("${app.request-history.statistics.max-values:1000}") int maxValues,
+            @Value("${app.request-history.statistics.cluster.store:auto}") String clusterStoreMode,
+            @Value("${app.request-history.statistics.cluster.max-pending-clients:100000}") int maxPendingClients) {
+        this(summaryRepository, rollupRepository, nodeId, maxValues,
+                redisTemplate != null && !"local".equalsIgnoreCase(clusterStoreMode)
+                        ? new RedisRequestStatisticsStore(redisTemplate) : null,
+                maxPendingClients, Clock.systemDefaultZone());
+    }
+
+    RequestStatisticsAggregator(RequestStatisticsSummaryRepository summaryRepository,
+                                RequestHistoryRollupRepository rollupRepository,
+                                String nodeId, int maxValues, Clock clock) {
+        this(summaryRepository, rollupRepository, nodeId, maxValues, null, 0, clock);
+    }
+
+    RequestStatisticsAggregator(RequestStatisticsSummaryRepository summaryRepository,
+                                RequestHistoryRollupRepository rollupRepository,
+                                String nodeId, int maxValues, RedisRequestStatisticsStore clusterStore,
+                                int maxPendingClients, Clock clock) {
+        this.summaryRepository = summaryRepository;
+        this.rollupRepository = rollupRepository;
+        this.nodeId = nodeId;
+        this.maxValues = maxValues;
+        this.clusterStore = clusterStore;
+        this.maxPendingClients = maxPendingClients;
+        this.clock = clock;
+        for (Dimension dimension : Dimension.values()) {
+            counters.put(dimension, new ConcurrentHashMap<>());
+        }
+    }
+
+    @Override
+    public void onRequestLogged(RequestHistory request) {
+        boolean error = request.getErrorMessage() != null;
+        boolean stored = request.getSampleWeight() != null && request.getSampleWeight() > 0;
+        Long[] phaseMicros = request.getTotalMicros() != null ? phaseMicros(request) : null;
+        record(Dimension.ENDPOINT, request.getEndpoint(), error, stored, request.getExecutionTimeMs(), phaseMicros);
+        record(Dimension.HTTP_METHOD, request.getHttpMethod(), error, stored, request.getExecutionTimeMs(), phaseMicros);
+        record(Dimension.RESPONSE_STATUS, request.getResponseStatus(), error, stored, request.getExecutionTimeMs(), phaseMicros);
+        if (clusterStore != null && request.getClientIp() != null && pendingClients.size() < maxPendingClients) {
+            pendingClients.add(request.getClientIp());
+        }
+    }
+
+    private void record(Dimension dimension, String value, boolean error, boolean stored,
+                        Long executionTimeMs, Long[] phaseMicros) {
+        if (value == null) {
+            return;
+        }
+        Counters c = countersFor(dimension, value);
+        c.requests.increment();
+        if (error) {
+            c.errors.increment();
+        }
+        if (stored) {
+            c.stored.increment();
+        }
+        if (executionTimeMs != null) {
+            c.executionTimeSum.add(executionTimeMs);
+            c.executionTimeCount.increment();
+            c.minExecutionTimeMs.accumulate(executionTimeMs);
+            c.maxExecutionTimeMs.accumulate(executionTimeMs);
+        }
+        if (phaseMicros != null) {
+            for (int i = 0; i < PHASES.length; i++) {
+                if (phaseMicros[i] != null) {
+                    c.phaseMicrosSums[i].add(phaseMicros[i]);
+                }
+            }
+            c.phaseTimingCount.increment();
+        }
+    }
+
+    private Counters countersFor(Dimension dimension, String value) {
+        ConcurrentHashMap<String, Counters> values = counters.get(dimension);
+        Counters existing = values.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        String key = values.size() >= maxValues ? OTHER_VALUE : value;
+        return values.computeIfAbsent(key, k -> new Counters());
+    }
+
+    /**
+     * Carga el punto de partida al arrancar, sin esperar al primer checkpoint.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        checkpoint();
+    }
+
+    /**
+     * Vuelca los contadores de esta instancia y refresca los de las demás.
+     * Un fallo de la base de datos se registra; los contadores siguen en
+     * memoria y se vuelcan en el siguiente checkpoint.
+     */
+    @Scheduled(fixedDelayString = "${app.request-history.statistics.checkpoint-interval:PT30S}",
+               initialDelayString = "${app.request-history.statistics.checkpoint-interval:PT30S}")
+    public synchronized void checkpoint() {
+        try {
+            if (!loaded) {
+                load();
+            }
+            LocalDateTime now = LocalDateTime.now(clock);
+            summaryRepository.saveAll(localRows(), now);
+            databaseNodes = summaryRepository.findAll().stream()
+                    .filter(row -> !row.nodeId().equals(nodeId))
+                    .toList();
+            refreshOtherNodes();
+            checkpointedAt = now;
+        } catch (DataAccessException e) {
+            logger.warn("No se pudo guardar el checkpoint de las estadísticas de requests: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Fusiona los contadores de esta instancia en Redis y lee los de todas.
+     * Espera a que se haya cargado el punto de partida, que ya incluye lo
+     * fusionado antes de reiniciar. Si Redis falla se reintenta tras una
+     * espera y mientras tanto se usan las filas del último checkpoint.
+     */
+    @Scheduled(fixedDelayString = "${app.request-history.statistics.cluster.merge-interval:PT5S}",
+               initialDelayString = "${app.request-history.statistics.cluster.merge-interval:PT5S}")
+    public synchronized void mergeCluster() {
+        if (!loaded || !isRedisActive()) {
+            return;
+        }
+        List<String> clients = List.copyOf(pendingClients);
+        clients.forEach(pendingClients::remove);
+        try {
+            clusterStore.merge(nodeId, localRows());
+            clusterStore.addClients(clients);
+            clusterNodes = clusterStore.findAll().stream()
+                    .filter(row -> !row.nodeId().equals(nodeId))
+                    .toList();
+            uniqueClients = clusterStore.countClients();
+            refreshOtherNodes();
+            clusterMergedAt = LocalDateTime.now(clock);
+        } catch (RuntimeException e) {
+            pendingClients.addAll(clients);
+            markRedisUnavailable(e);
+        }
+    }
+
+    /**
+     * Filas de esta instancia en Redis, vacías si Redis no está disponible.
+     */
+    private List<SummaryRow> ownClusterRows() {
+        if (!isRedisActive()) {
+            return List.of();
+        }
+        try {
+            return clusterStore.findNode(nodeId);
+        } catch (RuntimeException e) {
+            markRedisUnavailable(e);
+            return List.of();
+        }
+    }
+
+    private boolean isRedisActive() {
+        return clusterStore != null && clock.millis() >= redisUnavailableUntil;
+    }
+
+    private void markRedisUnavailable(Exception e) {
+        logger.warn("Redis no disponible para estadísticas del clúster, usando el último checkpoint: {}", e.getMessage());
+        redisUnavailableUntil = clock.millis() + REDIS_RETRY_BACKOFF_MS;
+    }
+
+    /**
+     * Une las filas de las demás instancias leídas de la base de datos y de
+     * Redis: por instancia y valor, el mayor de cada contador.
+     */
+    private void refreshOtherNodes() {
+        Map<String, SummaryRow> joined = new LinkedHashMap<>();
+        for (List<SummaryRow> rows : List.of(databaseNodes, clusterNodes)) {
+            for (SummaryRow row : rows) {
+                joined.merge(row.nodeId() + "|" + row.dimension() + "|" + row.value(), row,
+                        RedisRequestStatisticsStore::join);
+            }
+        }
+        otherNodes = List.copyOf(joined.values());
+    }
+
+    /**
+     * Último checkpoint antes de detener la aplicación.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (loaded) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Suma a los contadores las filas guardadas por esta instancia antes de
+     * reiniciar, la unión de las de la base de datos y las de Redis. Con la
+     * tabla vacía la siembra desde los rollups.
+     */
+    private void load() {
+        List<SummaryRow> rows = summaryRepository.findAll();
+        if (rows.isEmpty()) {
+            List<SummaryRow> seed = seedRows();
+            summaryRepository.saveAll(seed, LocalDateTime.now(clock));
+            logger.info("Estadísticas de requests inicializadas con {} filas de los rollups", seed.size());
+        }
+        Map<String, SummaryRow> own = new LinkedHashMap<>();
+        for (SummaryRow row : ownClusterRows()) {
+            own.put(row.dimension() + "|" + row.value(), row);
+        }
+        for (SummaryRow row : rows) {
+            if (row.nodeId().equals(nodeId)) {
+                own.merge(row.dimension() + "|" + row.value(), row, RedisRequestStatisticsStore::join);
+            }
+        }
+        for (SummaryRow row : own.values()) {
+            countersFor(row.dimension(), row.value()).add(row);
+        }
+        loaded = true;
+    }
+
+    /**
+     * Contadores equivalentes a las estadísticas calculadas desde los rollups
+     * y las filas no agregadas, ponderadas por el peso de muestreo.
+     */
+    private List<SummaryRow> seedRows() {
+        RequestHistoryRollupRepository.Coverage coverage = rollupRepository.findCoverage();
+        Map<Dimension, Map<String, Totals>> seed = new EnumMap<>(Dimension.class);
+        for (Dimension dimension : Dimension.values()) {
+            Map<String, Totals> values = seed.computeIfAbsent(dimension, d -> new HashMap<>());
+            for (Object[] row : rollupRepository.countRequestsBy(dimension, coverage)) {
+                if (row[0] != null) {
+                    values.computeIfAbsent((String) row[0], k -> new Totals()).requests = (Long) row[1];
+                }
+            }
+        }
+        Map<String, Totals> endpoints = seed.get(Dimension.ENDPOINT);
+        for (Object[] row : rollupRepository.countErrorsByEndpoint(coverage)) {
+            endpoints.computeIfAbsent((String) row[0], k -> new Totals()).errors = (Long) row[1];
+        }
+        for (Object[] row : rollupRepository.getExecutionTimeStatsByEndpoint(coverage)) {
+            Totals totals = endpoints.computeIfAbsent((String) row[0], k -> new Totals());
+            totals.executionTimeCount = totals.requests;
+            totals.executionTimeSum = Math.round((Double) row[1] * totals.requests);
+            totals.minExecutionTimeMs = (Long) row[2];
+            totals.maxExecutionTimeMs = (Long) row[3];
+        }
+        for (RequestHistoryRollupRepository.PhaseBreakdown breakdown : rollupRepository.getPhaseBreakdownByEndpoint(coverage)) {
+            Totals totals = endpoints.computeIfAbsent(breakdown.endpoint(), k -> new Totals());
+            double[] averages = {breakdown.handlerMicros(), breakdown.externalFetchMicros(),
+                    breakdown.dbInsertMicros(), breakdown.serializationMicros(), breakdown.totalMicros()};
+            for (int i = 0; i < PHASES.length; i++) {
+                totals.phaseMicrosSums[i] = Math.round(averages[i] * breakdown.timedRequests());
+            }
+            totals.phaseTimingCount = breakdown.timedRequests();
+        }
+
+        List<SummaryRow> rows = new ArrayList<>();
+        seed.forEach((dimension, values) -> values.forEach((value, totals) ->
+                rows.add(totals.toRow(SEED_NODE, dimension, value))));
+        return rows;
+    }
+
+    private List<SummaryRow> localRows() {
+        List<SummaryRow> rows = new ArrayList<>();
+        counters.forEach((dimension, values) -> values.forEach((value, c) ->
+                rows.add(c.toRow(nodeId, dimension, value))));
+        return rows;
+    }
+
+    /**
+     * Estadísticas de todas las instancias: los contadores de esta en el
+     * momento actual y los de las demás en su última fusión en Redis o
+     * checkpoint. No hace llamadas remotas.
+     */
+    public RequestStatisticsResponse snapshot() {
+        Map<Dimension, Map<String, Totals>> merged = new EnumMap<>(Dimension.class);
+        for (Dimension dimension : Dimension.values()) {
+            merged.put(dimension, new HashMap<>());
+        }
+        for (List<SummaryRow> rows : List.of(localRows(), otherNodes)) {
+            for (SummaryRow row : rows) {
+                merged.get(row.dimension()).computeIfAbsent(row.value(), k -> new Totals()).add(row);
+            }
+        }
+
+        Map<String, Totals> endpoints = merged.get(Dimension.ENDPOINT);
+        RequestStatisticsResponse response = new RequestStatisticsResponse();
+        response.setTotalRequests(endpoints.values().stream().mapToLong(t -> t.requests).sum());
+        response.setStoredRequests(endpoints.values().stream().mapToLong(t -> t.stored).sum());
+        response.setRequestsByEndpoint(countsBy(endpoints, t -> t.requests));
+        response.setRequestsByHttpMethod(countsBy(merged.get(Dimension.HTTP_METHOD), t -> t.requests));
+        response.setRequestsByResponseStatus(countsBy(merged.get(Dimension.RESPONSE_STATUS), t -> t.requests));
+        response.setErrorsByEndpoint(countsBy(endpoints, t -> t.errors));
+
+        Map<String, RequestStatisticsResponse.ExecutionTimeStats> executionTimeStats = new LinkedHashMap<>();
+        Map<String, RequestStatisticsResponse.PhaseBreakdown> phaseBreakdown = new LinkedHashMap<>();
+        sortedBy(endpoints, t -> t.requests).forEach(entry -> {
+            Totals t = entry.getValue();
+            if (t.executionTimeCount > 0) {
+                executionTimeStats.put(entry.getKey(), new RequestStatisticsResponse.ExecutionTimeStats(
+                        (double) t.executionTimeSum / t.executionTimeCount,
+                        t.minExecutionTimeMs != null ? t.minExecutionTimeMs : 0L,
+                        t.maxExecutionTimeMs != null ? t.maxExecutionTimeMs : 0L));
+            }
+        });
+        sortedBy(endpoints, t -> t.phaseTimingCount > 0
+                ? t.phaseMicrosSums[RequestTimings.Phase.TOTAL.ordinal()] / t.phaseTimingCount : 0L)
+                .forEach(entry -> {
+                    Totals t = entry.getValue();
+                    if (t.phaseTimingCount > 0) {
+                        double count = t.phaseTimingCount;
+                        phaseBreakdown.put(entry.getKey(), new RequestStatisticsResponse.PhaseBreakdown(
+                                t.phaseTimingCount,
+                                t.phaseMicrosSums[RequestTimings.Phase.HANDLER.ordinal()] / count,
+                                t.phaseMicrosSums[RequestTimings.Phase.EXTERNAL_FETCH.ordinal()] / count,
+                                t.phaseMicrosSums[RequestTimings.Phase.DB_INSERT.ordinal()] / count,
+                                t.phaseMicrosSums[RequestTimings.Phase.SERIALIZATION.ordinal()] / count,
+                                t.phaseMicrosSums[RequestTimings.Phase.TOTAL.ordinal()] / count));
+                    }
+                });
+        response.setExecutionTimeStats(executionTimeStats);
+        response.setPhaseBreakdownByEndpoint(phaseBreakdown);
+        response.setCheckpointedAt(checkpointedAt);
+        response.setClusterNodes((int) otherNodes.stream().map(SummaryRow::nodeId)
+                .filter(node -> !node.equals(SEED_NODE)).distinct().count() + 1);
+        response.setUniqueClients(uniqueClients);
+        response.setClusterMergedAt(clusterMergedAt);
+        return response;
+    }
+
+    /**
+     * Valores con contador mayor que cero, de mayor a menor.
+     */
+    private static Map<String, Long> countsBy(Map<String, Totals> values, ToLongFunction<Totals> counter) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        sortedBy(values, counter).forEach(entry -> {
+            long count = counter.applyAsLong(entry.getValue());
+            if (count > 0) {
+                counts.put(entry.getKey(), count);
+            }
+        });
+        return counts;
+    }
+
+    private static List<Map.Entry<String, Totals>> sortedBy(Map<String, Totals> values, ToLongFunction<Totals> key) {
+        return values.entrySet().stream()
+                .sorted(Comparator.<Map.Entry<String, Totals>>comparingLong(entry -> key.applyAsLong(entry.getValue()))
+                        .reversed()
+                        .thenComparing(Map.Entry::getKey))
+                .toList();
+    }
+
+    private static Long[] phaseMicros(RequestHistory request) {
+        return new Long[]{request.getHandlerMicros(), request.getExternalFetchMicros(),
+                request.getDbInsertMicros(), request.getSerializationMicros(), request.getTotalMicros()};
+    }
+
+    /**
+     * Contadores concurrentes de un valor de una dimensión.
+     */
+    private static final class Counters {
+        final LongAdder requests = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder stored = new LongAdder();
+        final LongAdder executionTimeSum = new LongAdder();
+        final LongAdder executionTimeCount = new LongAdder();
+        final LongAccumulator minExecutionTimeMs = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        final LongAccumulator maxExecutionTimeMs = new LongAccumulator(Math::max, Long.MIN_VALUE);
+        final LongAdder[] phaseMicrosSums = new LongAdder[PHASES.length];
+        final LongAdder phaseTimingCount = new LongAdder();
+
+        Counters() {
+            for (int i = 0; i < phaseMicrosSums.length; i++) {
+                phaseMicrosSums[i] = new LongAdder();
+            }
+        }
+
+        void add(SummaryRow row) {
+            requests.add(row.requests());
+            errors.add(row.errors());
+            stored.add(row.stored());
+            executionTimeSum.add(row.executionTimeSum());
+            executionTimeCount.add(row.executionTimeCount());
+            if (row.minExecutionTimeMs() != null) {
+                minExecutionTimeMs.accumulate(row.minExecutionTimeMs());
+            }
+            if (row.maxExecutionTimeMs() != null) {
+                maxExecutionTimeMs.accumulate(row.maxExecutionTimeMs());
+            }
+            for (int i = 0; i < phaseMicrosSums.length; i++) {
+                phaseMicrosSums[i].add(row.phaseMicrosSums()[i]);
+            }
+            phaseTimingCount.add(row.phaseTimingCount());
+        }
+
+        SummaryRow toRow(String nodeId, Dimension dimension, String value) {
+            long min = minExecutionTimeMs.get();
+            long max = maxExecutionTimeMs.get();
+            long[] phaseSums = new long[phaseMicrosSums.length];
+            for (int i = 0; i < phaseSums.length; i++) {
+                phaseSums[i] = phaseMicrosSums[i].sum();
+            }
+            return new SummaryRow(nodeId, dimension, value, requests.sum(), errors.sum(), stored.sum(),
+                    executionTimeSum.sum(), executionTimeCount.sum(),
+                    min != Long.MAX_VALUE ? min : null, max != Long.MIN_VALUE ? max : null,
+                    phaseSums, phaseTimingCount.sum());
+        }
+    }
+
+    /**
+     * Suma de filas de varias instancias para un valor.
+     */
+    private static final class Totals {
+        long requests;
+        long errors;
+        long stored;
+        long executionTimeSum;
+        long executionTimeCount;
+        Long minExecutionTimeMs;
+        Long maxExecutionTimeMs;
+        final long[] phaseMicrosSums = new long[PHASES.length];
+        long phaseTimingCount;
+
+        void add(SummaryRow row) {
+            requests += row.requests();
+            errors += row.errors();
+            stored += row.stored();
+            executionTimeSum += row.executionTimeSum();
+            executionTimeCount += row.executionTimeCount();
+            if (row.minExecutionTimeMs() != null) {
+                minExecutionTimeMs = minExecutionTimeMs == null
+                        ? row.minExecutionTimeMs() : Math.min(minExecutionTimeMs, row.minExecutionTimeMs());
+            }
+            if (row.maxExecutionTimeMs() != null) {
+                maxExecutionTimeMs = maxExecutionTimeMs == null
+                        ? row.maxExecutionTimeMs() : Math.max(maxExecutionTimeMs, row.maxExecutionTimeMs());
+            }
+            for (int i = 0; i < phaseMicrosSums.length; i++) {
+                phaseMicrosSums[i] += row.phaseMicrosSums()[i];
+            }
+            phaseTimingCount += row.phaseTimingCount();
+        }
+
+        SummaryRow toRow(String nodeId, Dimension dimension, String value) {
+            return new SummaryRow(nodeId, dimension, value, requests, errors, stored,
+                    executionTimeSum, executionTimeCount, minExecutionTimeMs, maxExecutionTimeMs,
+                    phaseMicrosSums.clone(), phaseTimingCount);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.tokenlabs.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Detecta hilos virtuales fijados (pinned) a su carrier thread.
+ *
+ * Un hilo virtual que bloquea dentro de un bloque synchronized o de código
+ * nativo no libera su carrier: con pocos carriers (uno por CPU) unas pocas
+ * llamadas JDBC o Lettuce fijadas bastan para frenar todo el servidor.
+ * Se consume el evento JFR jdk.VirtualThreadPinned en streaming y se agrupa
+ * por sitio de la aplicación donde ocurre el bloqueo.
+ */
+@Service
+public class VirtualThreadPinningMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int MAX_SITES = 200;
+    private static final int REPORTED_FRAMES = 12;
+
+    private final boolean enabled;
+    private final Duration threshold;
+
+    private final ConcurrentHashMap<String, PinningSite> sites = new ConcurrentHashMap<>();
+    private final LongAdder pinnedEvents = new LongAdder();
+    private final LongAdder pinnedNanos = new LongAdder();
+    private volatile RecordingStream recordingStream;
+
+    @Autowired
+    public VirtualThreadPinningMonitor(
+            @Value("${app.virtual-threads.pinning-monitor.enabled:${spring.threads.virtual.enabled:false}}") boolean enabled,
+            @Value("${app.virtual-threads.pinning-monitor.threshold:PT0.02S}") Duration threshold) {
+        this.enabled = enabled;
+        this.threshold = threshold;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            logger.debug("Monitor de pinning de hilos virtuales deshabilitado");
+            return;
+        }
+        try {
+            RecordingStream stream = new RecordingStream();
+            stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+            stream.onEvent(PINNED_EVENT, this::record);
+            stream.startAsync();
+            recordingStream = stream;
+            logger.info("Monitor de pinning de hilos virtuales activo (umbral {})", threshold);
+        } catch (Exception | LinkageError e) {
+            logger.warn("No se pudo iniciar el monitor de pinning (JFR no disponible): {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        RecordingStream stream = recordingStream;
+        if (stream != null) {
+            stream.close();
+            recordingStream = null;
+        }
+    }
+
+    void record(RecordedEvent event) {
+        long durationNanos = event.getDuration().toNanos();
+        List<String> frames = frames(event.getStackTrace());
+        String site = applicationSite(frames);
+        PinningSite pinningSite = sites.get(site);
+        if (pinningSite == null) {
+            if (sites.size() >= MAX_SITES) {
+                site = "other";
+            }
+            pinningSite = sites.computeIfAbsent(site, key -> {
+                logger.warn("Hilo virtual fijado a su carrier ({}) en {} durante {} ms:\n  {}",
+                        classify(frames), key, durationNanos / 1_000_000, String.join("\n  ", frames));
+                return new PinningSite(key, classify(frames), frames);
+            });
+        }
+        pinningSite.record(durationNanos);
+        pinnedNanos.add(durationNanos);
+        pinnedEvents.increment();
+    }
+
+    /**
+     * Resumen de los eventos de pinning observados, ordenado por tiempo total fijado.
+     */
+    public PinningReport getReport() {
+        List<PinningSiteSummary> summaries = new ArrayList<>();
+        for (PinningSite site : sites.values()) {
+            summaries.add(site.summary());
+        }
+        summaries.sort(Comparator.comparingLong(PinningSiteSummary::totalPinnedMicros).reversed());
+        return new PinningReport(enabled, recordingStream != null, threshold.toMillis(),
+                pinnedEvents.sum(), pinnedNanos.sum() / 1_000, summaries);
+    }
+
+    public long getPinnedEventCount() {
+        return pinnedEvents.sum();
+    }
+
+    private static List<String> frames(RecordedStackTrace stackTrace) {
+        List<String> frames = new ArrayList<>();
+        if (stackTrace == null) {
+            return frames;
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (frames.size() >= REPORTED_FRAMES) {
+                break;
+            }
+            frames.add(frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                    + ":" + frame.getLineNumber());
+        }
+        return frames;
+    }
+
+    /**
+     * Primer frame propio de la aplicación; si no hay, el primer frame fuera del JDK.
+     */
+    private static String applicationSite(List<String> frames) {
+        for (String frame : frames) {
+            if (frame.startsWith("com.tokenlabs.")) {
+                return frame;
+            }
+        }
+        for (String frame : frames) {
+            if (!frame.startsWith("java.") && !frame.startsWith("jdk.") && !frame.startsWith("sun.")) {
+                return frame;
+            }
+        }
+        return frames.isEmpty() ? "unknown" : frames.get(0);
+    }
+
+    private static String classify(List<String> frames) {
+        for (String frame : frames) {
+            if (frame.startsWith("org.postgresql.") || frame.startsWith("org.h2.")
+                    || frame.startsWith("com.zaxxer.hikari.")) {
+                return "JDBC";
+            }
+            if (frame.startsWith("io.lettuce.") || frame.startsWith("org.springframework.data.redis.")) {
+                return "Lettuce";
+            }
+        }
+        return "Application";
+    }
+
+    private static final class PinningSite {
+        private final String site;
+        private final String source;
+        private final List<String> sampleStack;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private PinningSite(String site, String source, List<String> sampleStack) {
+            this.site = site;
+            this.source = source;
+            this.sampleStack = List.copyOf(sampleStack);
+        }
+
+        private void record(long durationNanos) {
+            count.increment();
+            totalNanos.add(durationNanos);
+            maxNanos.accumulateAndGet(durationNanos, Math::max);
+        }
+
+        private PinningSiteSummary summary() {
+            return new PinningSiteSummary(site, source, count.sum(),
+                    totalNanos.sum() / 1_000, maxNanos.get() / 1_000, sampleStack);
+        }
+    }
+
+    public record PinningSiteSummary(String site, String source, long events,
+                                     long totalPinnedMicros, long maxPinnedMicros, List<String> sampleStack) {
+    }
+
+    public record PinningReport(boolean enabled, boolean active, long thresholdMs,
+                                long pinnedEvents, long totalPinnedMicros, List<PinningSiteSummary> sites) {
+    }
+}
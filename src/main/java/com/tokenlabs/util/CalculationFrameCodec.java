@@ -0,0 +1,171 @@
+package com.tokenlabs.util;
+
+import com.tokenlabs.dto.CalculationRequest;
+import com.tokenlabs.dto.CalculationResponse;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codec de los frames binarios del canal WebSocket de cálculos (big-endian).
+ *
+ * <pre>
+ * decimal   = [int32 scale][uint8 len][len bytes del unscaledValue en complemento a dos]
+ * request   = [int64 id][decimal firstNumber][decimal secondNumber]
+ * response  = [int64 id][uint8 status=0][decimal first][decimal second][decimal percentage][decimal result]
+ * error     = [int64 id][uint8 status&gt;0][uint16 len][mensaje UTF-8]
+ * </pre>
+ *
+ * El id lo elige el cliente y se devuelve tal cual para correlacionar
+ * respuestas que llegan fuera de orden.
+ */
+public final class CalculationFrameCodec {
+
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_INVALID_REQUEST = 1;
+    public static final byte STATUS_OVERLOADED = 2;
+    public static final byte STATUS_INTERNAL_ERROR = 3;
+
+    private static final int MAX_UNSCALED_BYTES = 255;
+    private static final int MAX_MESSAGE_BYTES = 1024;
+
+    private CalculationFrameCodec() {
+    }
+
+    /**
+     * Request decodificado de un frame binario.
+     */
+    public record DecodedRequest(long id, CalculationRequest request) {
+    }
+
+    public static ByteBuffer encodeRequest(long id, CalculationRequest request) {
+        byte[] first = unscaledBytes(request.getFirstNumber());
+        byte[] second = unscaledBytes(request.getSecondNumber());
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + decimalSize(first) + decimalSize(second));
+        buffer.putLong(id);
+        putDecimal(buffer, request.getFirstNumber(), first);
+        putDecimal(buffer, request.getSecondNumber(), second);
+        return buffer.flip();
+    }
+
+    /**
+     * @throws IllegalArgumentException si el frame está truncado o mal formado
+     */
+    public static DecodedRequest decodeRequest(ByteBuffer frame) {
+        ByteBuffer buffer = frame.duplicate();
+        try {
+            long id = buffer.getLong();
+            BigDecimal first = getDecimal(buffer);
+            BigDecimal second = getDecimal(buffer);
+            if (buffer.hasRemaining()) {
+                throw new IllegalArgumentException("Frame con " + buffer.remaining() + " bytes sobrantes");
+            }
+            return new DecodedRequest(id, new CalculationRequest(first, second));
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Frame binario truncado");
+        }
+    }
+
+    /**
+     * Lee solo el id de un frame, para poder correlacionar el error de un frame inválido.
+     *
+     * @return el id, o -1 si el frame no llega a contenerlo
+     */
+    public static long peekId(ByteBuffer frame) {
+        return frame.remaining() >= Long.BYTES ? frame.getLong(frame.position()) : -1L;
+    }
+
+    public static ByteBuffer encodeResponse(long id, CalculationResponse response) {
+        byte[] first = unscaledBytes(response.getFirstNumber());
+        byte[] second = unscaledBytes(response.getSecondNumber());
+        byte[] percentage = unscaledBytes(response.getPercentage());
+        byte[] result = unscaledBytes(response.getResult());
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + 1 + decimalSize(first) + decimalSize(second)
+                + decimalSize(percentage) + decimalSize(result));
+        buffer.putLong(id);
+        buffer.put(STATUS_OK);
+        putDecimal(buffer, response.getFirstNumber(), first);
+        putDecimal(buffer, response.getSecondNumber(), second);
+        putDecimal(buffer, response.getPercentage(), percentage);
+        putDecimal(buffer, response.getResult(), result);
+        return buffer.flip();
+    }
+
+    /**
+     * @throws IllegalArgumentException si el frame es un error (status distinto de OK) o está mal formado
+     */
+    public static CalculationResponse decodeResponse(ByteBuffer frame) {
+        ByteBuffer buffer = frame.duplicate();
+        try {
+            buffer.getLong();
+            byte status = buffer.get();
+            if (status != STATUS_OK) {
+                throw new IllegalArgumentException("Frame de error con status " + status);
+            }
+            return new CalculationResponse(getDecimal(buffer), getDecimal(buffer), getDecimal(buffer), getDecimal(buffer));
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Frame binario truncado");
+        }
+    }
+
+    public static ByteBuffer encodeError(long id, byte status, String message) {
+        byte[] text = truncate(message == null ? "" : message);
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + 1 + Short.BYTES + text.length);
+        buffer.putLong(id);
+        buffer.put(status);
+        buffer.putShort((short) text.length);
+        buffer.put(text);
+        return buffer.flip();
+    }
+
+    public static byte status(ByteBuffer frame) {
+        return frame.get(frame.position() + Long.BYTES);
+    }
+
+    private static byte[] unscaledBytes(BigDecimal value) {
+        byte[] bytes = value.unscaledValue().toByteArray();
+        if (bytes.length > MAX_UNSCALED_BYTES) {
+            throw new IllegalArgumentException("Número demasiado grande para el frame binario");
+        }
+        return bytes;
+    }
+
+    private static int decimalSize(byte[] unscaled) {
+        return Integer.BYTES + 1 + unscaled.length;
+    }
+
+    private static void putDecimal(ByteBuffer buffer, BigDecimal value, byte[] unscaled) {
+        buffer.putInt(value.scale());
+        buffer.put((byte) unscaled.length);
+        buffer.put(unscaled);
+    }
+
+    private static BigDecimal getDecimal(ByteBuffer buffer) {
+        int scale = buffer.getInt();
+        int length = Byte.toUnsignedInt(buffer.get());
+        if (length == 0) {
+            throw new IllegalArgumentException("Decimal sin dígitos");
+        }
+        byte[] unscaled = new byte[length];
+        buffer.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private static byte[] truncate(String message) {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_MESSAGE_BYTES) {
+            return bytes;
+        }
+        // Recortar sin partir un carácter multibyte
+        int end = MAX_MESSAGE_BYTES;
+        while (end > 0 && (bytes[end] & 0xC0) == 0x80) {
+            end--;
+        }
+        byte[] truncated = new byte[end];
+        System.arraycopy(bytes, 0, truncated, 0, end);
+        return truncated;
+    }
+}
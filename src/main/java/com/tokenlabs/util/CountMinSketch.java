@@ -0,0 +1,104 @@
+package com.tokenlabs.util;
+
+/**
+ * Count-Min Sketch para claves String: estima cuántas veces se ha visto una
+ * clave con memoria fija (width × depth contadores), sin importar cuántas
+ * claves distintas haya.
+ *
+ * La estimación nunca es menor que el valor real y, con probabilidad
+ * 1 - e^-depth, lo supera como mucho en e / width del total añadido. Usa
+ * doble hashing sobre el mismo hash de 64 bits que {@link BloomFilter}.
+ *
+ * No es seguro para hilos: quien lo usa debe sincronizar el acceso.
+ */
+public class CountMinSketch {
+
+    private final long[][] counts;
+    private final int width;
+    private long total;
+
+    public CountMinSketch(int width, int depth) {
+        if (width <= 0 || depth <= 0) {
+            throw new IllegalArgumentException("width y depth deben ser mayores a 0");
+        }
+        this.counts = new long[depth][width];
+        this.width = width;
+    }
+
+    /**
+     * Suma count a la clave.
+     */
+    public void add(String key, long count) {
+        long hash = BloomFilter.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int row = 0; row < counts.length; row++) {
+            counts[row][index(h1 + (row + 1) * h2)] += count;
+        }
+        total += count;
+    }
+
+    /**
+     * @return cota superior de las veces que se ha añadido la clave
+     */
+    public long estimate(String key) {
+        long hash = BloomFilter.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < counts.length; row++) {
+            estimate = Math.min(estimate, counts[row][index(h1 + (row + 1) * h2)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Suma los contadores de otro sketch con las mismas dimensiones.
+     */
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.counts.length != counts.length) {
+            throw new IllegalArgumentException("Los sketches deben tener las mismas dimensiones");
+        }
+        for (int row = 0; row < counts.length; row++) {
+            for (int column = 0; column < width; column++) {
+                counts[row][column] += other.counts[row][column];
+            }
+        }
+        total += other.total;
+    }
+
+    /**
+     * Resta los contadores de un sketch sumado antes con {@link #merge}; el
+     * resultado es el sketch de los datos restantes.
+     */
+    public void subtract(CountMinSketch other) {
+        if (other.width != width || other.counts.length != counts.length) {
+            throw new IllegalArgumentException("Los sketches deben tener las mismas dimensiones");
+        }
+        for (int row = 0; row < counts.length; row++) {
+            for (int column = 0; column < width; column++) {
+                counts[row][column] -= other.counts[row][column];
+            }
+        }
+        total -= other.total;
+    }
+
+    /**
+     * Total añadido, suma de todas las claves.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getDepth() {
+        return counts.length;
+    }
+
+    private int index(int combinedHash) {
+        return (combinedHash & Integer.MAX_VALUE) % width;
+    }
+}
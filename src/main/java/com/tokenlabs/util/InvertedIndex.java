@@ -0,0 +1,710 @@
+package com.tokenlabs.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Índice invertido en disco local (término → ids de documento), organizado
+ * en segmentos inmutables como el de Lucene.
+ *
+ * Los documentos añadidos con {@link #add} van a un buffer en memoria, que
+ * ya es buscable; {@link #refresh} lo escribe como un segmento nuevo. Cada
+ * segmento es un archivo con el diccionario de términos ordenado y, por
+ * término, los ids en orden ascendente codificados como diferencias en
+ * varint. Se escribe en un archivo temporal y se renombra, así que un
+ * segmento a medio escribir nunca se abre. Lo que está en el buffer se
+ * pierde si el proceso cae: quien alimenta el índice debe poder reponerlo
+ * desde {@link #getMaxId}.
+ *
+ * Cuando hay más de mergeFactor segmentos, los mergeFactor consecutivos más
+ * pequeños se fusionan en uno. Se fusionan segmentos contiguos para que cada
+ * uno cubra un intervalo de tiempo y {@link #deleteBefore} pueda borrar
+ * segmentos enteros al aplicar la retención.
+ *
+ * Las búsquedas son seguras con escrituras concurrentes; {@link #refresh},
+ * la fusión y el borrado se serializan entre sí.
+ */
+public class InvertedIndex implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(InvertedIndex.class);
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String LOCK_FILE = "index.lock";
+    private static final int MAGIC = 0x52484958;
+    private static final byte VERSION = 1;
+    private static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE;
+
+    /** Sufijo de un término de búsqueda que acepta cualquier término con ese prefijo */
+    public static final char PREFIX_WILDCARD = '*';
+
+    private final Path directory;
+    private final int mergeFactor;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final ReentrantLock maintenanceLock = new ReentrantLock();
+
+    private volatile List<Segment> segments = List.of();
+    private Buffer buffer = new Buffer();
+    private Buffer flushing;
+    private long nextGeneration;
+
+    private InvertedIndex(Path directory, int mergeFactor, FileChannel lockChannel, FileLock lock) {
+        this.directory = directory;
+        this.mergeFactor = mergeFactor;
+        this.lockChannel = lockChannel;
+        this.lock = lock;
+    }
+
+    /**
+     * Abre (o crea) el índice en el directorio. Borra los segmentos
+     * temporales de una escritura interrumpida.
+     *
+     * @param mergeFactor segmentos que se fusionan de una vez; también el
+     *                    máximo de segmentos antes de fusionar
+     */
+    public static InvertedIndex open(Path directory, int mergeFactor) throws IOException {
+        if (mergeFactor < 2) {
+            throw new IllegalArgumentException("mergeFactor debe ser al menos 2");
+        }
+        Files.createDirectories(directory);
+        FileChannel lockChannel = FileChannel.open(directory.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException("El índice " + directory + " está en uso por otro proceso");
+        }
+        InvertedIndex index = new InvertedIndex(directory, mergeFactor, lockChannel, lock);
+        try {
+            index.load();
+        } catch (IOException | RuntimeException e) {
+            index.close();
+            throw e;
+        }
+        return index;
+    }
+
+    private void load() throws IOException {
+        List<Segment> loaded = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.toList()) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    Files.deleteIfExists(path);
+                } else if (name.endsWith(SEGMENT_SUFFIX)) {
+                    long generation = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                    loaded.add(Segment.open(path, generation));
+                }
+            }
+        }
+        loaded.sort(Comparator.comparingLong(Segment::generation));
+        segments = List.copyOf(loaded);
+        nextGeneration = loaded.isEmpty() ? 0 : loaded.get(loaded.size() - 1).generation() + 1;
+    }
+
+    /**
+     * Términos de un texto: secuencias de letras y dígitos en minúsculas, de
+     * hasta maxTermLength caracteres (los más largos se truncan).
+     */
+    public static List<String> tokenize(String text, int maxTermLength) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                terms.add(text.substring(start, Math.min(i, start + maxTermLength)).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Añade un documento. Es buscable de inmediato; se persiste en el
+     * siguiente {@link #refresh}.
+     *
+     * @param timestamp instante del documento (p. ej. segundos epoch), usado por {@link #deleteBefore}
+     */
+    public synchronized void add(long id, long timestamp, Collection<String> terms) {
+        buffer.add(id, timestamp, terms);
+    }
+
+    /**
+     * Escribe el buffer como un segmento nuevo y, si hay demasiados, fusiona.
+     *
+     * @return true si se escribió un segmento
+     */
+    public boolean refresh() throws IOException {
+        maintenanceLock.lock();
+        try {
+            Buffer toFlush;
+            long generation;
+            synchronized (this) {
+                if (buffer.docCount == 0) {
+                    return false;
+                }
+                toFlush = buffer;
+                flushing = toFlush;
+                buffer = new Buffer();
+                generation = nextGeneration++;
+            }
+            Segment segment;
+            try {
+                segment = writeSegment(generation, toFlush.sortedPostings(), toFlush.minId, toFlush.maxId,
+                        toFlush.minTimestamp, toFlush.maxTimestamp, toFlush.docCount);
+            } catch (IOException | RuntimeException e) {
+                synchronized (this) {
+                    // Los documentos vuelven al buffer para el siguiente intento
+                    toFlush.addAll(buffer);
+                    buffer = toFlush;
+                    flushing = null;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                List<Segment> updated = new ArrayList<>(segments);
+                updated.add(segment);
+                segments = List.copyOf(updated);
+                flushing = null;
+            }
+            mergeIfNeeded();
+            return true;
+        } finally {
+            maintenanceLock.unlock();
+        }
+    }
+
+    /**
+     * Borra los segmentos cuyos documentos son todos anteriores a timestamp.
+     * Un segmento con documentos a ambos lados se conserva entero.
+     *
+     * @return número de segmentos borrados
+     */
+    public int deleteBefore(long timestamp) {
+        maintenanceLock.lock();
+        try {
+            List<Segment> expired;
+            synchronized (this) {
+                expired = segments.stream().filter(segment -> segment.maxTimestamp() < timestamp).toList();
+                if (expired.isEmpty()) {
+                    return 0;
+                }
+                segments = segments.stream().filter(segment -> segment.maxTimestamp() >= timestamp).toList();
+            }
+            expired.forEach(this::delete);
+            return expired.size();
+        } finally {
+            maintenanceLock.unlock();
+        }
+    }
+
+    /**
+     * Ids de los documentos que contienen todos los términos, de mayor a
+     * menor. Un término terminado en {@link #PREFIX_WILDCARD} acepta
+     * cualquier término que empiece por él.
+     *
+     * @param beforeId solo ids menores que este; Long.MAX_VALUE para empezar
+     */
+    public long[] search(List<String> terms, long beforeId, int limit) {
+        if (terms.isEmpty() || limit <= 0) {
+            return new long[0];
+        }
+        List<long[]> results = new ArrayList<>();
+        List<Segment> snapshot;
+        synchronized (this) {
+            snapshot = segments;
+            results.add(buffer.search(terms, beforeId, limit));
+            if (flushing != null) {
+                results.add(flushing.search(terms, beforeId, limit));
+            }
+        }
+        for (Segment segment : snapshot) {
+            if (segment.minId() < beforeId) {
+                results.add(segment.search(terms, beforeId, limit));
+            }
+        }
+        return topIds(results, limit);
+    }
+
+    /**
+     * Mayor id indexado, incluido el buffer; -1 si el índice está vacío.
+     */
+    public synchronized long getMaxId() {
+        long maxId = buffer.docCount > 0 ? buffer.maxId : -1;
+        if (flushing != null) {
+            maxId = Math.max(maxId, flushing.maxId);
+        }
+        for (Segment segment : segments) {
+            maxId = Math.max(maxId, segment.maxId());
+        }
+        return maxId;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    public synchronized long getDocCount() {
+        long docs = buffer.docCount + (flushing != null ? flushing.docCount : 0);
+        for (Segment segment : segments) {
+            docs += segment.docCount();
+        }
+        return docs;
+    }
+
+    public long getSizeInBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (lock.isValid()) {
+                lock.release();
+            }
+        } finally {
+            lockChannel.close();
+        }
+    }
+
+    /**
+     * Fusiona, mientras sobren segmentos, los mergeFactor consecutivos de
+     * menor tamaño total.
+     */
+    private void mergeIfNeeded() throws IOException {
+        while (segments.size() > mergeFactor) {
+            List<Segment> current = segments;
+            int bestStart = -1;
+            long bestBytes = Long.MAX_VALUE;
+            for (int start = 0; start + mergeFactor <= current.size(); start++) {
+                long bytes = 0;
+                for (int i = start; i < start + mergeFactor; i++) {
+                    bytes += current.get(i).sizeInBytes();
+                }
+                if (bytes < bestBytes && bytes <= MAX_SEGMENT_BYTES) {
+                    bestBytes = bytes;
+                    bestStart = start;
+                }
+            }
+            if (bestStart < 0) {
+                return;
+            }
+            List<Segment> merging = current.subList(bestStart, bestStart + mergeFactor);
+            Segment merged = merge(merging);
+            synchronized (this) {
+                List<Segment> updated = new ArrayList<>(segments);
+                int position = updated.indexOf(merging.get(0));
+                updated.removeAll(merging);
+                updated.add(position, merged);
+                segments = List.copyOf(updated);
+            }
+            merging.forEach(this::delete);
+            logger.debug("Fusionados {} segmentos del índice en {} ({} documentos)",
+                    merging.size(), merged.generation(), merged.docCount());
+        }
+    }
+
+    private Segment merge(List<Segment> merging) throws IOException {
+        TreeMap<String, long[]> postings = new TreeMap<>();
+        long minId = Long.MAX_VALUE;
+        long maxId = Long.MIN_VALUE;
+        long minTimestamp = Long.MAX_VALUE;
+        long maxTimestamp = Long.MIN_VALUE;
+        long docCount = 0;
+        for (Segment segment : merging) {
+            for (int term = 0; term < segment.terms.length; term++) {
+                postings.merge(segment.terms[term], segment.postings(term), InvertedIndex::union);
+            }
+            minId = Math.min(minId, segment.minId());
+            maxId = Math.max(maxId, segment.maxId());
+            minTimestamp = Math.min(minTimestamp, segment.minTimestamp());
+            maxTimestamp = Math.max(maxTimestamp, segment.maxTimestamp());
+            docCount += segment.docCount();
+        }
+        long generation;
+        synchronized (this) {
+            generation = nextGeneration++;
+        }
+        return writeSegment(generation, postings, minId, maxId, minTimestamp, maxTimestamp, docCount);
+    }
+
+    private Segment writeSegment(long generation, TreeMap<String, long[]> postings, long minId, long maxId,
+                                 long minTimestamp, long maxTimestamp, long docCount) throws IOException {
+        ByteArrayOutputStream postingBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream dictionaryBytes = new ByteArrayOutputStream();
+        DataOutputStream dictionary = new DataOutputStream(dictionaryBytes);
+        for (Map.Entry<String, long[]> entry : postings.entrySet()) {
+            byte[] term = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            dictionary.writeShort(term.length);
+            dictionary.write(term);
+            dictionary.writeInt(postingBytes.size());
+            dictionary.writeInt(entry.getValue().length);
+            long previous = 0;
+            for (long id : entry.getValue()) {
+                writeVarLong(postingBytes, id - previous);
+                previous = id;
+            }
+        }
+        ByteBuffer header = ByteBuffer.allocate(Segment.HEADER_BYTES)
+                .putInt(MAGIC).put(VERSION).putLong(docCount)
+                .putLong(minId).putLong(maxId).putLong(minTimestamp).putLong(maxTimestamp)
+                .putInt(postings.size()).putInt(dictionaryBytes.size());
+        header.flip();
+
+        Path temp = directory.resolve(generation + SEGMENT_SUFFIX + TEMP_SUFFIX);
+        Path target = directory.resolve(generation + SEGMENT_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.write(header);
+            channel.write(ByteBuffer.wrap(dictionaryBytes.toByteArray()));
+            channel.write(ByteBuffer.wrap(postingBytes.toByteArray()));
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        return Segment.open(target, generation);
+    }
+
+    private void delete(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.path());
+        } catch (IOException e) {
+            logger.warn("No se pudo borrar el segmento {} del índice: {}", segment.path(), e.getMessage());
+        }
+    }
+
+    private static long[] topIds(List<long[]> results, int limit) {
+        long[] all = results.stream().flatMapToLong(Arrays::stream).sorted().distinct().toArray();
+        int count = Math.min(limit, all.length);
+        long[] top = new long[count];
+        for (int i = 0; i < count; i++) {
+            top[i] = all[all.length - 1 - i];
+        }
+        return top;
+    }
+
+    /**
+     * Ids presentes en todas las listas, ordenadas de forma ascendente.
+     */
+    private static long[] intersect(List<long[]> lists) {
+        lists.sort(Comparator.comparingInt(list -> list.length));
+        long[] result = lists.get(0);
+        for (int l = 1; l < lists.size() && result.length > 0; l++) {
+            long[] other = lists.get(l);
+            long[] next = new long[result.length];
+            int count = 0;
+            int j = 0;
+            for (long id : result) {
+                while (j < other.length && other[j] < id) {
+                    j++;
+                }
+                if (j < other.length && other[j] == id) {
+                    next[count++] = id;
+                }
+            }
+            result = Arrays.copyOf(next, count);
+        }
+        return result;
+    }
+
+    private static long[] union(long[] a, long[] b) {
+        long[] result = new long[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < a.length || j < b.length) {
+            long next;
+            if (j == b.length || i < a.length && a[i] <= b[j]) {
+                next = a[i++];
+            } else {
+                next = b[j++];
+            }
+            if (count == 0 || result[count - 1] != next) {
+                result[count++] = next;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Hasta limit ids menores que beforeId, del final de una lista ascendente.
+     */
+    private static long[] lastBefore(long[] ids, long beforeId, int limit) {
+        int end = Arrays.binarySearch(ids, beforeId);
+        end = end >= 0 ? end : -end - 1;
+        int start = Math.max(0, end - limit);
+        return Arrays.copyOfRange(ids, start, end);
+    }
+
+    private static boolean isPrefix(String term) {
+        return term.length() > 1 && term.charAt(term.length() - 1) == PREFIX_WILDCARD;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Documentos añadidos desde el último refresh.
+     */
+    private static final class Buffer {
+        private final Map<String, LongList> postings = new HashMap<>();
+        private long docCount;
+        private long minId = Long.MAX_VALUE;
+        private long maxId = Long.MIN_VALUE;
+        private long minTimestamp = Long.MAX_VALUE;
+        private long maxTimestamp = Long.MIN_VALUE;
+
+        void add(long id, long timestamp, Collection<String> terms) {
+            for (String term : terms) {
+                postings.computeIfAbsent(term, key -> new LongList()).add(id);
+            }
+            docCount++;
+            minId = Math.min(minId, id);
+            maxId = Math.max(maxId, id);
+            minTimestamp = Math.min(minTimestamp, timestamp);
+            maxTimestamp = Math.max(maxTimestamp, timestamp);
+        }
+
+        void addAll(Buffer other) {
+            other.postings.forEach((term, ids) -> {
+                LongList list = postings.computeIfAbsent(term, key -> new LongList());
+                for (int i = 0; i < ids.size; i++) {
+                    list.add(ids.values[i]);
+                }
+            });
+            docCount += other.docCount;
+            minId = Math.min(minId, other.minId);
+            maxId = Math.max(maxId, other.maxId);
+            minTimestamp = Math.min(minTimestamp, other.minTimestamp);
+            maxTimestamp = Math.max(maxTimestamp, other.maxTimestamp);
+        }
+
+        TreeMap<String, long[]> sortedPostings() {
+            TreeMap<String, long[]> sorted = new TreeMap<>();
+            postings.forEach((term, ids) -> sorted.put(term, ids.sortedDistinct()));
+            return sorted;
+        }
+
+        long[] search(List<String> terms, long beforeId, int limit) {
+            if (docCount == 0 || minId >= beforeId) {
+                return new long[0];
+            }
+            List<long[]> lists = new ArrayList<>();
+            for (String term : terms) {
+                long[] ids = new long[0];
+                if (isPrefix(term)) {
+                    String prefix = term.substring(0, term.length() - 1);
+                    for (Map.Entry<String, LongList> entry : postings.entrySet()) {
+                        if (entry.getKey().startsWith(prefix)) {
+                            ids = union(ids, entry.getValue().sortedDistinct());
+                        }
+                    }
+                } else {
+                    LongList list = postings.get(term);
+                    ids = list != null ? list.sortedDistinct() : ids;
+                }
+                if (ids.length == 0) {
+                    return ids;
+                }
+                lists.add(ids);
+            }
+            return lastBefore(intersect(lists), beforeId, limit);
+        }
+    }
+
+    private static final class LongList {
+        private long[] values = new long[4];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] sortedDistinct() {
+            return Arrays.stream(values, 0, size).sorted().distinct().toArray();
+        }
+    }
+
+    /**
+     * Segmento inmutable mapeado en memoria: cabecera, diccionario de
+     * términos ordenado y postings. El diccionario se carga en el heap; los
+     * postings se leen del mapeo al buscar.
+     */
+    private static final class Segment {
+        static final int HEADER_BYTES = 4 + 1 + 8 * 5 + 4 + 4;
+
+        private final Path path;
+        private final long generation;
+        private final long docCount;
+        private final long minId;
+        private final long maxId;
+        private final long minTimestamp;
+        private final long maxTimestamp;
+        private final long sizeInBytes;
+        private final String[] terms;
+        private final int[] offsets;
+        private final int[] counts;
+        private final MappedByteBuffer postingsBuffer;
+
+        private Segment(Path path, long generation, MappedByteBuffer buffer, long sizeInBytes) throws IOException {
+            this.path = path;
+            this.generation = generation;
+            this.sizeInBytes = sizeInBytes;
+            if (buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+                throw new IOException("Segmento de índice inválido: " + path);
+            }
+            this.docCount = buffer.getLong();
+            this.minId = buffer.getLong();
+            this.maxId = buffer.getLong();
+            this.minTimestamp = buffer.getLong();
+            this.maxTimestamp = buffer.getLong();
+            int termCount = buffer.getInt();
+            int dictionaryBytes = buffer.getInt();
+            this.terms = new String[termCount];
+            this.offsets = new int[termCount];
+            this.counts = new int[termCount];
+            for (int i = 0; i < termCount; i++) {
+                byte[] term = new byte[buffer.getShort()];
+                buffer.get(term);
+                terms[i] = new String(term, StandardCharsets.UTF_8);
+                offsets[i] = buffer.getInt();
+                counts[i] = buffer.getInt();
+            }
+            if (buffer.position() != HEADER_BYTES + dictionaryBytes) {
+                throw new IOException("Diccionario de términos inválido: " + path);
+            }
+            this.postingsBuffer = buffer.slice();
+        }
+
+        static Segment open(Path path, long generation) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                return new Segment(path, generation, channel.map(FileChannel.MapMode.READ_ONLY, 0, size), size);
+            }
+        }
+
+        Path path() {
+            return path;
+        }
+
+        long generation() {
+            return generation;
+        }
+
+        long docCount() {
+            return docCount;
+        }
+
+        long minId() {
+            return minId;
+        }
+
+        long maxId() {
+            return maxId;
+        }
+
+        long minTimestamp() {
+            return minTimestamp;
+        }
+
+        long maxTimestamp() {
+            return maxTimestamp;
+        }
+
+        long sizeInBytes() {
+            return sizeInBytes;
+        }
+
+        long[] postings(int term) {
+            ByteBuffer in = postingsBuffer.duplicate();
+            in.position(offsets[term]);
+            long[] ids = new long[counts[term]];
+            long previous = 0;
+            for (int i = 0; i < ids.length; i++) {
+                long delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = in.get();
+                    delta |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                previous += delta;
+                ids[i] = previous;
+            }
+            return ids;
+        }
+
+        long[] search(List<String> queryTerms, long beforeId, int limit) {
+            List<long[]> lists = new ArrayList<>();
+            for (String term : queryTerms) {
+                long[] ids = new long[0];
+                if (isPrefix(term)) {
+                    String prefix = term.substring(0, term.length() - 1);
+                    int index = Arrays.binarySearch(terms, prefix);
+                    for (int i = index >= 0 ? index : -index - 1; i < terms.length && terms[i].startsWith(prefix); i++) {
+                        ids = union(ids, postings(i));
+                    }
+                } else {
+                    int index = Arrays.binarySearch(terms, term);
+                    if (index >= 0) {
+                        ids = postings(index);
+                    }
+                }
+                if (ids.length == 0) {
+                    return ids;
+                }
+                lists.add(ids);
+            }
+            return lastBefore(intersect(lists), beforeId, limit);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.tokenlabs.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Posición de la paginación por cursor (keyset): fecha e id de la última fila
+ * devuelta y el sentido del recorrido. La siguiente página se pide con
+ * "(fecha, id) &lt; (cursor)" (o "&gt;" en orden ascendente) en lugar de OFFSET,
+ * así que cuesta lo mismo sea cual sea su posición.
+ *
+ * Se entrega al cliente como token opaco (Base64 URL-safe); el formato
+ * interno puede cambiar sin romper a los clientes que solo lo reenvían.
+ */
+public record PageCursor(LocalDateTime date, long id, boolean descending) {
+
+    /** Límites de la primera página, antes de cualquier fecha guardada */
+    public static final LocalDateTime MIN_DATE = LocalDateTime.of(1970, 1, 1, 0, 0);
+    public static final LocalDateTime MAX_DATE = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
+    private static final char DESCENDING = 'd';
+    private static final char ASCENDING = 'a';
+
+    /**
+     * Cursor anterior a la primera fila en el sentido indicado.
+     */
+    public static PageCursor first(boolean descending) {
+        return descending
+                ? new PageCursor(MAX_DATE, Long.MAX_VALUE, true)
+                : new PageCursor(MIN_DATE, Long.MIN_VALUE, false);
+    }
+
+    public String encode() {
+        String raw = (descending ? DESCENDING : ASCENDING) + "|" + date + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException si el token no es un cursor válido
+     */
+    public static PageCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 3 || parts[0].length() != 1
+                    || (parts[0].charAt(0) != DESCENDING && parts[0].charAt(0) != ASCENDING)) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+            return new PageCursor(LocalDateTime.parse(parts[1]), Long.parseLong(parts[2]),
+                    parts[0].charAt(0) == DESCENDING);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor inválido", e);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.tokenlabs.util;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tiempos por fase de un request, medidos con System.nanoTime().
+ *
+ * RequestLoggingInterceptor crea la instancia al empezar el request y la
+ * guarda como atributo; el resto del código registra fases a través de
+ * {@link #current()}. Las fases pueden registrarse desde otros hilos (los
+ * executors de /calculate/async reciben la instancia capturada en el hilo
+ * del request), por eso los acumuladores son atómicos. Las fases anidadas
+ * (llamada externa, inserción) también cuentan dentro de HANDLER.
+ */
+public final class RequestTimings {
+
+    /** Atributo del request donde se guarda la instancia */
+    public static final String ATTRIBUTE = RequestTimings.class.getName();
+
+    /** Instancia que descarta todo: fuera de un request HTTP */
+    public static final RequestTimings NONE = new RequestTimings(0, false);
+
+    private static final long UNSET = Long.MIN_VALUE;
+
+    /**
+     * Fases medidas; column es la columna de request_history y de los rollups.
+     */
+    public enum Phase {
+        /** Desde el inicio del request hasta que el handler devuelve el body */
+        HANDLER("handler"),
+        /** Obtención del porcentaje externo, incluida la caché */
+        EXTERNAL_FETCH("external_fetch"),
+        /** Inserción del cálculo en calculation_history */
+        DB_INSERT("db_insert"),
+        /** Conversión y escritura del body de la respuesta */
+        SERIALIZATION("serialization"),
+        /** Request completo, desde preHandle hasta afterCompletion */
+        TOTAL("total");
+
+        private final String name;
+
+        Phase(String name) {
+            this.name = name;
+        }
+
+        public String column() {
+            return name + "_micros";
+        }
+
+        public String label() {
+            return name;
+        }
+    }
+
+    private final long startNanos;
+    private final boolean enabled;
+    private final AtomicLongArray nanos = new AtomicLongArray(Phase.values().length);
+    private volatile long handlerEndNanos = UNSET;
+
+    private RequestTimings(long startNanos, boolean enabled) {
+        this.startNanos = startNanos;
+        this.enabled = enabled;
+    }
+
+    public static RequestTimings start() {
+        return startedAt(System.nanoTime());
+    }
+
+    public static RequestTimings startedAt(long startNanos) {
+        return new RequestTimings(startNanos, true);
+    }
+
+    /**
+     * Instancia del request en curso en este hilo, o {@link #NONE}.
+     */
+    public static RequestTimings current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return NONE;
+        }
+        Object timings = attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        return timings instanceof RequestTimings requestTimings ? requestTimings : NONE;
+    }
+
+    /**
+     * Suma a la fase el tiempo transcurrido desde startNanos.
+     */
+    public void record(Phase phase, long startNanos) {
+        add(phase, System.nanoTime() - startNanos);
+    }
+
+    public void add(Phase phase, long elapsedNanos) {
+        if (enabled) {
+            nanos.addAndGet(phase.ordinal(), elapsedNanos);
+        }
+    }
+
+    /**
+     * El handler terminó y empieza la escritura del body. Solo cuenta la
+     * primera llamada.
+     */
+    public void markHandlerEnd() {
+        if (enabled && handlerEndNanos == UNSET) {
+            long now = System.nanoTime();
+            handlerEndNanos = now;
+            nanos.set(Phase.HANDLER.ordinal(), now - startNanos);
+        }
+    }
+
+    /**
+     * La respuesta está escrita: lo transcurrido desde {@link #markHandlerEnd()}
+     * es serialización. Sin body, todo cuenta como handler.
+     */
+    public void markResponseWritten() {
+        if (!enabled) {
+            return;
+        }
+        long handlerEnd = handlerEndNanos;
+        if (handlerEnd == UNSET) {
+            markHandlerEnd();
+        } else {
+            nanos.set(Phase.SERIALIZATION.ordinal(), System.nanoTime() - handlerEnd);
+        }
+    }
+
+    /**
+     * Cierra el request y calcula TOTAL.
+     */
+    public void finish() {
+        if (enabled) {
+            markHandlerEnd();
+            nanos.set(Phase.TOTAL.ordinal(), System.nanoTime() - startNanos);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long nanos(Phase phase) {
+        return nanos.get(phase.ordinal());
+    }
+
+    public long micros(Phase phase) {
+        return nanos(phase) / 1_000;
+    }
+
+    public PhaseMicros snapshot() {
+        return new PhaseMicros(micros(Phase.HANDLER), micros(Phase.EXTERNAL_FETCH), micros(Phase.DB_INSERT),
+                micros(Phase.SERIALIZATION), micros(Phase.TOTAL));
+    }
+
+    /**
+     * Tiempos de un request en microsegundos, tal como se guardan en request_history.
+     */
+    public record PhaseMicros(long handler, long externalFetch, long dbInsert, long serialization, long total) {
+
+        public long get(Phase phase) {
+            return switch (phase) {
+                case HANDLER -> handler;
+                case EXTERNAL_FETCH -> externalFetch;
+                case DB_INSERT -> dbInsert;
+                case SERIALIZATION -> serialization;
+                case TOTAL -> total;
+            };
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package com.tokenlabs.util;
+
+import java.util.Arrays;
+
+/**
+ * Bitmap comprimido de ids con el formato de Roaring: los 16 bits bajos de
+ * cada id se guardan en un contenedor por cada valor de los bits altos. Un
+ * contenedor con hasta 4096 valores es un array ordenado (2 bytes por id);
+ * con más, un bitmap fijo de 8 KB. Los ids consecutivos, como los de una
+ * columna IDENTITY, ocupan poco más de un bit cada uno y las intersecciones
+ * se hacen palabra a palabra.
+ *
+ * Admite ids de 0 a 2^47 - 1. No es seguro para hilos: quien lo usa debe
+ * sincronizar el acceso.
+ */
+public class RoaringBitmap {
+
+    public static final long MAX_VALUE = (1L << 47) - 1;
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024;
+
+    private int[] keys = new int[4];
+    private Container[] containers = new Container[4];
+    private int size;
+
+    public void add(long value) {
+        if (value < 0 || value > MAX_VALUE) {
+            throw new IllegalArgumentException("Id fuera de rango: " + value);
+        }
+        int key = (int) (value >>> 16);
+        int index = Arrays.binarySearch(keys, 0, size, key);
+        if (index < 0) {
+            index = -index - 1;
+            insert(index, key, new Container());
+        }
+        containers[index].add((char) value);
+    }
+
+    public boolean contains(long value) {
+        if (value < 0 || value > MAX_VALUE) {
+            return false;
+        }
+        int index = Arrays.binarySearch(keys, 0, size, (int) (value >>> 16));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    public long cardinality() {
+        long cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Tamaño aproximado en memoria, en bytes.
+     */
+    public long sizeInBytes() {
+        long bytes = 16L + keys.length * 4L + containers.length * 8L;
+        for (int i = 0; i < size; i++) {
+            bytes += containers[i].sizeInBytes();
+        }
+        return bytes;
+    }
+
+    public static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                Container container = Container.and(a.containers[i], b.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.append(a.keys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Cardinalidad de la intersección sin construirla.
+     */
+    public static long andCardinality(RoaringBitmap a, RoaringBitmap b) {
+        long cardinality = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                cardinality += Container.andCardinality(a.containers[i], b.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return cardinality;
+    }
+
+    public static RoaringBitmap or(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.size || j < b.size) {
+            if (j == b.size || i < a.size && a.keys[i] < b.keys[j]) {
+                result.append(a.keys[i], a.containers[i].copy());
+                i++;
+            } else if (i == a.size || a.keys[i] > b.keys[j]) {
+                result.append(b.keys[j], b.containers[j].copy());
+                j++;
+            } else {
+                result.append(a.keys[i], Container.or(a.containers[i], b.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Los ids de este bitmap que no están en other.
+     */
+    public RoaringBitmap andNot(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap();
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            Container container = j < other.size && other.keys[j] == keys[i]
+                    ? Container.andNot(containers[i], other.containers[j])
+                    : containers[i].copy();
+            if (container.cardinality() > 0) {
+                result.append(keys[i], container);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Hasta limit ids menores que before, de mayor a menor.
+     */
+    public long[] descending(long before, int limit) {
+        long[] ids = new long[limit];
+        int count = 0;
+        for (int i = size - 1; i >= 0 && count < limit; i--) {
+            long high = (long) keys[i] << 16;
+            if (high >= before) {
+                continue;
+            }
+            int lowLimit = before - high > 0xFFFF ? 0x10000 : (int) (before - high);
+            count = containers[i].collectDescending(high, lowLimit, ids, count, limit);
+        }
+        return count == limit ? ids : Arrays.copyOf(ids, count);
+    }
+
+    private void insert(int index, int key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    private void append(int key, Container container) {
+        insert(size, key, container);
+    }
+
+    /**
+     * Contenedor de los 16 bits bajos: array ordenado (bits == null) o
+     * bitmap de 1024 palabras.
+     */
+    private static final class Container {
+        private char[] array;
+        private int arraySize;
+        private long[] bits;
+        private int bitCardinality;
+
+        Container() {
+            this.array = new char[4];
+        }
+
+        private Container(char[] array, int arraySize) {
+            this.array = array;
+            this.arraySize = arraySize;
+        }
+
+        private Container(long[] bits, int bitCardinality) {
+            this.bits = bits;
+            this.bitCardinality = bitCardinality;
+        }
+
+        int cardinality() {
+            return bits != null ? bitCardinality : arraySize;
+        }
+
+        long sizeInBytes() {
+            return bits != null ? 16L + WORDS * 8L : 16L + array.length * 2L;
+        }
+
+        boolean contains(char value) {
+            if (bits != null) {
+                return (bits[value >>> 6] & (1L << value)) != 0;
+            }
+            return Arrays.binarySearch(array, 0, arraySize, value) >= 0;
+        }
+
+        void add(char value) {
+            if (bits != null) {
+                long mask = 1L << value;
+                if ((bits[value >>> 6] & mask) == 0) {
+                    bits[value >>> 6] |= mask;
+                    bitCardinality++;
+                }
+                return;
+            }
+            int index = Arrays.binarySearch(array, 0, arraySize, value);
+            if (index >= 0) {
+                return;
+            }
+            if (arraySize == ARRAY_MAX) {
+                bits = words();
+                bitCardinality = arraySize;
+                array = null;
+                arraySize = 0;
+                add(value);
+                return;
+            }
+            index = -index - 1;
+            if (arraySize == array.length) {
+                array = Arrays.copyOf(array, Math.min(ARRAY_MAX, arraySize * 2));
+            }
+            System.arraycopy(array, index, array, index + 1, arraySize - index);
+            array[index] = value;
+            arraySize++;
+        }
+
+        Container copy() {
+            return bits != null
+                    ? new Container(bits.clone(), bitCardinality)
+                    : new Container(Arrays.copyOf(array, arraySize), arraySize);
+        }
+
+        /**
+         * Palabras del bitmap; para un array, una copia convertida.
+         */
+        long[] words() {
+            if (bits != null) {
+                return bits;
+            }
+            long[] words = new long[WORDS];
+            for (int i = 0; i < arraySize; i++) {
+                words[array[i] >>> 6] |= 1L << array[i];
+            }
+            return words;
+        }
+
+        static Container fromWords(long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            if (cardinality > ARRAY_MAX) {
+                return new Container(words, cardinality);
+            }
+            char[] values = new char[Math.max(cardinality, 1)];
+            int count = 0;
+            for (int w = 0; w < WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    values[count++] = (char) (w * 64 + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new Container(values, count);
+        }
+
+        static Container and(Container a, Container b) {
+            if (a.bits == null || b.bits == null) {
+                Container array = a.bits == null ? a : b;
+                Container other = array == a ? b : a;
+                char[] values = new char[Math.max(array.arraySize, 1)];
+                int count = 0;
+                for (int i = 0; i < array.arraySize; i++) {
+                    if (other.contains(array.array[i])) {
+                        values[count++] = array.array[i];
+                    }
+                }
+                return new Container(values, count);
+            }
+            long[] words = new long[WORDS];
+            for (int w = 0; w < WORDS; w++) {
+                words[w] = a.bits[w] & b.bits[w];
+            }
+            return fromWords(words);
+        }
+
+        static int andCardinality(Container a, Container b) {
+            if (a.bits == null || b.bits == null) {
+                Container array = a.bits == null ? a : b;
+                Container other = array == a ? b : a;
+                int count = 0;
+                for (int i = 0; i < array.arraySize; i++) {
+                    if (other.contains(array.array[i])) {
+                        count++;
+                    }
+                }
+                return count;
+            }
+            int count = 0;
+            for (int w = 0; w < WORDS; w++) {
+                count += Long.bitCount(a.bits[w] & b.bits[w]);
+            }
+            return count;
+        }
+
+        static Container or(Container a, Container b) {
+            if (a.bits == null && b.bits == null && a.arraySize + b.arraySize <= ARRAY_MAX) {
+                char[] values = new char[Math.max(a.arraySize + b.arraySize, 1)];
+                int i = 0;
+                int j = 0;
+                int count = 0;
+                while (i < a.arraySize || j < b.arraySize) {
+                    if (j == b.arraySize || i < a.arraySize && a.array[i] < b.array[j]) {
+                        values[count++] = a.array[i++];
+                    } else if (i == a.arraySize || a.array[i] > b.array[j]) {
+                        values[count++] = b.array[j++];
+                    } else {
+                        values[count++] = a.array[i++];
+                        j++;
+                    }
+                }
+                return new Container(values, count);
+            }
+            long[] words = a.bits != null ? a.bits.clone() : a.words();
+            if (b.bits != null) {
+                for (int w = 0; w < WORDS; w++) {
+                    words[w] |= b.bits[w];
+                }
+            } else {
+                for (int i = 0; i < b.arraySize; i++) {
+                    words[b.array[i] >>> 6] |= 1L << b.array[i];
+                }
+            }
+            return fromWords(words);
+        }
+
+        static Container andNot(Container a, Container b) {
+            if (a.bits == null) {
+                char[] values = new char[Math.max(a.arraySize, 1)];
+                int count = 0;
+                for (int i = 0; i < a.arraySize; i++) {
+                    if (!b.contains(a.array[i])) {
+                        values[count++] = a.array[i];
+                    }
+                }
+                return new Container(values, count);
+            }
+            long[] words = a.bits.clone();
+            if (b.bits != null) {
+                for (int w = 0; w < WORDS; w++) {
+                    words[w] &= ~b.bits[w];
+                }
+            } else {
+                for (int i = 0; i < b.arraySize; i++) {
+                    words[b.array[i] >>> 6] &= ~(1L << b.array[i]);
+                }
+            }
+            return fromWords(words);
+        }
+
+        /**
+         * Añade a ids, de mayor a menor, los valores menores que lowLimit.
+         *
+         * @return número de ids en el array tras añadir
+         */
+        int collectDescending(long high, int lowLimit, long[] ids, int count, int limit) {
+            if (bits == null) {
+                int index = Arrays.binarySearch(array, 0, arraySize, (char) Math.min(lowLimit, 0xFFFF));
+                int start = lowLimit > 0xFFFF ? arraySize - 1 : (index >= 0 ? index - 1 : -index - 2);
+                for (int i = start; i >= 0 && count < limit; i--) {
+                    ids[count++] = high | array[i];
+                }
+                return count;
+            }
+            for (int w = (lowLimit - 1) >>> 6; w >= 0 && count < limit; w--) {
+                long word = bits[w];
+                int topBit = (lowLimit - 1) - w * 64;
+                if (topBit < 63) {
+                    word &= (1L << (topBit + 1)) - 1;
+                }
+                while (word != 0 && count < limit) {
+                    int bit = 63 - Long.numberOfLeadingZeros(word);
+                    ids[count++] = high | (w * 64L + bit);
+                    word &= ~(1L << bit);
+                }
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.tokenlabs.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resumen Space-Saving: sigue como mucho capacity claves y garantiza que
+ * toda clave con frecuencia mayor que total / capacity está entre ellas.
+ *
+ * Cuando llega una clave nueva con el resumen lleno, sustituye a la de menor
+ * contador y hereda ese contador como error. Las claves se guardan en un
+ * montículo mínimo indexado, así que cada actualización es O(log capacity).
+ *
+ * No es seguro para hilos: quien lo usa debe sincronizar el acceso.
+ */
+public class SpaceSaving {
+
+    /**
+     * Clave seguida: count es una cota superior de su frecuencia y
+     * count - error una cota inferior.
+     */
+    public record Entry(String key, long count, long error) {
+    }
+
+    private final int capacity;
+    private final String[] keys;
+    private final long[] counts;
+    private final long[] errors;
+    private final Map<String, Integer> positions;
+    private int size;
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity debe ser mayor a 0");
+        }
+        this.capacity = capacity;
+        this.keys = new String[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.positions = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * Suma count a la clave.
+     */
+    public void add(String key, long count) {
+        Integer position = positions.get(key);
+        if (position != null) {
+            counts[position] += count;
+            siftDown(position);
+            return;
+        }
+        if (size < capacity) {
+            keys[size] = key;
+            counts[size] = count;
+            errors[size] = 0;
+            positions.put(key, size);
+            siftUp(size++);
+            return;
+        }
+        // Sustituye a la clave con menor contador, en la raíz del montículo
+        positions.remove(keys[0]);
+        errors[0] = counts[0];
+        counts[0] += count;
+        keys[0] = key;
+        positions.put(key, 0);
+        siftDown(0);
+    }
+
+    /**
+     * Claves seguidas, de mayor a menor contador.
+     */
+    public List<Entry> entries() {
+        List<Entry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(new Entry(keys[i], counts[i], errors[i]));
+        }
+        entries.sort(Comparator.comparingLong(Entry::count).reversed());
+        return entries;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Combina varios resúmenes sumando los contadores de cada clave y
+     * conserva las capacity claves con mayor suma.
+     */
+    public static SpaceSaving merge(int capacity, Collection<SpaceSaving> summaries) {
+        Map<String, long[]> combined = new HashMap<>();
+        for (SpaceSaving summary : summaries) {
+            for (int i = 0; i < summary.size; i++) {
+                long[] totals = combined.computeIfAbsent(summary.keys[i], k -> new long[2]);
+                totals[0] += summary.counts[i];
+                totals[1] += summary.errors[i];
+            }
+        }
+        SpaceSaving merged = new SpaceSaving(capacity);
+        combined.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, long[]> e) -> e.getValue()[0]).reversed())
+                .limit(capacity)
+                .forEach(e -> {
+                    merged.add(e.getKey(), e.getValue()[0]);
+                    merged.errors[merged.positions.get(e.getKey())] = e.getValue()[1];
+                });
+        return merged;
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (counts[parent] <= counts[position]) {
+                return;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == position) {
+                return;
+            }
+            swap(position, smallest);
+            position = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        String key = keys[a];
+        long count = counts[a];
+        long error = errors[a];
+        keys[a] = keys[b];
+        counts[a] = counts[b];
+        errors[a] = errors[b];
+        keys[b] = key;
+        counts[b] = count;
+        errors[b] = error;
+        positions.put(keys[a], a);
+        positions.put(keys[b], b);
+    }
+}
@@ -0,0 +1,404 @@
+package com.tokenlabs.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Log de solo escritura (append-only) en disco local, en segmentos mapeados en memoria.
+ *
+ * Cada registro ocupa [longitud int][crc32c int][versión byte][payload]; la
+ * longitud se escribe al final, por lo que un registro a medio escribir se lee
+ * como fin del log. Cuando un registro no cabe en el segmento activo se abre
+ * uno nuevo ("rolling"). Un único lector avanza con {@link #read} y confirma
+ * con {@link #acknowledge}: la posición confirmada se guarda en el archivo
+ * checkpoint y los segmentos anteriores se borran.
+ *
+ * Al abrir se recupera el estado tras una caída: se recorre el último
+ * segmento hasta el primer registro incompleto o con CRC inválido, se trunca
+ * ahí y se continúa escribiendo desde ese punto. Lo confirmado no se vuelve a
+ * leer; lo escrito y no confirmado se vuelve a entregar (al menos una vez).
+ *
+ * Los datos sobreviven a la caída del proceso (quedan en la page cache); ante
+ * un corte de energía se pueden perder las últimas páginas no sincronizadas.
+ */
+public class WriteAheadLog implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    public static final int HEADER_BYTES = 9;
+
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String LOCK_FILE = "wal.lock";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final long maxBytes;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final CRC32C appendCrc = new CRC32C();
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+
+    private Segment active;
+    private volatile Position writePosition;
+    private volatile Position checkpoint;
+
+    private WriteAheadLog(Path directory, int segmentBytes, long maxBytes, FileChannel lockChannel, FileLock lock) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+        this.lockChannel = lockChannel;
+        this.lock = lock;
+    }
+
+    /**
+     * Abre (o crea) el log en el directorio y recupera el estado tras una caída.
+     *
+     * @param segmentBytes tamaño de cada segmento
+     * @param maxBytes     espacio máximo en disco; al superarlo {@link #append} falla
+     */
+    public static WriteAheadLog open(Path directory, int segmentBytes, long maxBytes) throws IOException {
+        if (segmentBytes < 1024) {
+            throw new IllegalArgumentException("El segmento debe tener al menos 1024 bytes");
+        }
+        Files.createDirectories(directory);
+        FileChannel lockChannel = FileChannel.open(directory.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException("El write-ahead log " + directory + " está en uso por otro proceso");
+        }
+        WriteAheadLog log = new WriteAheadLog(directory, segmentBytes, maxBytes, lockChannel, lock);
+        try {
+            log.recover();
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+        return log;
+    }
+
+    private void recover() throws IOException {
+        Position savedCheckpoint = readCheckpoint();
+        List<Long> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .forEach(ids::add);
+        }
+        for (long id : ids) {
+            if (id < savedCheckpoint.segment()) {
+                Files.deleteIfExists(segmentPath(id));
+            } else {
+                segments.put(id, Segment.map(segmentPath(id), id, segmentBytes));
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(savedCheckpoint.segment(),
+                    Segment.map(segmentPath(savedCheckpoint.segment()), savedCheckpoint.segment(), segmentBytes));
+        }
+        if (savedCheckpoint.segment() < segments.firstKey()) {
+            savedCheckpoint = new Position(segments.firstKey(), 0);
+        }
+        checkpoint = savedCheckpoint;
+
+        active = segments.lastEntry().getValue();
+        int end = validEnd(active, active.id == checkpoint.segment() ? checkpoint.offset() : 0);
+        if (end < segmentBytes) {
+            // Se descarta la cola de un registro a medio escribir
+            for (int i = end; i < segmentBytes; i++) {
+                if (active.buffer.get(i) != 0) {
+                    logger.warn("Write-ahead log truncado en el segmento {} desde el byte {}", active.id, end);
+                    active.zero(end);
+                    break;
+                }
+            }
+        }
+        writePosition = new Position(active.id, end);
+    }
+
+    /**
+     * Primer offset del segmento sin un registro válido a continuación.
+     */
+    private int validEnd(Segment segment, int from) {
+        CRC32C crc = new CRC32C();
+        int offset = from;
+        while (offset + HEADER_BYTES <= segmentBytes) {
+            int length = segment.buffer.getInt(offset);
+            if (length <= 0 || length > segmentBytes - offset - HEADER_BYTES
+                    || !crcMatches(segment, offset, length, crc)) {
+                break;
+            }
+            offset += HEADER_BYTES + length;
+        }
+        return offset;
+    }
+
+    /**
+     * Agrega un registro. Seguro para varios hilos.
+     *
+     * @return posición siguiente al registro escrito
+     * @throws LogFullException si se alcanzó el espacio máximo configurado
+     */
+    public synchronized Position append(byte version, byte[] payload) throws IOException {
+        int recordBytes = HEADER_BYTES + payload.length;
+        if (payload.length == 0) {
+            // Longitud 0 marca el fin del log
+            throw new IllegalArgumentException("El registro no puede estar vacío");
+        }
+        if (recordBytes > segmentBytes) {
+            throw new IllegalArgumentException("Registro de " + payload.length + " bytes mayor que el segmento");
+        }
+        int offset = writePosition.offset();
+        if (offset + recordBytes > segmentBytes) {
+            roll();
+            offset = 0;
+        }
+        ByteBuffer buffer = active.buffer;
+        appendCrc.reset();
+        appendCrc.update(version);
+        appendCrc.update(payload);
+        buffer.putInt(offset + 4, (int) appendCrc.getValue());
+        buffer.put(offset + 8, version);
+        buffer.put(offset + HEADER_BYTES, payload);
+        // La longitud al final: hasta aquí el registro no es visible
+        buffer.putInt(offset, payload.length);
+        Position next = new Position(active.id, offset + recordBytes);
+        writePosition = next;
+        return next;
+    }
+
+    private void roll() throws IOException {
+        if ((long) (segments.size() + 1) * segmentBytes > maxBytes) {
+            throw new LogFullException("Write-ahead log lleno (" + maxBytes + " bytes) en " + directory);
+        }
+        active.buffer.force();
+        long id = active.id + 1;
+        Segment segment = Segment.map(segmentPath(id), id, segmentBytes);
+        segments.put(id, segment);
+        active = segment;
+        writePosition = new Position(id, 0);
+    }
+
+    /**
+     * Lee hasta maxRecords registros desde la posición indicada. Pensado para un único lector.
+     *
+     * @return posición siguiente al último registro leído (igual a from si no hay nuevos)
+     */
+    public Position read(Position from, int maxRecords, List<LogRecord> records) {
+        CRC32C crc = new CRC32C();
+        Position position = from;
+        Position limit = writePosition;
+        while (records.size() < maxRecords) {
+            Map.Entry<Long, Segment> entry = segments.ceilingEntry(position.segment());
+            if (entry == null) {
+                break;
+            }
+            Segment segment = entry.getValue();
+            if (segment.id != position.segment()) {
+                position = new Position(segment.id, 0);
+            }
+            boolean isLast = segment.id == limit.segment();
+            int end = isLast ? limit.offset() : segmentBytes;
+            int offset = position.offset();
+            int length = offset + HEADER_BYTES <= end ? segment.buffer.getInt(offset) : 0;
+            if (length <= 0 || length > end - offset - HEADER_BYTES) {
+                if (isLast) {
+                    break;
+                }
+                // Fin de un segmento cerrado: se sigue en el siguiente
+                position = new Position(segment.id + 1, 0);
+                continue;
+            }
+            if (!crcMatches(segment, offset, length, crc)) {
+                logger.error("Registro corrupto en el segmento {} offset {}: se descarta el resto del segmento",
+                        segment.id, offset);
+                if (isLast) {
+                    break;
+                }
+                position = new Position(segment.id + 1, 0);
+                continue;
+            }
+            byte[] payload = new byte[length];
+            segment.buffer.get(offset + HEADER_BYTES, payload);
+            records.add(new LogRecord(segment.buffer.get(offset + 8), payload));
+            position = new Position(segment.id, offset + HEADER_BYTES + length);
+        }
+        return position;
+    }
+
+    /**
+     * Confirma que todo lo anterior a la posición ya se procesó: guarda el
+     * checkpoint y borra los segmentos que quedaron completamente atrás.
+     */
+    public synchronized void acknowledge(Position position) throws IOException {
+        writeCheckpoint(position);
+        checkpoint = position;
+        for (Long id : List.copyOf(segments.headMap(position.segment()).keySet())) {
+            Segment segment = segments.remove(id);
+            segment.close();
+            Files.deleteIfExists(segment.path);
+        }
+    }
+
+    public Position getCheckpoint() {
+        return checkpoint;
+    }
+
+    public Position getWritePosition() {
+        return writePosition;
+    }
+
+    /**
+     * Bytes escritos y no confirmados (aproximado: incluye el espacio libre al final de segmentos cerrados).
+     */
+    public long getPendingBytes() {
+        Position from = checkpoint;
+        Position to = writePosition;
+        return (to.segment() - from.segment()) * segmentBytes + to.offset() - from.offset();
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.buffer.force();
+            segment.close();
+        }
+        segments.clear();
+        if (lock.isValid()) {
+            lock.release();
+        }
+        lockChannel.close();
+    }
+
+    private boolean crcMatches(Segment segment, int offset, int length, CRC32C crc) {
+        crc.reset();
+        crc.update(segment.buffer.slice(offset + 8, 1 + length));
+        return (int) crc.getValue() == segment.buffer.getInt(offset + 4);
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%020d%s", id, SEGMENT_SUFFIX));
+    }
+
+    private Position readCheckpoint() {
+        Path path = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(path)) {
+            return new Position(0, 0);
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+            long segment = buffer.getLong();
+            int offset = buffer.getInt();
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.array(), 0, 12);
+            if ((int) crc.getValue() != buffer.getInt()) {
+                throw new IOException("CRC inválido");
+            }
+            return new Position(segment, offset);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Checkpoint del write-ahead log ilegible, se relee desde el primer segmento: {}", e.getMessage());
+            return new Position(0, 0);
+        }
+    }
+
+    private void writeCheckpoint(Position position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putLong(position.segment()).putInt(position.offset());
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 0, 12);
+        buffer.putInt((int) crc.getValue());
+        Path temp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(buffer.flip());
+            channel.force(false);
+        }
+        Files.move(temp, directory.resolve(CHECKPOINT_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Posición en el log: segmento y offset dentro del segmento.
+     */
+    public record Position(long segment, int offset) {
+    }
+
+    public record LogRecord(byte version, byte[] payload) {
+    }
+
+    /**
+     * El log alcanzó el espacio máximo configurado.
+     */
+    public static class LogFullException extends IOException {
+        public LogFullException(String message) {
+            super(message);
+        }
+    }
+
+    private static final class Segment {
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        private Segment(long id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        private static Segment map(Path path, long id, int segmentBytes) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+                return new Segment(id, path, channel, buffer);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        private void zero(int from) {
+            for (int i = from; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+
+        private void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.tokenlabs.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestBodyCaptureFilterTest {
+
+    private RequestBodyCaptureFilter filter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() {
+        filter = new RequestBodyCaptureFilter(true, 16,
+                List.of("application/octet-stream", "image/*"), List.of("/actuator"));
+        request = new MockHttpServletRequest("POST", "/api/v1/calculate");
+        response = new MockHttpServletResponse();
+    }
+
+    @Test
+    void doFilter_ShouldCaptureSmallBodies_AndPassThemThrough() throws Exception {
+        // Arrange
+        request.setContentType("application/json");
+        request.setContent("{\"a\":1}".getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        filter.doFilter(request, response, (req, res) -> {
+            String body = new String(req.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            res.setContentType("application/json");
+            res.getOutputStream().write(("{\"echo\":" + body + "}").getBytes(StandardCharsets.UTF_8));
+        });
+
+        // Assert
+        assertEquals("{\"a\":1}", RequestBodyCaptureFilter.getCapturedRequestBody(request));
+        assertEquals("{\"echo\":{\"a\":1}}", response.getContentAsString());
+        // 15 bytes: no se trunca con un límite de 16
+        assertEquals("{\"echo\":{\"a\":1}}", RequestBodyCaptureFilter.getCapturedResponseBody(request, response));
+    }
+
+    @Test
+    void doFilter_ShouldTruncateCapture_ButStreamWholeResponse() throws Exception {
+        // Arrange
+        String largeBody = "x".repeat(10_000);
+
+        // Act
+        filter.doFilter(request, response, (req, res) -> {
+            byte[] chunk = largeBody.getBytes(StandardCharsets.UTF_8);
+            for (int offset = 0; offset < chunk.length; offset += 1000) {
+                res.getOutputStream().write(chunk, offset, 1000);
+            }
+        });
+
+        // Assert
+        assertEquals(10_000, response.getContentAsByteArray().length);
+        assertEquals("x".repeat(16) + "...[truncado: 16 de 10000 bytes]",
+                RequestBodyCaptureFilter.getCapturedResponseBody(request, response));
+    }
+
+    @Test
+    void doFilter_ShouldCaptureWriterOutput_WithResponseCharset() throws Exception {
+        // Act
+        filter.doFilter(request, response, (req, res) -> {
+            res.setCharacterEncoding("UTF-8");
+            res.setContentType("text/plain");
+            res.getWriter().write("cálculo");
+        });
+
+        // Assert
+        assertEquals("cálculo", response.getContentAsString(StandardCharsets.UTF_8));
+        assertEquals("cálculo", RequestBodyCaptureFilter.getCapturedResponseBody(request, response));
+    }
+
+    @Test
+    void getCapturedResponseBody_ShouldIncludeWriterOutput_BeforeFilterCompletes() throws Exception {
+        // Act: el interceptor lee la captura dentro de la cadena, antes del flush final del filtro
+        filter.doFilter(request, response, (req, res) -> {
+            res.setContentType("text/html");
+            res.getWriter().write("<h1>404</h1>");
+
+            // Assert
+            assertEquals("<h1>404</h1>", RequestBodyCaptureFilter.getCapturedResponseBody(request, response));
+            assertFalse(res.isCommitted());
+        });
+
+        assertEquals("<h1>404</h1>", response.getContentAsString());
+    }
+
+    @Test
+    void doFilter_ShouldCaptureRequestRead_ThroughReader() throws Exception {
+        // Arrange
+        request.setCharacterEncoding("UTF-8");
+        request.setContent("línea".getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        filter.doFilter(request, response, (req, res) -> assertEquals("línea", req.getReader().readLine()));
+
+        // Assert
+        assertEquals("línea", RequestBodyCaptureFilter.getCapturedRequestBody(request));
+    }
+
+    @Test
+    void doFilter_ShouldOmitExcludedContentTypes_AndOnlyCountBytes() throws Exception {
+        // Arrange
+        request.setContentType("application/octet-stream");
+        request.setContent(new byte[100]);
+
+        // Act
+        filter.doFilter(request, response, (req, res) -> {
+            assertEquals(100, req.getInputStream().readAllBytes().length);
+            res.setContentType("image/png");
+            res.getOutputStream().write(new byte[50]);
+        });
+
+        // Assert
+        assertEquals("[body omitido: application/octet-stream, 100 bytes]",
+                RequestBodyCaptureFilter.getCapturedRequestBody(request));
+        assertEquals("[body omitido: image/png, 50 bytes]",
+                RequestBodyCaptureFilter.getCapturedResponseBody(request, response));
+        assertEquals(50, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void doFilter_ShouldReturnNull_WhenBodiesAreEmpty() throws Exception {
+        // Act
+        filter.doFilter(request, response, (req, res) -> res.setContentType("application/json"));
+
+        // Assert
+        assertNull(RequestBodyCaptureFilter.getCapturedRequestBody(request));
+        assertNull(RequestBodyCaptureFilter.getCapturedResponseBody(request, response));
+    }
+
+    @Test
+    void doFilter_ShouldNotWrap_WhenPathIsExcluded() throws Exception {
+        // Arrange
+        MockHttpServletRequest actuatorRequest = new MockHttpServletRequest("GET", "/actuator/health");
+        RecordingChain chain = new RecordingChain();
+
+        // Act
+        filter.doFilter(actuatorRequest, response, chain);
+
+        // Assert
+        assertSame(actuatorRequest, chain.request);
+        assertSame(response, chain.response);
+        assertNull(RequestBodyCaptureFilter.getCapturedRequestBody(actuatorRequest));
+    }
+
+    @Test
+    void doFilter_ShouldNotWrap_WhenCaptureIsDisabled() throws Exception {
+        // Arrange
+        RequestBodyCaptureFilter disabled = new RequestBodyCaptureFilter(false, 16, List.of(), List.of());
+        RecordingChain chain = new RecordingChain();
+
+        // Act
+        disabled.doFilter(request, response, chain);
+
+        // Assert
+        assertSame(request, chain.request);
+    }
+
+    private static final class RecordingChain implements FilterChain {
+        private ServletRequest request;
+        private ServletResponse response;
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response) throws IOException {
+            this.request = request;
+            this.response = response;
+        }
+    }
+}
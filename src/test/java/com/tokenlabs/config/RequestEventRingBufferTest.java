@@ -0,0 +1,204 @@
+package com.tokenlabs.config;
+
+import com.tokenlabs.service.RequestHistoryService;
+import com.tokenlabs.util.RequestTimings;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RequestEventRingBufferTest {
+
+    @Mock
+    private RequestHistoryService requestHistoryService;
+
+    private RequestEventRingBuffer ringBuffer;
+
+    @AfterEach
+    void tearDown() {
+        if (ringBuffer != null) {
+            ringBuffer.stop();
+        }
+    }
+
+    private RequestEventRingBuffer ringBuffer(int capacity) {
+        ringBuffer = new RequestEventRingBuffer(requestHistoryService, new SimpleMeterRegistry(),
+                capacity, 64, 32, Duration.ofSeconds(1));
+        return ringBuffer;
+    }
+
+    private void publish(String endpoint, int status) {
+        long sequence = ringBuffer.tryClaim();
+        assertTrue(sequence >= 0);
+        RequestEvent event = ringBuffer.get(sequence);
+        event.endpoint.set(endpoint);
+        event.httpMethod.set("GET");
+        event.responseStatus = status;
+        event.httpError = status >= 400;
+        event.executionTimeMs = 7;
+        ringBuffer.publish(sequence);
+    }
+
+    @Test
+    void consumer_ShouldBuildStringsFromSlot_WhenEventIsPublished() {
+        // Arrange
+        ringBuffer(8).start();
+
+        // Act
+        publish("/api/v1/cálculo", 503);
+
+        // Assert
+        verify(requestHistoryService, timeout(1000)).logRequestAsync(
+                eq("/api/v1/cálculo"), eq("GET"), isNull(), isNull(),
+                eq("503"), isNull(), eq("HTTP Error 503"), eq(7L), isNull(), isNull(), isNull());
+    }
+
+    @Test
+    void consumer_ShouldPassPhaseTimings_WhenProducerMeasuredThem() {
+        // Arrange
+        ringBuffer(8).start();
+        long sequence = ringBuffer.tryClaim();
+        RequestEvent event = ringBuffer.get(sequence);
+        event.endpoint.set("/api/v1/calculate");
+        event.phaseMicros[RequestTimings.Phase.HANDLER.ordinal()] = 900;
+        event.phaseMicros[RequestTimings.Phase.EXTERNAL_FETCH.ordinal()] = 600;
+        event.phaseMicros[RequestTimings.Phase.SERIALIZATION.ordinal()] = 40;
+        event.phaseMicros[RequestTimings.Phase.TOTAL.ordinal()] = 1000;
+        event.timed = true;
+
+        // Act
+        ringBuffer.publish(sequence);
+
+        // Assert
+        verify(requestHistoryService, timeout(1000)).logRequestAsync(
+                eq("/api/v1/calculate"), any(), any(), any(), any(), any(), any(), anyLong(), any(), any(),
+                eq(new RequestTimings.PhaseMicros(900, 600, 0, 40, 1000)));
+    }
+
+    @Test
+    void consumer_ShouldSkipEvent_WhenProducerDiscardedIt() {
+        // Arrange
+        ringBuffer(8).start();
+        long sequence = ringBuffer.tryClaim();
+        ringBuffer.get(sequence).discarded = true;
+
+        // Act
+        ringBuffer.publish(sequence);
+        publish("/api/after", 200);
+
+        // Assert
+        verify(requestHistoryService, timeout(1000)).logRequestAsync(
+                eq("/api/after"), any(), any(), any(), any(), any(), any(), anyLong(), any(), any(), any());
+        verifyNoMoreInteractions(requestHistoryService);
+    }
+
+    @Test
+    void tryClaim_ShouldDropEvents_WhenBufferIsFull() {
+        // Arrange: sin consumidor el buffer no se vacía
+        ringBuffer(4);
+
+        // Act
+        for (int i = 0; i < 4; i++) {
+            publish("/api/" + i, 200);
+        }
+
+        // Assert
+        assertEquals(-1, ringBuffer.tryClaim());
+        assertEquals(4, ringBuffer.getBacklog());
+    }
+
+    @Test
+    void consumer_ShouldDeliverEveryEventInOrder_WhenSeveralProducersPublish() throws Exception {
+        // Arrange
+        ringBuffer(16).start();
+        int producers = 4;
+        int eventsPerProducer = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch done = new CountDownLatch(producers);
+
+        // Act
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            executor.submit(() -> {
+                for (int i = 0; i < eventsPerProducer; i++) {
+                    long sequence;
+                    while ((sequence = ringBuffer.tryClaim()) < 0) {
+                        Thread.onSpinWait();
+                    }
+                    RequestEvent event = ringBuffer.get(sequence);
+                    event.endpoint.set("/p" + producer);
+                    event.executionTimeMs = i;
+                    ringBuffer.publish(sequence);
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        // Assert
+        ArgumentCaptor<String> endpoints = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Long> times = ArgumentCaptor.forClass(Long.class);
+        verify(requestHistoryService, timeout(5000).times(producers * eventsPerProducer)).logRequestAsync(
+                endpoints.capture(), any(), any(), any(), any(), any(), any(), times.capture(), any(), any(), any());
+        List<String> capturedEndpoints = endpoints.getAllValues();
+        List<Long> capturedTimes = times.getAllValues();
+        for (int p = 0; p < producers; p++) {
+            long expected = 0;
+            for (int i = 0; i < capturedEndpoints.size(); i++) {
+                if (capturedEndpoints.get(i).equals("/p" + p)) {
+                    assertEquals(expected++, capturedTimes.get(i)); // orden por productor
+                }
+            }
+            assertEquals(eventsPerProducer, expected);
+        }
+    }
+
+    @Test
+    void field_ShouldTruncateAndMarkBody_WhenLongerThanSlot() {
+        // Arrange
+        RequestEvent event = new RequestEvent(64, 8);
+        byte[] body = "0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+
+        // Act
+        event.requestBody.setBody(body, body.length, body.length, null, "UTF-8");
+        event.responseBody.setBody(new byte[0], 0, 2048, "application/pdf", null);
+
+        // Assert
+        assertEquals("01234567...[truncado: 8 de 16 bytes]", event.requestBody.toText());
+        assertEquals("[body omitido: application/pdf, 2048 bytes]", event.responseBody.toText());
+    }
+
+    @Test
+    void field_ShouldReuseBuffer_WhenSlotIsCleared() {
+        // Arrange
+        RequestEvent event = new RequestEvent(64, 32);
+        event.userAgent.set("Mozilla/5.0 (X11; Linux x86_64) – ñ €");
+        String first = event.userAgent.toText();
+
+        // Act
+        event.clear();
+        event.userAgent.set("curl/8.0");
+
+        // Assert
+        assertEquals("Mozilla/5.0 (X11; Linux x86_64) – ñ €", first);
+        assertEquals("curl/8.0", event.userAgent.toText());
+        assertNull(event.clientIp.toText());
+    }
+}
@@ -0,0 +1,168 @@
+package com.tokenlabs.config;
+
+import com.tokenlabs.model.RequestHistory;
+import com.tokenlabs.service.EndpointLatencyHistograms;
+import com.tokenlabs.service.RequestHistoryService;
+import com.tokenlabs.util.RequestTimings;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Bytes asignados por request en el hilo del request: el interceptor con ring
+ * buffer frente al registro anterior (Strings + entidad + tarea asíncrona en
+ * el mismo hilo).
+ *
+ * Ejecutar con: mvn test -Dbenchmarks=true -Dtest=RequestLoggingAllocationBenchmarkTest
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class RequestLoggingAllocationBenchmarkTest {
+
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 50_000;
+
+    private final com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void afterCompletion_ShouldAllocateLessPerRequest_ThanBuildingTheEntityOnTheRequestThread() throws Exception {
+        // Arrange
+        RequestHistoryService noOpService = new RequestHistoryService() {
+            @Override
+            public CompletableFuture<Void> logRequestAsync(String endpoint, String httpMethod, String requestParameters,
+                                                           String requestBody, String responseStatus, String responseBody,
+                                                           String errorMessage, Long executionTimeMs, String clientIp,
+                                                           String userAgent, RequestTimings.PhaseMicros phaseMicros) {
+                return null;
+            }
+        };
+        RequestEventRingBuffer ringBuffer = new RequestEventRingBuffer(noOpService, new SimpleMeterRegistry(),
+                4096, 2048, 4096, Duration.ofSeconds(1));
+        ringBuffer.start();
+        RequestLoggingInterceptor interceptor = new RequestLoggingInterceptor();
+        ReflectionTestUtils.setField(interceptor, "requestEventRingBuffer", ringBuffer);
+        ReflectionTestUtils.setField(interceptor, "endpointLatencyHistograms",
+                new EndpointLatencyHistograms(null, Runnable::run, Duration.ofSeconds(10), Duration.ofSeconds(60), 2, 200,
+                        false, "benchmark", Duration.ofDays(1)));
+
+        MockHttpServletRequest request = request();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setStatus(200);
+
+        // Coste de leer los mismos datos del request mock, común a ambas variantes
+        Runnable reads = () -> readRequest(request, response);
+        Runnable ringBufferPath = () -> interceptor.afterCompletion(request, response, null, null);
+        Runnable legacyPath = () -> legacyAfterCompletion(request, response);
+
+        try {
+            // Act
+            double readBytes = allocatedPerCall(reads, ringBuffer);
+            double ringBytes = allocatedPerCall(ringBufferPath, ringBuffer);
+            double legacyBytes = allocatedPerCall(legacyPath, ringBuffer);
+
+            double ringOwn = Math.max(0, ringBytes - readBytes);
+            double legacyOwn = Math.max(0, legacyBytes - readBytes);
+            System.out.printf("Bytes por request: lecturas del mock %.0f, ring buffer %.0f (+%.0f), anterior %.0f (+%.0f)%n",
+                    readBytes, ringBytes, ringOwn, legacyBytes, legacyOwn);
+
+            // Assert
+            assertTrue(ringOwn * 4 < legacyOwn,
+                    "el ring buffer debería asignar al menos 4 veces menos: " + ringOwn + " vs " + legacyOwn);
+        } finally {
+            ringBuffer.stop();
+        }
+    }
+
+    private double allocatedPerCall(Runnable call, RequestEventRingBuffer ringBuffer) throws InterruptedException {
+        for (int i = 0; i < WARMUP; i++) {
+            call.run();
+            waitForRoom(ringBuffer);
+        }
+        long threadId = Thread.currentThread().threadId();
+        long total = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long before = threadMXBean.getThreadAllocatedBytes(threadId);
+            call.run();
+            total += threadMXBean.getThreadAllocatedBytes(threadId) - before;
+            waitForRoom(ringBuffer);
+        }
+        return (double) total / ITERATIONS;
+    }
+
+    private static void waitForRoom(RequestEventRingBuffer ringBuffer) throws InterruptedException {
+        while (ringBuffer.getBacklog() > ringBuffer.getCapacity() / 2) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/calculate");
+        request.addHeader("User-Agent", "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36");
+        request.addHeader("X-Forwarded-For", "203.0.113.195, 70.41.3.18");
+        request.addParameter("firstNumber", "10");
+        request.addParameter("secondNumber", "20");
+        request.setAttribute("startTime", System.currentTimeMillis());
+        request.setAttribute(RequestTimings.ATTRIBUTE, RequestTimings.start());
+        BodyCapture requestBody = new BodyCapture(4096);
+        byte[] body = "{\"firstNumber\": 10, \"secondNumber\": 20}".getBytes(StandardCharsets.UTF_8);
+        requestBody.write(body, 0, body.length);
+        BodyCapture responseBody = new BodyCapture(4096);
+        byte[] result = "{\"result\": 34.725, \"percentage\": 15.75}".getBytes(StandardCharsets.UTF_8);
+        responseBody.write(result, 0, result.length);
+        request.setAttribute(RequestBodyCaptureFilter.REQUEST_CAPTURE_ATTRIBUTE, requestBody);
+        request.setAttribute(RequestBodyCaptureFilter.RESPONSE_CAPTURE_ATTRIBUTE, responseBody);
+        return request;
+    }
+
+    private static int readRequest(HttpServletRequest request, HttpServletResponse response) {
+        int sink = request.getRequestURI().length() + request.getMethod().length();
+        sink += request.getHeader("X-Forwarded-For").length() + request.getHeader("User-Agent").length();
+        sink += request.getParameterMap().size() + response.getStatus();
+        sink += request.getAttribute("startTime").hashCode();
+        sink += request.getAttribute(RequestBodyCaptureFilter.REQUEST_CAPTURE_ATTRIBUTE).hashCode();
+        sink += request.getAttribute(RequestBodyCaptureFilter.RESPONSE_CAPTURE_ATTRIBUTE).hashCode();
+        return sink;
+    }
+
+    /**
+     * Registro anterior al ring buffer: todos los Strings, la entidad y la tarea en el hilo del request.
+     */
+    private static void legacyAfterCompletion(HttpServletRequest request, HttpServletResponse response) {
+        String endpoint = request.getRequestURI();
+        long executionTime = System.currentTimeMillis() - (Long) request.getAttribute("startTime");
+        String clientIp = request.getHeader("X-Forwarded-For").split(",")[0].trim();
+        StringBuilder params = new StringBuilder();
+        for (Map.Entry<String, String[]> entry : request.getParameterMap().entrySet()) {
+            if (params.length() > 0) {
+                params.append("&");
+            }
+            params.append(entry.getKey()).append("=").append(entry.getValue()[0]);
+        }
+        RequestHistory requestHistory = new RequestHistory();
+        requestHistory.setRequestDate(LocalDateTime.now());
+        requestHistory.setEndpoint(endpoint);
+        requestHistory.setHttpMethod(request.getMethod());
+        requestHistory.setRequestParameters(params.toString());
+        requestHistory.setRequestBody(RequestBodyCaptureFilter.getCapturedRequestBody(request));
+        requestHistory.setResponseStatus(String.valueOf(response.getStatus()));
+        requestHistory.setResponseBody(RequestBodyCaptureFilter.getCapturedResponseBody(request, response));
+        requestHistory.setExecutionTimeMs(executionTime);
+        requestHistory.setClientIp(clientIp);
+        requestHistory.setUserAgent(request.getHeader("User-Agent"));
+        CompletableFuture.runAsync(requestHistory::getEndpoint, Runnable::run);
+    }
+}
@@ -1,18 +1,23 @@
 package com.tokenlabs.config;
 
+import com.tokenlabs.service.EndpointLatencyHistograms;
 import com.tokenlabs.service.RequestHistoryService;
+import com.tokenlabs.util.RequestTimings;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.util.ContentCachingRequestWrapper;
 import org.springframework.web.util.ContentCachingResponseWrapper;
 
-import java.util.concurrent.CompletableFuture;
+import java.time.Duration;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -24,6 +29,9 @@ class RequestLoggingInterceptorTest {
     @Mock
     private RequestHistoryService requestHistoryService;
 
+    @Mock
+    private EndpointLatencyHistograms endpointLatencyHistograms;
+
     @Mock
     private HttpServletRequest request;
 
@@ -33,11 +41,20 @@ class RequestLoggingInterceptorTest {
     @InjectMocks
     private RequestLoggingInterceptor interceptor;
 
+    private RequestEventRingBuffer ringBuffer;
+
     @BeforeEach
     void setUp() {
-        when(requestHistoryService.logRequestAsync(anyString(), anyString(), anyString(), anyString(),
-                anyString(), anyString(), anyString(), anyLong(), anyString(), anyString()))
-                .thenReturn(CompletableFuture.completedFuture(null));
+        // Ring buffer real: el consumidor entrega los eventos al servicio mockeado
+        ringBuffer = new RequestEventRingBuffer(requestHistoryService, new SimpleMeterRegistry(),
+                64, 2048, 4096, Duration.ofSeconds(1));
+        ringBuffer.start();
+        ReflectionTestUtils.setField(interceptor, "requestEventRingBuffer", ringBuffer);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ringBuffer.stop();
     }
 
     @Test
@@ -47,16 +64,18 @@ class RequestLoggingInterceptorTest {
 
         // Assert
         assertTrue(result);
-        verify(request).setAttribute("startTime", anyLong());
+        verify(request).setAttribute(eq(RequestTimings.ATTRIBUTE), any(RequestTimings.class));
     }
 
     @Test
     void afterCompletion_ShouldLogRequest_WhenCalledSuccessfully() throws Exception {
         // Arrange
-        when(request.getAttribute("startTime")).thenReturn(System.currentTimeMillis() - 100);
+        when(request.getAttribute(RequestTimings.ATTRIBUTE)).thenReturn(RequestTimings.startedAt(System.nanoTime() - 100_000_000L));
         when(request.getRequestURI()).thenReturn("/api/test");
         when(request.getMethod()).thenReturn("GET");
         when(request.getRemoteAddr()).thenReturn("192.168.1.1");
+        when(request.getHeader("X-Forwarded-For")).thenReturn(null);
+        when(request.getHeader("X-Real-IP")).thenReturn(null);
         when(request.getHeader("User-Agent")).thenReturn("Mozilla/5.0");
         when(request.getParameterMap()).thenReturn(java.util.Collections.emptyMap());
         when(response.getStatus()).thenReturn(200);
@@ -68,17 +87,58 @@ class RequestLoggingInterceptorTest {
         verify(requestHistoryService, timeout(1000)).logRequestAsync(
                 eq("/api/test"), eq("GET"), isNull(), isNull(),
                 eq("200"), isNull(), isNull(), anyLong(),
-                eq("192.168.1.1"), eq("Mozilla/5.0")
+                eq("192.168.1.1"), eq("Mozilla/5.0"), any()
         );
     }
 
+    @Test
+    void afterCompletion_ShouldRecordLatencyByRoutePattern_WhenHandlerMatched() throws Exception {
+        // Arrange
+        when(request.getAttribute(RequestTimings.ATTRIBUTE)).thenReturn(RequestTimings.startedAt(System.nanoTime() - 100_000_000L));
+        when(request.getAttribute(org.springframework.web.servlet.HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE))
+                .thenReturn("/api/v1/calculate");
+        when(request.getRequestURI()).thenReturn("/api/v1/calculate");
+        when(request.getMethod()).thenReturn("POST");
+        when(request.getParameterMap()).thenReturn(java.util.Collections.emptyMap());
+        when(response.getStatus()).thenReturn(200);
+
+        // Act
+        interceptor.afterCompletion(request, response, null, null);
+
+        // Assert
+        verify(endpointLatencyHistograms).record(eq("/api/v1/calculate"), longThat(micros -> micros >= 100_000L));
+    }
+
+    @Test
+    void afterCompletion_ShouldLogRoutePatternAsEndpoint_WhenHandlerMatched() throws Exception {
+        // Arrange
+        when(request.getAttribute(RequestTimings.ATTRIBUTE)).thenReturn(RequestTimings.startedAt(System.nanoTime() - 100_000_000L));
+        when(request.getAttribute(org.springframework.web.servlet.HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE))
+                .thenReturn("/api/v1/items/{id}");
+        when(request.getRequestURI()).thenReturn("/api/v1/items/42");
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getParameterMap()).thenReturn(java.util.Collections.emptyMap());
+        when(response.getStatus()).thenReturn(200);
+
+        // Act
+        interceptor.afterCompletion(request, response, null, null);
+
+        // Assert
+        verify(requestHistoryService, timeout(1000)).logRequestAsync(
+                eq("/api/v1/items/{id}"), eq("GET"), isNull(), isNull(),
+                eq("200"), isNull(), isNull(), anyLong(), any(), any(), any());
+        verify(endpointLatencyHistograms).record(eq("/api/v1/items/{id}"), anyLong());
+    }
+
     @Test
     void afterCompletion_ShouldLogRequestWithError_WhenExceptionOccurs() throws Exception {
         // Arrange
-        when(request.getAttribute("startTime")).thenReturn(System.currentTimeMillis() - 100);
+        when(request.getAttribute(RequestTimings.ATTRIBUTE)).thenReturn(RequestTimings.startedAt(System.nanoTime() - 100_000_000L));
         when(request.getRequestURI()).thenReturn("/api/test");
         when(request.getMethod()).thenReturn("POST");
         when(request.getRemoteAddr()).thenReturn("192.168.1.1");
+        when(request.getHeader("X-Forwarded-For")).thenReturn(null);
+        when(request.getHeader("X-Real-IP")).thenReturn(null);
         when(request.getHeader("User-Agent")).thenReturn("Chrome/91.0");
         when(request.getParameterMap()).thenReturn(java.util.Collections.emptyMap());
         when(response.getStatus()).thenReturn(500);
@@ -92,17 +152,19 @@ class RequestLoggingInterceptorTest {
         verify(requestHistoryService, timeout(1000)).logRequestAsync(
                 eq("/api/test"), eq("POST"), isNull(), isNull(),
                 eq("500"), isNull(), eq("Test error"), anyLong(),
-                eq("192.168.1.1"), eq("Chrome/91.0")
+                eq("192.168.1.1"), eq("Chrome/91.0"), any()
         );
     }
 
     @Test
     void afterCompletion_ShouldLogRequestWithHttpError_WhenResponseStatusIsError() throws Exception {
         // Arrange
-        when(request.getAttribute("startTime")).thenReturn(System.currentTimeMillis() - 100);
+        when(request.getAttribute(RequestTimings.ATTRIBUTE)).thenReturn(RequestTimings.startedAt(System.nanoTime() - 100_000_000L));
         when(request.getRequestURI()).thenReturn("/api/test");
         when(request.getMethod()).thenReturn("GET");
         when(request.getRemoteAddr()).thenReturn("192.168.1.1");
+        when(request.getHeader("X-Forwarded-For")).thenReturn(null);
+        when(request.getHeader("X-Real-IP")).thenReturn(null);
         when(request.getHeader("User-Agent")).thenReturn("Safari/14.0");
         when(request.getParameterMap()).thenReturn(java.util.Collections.emptyMap());
         when(response.getStatus()).thenReturn(400);
@@ -114,38 +176,40 @@ class RequestLoggingInterceptorTest {
         verify(requestHistoryService, timeout(1000)).logRequestAsync(
                 eq("/api/test"), eq("GET"), isNull(), isNull(),
                 eq("400"), isNull(), eq("HTTP Error 400"), anyLong(),
-                eq("192.168.1.1"), eq("Safari/14.0")
+                eq("192.168.1.1"), eq("Safari/14.0"), any()
         );
     }
 
     @Test
-    void afterCompletion_ShouldHandleServiceException_WhenLoggingServiceThrowsException() throws Exception {
+    void afterCompletion_ShouldPublishDiscardedSlot_WhenCopyingRequestFails() throws Exception {
         // Arrange
-        when(requestHistoryService.logRequestAsync(anyString(), anyString(), anyString(), anyString(),
-                anyString(), anyString(), anyString(), anyLong(), anyString(), anyString()))
-                .thenThrow(new RuntimeException("Logging service error"));
-
-        when(request.getAttribute("startTime")).thenReturn(System.currentTimeMillis() - 100);
+        when(request.getAttribute(RequestTimings.ATTRIBUTE)).thenReturn(RequestTimings.startedAt(System.nanoTime() - 100_000_000L));
         when(request.getRequestURI()).thenReturn("/api/test");
         when(request.getMethod()).thenReturn("GET");
         when(request.getRemoteAddr()).thenReturn("192.168.1.1");
+        when(request.getHeader("X-Forwarded-For")).thenReturn(null);
+        when(request.getHeader("X-Real-IP")).thenReturn(null);
         when(request.getHeader("User-Agent")).thenReturn("Mozilla/5.0");
-        when(request.getParameterMap()).thenReturn(java.util.Collections.emptyMap());
-        when(response.getStatus()).thenReturn(200);
+        when(request.getParameterMap()).thenThrow(new IllegalStateException("Request ya reciclado"));
 
         // Act & Assert - No debe lanzar excepción
         assertDoesNotThrow(() -> {
             interceptor.afterCompletion(request, response, null, null);
         });
 
-        verify(requestHistoryService).logRequestAsync(anyString(), anyString(), anyString(), anyString(),
-                anyString(), anyString(), anyString(), anyLong(), anyString(), anyString());
+        // El slot se publica igualmente y el consumidor lo salta sin registrarlo
+        long deadline = System.nanoTime() + Duration.ofSeconds(1).toNanos();
+        while (ringBuffer.getBacklog() > 0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(0, ringBuffer.getBacklog());
+        verifyNoInteractions(requestHistoryService);
     }
 
     @Test
     void afterCompletion_ShouldExtractClientIpFromXForwardedFor_WhenHeaderPresent() throws Exception {
         // Arrange
-        when(request.getAttribute("startTime")).thenReturn(System.currentTimeMillis() - 100);
+        when(request.getAttribute(RequestTimings.ATTRIBUTE)).thenReturn(RequestTimings.startedAt(System.nanoTime() - 100_000_000L));
         when(request.getRequestURI()).thenReturn("/api/test");
         when(request.getMethod()).thenReturn("GET");
         when(request.getHeader("X-Forwarded-For")).thenReturn("203.0.113.195, 70.41.3.18, 150.172.238.178");
@@ -160,18 +224,20 @@ class RequestLoggingInterceptorTest {
         verify(requestHistoryService, timeout(1000)).logRequestAsync(
                 eq("/api/test"), eq("GET"), isNull(), isNull(),
                 eq("200"), isNull(), isNull(), anyLong(),
-                eq("203.0.113.195"), eq("Mozilla/5.0")
+                eq("203.0.113.195"), eq("Mozilla/5.0"), any()
         );
     }
 
     @Test
     void afterCompletion_ShouldExtractClientIpFromXRealIp_WhenHeaderPresent() throws Exception {
         // Arrange
-        when(request.getAttribute("startTime")).thenReturn(System.currentTimeMillis() - 100);
+        when(request.getAttribute(RequestTimings.ATTRIBUTE)).thenReturn(RequestTimings.startedAt(System.nanoTime() - 100_000_000L));
         when(request.getRequestURI()).thenReturn("/api/test");
         when(request.getMethod()).thenReturn("GET");
+        when(request.getHeader("X-Forwarded-For")).thenReturn(null);
         when(request.getHeader("X-Real-IP")).thenReturn("203.0.113.195");
-        when(request.getRemoteAddr()).thenReturn("192.168.1.1");
+        // No debe llegar a consultarse: X-Real-IP tiene prioridad
+        lenient().when(request.getRemoteAddr()).thenReturn("192.168.1.1");
         when(request.getHeader("User-Agent")).thenReturn("Mozilla/5.0");
         when(request.getParameterMap()).thenReturn(java.util.Collections.emptyMap());
         when(response.getStatus()).thenReturn(200);
@@ -183,7 +249,7 @@ class RequestLoggingInterceptorTest {
         verify(requestHistoryService, timeout(1000)).logRequestAsync(
                 eq("/api/test"), eq("GET"), isNull(), isNull(),
                 eq("200"), isNull(), isNull(), anyLong(),
-                eq("203.0.113.195"), eq("Mozilla/5.0")
+                eq("203.0.113.195"), eq("Mozilla/5.0"), any()
         );
     }
 
@@ -191,10 +257,12 @@ class RequestLoggingInterceptorTest {
     void afterCompletion_ShouldHandleContentCachingRequestWrapper_WhenRequestIsWrapped() throws Exception {
         // Arrange
         ContentCachingRequestWrapper wrappedRequest = mock(ContentCachingRequestWrapper.class);
-        when(wrappedRequest.getAttribute("startTime")).thenReturn(System.currentTimeMillis() - 100);
+        when(wrappedRequest.getAttribute(RequestTimings.ATTRIBUTE)).thenReturn(RequestTimings.startedAt(System.nanoTime() - 100_000_000L));
         when(wrappedRequest.getRequestURI()).thenReturn("/api/test");
         when(wrappedRequest.getMethod()).thenReturn("POST");
         when(wrappedRequest.getRemoteAddr()).thenReturn("192.168.1.1");
+        when(wrappedRequest.getHeader("X-Forwarded-For")).thenReturn(null);
+        when(wrappedRequest.getHeader("X-Real-IP")).thenReturn(null);
         when(wrappedRequest.getHeader("User-Agent")).thenReturn("Mozilla/5.0");
         when(wrappedRequest.getParameterMap()).thenReturn(java.util.Collections.emptyMap());
         when(wrappedRequest.getContentAsByteArray()).thenReturn("{\"test\": \"data\"}".getBytes());
@@ -207,7 +275,7 @@ class RequestLoggingInterceptorTest {
         verify(requestHistoryService, timeout(1000)).logRequestAsync(
                 eq("/api/test"), eq("POST"), isNull(), eq("{\"test\": \"data\"}"),
                 eq("200"), isNull(), isNull(), anyLong(),
-                eq("192.168.1.1"), eq("Mozilla/5.0")
+                eq("192.168.1.1"), eq("Mozilla/5.0"), any()
         );
     }
 
@@ -215,10 +283,12 @@ class RequestLoggingInterceptorTest {
     void afterCompletion_ShouldHandleContentCachingResponseWrapper_WhenResponseIsWrapped() throws Exception {
         // Arrange
         ContentCachingResponseWrapper wrappedResponse = mock(ContentCachingResponseWrapper.class);
-        when(request.getAttribute("startTime")).thenReturn(System.currentTimeMillis() - 100);
+        when(request.getAttribute(RequestTimings.ATTRIBUTE)).thenReturn(RequestTimings.startedAt(System.nanoTime() - 100_000_000L));
         when(request.getRequestURI()).thenReturn("/api/test");
         when(request.getMethod()).thenReturn("GET");
         when(request.getRemoteAddr()).thenReturn("192.168.1.1");
+        when(request.getHeader("X-Forwarded-For")).thenReturn(null);
+        when(request.getHeader("X-Real-IP")).thenReturn(null);
         when(request.getHeader("User-Agent")).thenReturn("Mozilla/5.0");
         when(request.getParameterMap()).thenReturn(java.util.Collections.emptyMap());
         when(wrappedResponse.getStatus()).thenReturn(200);
@@ -231,7 +301,7 @@ class RequestLoggingInterceptorTest {
         verify(requestHistoryService, timeout(1000)).logRequestAsync(
                 eq("/api/test"), eq("GET"), isNull(), isNull(),
                 eq("200"), eq("{\"result\": \"success\"}"), isNull(), anyLong(),
-                eq("192.168.1.1"), eq("Mozilla/5.0")
+                eq("192.168.1.1"), eq("Mozilla/5.0"), any()
         );
     }
 }
@@ -0,0 +1,119 @@
+package com.tokenlabs.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.tokenlabs.model.RequestHistory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark de tamaño y CPU de serialización JSON frente a CBOR para una
+ * página de 100 filas de /api/v1/history, con la misma estructura de mapas
+ * que construye el controlador.
+ *
+ * Ejecutar con: mvn test -Dtest=WireFormatBenchmarkTest -Dbenchmarks=true
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class WireFormatBenchmarkTest {
+
+    private static final int WARMUP_ITERATIONS = 5_000;
+    private static final int MEASURED_ITERATIONS = 20_000;
+
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    @Test
+    void cbor_ShouldBeSmallerThanJson_ForHistoryPage() throws Exception {
+        // Arrange
+        ObjectMapper jsonMapper = mapperBuilder().build();
+        ObjectMapper cborMapper = mapperBuilder().factory(new CBORFactory()).build();
+        ObjectMapper cborStringRefMapper = mapperBuilder().factory(CBORFactory.builder()
+                .enable(CBORGenerator.Feature.STRINGREF).build()).build();
+        Map<String, Object> page = historyPage(100);
+
+        // Act
+        int json = measure("JSON", jsonMapper, page, -1);
+        int cbor = measure("CBOR", cborMapper, page, json);
+        int cborStringRef = measure("CBOR+stringref", cborStringRefMapper, page, json);
+
+        // Assert
+        assertTrue(cbor < json);
+        assertTrue(cborStringRef < cbor);
+    }
+
+    /**
+     * @return tamaño serializado en bytes
+     */
+    private int measure(String format, ObjectMapper mapper, Map<String, Object> page, int jsonSize) throws Exception {
+        byte[] payload = mapper.writeValueAsBytes(page);
+        double writeMicros = cpuMicrosPerOp(() -> mapper.writeValueAsBytes(page));
+        double readMicros = cpuMicrosPerOp(() -> mapper.readTree(payload));
+        System.out.printf("Página de 100 filas - %-14s %6d bytes (%3.0f%%), escritura %6.1f µs CPU, lectura %6.1f µs CPU%n",
+                format + ":", payload.length, jsonSize > 0 ? 100.0 * payload.length / jsonSize : 100.0,
+                writeMicros, readMicros);
+        return payload.length;
+    }
+
+    private static Jackson2ObjectMapperBuilder mapperBuilder() {
+        // Misma configuración de fechas que aplica Spring Boot
+        return new Jackson2ObjectMapperBuilder().featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+
+    private double cpuMicrosPerOp(ThrowingRunnable operation) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            operation.run();
+        }
+        long start = threadMXBean.getCurrentThreadCpuTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            operation.run();
+        }
+        return (threadMXBean.getCurrentThreadCpuTime() - start) / 1_000.0 / MEASURED_ITERATIONS;
+    }
+
+    private static Map<String, Object> historyPage(int rows) {
+        List<RequestHistory> data = new ArrayList<>(rows);
+        for (long i = 1; i <= rows; i++) {
+            RequestHistory history = new RequestHistory("/api/v1/calculate", "POST", null,
+                    "{\"firstNumber\": 10.50, \"secondNumber\": 20.25}", "200",
+                    "{\"firstNumber\":10.50,\"secondNumber\":20.25,\"percentage\":15.75,\"result\":35.59}");
+            history.setId(i);
+            history.setRequestDate(LocalDateTime.of(2025, 1, 1, 12, 0).plusSeconds(i));
+            history.setExecutionTimeMs(120L + i);
+            history.setClientIp("192.168.1." + (i % 250));
+            history.setUserAgent("Mozilla/5.0 (X11; Linux x86_64)");
+            data.add(history);
+        }
+        Map<String, Object> pagination = new HashMap<>();
+        pagination.put("currentPage", 0);
+        pagination.put("totalPages", 10);
+        pagination.put("totalElements", 1000L);
+        pagination.put("size", rows);
+        pagination.put("first", true);
+        pagination.put("last", false);
+        pagination.put("numberOfElements", rows);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "success");
+        response.put("data", data);
+        response.put("pagination", pagination);
+        response.put("timestamp", LocalDateTime.of(2025, 1, 1, 12, 5));
+        return response;
+    }
+
+    @FunctionalInterface
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,99 @@
+package com.tokenlabs.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Prueba de carga: compara el techo de throughput de /calculate (bloquea un
+ * hilo de Tomcat durante los ~100 ms del servicio externo) con /calculate/async
+ * (libera el hilo mientras dura la llamada externa).
+ *
+ * Con 20 hilos de Tomcat el endpoint síncrono no puede superar ~200 req/s;
+ * el asíncrono queda limitado por el pool externalCallExecutor (50 → ~500 req/s).
+ *
+ * Ejecutar con: mvn test -Dtest=CalculationAsyncLoadTest -DloadTests=true
+ */
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = {
+        "server.tomcat.threads.max=20",
+        "app.async.external-call.pool-size=50",
+        "app.async.persistence.pool-size=20"
+    }
+)
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "loadTests", matches = "true")
+class CalculationAsyncLoadTest {
+
+    private static final int TOTAL_REQUESTS = 2000;
+    private static final int CONCURRENT_CLIENTS = 200;
+    private static final String BODY = "{\"firstNumber\": 10.50, \"secondNumber\": 20.25}";
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    @Test
+    void asyncEndpoint_ShouldRaiseThroughputCeiling_WhenTomcatThreadsAreScarce() throws Exception {
+        // Calentamiento de JIT, pools y conexiones
+        runLoad("/api/v1/calculate", 200);
+        runLoad("/api/v1/calculate/async", 200);
+
+        // Act
+        double syncThroughput = runLoad("/api/v1/calculate", TOTAL_REQUESTS);
+        double asyncThroughput = runLoad("/api/v1/calculate/async", TOTAL_REQUESTS);
+
+        // Assert
+        System.out.printf("Throughput /calculate: %.1f req/s, /calculate/async: %.1f req/s (x%.2f)%n",
+                syncThroughput, asyncThroughput, asyncThroughput / syncThroughput);
+        assertTrue(asyncThroughput > syncThroughput * 1.5,
+                "Se esperaba que /calculate/async superara claramente a /calculate");
+    }
+
+    private double runLoad(String path, int totalRequests) throws Exception {
+        Semaphore inFlight = new Semaphore(CONCURRENT_CLIENTS);
+        AtomicInteger failures = new AtomicInteger();
+        List<CompletableFuture<?>> futures = new ArrayList<>(totalRequests);
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(60))
+                .POST(HttpRequest.BodyPublishers.ofString(BODY))
+                .build();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < totalRequests; i++) {
+            inFlight.acquire();
+            futures.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        if (error != null || response.statusCode() != 200) {
+                            failures.incrementAndGet();
+                        }
+                        inFlight.release();
+                    }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        double elapsedSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        assertEquals(0, failures.get(), "Requests fallidos en " + path);
+        return totalRequests / elapsedSeconds;
+    }
+}
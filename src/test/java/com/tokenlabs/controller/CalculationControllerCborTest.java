@@ -0,0 +1,161 @@
+package com.tokenlabs.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.tokenlabs.config.RequestEventRingBuffer;
+import com.tokenlabs.dto.CalculationRequest;
+import com.tokenlabs.dto.CalculationResponse;
+import com.tokenlabs.model.RequestHistory;
+import com.tokenlabs.service.CalculationService;
+import com.tokenlabs.service.EndpointLatencyHistograms;
+import com.tokenlabs.service.ExternalPercentageService;
+import com.tokenlabs.service.ExternalServiceFailureSimulator;
+import com.tokenlabs.service.HeavyHitterTracker;
+import com.tokenlabs.service.IdempotencyService;
+import com.tokenlabs.service.RequestHistoryLiveTail;
+import com.tokenlabs.service.RequestHistoryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(CalculationController.class)
+class CalculationControllerCborTest {
+
+    private static final MediaType APPLICATION_CBOR = MediaType.parseMediaType("application/cbor");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+    @MockBean
+    private CalculationService calculationService;
+
+    @MockBean
+    private ExternalPercentageService externalPercentageService;
+
+    @MockBean
+    private ExternalServiceFailureSimulator failureSimulator;
+
+    @MockBean
+    private IdempotencyService idempotencyService;
+
+    @MockBean
+    private RequestHistoryService requestHistoryService;
+
+    @MockBean
+    private RequestEventRingBuffer requestEventRingBuffer;
+
+    @MockBean
+    private EndpointLatencyHistograms endpointLatencyHistograms;
+
+    @MockBean
+    private HeavyHitterTracker heavyHitterTracker;
+
+    @MockBean
+    private RequestHistoryLiveTail requestHistoryLiveTail;
+
+    private ObjectMapper cborMapper;
+    private CalculationResponse testResponse;
+
+    @BeforeEach
+    void setUp() {
+        cborMapper = objectMapperBuilder.factory(new CBORFactory()).build();
+        testResponse = new CalculationResponse(
+            new BigDecimal("10.50"),
+            new BigDecimal("20.25"),
+            new BigDecimal("15.75"),
+            new BigDecimal("35.59")
+        );
+    }
+
+    @Test
+    void calculate_ShouldAcceptAndReturnCbor_WhenNegotiated() throws Exception {
+        // Arrange
+        CalculationRequest request = new CalculationRequest(new BigDecimal("10.50"), new BigDecimal("20.25"));
+        when(calculationService.calculate(request)).thenReturn(testResponse);
+
+        // Act
+        MvcResult result = mockMvc.perform(post("/api/v1/calculate")
+                .contentType(APPLICATION_CBOR)
+                .accept(APPLICATION_CBOR)
+                .content(cborMapper.writeValueAsBytes(request)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_CBOR))
+                .andReturn();
+
+        // Assert: los BigDecimal conservan la escala exacta
+        CalculationResponse response = cborMapper.readValue(result.getResponse().getContentAsByteArray(), CalculationResponse.class);
+        assertEquals(new BigDecimal("35.59"), response.getResult());
+        assertEquals(new BigDecimal("10.50"), response.getFirstNumber());
+        verify(calculationService).calculate(request);
+    }
+
+    @Test
+    void calculate_ShouldKeepJsonAsDefault_WhenAcceptIsWildcard() throws Exception {
+        // Arrange
+        when(calculationService.calculate(any(CalculationRequest.class))).thenReturn(testResponse);
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/calculate")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.ALL)
+                .content("{\"firstNumber\": 10.50, \"secondNumber\": 20.25}"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void getRequestHistory_ShouldReturnSmallerCborPage_ThanJson() throws Exception {
+        // Arrange
+        List<RequestHistory> rows = new java.util.ArrayList<>();
+        for (long i = 1; i <= 100; i++) {
+            RequestHistory history = new RequestHistory("/api/v1/calculate", "POST", null,
+                    "{\"firstNumber\": 10.50, \"secondNumber\": 20.25}", "200",
+                    "{\"firstNumber\":10.50,\"secondNumber\":20.25,\"percentage\":15.75,\"result\":35.59}");
+            history.setId(i);
+            history.setExecutionTimeMs(120L + i);
+            history.setClientIp("192.168.1." + i);
+            history.setUserAgent("Mozilla/5.0");
+            history.setRequestDate(LocalDateTime.of(2025, 1, 1, 12, 0).plusSeconds(i));
+            rows.add(history);
+        }
+        when(requestHistoryService.getRequestHistory(anyInt(), anyInt(), anyString(), anyString()))
+                .thenReturn(new PageImpl<>(rows, PageRequest.of(0, 100), 1000));
+
+        // Act
+        byte[] json = mockMvc.perform(get("/api/v1/history").param("size", "100").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        byte[] cbor = mockMvc.perform(get("/api/v1/history").param("size", "100").accept(APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // Assert
+        JsonNode page = cborMapper.readTree(cbor);
+        assertEquals(100, page.get("data").size());
+        assertEquals(1000, page.get("pagination").get("totalElements").asInt());
+        assertTrue(cbor.length < json.length, "CBOR: " + cbor.length + " bytes, JSON: " + json.length + " bytes");
+    }
+}
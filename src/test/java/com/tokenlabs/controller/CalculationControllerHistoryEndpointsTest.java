@@ -0,0 +1,341 @@
+package com.tokenlabs.controller;
+
+import com.tokenlabs.config.RequestEventRingBuffer;
+import com.tokenlabs.dto.CursorPage;
+import com.tokenlabs.model.RequestHistory;
+import com.tokenlabs.service.CalculationService;
+import com.tokenlabs.service.EndpointLatencyHistograms;
+import com.tokenlabs.service.ExternalPercentageService;
+import com.tokenlabs.service.ExternalServiceFailureSimulator;
+import com.tokenlabs.service.HeavyHitterTracker;
+import com.tokenlabs.service.IdempotencyService;
+import com.tokenlabs.service.RequestHistoryFacetIndex;
+import com.tokenlabs.service.RequestHistoryLiveTail;
+import com.tokenlabs.service.RequestHistoryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(CalculationController.class)
+class CalculationControllerHistoryEndpointsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CalculationService calculationService;
+
+    @MockBean
+    private ExternalPercentageService externalPercentageService;
+
+    @MockBean
+    private ExternalServiceFailureSimulator failureSimulator;
+
+    @MockBean
+    private IdempotencyService idempotencyService;
+
+    @MockBean
+    private RequestHistoryService requestHistoryService;
+
+    @MockBean
+    private RequestEventRingBuffer requestEventRingBuffer;
+
+    @MockBean
+    private EndpointLatencyHistograms endpointLatencyHistograms;
+
+    @MockBean
+    private HeavyHitterTracker heavyHitterTracker;
+
+    @MockBean
+    private RequestHistoryLiveTail requestHistoryLiveTail;
+
+    private RequestHistory testRequestHistory;
+    private LocalDateTime testDate;
+
+    @BeforeEach
+    void setUp() {
+        testDate = LocalDateTime.of(2025, 1, 7, 14, 0);
+        testRequestHistory = new RequestHistory("/api/v1/calculate", "POST", null,
+                "{\"firstNumber\": 10, \"secondNumber\": 20}", "200", "{\"result\": 30.0}");
+        testRequestHistory.setId(1L);
+        testRequestHistory.setRequestDate(testDate);
+        testRequestHistory.setExecutionTimeMs(150L);
+    }
+
+    @Test
+    void getRequestHistory_ShouldReturnTotals_WhenPagingIsPage() throws Exception {
+        // Arrange
+        when(requestHistoryService.getRequestHistory(0, 20, "requestDate", "desc"))
+                .thenReturn(new PageImpl<>(List.of(testRequestHistory), PageRequest.of(0, 20), 41));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/history"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("success"))
+                .andExpect(jsonPath("$.data[0].id").value(1))
+                .andExpect(jsonPath("$.pagination.totalElements").value(41))
+                .andExpect(jsonPath("$.pagination.totalPages").value(3));
+    }
+
+    @Test
+    void getRequestHistory_ShouldOmitTotals_WhenPagingIsSlice() throws Exception {
+        // Arrange
+        when(requestHistoryService.searchRequestsSlice(eq("calc"), isNull(), isNull(), isNull(), isNull(), isNull(),
+                eq(1), eq(10), eq("requestDate"), eq("desc")))
+                .thenReturn(new SliceImpl<>(List.of(testRequestHistory), PageRequest.of(1, 10), true));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/history")
+                        .param("paging", "slice")
+                        .param("page", "1")
+                        .param("size", "10")
+                        .param("endpoint", "calc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].id").value(1))
+                .andExpect(jsonPath("$.pagination.currentPage").value(1))
+                .andExpect(jsonPath("$.pagination.hasNext").value(true))
+                .andExpect(jsonPath("$.pagination.totalElements").doesNotExist());
+        verify(requestHistoryService, never()).searchRequests(any(), any(), any(), any(), any(), any(),
+                anyInt(), anyInt(), any(), any());
+    }
+
+    @Test
+    void getRequestHistory_ShouldReturnNextCursor_WhenCursorIsGiven() throws Exception {
+        // Arrange
+        when(requestHistoryService.scrollRequests(isNull(), eq("POST"), isNull(), isNull(), isNull(), isNull(),
+                eq("token"), eq(20), eq("desc")))
+                .thenReturn(new CursorPage<>(List.of(testRequestHistory), 20, true, "next"));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/history")
+                        .param("cursor", "token")
+                        .param("httpMethod", "POST"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].id").value(1))
+                .andExpect(jsonPath("$.pagination.nextCursor").value("next"))
+                .andExpect(jsonPath("$.pagination.hasNext").value(true));
+    }
+
+    @Test
+    void getRequestHistory_ShouldReturnBadRequest_WhenCursorIsInvalid() throws Exception {
+        // Arrange
+        when(requestHistoryService.scrollRequests(any(), any(), any(), any(), any(), any(), eq("bad"), anyInt(), any()))
+                .thenThrow(new IllegalArgumentException("Cursor inválido"));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/history").param("cursor", "bad"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Cursor inválido"));
+    }
+
+    @Test
+    void getRequestHistory_ShouldReturnBadRequest_WhenPagingModeIsInvalid() throws Exception {
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/history").param("paging", "offset"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.status").value("error"));
+        mockMvc.perform(get("/api/v1/history").param("paging", "cursor").param("sortBy", "endpoint"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("La paginación por cursor solo ordena por requestDate"));
+        verifyNoInteractions(requestHistoryService);
+    }
+
+    @Test
+    void getRequestHistoryDetail_ShouldReturnRequest_WhenFound() throws Exception {
+        // Arrange
+        when(requestHistoryService.getRequestDetail(1L)).thenReturn(Optional.of(testRequestHistory));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/history/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.id").value(1))
+                .andExpect(jsonPath("$.data.endpoint").value("/api/v1/calculate"));
+    }
+
+    @Test
+    void getRequestHistoryDetail_ShouldReturnNotFound_WhenMissing() throws Exception {
+        // Arrange
+        when(requestHistoryService.getRequestDetail(99L)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/history/99"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message").value("Request no encontrado: 99"));
+    }
+
+    @Test
+    void streamRequestHistory_ShouldSubscribeWithFilters() throws Exception {
+        // Arrange
+        when(requestHistoryLiveTail.subscribe(any())).thenReturn(new SseEmitter());
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/history/live")
+                        .param("endpoint", "calc")
+                        .param("hasError", "true")
+                        .param("startDate", "2025-01-07T14:00:00"))
+                .andExpect(request().asyncStarted());
+        verify(requestHistoryLiveTail).subscribe(new RequestHistoryLiveTail.Filter(
+                "calc", null, null, true, testDate, null));
+    }
+
+    @Test
+    void streamRequestHistory_ShouldReturnServiceUnavailable_WhenSubscribersAreExhausted() throws Exception {
+        // Arrange
+        when(requestHistoryLiveTail.subscribe(any())).thenThrow(new TaskRejectedException("lleno"));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/history/live"))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    void searchRequestHistory_ShouldReturnCursorPage() throws Exception {
+        // Arrange
+        when(requestHistoryService.searchText("timeout", null, 20))
+                .thenReturn(new CursorPage<>(List.of(testRequestHistory), 20, false, null));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/history/search").param("q", "timeout"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].id").value(1))
+                .andExpect(jsonPath("$.pagination.hasNext").value(false));
+    }
+
+    @Test
+    void searchRequestHistory_ShouldReturnServiceUnavailable_WhenSearchIsDisabled() throws Exception {
+        // Arrange
+        when(requestHistoryService.searchText(any(), any(), anyInt()))
+                .thenThrow(new IllegalStateException("Búsqueda de texto deshabilitada"));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/history/search").param("q", "timeout"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.message").value("Búsqueda de texto deshabilitada"));
+    }
+
+    @Test
+    void getTopTraffic_ShouldReturnEachDimension() throws Exception {
+        // Arrange
+        when(heavyHitterTracker.getCapacity()).thenReturn(50);
+        when(heavyHitterTracker.top(HeavyHitterTracker.Dimension.ENDPOINT, 5)).thenReturn(Map.of(
+                "1m", List.of(new HeavyHitterTracker.HeavyHitter("/api/v1/calculate", 12, 10, 0.75))));
+        when(heavyHitterTracker.top(HeavyHitterTracker.Dimension.CLIENT_IP, 5)).thenReturn(Map.of());
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/history/top").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.limit").value(5))
+                .andExpect(jsonPath("$.endpoints['1m'][0].key").value("/api/v1/calculate"))
+                .andExpect(jsonPath("$.endpoints['1m'][0].guaranteedCount").value(10))
+                .andExpect(jsonPath("$.clients").isEmpty());
+    }
+
+    @Test
+    void getTopTraffic_ShouldReturnBadRequest_WhenLimitExceedsCapacity() throws Exception {
+        // Arrange
+        when(heavyHitterTracker.getCapacity()).thenReturn(50);
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/history/top").param("limit", "51"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("limit debe estar entre 1 y 50"));
+        verify(heavyHitterTracker, never()).top(any(), anyInt());
+    }
+
+    @Test
+    void getRequestHistoryFacets_ShouldReturnCountsAndFirstPage() throws Exception {
+        // Arrange
+        RequestHistoryFacetIndex.FacetCounts counts = new RequestHistoryFacetIndex.FacetCounts(
+                30, 3, Map.of("httpMethod", Map.of("POST", 30L)), testDate, 10);
+        when(requestHistoryService.getFacets(null, "POST", null, null, null, null)).thenReturn(counts);
+        when(requestHistoryService.scrollRecentRequests(null, "POST", null, null, null, null, null, 5))
+                .thenReturn(new CursorPage<>(List.of(testRequestHistory), 5, false, null));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/history/facets").param("httpMethod", "POST").param("size", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(30))
+                .andExpect(jsonPath("$.storedRows").value(3))
+                .andExpect(jsonPath("$.indexedRows").value(10))
+                .andExpect(jsonPath("$.facets.httpMethod.POST").value(30))
+                .andExpect(jsonPath("$.data[0].id").value(1));
+    }
+
+    @Test
+    void getRequestHistoryFacets_ShouldReturnOnlyCounts_WhenSizeIsZero() throws Exception {
+        // Arrange
+        when(requestHistoryService.getFacets(any(), any(), any(), any(), any(), any()))
+                .thenReturn(new RequestHistoryFacetIndex.FacetCounts(0, 0, Map.of(), testDate, 0));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/history/facets").param("size", "0"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(0))
+                .andExpect(jsonPath("$.data").doesNotExist());
+        verify(requestHistoryService, never()).scrollRecentRequests(any(), any(), any(), any(), any(), any(),
+                any(), anyInt());
+        mockMvc.perform(get("/api/v1/history/facets").param("size", "101"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getRequestLatency_ShouldReturnWindowsFromMemory() throws Exception {
+        // Arrange
+        when(endpointLatencyHistograms.snapshot()).thenReturn(Map.of("/api/v1/calculate",
+                Map.of("1m", new EndpointLatencyHistograms.Percentiles(4, 100, 200, 300, 300, 310))));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/history/latency"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.unit").value("microseconds"))
+                .andExpect(jsonPath("$.latencyByEndpoint['/api/v1/calculate']['1m'].p99").value(300));
+    }
+
+    @Test
+    void getRequestLatencyRange_ShouldMergeStoredMinutes() throws Exception {
+        // Arrange
+        when(endpointLatencyHistograms.percentilesBetween(testDate, testDate.plusHours(1), "/api/v1/calculate"))
+                .thenReturn(Map.of("/api/v1/calculate", new EndpointLatencyHistograms.Percentiles(4, 100, 200, 300, 300, 310)));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/history/latency/range")
+                        .param("from", "2025-01-07T14:00:00")
+                        .param("to", "2025-01-07T15:00:00")
+                        .param("endpoint", "/api/v1/calculate"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.latencyByEndpoint['/api/v1/calculate'].max").value(310));
+    }
+
+    @Test
+    void getRequestLatencyRange_ShouldReturnBadRequest_WhenRangeIsInvalid() throws Exception {
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/history/latency/range")
+                        .param("from", "2025-01-07T15:00:00")
+                        .param("to", "2025-01-07T14:00:00"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("from debe ser anterior a to"));
+        mockMvc.perform(get("/api/v1/history/latency/range")
+                        .param("from", "ayer")
+                        .param("to", "2025-01-07T14:00:00"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(endpointLatencyHistograms);
+    }
+}
@@ -0,0 +1,159 @@
+package com.tokenlabs.controller;
+
+import com.tokenlabs.config.RequestEventRingBuffer;
+import com.tokenlabs.dto.CalculationRequest;
+import com.tokenlabs.dto.CalculationResponse;
+import com.tokenlabs.exception.IdempotencyException;
+import com.tokenlabs.service.CalculationService;
+import com.tokenlabs.service.EndpointLatencyHistograms;
+import com.tokenlabs.service.ExternalPercentageService;
+import com.tokenlabs.service.ExternalServiceFailureSimulator;
+import com.tokenlabs.service.HeavyHitterTracker;
+import com.tokenlabs.service.IdempotencyService;
+import com.tokenlabs.service.RequestHistoryLiveTail;
+import com.tokenlabs.service.RequestHistoryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.math.BigDecimal;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(CalculationController.class)
+class CalculationControllerIdempotencyTest {
+
+    private static final String BODY = "{\"firstNumber\": 10.50, \"secondNumber\": 20.25}";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CalculationService calculationService;
+
+    @MockBean
+    private ExternalPercentageService externalPercentageService;
+
+    @MockBean
+    private ExternalServiceFailureSimulator failureSimulator;
+
+    @MockBean
+    private IdempotencyService idempotencyService;
+
+    @MockBean
+    private RequestHistoryService requestHistoryService;
+
+    @MockBean
+    private RequestEventRingBuffer requestEventRingBuffer;
+
+    @MockBean
+    private EndpointLatencyHistograms endpointLatencyHistograms;
+
+    @MockBean
+    private HeavyHitterTracker heavyHitterTracker;
+
+    @MockBean
+    private RequestHistoryLiveTail requestHistoryLiveTail;
+
+    private CalculationRequest request;
+    private CalculationResponse testResponse;
+
+    @BeforeEach
+    void setUp() {
+        request = new CalculationRequest(new BigDecimal("10.50"), new BigDecimal("20.25"));
+        testResponse = new CalculationResponse(
+            new BigDecimal("10.50"),
+            new BigDecimal("20.25"),
+            new BigDecimal("15.75"),
+            new BigDecimal("35.59")
+        );
+    }
+
+    @Test
+    void calculate_ShouldExecuteThroughIdempotencyService_WhenKeyIsPresent() throws Exception {
+        // Arrange
+        when(idempotencyService.execute(eq("key-1"), eq(request), any()))
+                .thenReturn(new IdempotencyService.IdempotentResult(testResponse, false));
+
+        // Act & Assert
+        mockMvc.perform(calculate("key-1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(CalculationController.IDEMPOTENT_REPLAYED_HEADER, "false"))
+                .andExpect(jsonPath("$.result").value(35.59));
+        verify(idempotencyService).execute(eq("key-1"), eq(request), any());
+    }
+
+    @Test
+    void calculate_ShouldReturnStoredResponse_WhenKeyIsReplayed() throws Exception {
+        // Arrange
+        when(idempotencyService.execute(eq("key-1"), eq(request), any()))
+                .thenReturn(new IdempotencyService.IdempotentResult(testResponse, true));
+
+        // Act & Assert
+        mockMvc.perform(calculate("key-1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(CalculationController.IDEMPOTENT_REPLAYED_HEADER, "true"))
+                .andExpect(jsonPath("$.result").value(35.59));
+        verifyNoInteractions(calculationService);
+    }
+
+    @Test
+    void calculate_ShouldReturnConflict_WhenKeyIsInProgress() throws Exception {
+        // Arrange
+        when(idempotencyService.execute(eq("key-1"), eq(request), any()))
+                .thenThrow(new IdempotencyException(HttpStatus.CONFLICT, "Ejecución en curso para key-1"));
+
+        // Act & Assert
+        mockMvc.perform(calculate("key-1"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").value("IdempotencyError"))
+                .andExpect(jsonPath("$.message").value("Ejecución en curso para key-1"));
+        verifyNoInteractions(calculationService);
+    }
+
+    @Test
+    void calculate_ShouldReturnUnprocessableEntity_WhenKeyIsReusedWithOtherPayload() throws Exception {
+        // Arrange
+        when(idempotencyService.execute(eq("key-1"), eq(request), any()))
+                .thenThrow(new IdempotencyException(HttpStatus.UNPROCESSABLE_ENTITY,
+                        "Idempotency-Key reutilizado con un payload distinto"));
+
+        // Act & Assert
+        mockMvc.perform(calculate("key-1"))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.error").value("IdempotencyError"));
+        verifyNoInteractions(calculationService);
+    }
+
+    @Test
+    void calculate_ShouldSkipIdempotencyService_WhenKeyIsAbsent() throws Exception {
+        // Arrange
+        when(calculationService.calculate(request)).thenReturn(testResponse);
+
+        // Act & Assert
+        mockMvc.perform(calculate(null))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(CalculationController.IDEMPOTENT_REPLAYED_HEADER))
+                .andExpect(jsonPath("$.result").value(35.59));
+        verifyNoInteractions(idempotencyService);
+    }
+
+    private static MockHttpServletRequestBuilder calculate(String idempotencyKey) {
+        MockHttpServletRequestBuilder builder = post("/api/v1/calculate")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(BODY);
+        if (idempotencyKey != null) {
+            builder.header(CalculationController.IDEMPOTENCY_KEY_HEADER, idempotencyKey);
+        }
+        return builder;
+    }
+}
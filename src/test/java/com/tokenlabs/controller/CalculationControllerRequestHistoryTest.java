@@ -1,7 +1,16 @@
 package com.tokenlabs.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tokenlabs.config.RequestEventRingBuffer;
+import com.tokenlabs.dto.RequestStatisticsResponse;
 import com.tokenlabs.model.RequestHistory;
+import com.tokenlabs.service.CalculationService;
+import com.tokenlabs.service.EndpointLatencyHistograms;
+import com.tokenlabs.service.ExternalPercentageService;
+import com.tokenlabs.service.ExternalServiceFailureSimulator;
+import com.tokenlabs.service.HeavyHitterTracker;
+import com.tokenlabs.service.IdempotencyService;
+import com.tokenlabs.service.RequestHistoryLiveTail;
 import com.tokenlabs.service.RequestHistoryService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -17,7 +26,6 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
@@ -35,9 +43,33 @@ class CalculationControllerRequestHistoryTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @MockBean
+    private CalculationService calculationService;
+
+    @MockBean
+    private ExternalPercentageService externalPercentageService;
+
+    @MockBean
+    private ExternalServiceFailureSimulator failureSimulator;
+
     @MockBean
     private RequestHistoryService requestHistoryService;
 
+    @MockBean
+    private RequestEventRingBuffer requestEventRingBuffer;
+
+    @MockBean
+    private IdempotencyService idempotencyService;
+
+    @MockBean
+    private EndpointLatencyHistograms endpointLatencyHistograms;
+
+    @MockBean
+    private HeavyHitterTracker heavyHitterTracker;
+
+    @MockBean
+    private RequestHistoryLiveTail requestHistoryLiveTail;
+
     private RequestHistory testRequestHistory;
     private LocalDateTime testDate;
 
@@ -68,7 +100,7 @@ class CalculationControllerRequestHistoryTest {
                 .thenReturn(expectedPage);
 
         // Act & Assert
-        mockMvc.perform(get("/history")
+        mockMvc.perform(get("/api/v1/history")
                 .param("page", "0")
                 .param("size", "20")
                 .param("sortBy", "requestDate")
@@ -98,7 +130,7 @@ class CalculationControllerRequestHistoryTest {
         )).thenReturn(expectedPage);
 
         // Act & Assert
-        mockMvc.perform(get("/history")
+        mockMvc.perform(get("/api/v1/history")
                 .param("page", "0")
                 .param("size", "20")
                 .param("endpoint", "/api/calculate")
@@ -124,7 +156,7 @@ class CalculationControllerRequestHistoryTest {
     @Test
     void getRequestHistory_ShouldReturnBadRequest_WhenInvalidDateFormat() throws Exception {
         // Act & Assert
-        mockMvc.perform(get("/history")
+        mockMvc.perform(get("/api/v1/history")
                 .param("page", "0")
                 .param("size", "20")
                 .param("startDate", "invalid-date")
@@ -139,7 +171,7 @@ class CalculationControllerRequestHistoryTest {
     @Test
     void getRequestHistory_ShouldReturnBadRequest_WhenInvalidEndDateFormat() throws Exception {
         // Act & Assert
-        mockMvc.perform(get("/history")
+        mockMvc.perform(get("/api/v1/history")
                 .param("page", "0")
                 .param("size", "20")
                 .param("endDate", "invalid-date")
@@ -158,7 +190,7 @@ class CalculationControllerRequestHistoryTest {
                 .thenThrow(new RuntimeException("Database error"));
 
         // Act & Assert
-        mockMvc.perform(get("/history")
+        mockMvc.perform(get("/api/v1/history")
                 .param("page", "0")
                 .param("size", "20")
                 .contentType(MediaType.APPLICATION_JSON))
@@ -179,13 +211,14 @@ class CalculationControllerRequestHistoryTest {
                 .thenReturn(expectedPage);
 
         // Act & Assert
-        mockMvc.perform(get("/history")
+        mockMvc.perform(get("/api/v1/history")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.status").value("success"))
                 .andExpect(jsonPath("$.data").isArray())
                 .andExpect(jsonPath("$.pagination.currentPage").value(0))
-                .andExpect(jsonPath("$.pagination.size").value(1));
+                .andExpect(jsonPath("$.pagination.size").value(20))
+                .andExpect(jsonPath("$.pagination.numberOfElements").value(1));
 
         verify(requestHistoryService).getRequestHistory(0, 20, "requestDate", "desc");
     }
@@ -200,7 +233,7 @@ class CalculationControllerRequestHistoryTest {
                 .thenReturn(expectedPage);
 
         // Act & Assert
-        mockMvc.perform(get("/history")
+        mockMvc.perform(get("/api/v1/history")
                 .param("size", "150") // Excede el límite de 100
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
@@ -212,26 +245,26 @@ class CalculationControllerRequestHistoryTest {
     @Test
     void getRequestHistoryStats_ShouldReturnStatistics_WhenCalled() throws Exception {
         // Arrange
-        Map<String, Object> mockStats = new HashMap<>();
-        mockStats.put("requestsByEndpoint", Arrays.asList(new Object[]{"/api/calculate", 10L}));
-        mockStats.put("requestsByHttpMethod", Arrays.asList(new Object[]{"POST", 8L}));
-        mockStats.put("requestsByResponseStatus", Arrays.asList(new Object[]{"200", 9L}));
-        mockStats.put("executionTimeStats", Arrays.asList(new Object[]{"/api/calculate", 150.0, 100L, 200L}));
+        RequestStatisticsResponse mockStats = new RequestStatisticsResponse();
+        mockStats.setTotalRequests(100L);
+        mockStats.setStoredRequests(20L);
+        mockStats.setRequestsByEndpoint(Map.of("/api/calculate", 100L));
+        mockStats.setExecutionTimeStats(Map.of("/api/calculate",
+                new RequestStatisticsResponse.ExecutionTimeStats(150.0, 100L, 200L)));
         
         when(requestHistoryService.getRequestStatistics()).thenReturn(mockStats);
-        when(requestHistoryService.getTotalRequests()).thenReturn(100L);
 
         // Act & Assert
-        mockMvc.perform(get("/history/stats")
+        mockMvc.perform(get("/api/v1/history/stats")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.status").value("success"))
                 .andExpect(jsonPath("$.totalRequests").value(100))
-                .andExpect(jsonPath("$.statistics").exists())
+                .andExpect(jsonPath("$.storedRequests").value(20))
+                .andExpect(jsonPath("$.statistics.requestsByEndpoint['/api/calculate']").value(100))
                 .andExpect(jsonPath("$.timestamp").exists());
 
         verify(requestHistoryService).getRequestStatistics();
-        verify(requestHistoryService).getTotalRequests();
     }
 
     @Test
@@ -241,7 +274,7 @@ class CalculationControllerRequestHistoryTest {
                 .thenThrow(new RuntimeException("Database error"));
 
         // Act & Assert
-        mockMvc.perform(get("/history/stats")
+        mockMvc.perform(get("/api/v1/history/stats")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isInternalServerError())
                 .andExpect(jsonPath("$.status").value("error"))
@@ -257,7 +290,7 @@ class CalculationControllerRequestHistoryTest {
                 .thenReturn(CompletableFuture.completedFuture(5));
 
         // Act & Assert
-        mockMvc.perform(post("/history/cleanup")
+        mockMvc.perform(post("/api/v1/history/cleanup")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.status").value("success"))
@@ -274,7 +307,7 @@ class CalculationControllerRequestHistoryTest {
                 .thenThrow(new RuntimeException("Database error"));
 
         // Act & Assert
-        mockMvc.perform(post("/history/cleanup")
+        mockMvc.perform(post("/api/v1/history/cleanup")
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isInternalServerError())
                 .andExpect(jsonPath("$.status").value("error"))
@@ -293,7 +326,7 @@ class CalculationControllerRequestHistoryTest {
                 .thenReturn(expectedPage);
 
         // Act & Assert
-        mockMvc.perform(get("/history")
+        mockMvc.perform(get("/api/v1/history")
                 .param("page", "-1") // Página negativa
                 .param("size", "20")
                 .contentType(MediaType.APPLICATION_JSON))
@@ -313,7 +346,7 @@ class CalculationControllerRequestHistoryTest {
                 .thenReturn(expectedPage);
 
         // Act & Assert
-        mockMvc.perform(get("/history")
+        mockMvc.perform(get("/api/v1/history")
                 .param("page", "0")
                 .param("size", "0") // Tamaño cero
                 .contentType(MediaType.APPLICATION_JSON))
@@ -1,17 +1,25 @@
 package com.tokenlabs.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tokenlabs.config.RequestEventRingBuffer;
 import com.tokenlabs.dto.CalculationRequest;
 import com.tokenlabs.dto.CalculationResponse;
 import com.tokenlabs.model.CalculationHistory;
 import com.tokenlabs.service.CalculationService;
+import com.tokenlabs.service.EndpointLatencyHistograms;
 import com.tokenlabs.service.ExternalPercentageService;
 import com.tokenlabs.service.ExternalServiceFailureSimulator;
+import com.tokenlabs.service.HeavyHitterTracker;
+import com.tokenlabs.service.IdempotencyService;
+import com.tokenlabs.service.RequestHistoryLiveTail;
+import com.tokenlabs.service.RequestHistoryService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
@@ -41,6 +49,24 @@ class CalculationControllerTest {
     @MockBean
     private ExternalServiceFailureSimulator failureSimulator;
     
+    @MockBean
+    private IdempotencyService idempotencyService;
+
+    @MockBean
+    private RequestHistoryService requestHistoryService;
+
+    @MockBean
+    private RequestEventRingBuffer requestEventRingBuffer;
+
+    @MockBean
+    private EndpointLatencyHistograms endpointLatencyHistograms;
+
+    @MockBean
+    private HeavyHitterTracker heavyHitterTracker;
+    
+    @MockBean
+    private RequestHistoryLiveTail requestHistoryLiveTail;
+    
     @Autowired
     private ObjectMapper objectMapper;
     
@@ -115,18 +141,20 @@ class CalculationControllerTest {
                             new BigDecimal("8.0"), new BigDecimal("10.80"))
         );
         
-        when(calculationService.getCalculationHistory()).thenReturn(mockHistory);
+        when(calculationService.getCalculationHistory(0, 20, "createdAt", "desc", null, null))
+            .thenReturn(new PageImpl<>(mockHistory, PageRequest.of(0, 20), 2));
         
         // Act & Assert
-        mockMvc.perform(get("/api/v1/history"))
+        mockMvc.perform(get("/api/v1/calculations/history"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$").isArray())
-                .andExpect(jsonPath("$.length()").value(2))
-                .andExpect(jsonPath("$[0].id").value(1))
-                .andExpect(jsonPath("$[0].firstNumber").value(5.0))
-                .andExpect(jsonPath("$[1].id").value(2))
-                .andExpect(jsonPath("$[1].firstNumber").value(3.0));
+                .andExpect(jsonPath("$.data").isArray())
+                .andExpect(jsonPath("$.data.length()").value(2))
+                .andExpect(jsonPath("$.data[0].id").value(1))
+                .andExpect(jsonPath("$.data[0].firstNumber").value(5.0))
+                .andExpect(jsonPath("$.data[1].id").value(2))
+                .andExpect(jsonPath("$.data[1].firstNumber").value(3.0))
+                .andExpect(jsonPath("$.pagination.totalElements").value(2));
     }
     
     @Test
@@ -135,7 +163,7 @@ class CalculationControllerTest {
         when(calculationService.getTotalCalculations()).thenReturn(5L);
         
         // Act & Assert
-        mockMvc.perform(get("/api/v1/history/stats"))
+        mockMvc.perform(get("/api/v1/stats"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.totalCalculations").value(5))
@@ -145,26 +173,26 @@ class CalculationControllerTest {
     @Test
     void getCalculationHistoryByRange_ShouldReturnOk_WhenValidRange() throws Exception {
         // Arrange
-        LocalDateTime startDate = LocalDateTime.now().minusDays(7);
-        LocalDateTime endDate = LocalDateTime.now();
+        LocalDateTime startDate = LocalDateTime.of(2025, 1, 1, 0, 0);
+        LocalDateTime endDate = LocalDateTime.of(2025, 1, 8, 0, 0);
         
         List<CalculationHistory> mockHistory = Arrays.asList(
             createMockHistory(1L, new BigDecimal("1.0"), new BigDecimal("2.0"), 
                             new BigDecimal("10.0"), new BigDecimal("3.30"))
         );
         
-        when(calculationService.getCalculationHistoryByDateRange(startDate, endDate))
-            .thenReturn(mockHistory);
+        when(calculationService.getCalculationHistory(0, 20, "createdAt", "desc", startDate, endDate))
+            .thenReturn(new PageImpl<>(mockHistory, PageRequest.of(0, 20), 1));
         
         // Act & Assert
-        mockMvc.perform(get("/api/v1/history/range")
+        mockMvc.perform(get("/api/v1/calculations/history")
                 .param("startDate", startDate.toString())
                 .param("endDate", endDate.toString()))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$").isArray())
-                .andExpect(jsonPath("$.length()").value(1))
-                .andExpect(jsonPath("$[0].id").value(1));
+                .andExpect(jsonPath("$.data").isArray())
+                .andExpect(jsonPath("$.data.length()").value(1))
+                .andExpect(jsonPath("$.data[0].id").value(1));
     }
     
     @Test
@@ -0,0 +1,198 @@
+package com.tokenlabs.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tokenlabs.dto.CalculationRequest;
+import com.tokenlabs.dto.CalculationResponse;
+import com.tokenlabs.service.CalculationService;
+import com.tokenlabs.util.CalculationFrameCodec;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CalculationWebSocketHandlerTest {
+
+    private static final jakarta.validation.ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory();
+
+    @Mock
+    private CalculationService calculationService;
+
+    @Mock
+    private WebSocketSession session;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private CalculationWebSocketHandler handler;
+    private CalculationResponse calculationResponse;
+
+    @BeforeEach
+    void setUp() {
+        Validator validator = validatorFactory.getValidator();
+        handler = new CalculationWebSocketHandler(calculationService, objectMapper, validator,
+                2, Duration.ofMillis(10), Duration.ofSeconds(5), 1024 * 1024);
+        calculationResponse = new CalculationResponse(new BigDecimal("10.50"), new BigDecimal("20.25"),
+                new BigDecimal("15.75"), new BigDecimal("35.59"));
+        lenient().when(session.getId()).thenReturn("s1");
+        lenient().when(session.isOpen()).thenReturn(true);
+        handler.afterConnectionEstablished(session);
+    }
+
+    @AfterAll
+    static void closeValidatorFactory() {
+        validatorFactory.close();
+    }
+
+    @Test
+    void handleTextMessage_ShouldReplyWithCorrelatedResult() throws Exception {
+        // Arrange
+        when(calculationService.calculateAsync(any(CalculationRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(calculationResponse));
+
+        // Act
+        handler.handleMessage(session, new TextMessage("{\"id\":\"abc\",\"firstNumber\":10.50,\"secondNumber\":20.25}"));
+
+        // Assert
+        JsonNode reply = objectMapper.readTree(((TextMessage) sentMessages(1).get(0)).getPayload());
+        assertEquals("abc", reply.get("id").asText());
+        assertEquals(new BigDecimal("35.59"), reply.get("result").get("result").decimalValue());
+        assertFalse(reply.has("error"));
+        verify(calculationService).calculateAsync(new CalculationRequest(new BigDecimal("10.50"), new BigDecimal("20.25")));
+    }
+
+    @Test
+    void handleTextMessage_ShouldReplyValidationError_WhenNumberIsMissing() throws Exception {
+        // Act
+        handler.handleMessage(session, new TextMessage("{\"id\":\"1\",\"firstNumber\":10.50}"));
+
+        // Assert
+        JsonNode reply = objectMapper.readTree(((TextMessage) sentMessages(1).get(0)).getPayload());
+        assertEquals("1", reply.get("id").asText());
+        assertEquals("ValidationError", reply.get("error").asText());
+        assertEquals("El segundo número es obligatorio", reply.get("message").asText());
+        verifyNoInteractions(calculationService);
+    }
+
+    @Test
+    void handleTextMessage_ShouldReplyMalformedFrame_WhenJsonIsInvalid() throws Exception {
+        // Act
+        handler.handleMessage(session, new TextMessage("{no es json"));
+
+        // Assert
+        JsonNode reply = objectMapper.readTree(((TextMessage) sentMessages(1).get(0)).getPayload());
+        assertEquals("MalformedFrame", reply.get("error").asText());
+        assertEquals(1, handler.getSessionMetrics().get(0).failed());
+    }
+
+    @Test
+    void handleBinaryMessage_ShouldReplyWithBinaryResult() throws Exception {
+        // Arrange
+        when(calculationService.calculateAsync(any(CalculationRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(calculationResponse));
+        ByteBuffer frame = CalculationFrameCodec.encodeRequest(77L,
+                new CalculationRequest(new BigDecimal("10.50"), new BigDecimal("20.25")));
+
+        // Act
+        handler.handleMessage(session, new BinaryMessage(frame));
+
+        // Assert
+        ByteBuffer reply = ((BinaryMessage) sentMessages(1).get(0)).getPayload();
+        assertEquals(77L, CalculationFrameCodec.peekId(reply));
+        assertEquals(calculationResponse, CalculationFrameCodec.decodeResponse(reply));
+    }
+
+    @Test
+    void handleBinaryMessage_ShouldRejectFrame_WhenInFlightLimitIsReached() throws Exception {
+        // Arrange: dos cálculos que no terminan ocupan el límite de la sesión
+        CompletableFuture<CalculationResponse> pending = new CompletableFuture<>();
+        when(calculationService.calculateAsync(any(CalculationRequest.class))).thenReturn(pending);
+        CalculationRequest request = new CalculationRequest(new BigDecimal("1"), new BigDecimal("2"));
+
+        // Act
+        handler.handleMessage(session, new BinaryMessage(CalculationFrameCodec.encodeRequest(1L, request)));
+        handler.handleMessage(session, new BinaryMessage(CalculationFrameCodec.encodeRequest(2L, request)));
+        handler.handleMessage(session, new BinaryMessage(CalculationFrameCodec.encodeRequest(3L, request)));
+
+        // Assert
+        ByteBuffer reply = ((BinaryMessage) sentMessages(1).get(0)).getPayload();
+        assertEquals(3L, CalculationFrameCodec.peekId(reply));
+        assertEquals(CalculationFrameCodec.STATUS_OVERLOADED, CalculationFrameCodec.status(reply));
+        CalculationWebSocketHandler.SessionMetrics metrics = handler.getSessionMetrics().get(0);
+        assertEquals(3, metrics.received());
+        assertEquals(1, metrics.rejected());
+        assertEquals(2, metrics.inFlight());
+        verify(calculationService, times(2)).calculateAsync(any(CalculationRequest.class));
+
+        // Al completarse los cálculos se liberan los huecos
+        pending.complete(calculationResponse);
+        assertEquals(0, handler.getSessionMetrics().get(0).inFlight());
+        assertEquals(2, handler.getSessionMetrics().get(0).completed());
+    }
+
+    @Test
+    void handleTextMessage_ShouldReplyOverloaded_WhenExecutorRejectsTask() throws Exception {
+        // Arrange
+        when(calculationService.calculateAsync(any(CalculationRequest.class)))
+                .thenThrow(new TaskRejectedException("cola llena"));
+
+        // Act
+        handler.handleMessage(session, new TextMessage("{\"id\":\"x\",\"firstNumber\":1,\"secondNumber\":2}"));
+
+        // Assert
+        JsonNode reply = objectMapper.readTree(((TextMessage) sentMessages(1).get(0)).getPayload());
+        assertEquals("ServiceOverloaded", reply.get("error").asText());
+        assertEquals(0, handler.getSessionMetrics().get(0).inFlight());
+    }
+
+    @Test
+    void handleTextMessage_ShouldReplyInternalError_WhenCalculationFails() throws Exception {
+        // Arrange
+        when(calculationService.calculateAsync(any(CalculationRequest.class)))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Servicio externo no disponible")));
+
+        // Act
+        handler.handleMessage(session, new TextMessage("{\"id\":\"x\",\"firstNumber\":1,\"secondNumber\":2}"));
+
+        // Assert
+        JsonNode reply = objectMapper.readTree(((TextMessage) sentMessages(1).get(0)).getPayload());
+        assertEquals("InternalError", reply.get("error").asText());
+        assertEquals("Error interno del servidor. Por favor, contacte al administrador.", reply.get("message").asText());
+    }
+
+    @Test
+    void afterConnectionClosed_ShouldDropSessionMetrics() {
+        // Act
+        handler.afterConnectionClosed(session, CloseStatus.NORMAL);
+
+        // Assert
+        assertTrue(handler.getSessionMetrics().isEmpty());
+    }
+
+    private List<WebSocketMessage<?>> sentMessages(int expected) throws Exception {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<WebSocketMessage<?>> captor = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(session, times(expected)).sendMessage(captor.capture());
+        return captor.getAllValues();
+    }
+}
@@ -0,0 +1,165 @@
+package com.tokenlabs.controller;
+
+import com.tokenlabs.dto.CalculationRequest;
+import com.tokenlabs.util.CalculationFrameCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Prueba de carga: coste por cálculo de POST /api/v1/calculate frente al canal
+ * WebSocket binario (/ws/calculate) con frames en pipeline sobre una sola sesión.
+ *
+ * La latencia del servicio externo se pone a cero para medir solo el overhead
+ * de transporte (HTTP, cabeceras, interceptor y registro en request_history).
+ *
+ * Ejecutar con: mvn test -Dtest=CalculationWebSocketLoadTest -DloadTests=true
+ */
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = {
+        "app.external.latency=PT0S",
+        "logging.level.com.tokenlabs=WARN",
+        "spring.jpa.show-sql=false"
+    }
+)
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "loadTests", matches = "true")
+class CalculationWebSocketLoadTest {
+
+    private static final int HTTP_REQUESTS = 2000;
+    private static final int HTTP_CONCURRENCY = 16;
+    private static final int WS_FRAMES = 20000;
+    private static final int WS_WINDOW = 128;
+    private static final String BODY = "{\"firstNumber\": 10.50, \"secondNumber\": 20.25}";
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    @Test
+    void webSocketChannel_ShouldHaveMuchLowerPerCalculationOverhead() throws Exception {
+        // Calentamiento
+        runHttp(500);
+        runWebSocket(2000);
+
+        // Act
+        double httpMicros = runHttp(HTTP_REQUESTS);
+        double wsMicros = runWebSocket(WS_FRAMES);
+
+        // Assert
+        System.out.printf("Coste por cálculo - HTTP: %.0f µs, WebSocket binario: %.0f µs (x%.1f)%n",
+                httpMicros, wsMicros, httpMicros / wsMicros);
+        assertTrue(wsMicros * 3 < httpMicros, "Se esperaba un coste por cálculo claramente menor por WebSocket");
+    }
+
+    /**
+     * @return microsegundos de reloj por cálculo
+     */
+    private double runHttp(int totalRequests) throws Exception {
+        Semaphore inFlight = new Semaphore(HTTP_CONCURRENCY);
+        AtomicInteger failures = new AtomicInteger();
+        List<CompletableFuture<?>> futures = new ArrayList<>(totalRequests);
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/v1/calculate"))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(60))
+                .POST(HttpRequest.BodyPublishers.ofString(BODY))
+                .build();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < totalRequests; i++) {
+            inFlight.acquire();
+            futures.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        if (error != null || response.statusCode() != 200) {
+                            failures.incrementAndGet();
+                        }
+                        inFlight.release();
+                    }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(0, failures.get(), "Requests HTTP fallidos");
+        return elapsed / 1_000.0 / totalRequests;
+    }
+
+    /**
+     * @return microsegundos de reloj por cálculo
+     */
+    private double runWebSocket(int totalFrames) throws Exception {
+        Semaphore window = new Semaphore(WS_WINDOW);
+        CountDownLatch done = new CountDownLatch(totalFrames);
+        AtomicInteger failures = new AtomicInteger();
+        WebSocket.Listener listener = new WebSocket.Listener() {
+            private ByteBuffer partial;
+
+            @Override
+            public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+                ByteBuffer frame = data;
+                if (partial != null || !last) {
+                    partial = append(partial, data);
+                    frame = last ? partial.flip() : null;
+                }
+                if (frame != null) {
+                    partial = null;
+                    if (CalculationFrameCodec.status(frame) != CalculationFrameCodec.STATUS_OK) {
+                        failures.incrementAndGet();
+                    }
+                    window.release();
+                    done.countDown();
+                }
+                webSocket.request(1);
+                return null;
+            }
+        };
+        WebSocket webSocket = httpClient.newWebSocketBuilder()
+                .buildAsync(URI.create("ws://localhost:" + port + "/ws/calculate"), listener)
+                .get(5, TimeUnit.SECONDS);
+        CalculationRequest request = new CalculationRequest(new BigDecimal("10.50"), new BigDecimal("20.25"));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < totalFrames; i++) {
+            window.acquire();
+            webSocket.sendBinary(CalculationFrameCodec.encodeRequest(i, request), true).join();
+        }
+        assertTrue(done.await(120, TimeUnit.SECONDS), "Faltan respuestas por WebSocket");
+        long elapsed = System.nanoTime() - start;
+        webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "fin").join();
+
+        assertEquals(0, failures.get(), "Frames fallidos");
+        return elapsed / 1_000.0 / totalFrames;
+    }
+
+    private static ByteBuffer append(ByteBuffer partial, ByteBuffer data) {
+        ByteBuffer target = partial == null ? ByteBuffer.allocate(256) : partial;
+        if (target.remaining() < data.remaining()) {
+            target = ByteBuffer.allocate(target.capacity() * 2 + data.remaining()).put(target.flip());
+        }
+        return target.put(data);
+    }
+}
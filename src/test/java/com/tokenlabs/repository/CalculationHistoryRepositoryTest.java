@@ -1,20 +1,26 @@
 package com.tokenlabs.repository;
 
 import com.tokenlabs.model.CalculationHistory;
+import com.tokenlabs.util.PageCursor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @DataJpaTest
+@Import({RequestHistoryDictionary.class, RequestHistoryBodyStore.class})
 @ActiveProfiles("test")
 class CalculationHistoryRepositoryTest {
     
@@ -116,4 +122,37 @@ class CalculationHistoryRepositoryTest {
         assertTrue(saved.getCreatedAt().isBefore(LocalDateTime.now().plusSeconds(1)));
         assertTrue(saved.getCreatedAt().isAfter(LocalDateTime.now().minusSeconds(1)));
     }
+    
+    @Test
+    void findByCreatedAtBetweenBefore_ShouldVisitEveryRowOnce_WhenPagingWithCursor() {
+        // Arrange
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            CalculationHistory history = new CalculationHistory(
+                new BigDecimal(i), new BigDecimal("1.0"), new BigDecimal("10.0"), new BigDecimal(i + 1)
+            );
+            expected.add(entityManager.persistAndFlush(history).getId());
+        }
+        entityManager.clear();
+        List<CalculationHistory> all = calculationHistoryRepository.findAll();
+        all.sort(Comparator.comparing(CalculationHistory::getCreatedAt).thenComparing(CalculationHistory::getId).reversed());
+        PageCursor cursor = PageCursor.first(true);
+        
+        // Act
+        List<Long> visited = new ArrayList<>();
+        List<CalculationHistory> page;
+        do {
+            page = calculationHistoryRepository.findByCreatedAtBetweenBefore(
+                PageCursor.MIN_DATE, PageCursor.MAX_DATE, cursor.date(), cursor.id(), Limit.of(2));
+            page.forEach(history -> visited.add(history.getId()));
+            if (!page.isEmpty()) {
+                CalculationHistory last = page.get(page.size() - 1);
+                cursor = new PageCursor(last.getCreatedAt(), last.getId(), true);
+            }
+        } while (page.size() == 2);
+        
+        // Assert
+        assertEquals(all.stream().map(CalculationHistory::getId).toList(), visited);
+        assertTrue(visited.containsAll(expected));
+    }
 }
@@ -0,0 +1,71 @@
+package com.tokenlabs.repository;
+
+import com.tokenlabs.model.RequestHistory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({RequestHistoryBatchRepository.class, RequestHistoryDictionary.class, RequestHistoryBodyStore.class})
+class RequestHistoryBatchRepositoryTest {
+
+    @Autowired
+    private RequestHistoryBatchRepository batchRepository;
+
+    @Autowired
+    private RequestHistoryRepository requestHistoryRepository;
+
+    @Autowired
+    private RequestHistoryBodyStore bodyStore;
+
+    @Test
+    void insertAll_ShouldPersistEveryRecord_InOneBatch() {
+        // Arrange
+        LocalDateTime date = LocalDateTime.of(2025, 1, 1, 12, 0);
+        RequestHistory withError = new RequestHistory("/api/v1/calculate", "POST", null,
+                "{\"firstNumber\": 1}", "400", null);
+        withError.setRequestDate(date);
+        withError.setErrorMessage("HTTP Error 400");
+        withError.setClientIp("10.0.0.1");
+        RequestHistory withoutTime = new RequestHistory("/api/v1/stats", "GET", "page=0", null, "200", "{}");
+        withoutTime.setRequestDate(date.plusSeconds(1));
+        withoutTime.setExecutionTimeMs(null);
+
+        // Act
+        int inserted = batchRepository.insertAll(List.of(withError, withoutTime));
+
+        // Assert
+        assertEquals(2, inserted);
+        List<RequestHistory> saved = requestHistoryRepository.findAll();
+        assertEquals(2, saved.size());
+        RequestHistory savedError = saved.stream()
+                .filter(history -> "/api/v1/calculate".equals(history.getEndpoint()))
+                .findFirst().orElseThrow();
+        assertNotNull(savedError.getId());
+        assertEquals(savedError.getId(), withError.getId());
+        assertNotNull(withoutTime.getId());
+        assertNotEquals(withError.getId(), withoutTime.getId());
+        assertEquals(date, savedError.getRequestDate());
+        assertEquals("HTTP Error 400", savedError.getErrorMessage());
+        assertEquals("10.0.0.1", savedError.getClientIp());
+        // La fila solo guarda el hash; el cuerpo se resuelve en el almacén
+        assertNull(savedError.getRequestBody());
+        assertEquals(RequestHistoryBodyStore.hash("{\"firstNumber\": 1}"), savedError.getRequestBodyHash());
+        assertNull(savedError.getResponseBodyHash());
+        assertEquals("{\"firstNumber\": 1}", bodyStore.load(savedError.getRequestBodyHash()));
+    }
+
+    @Test
+    void insertAll_ShouldDoNothing_WhenListIsEmpty() {
+        assertEquals(0, batchRepository.insertAll(List.of()));
+        assertEquals(0, requestHistoryRepository.count());
+    }
+}
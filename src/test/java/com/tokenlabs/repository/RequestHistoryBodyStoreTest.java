@@ -0,0 +1,207 @@
+package com.tokenlabs.repository;
+
+import com.tokenlabs.model.RequestHistory;
+import com.tokenlabs.model.RequestHistoryBody;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({RequestHistoryDictionary.class, RequestHistoryBodyStore.class})
+class RequestHistoryBodyStoreTest {
+
+    @Autowired
+    private RequestHistoryBodyStore bodyStore;
+
+    @Autowired
+    private RequestHistoryDictionary dictionary;
+
+    @Autowired
+    private RequestHistoryRepository requestHistoryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void storeBodies_ShouldStoreRepeatedBodyOnce_WhenRecordsShareIt() {
+        // Arrange
+        String error = "{\"error\": \"Invalid input\", \"id\": \"" + UUID.randomUUID() + "\"}";
+        List<RequestHistory> records = List.of(
+                history("{\"firstNumber\": 1}", error),
+                history("{\"firstNumber\": 2}", error),
+                history(null, error));
+
+        // Act
+        bodyStore.storeBodies(records);
+
+        // Assert
+        String errorHash = RequestHistoryBodyStore.hash(error);
+        assertTrue(records.stream().allMatch(history -> errorHash.equals(history.getResponseBodyHash())));
+        assertNull(records.get(2).getRequestBodyHash());
+        assertEquals(1, countBodies(errorHash));
+        assertEquals(1, countBodies(records.get(0).getRequestBodyHash()));
+        assertEquals(1, countBodies(records.get(1).getRequestBodyHash()));
+    }
+
+    @Test
+    void load_ShouldReturnOriginalText_WhenBodyWasCompressed() {
+        // Arrange
+        String body = "{\"result\": 30.0, \"detail\": \"" + "repetido ".repeat(200) + "ñ\"}";
+
+        // Act
+        String hash = bodyStore.store(body);
+
+        // Assert
+        RequestHistoryBody stored = findBody(hash);
+        assertEquals(RequestHistoryBody.CODEC_ZSTD, stored.getCodec());
+        assertTrue(stored.getContent().length < stored.getOriginalSize());
+        assertEquals(body, bodyStore.load(hash));
+    }
+
+    @Test
+    void store_ShouldKeepBodyUncompressed_WhenItIsSmall() {
+        // Act
+        String hash = bodyStore.store("{}");
+
+        // Assert
+        assertEquals(RequestHistoryBody.CODEC_NONE, findBody(hash).getCodec());
+        assertEquals("{}", bodyStore.load(hash));
+    }
+
+    @Test
+    void save_ShouldKeepOnlyHashesInRow_AndResolveBodiesOnDetailRead() {
+        // Arrange
+        RequestHistory saved = requestHistoryRepository.saveAndFlush(history("{\"a\": 1}", "{\"result\": 1}"));
+
+        // Act
+        RequestHistory row = jdbcTemplate.queryForObject(
+                "SELECT request_body_hash, response_body_hash FROM request_history WHERE id = ?",
+                (rs, rowNum) -> {
+                    RequestHistory history = new RequestHistory();
+                    history.setRequestBodyHash(rs.getString(1));
+                    history.setResponseBodyHash(rs.getString(2));
+                    return history;
+                }, saved.getId());
+        RequestHistory detail = bodyStore.resolveBodies(row);
+
+        // Assert
+        assertEquals(RequestHistoryBodyStore.hash("{\"a\": 1}"), row.getRequestBodyHash());
+        assertEquals("{\"a\": 1}", detail.getRequestBody());
+        assertEquals("{\"result\": 1}", detail.getResponseBody());
+    }
+
+    @Test
+    void storeBodies_ShouldIgnoreExistingHash_WhenAnotherInstanceInsertedItFirst() {
+        // Arrange: otra instancia, con su propia caché vacía, ya guardó el cuerpo
+        String body = "compartido-" + UUID.randomUUID();
+        RequestHistoryBodyStore otherInstance = new RequestHistoryBodyStore(jdbcTemplate, 3, 64, 100, 1000);
+        String hash = otherInstance.store(body);
+        List<RequestHistory> records = List.of(history(body, "{\"result\": 1}"));
+
+        // Act
+        assertDoesNotThrow(() -> bodyStore.storeBodies(records));
+
+        // Assert
+        assertEquals(hash, records.get(0).getRequestBodyHash());
+        assertEquals(1, countBodies(hash));
+        assertEquals(body, bodyStore.load(hash));
+    }
+
+    @Test
+    void deleteUnreferencedBefore_ShouldOnlyDeleteBodiesNotReferencedSinceDay() {
+        // Arrange
+        String oldHash = bodyStore.store("viejo-" + UUID.randomUUID());
+        String recentHash = bodyStore.store("reciente-" + UUID.randomUUID());
+        jdbcTemplate.update("UPDATE request_history_body SET last_referenced = ? WHERE hash = ?",
+                Date.valueOf(LocalDate.now().minusDays(40)), oldHash);
+
+        // Act
+        int deleted = bodyStore.deleteUnreferencedBefore(LocalDate.now().minusDays(30));
+
+        // Assert
+        assertEquals(1, deleted);
+        assertNull(bodyStore.load(oldHash));
+        assertNotNull(bodyStore.load(recentHash));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void store_ShouldSkipWrite_WhenHashWasAlreadyWrittenToday() {
+        // Arrange
+        String body = "cacheado-" + UUID.randomUUID();
+        String hash = bodyStore.store(body);
+        jdbcTemplate.update("DELETE FROM request_history_body WHERE hash = ?", hash);
+
+        // Act: la fila ya no existe, así que si no se escribe es por la caché
+        String second = bodyStore.store(body);
+
+        // Assert
+        assertEquals(hash, second);
+        assertEquals(0, countBodies(hash));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void migrateLegacyColumns_ShouldMoveTextBodiesToStoreAndDropColumns() {
+        // Arrange: tabla creada antes de la deduplicación
+        jdbcTemplate.execute("ALTER TABLE request_history ADD COLUMN request_body CLOB");
+        jdbcTemplate.execute("ALTER TABLE request_history ADD COLUMN response_body CLOB");
+        Integer endpointId = dictionary.idFor(RequestHistoryDictionary.Kind.ENDPOINT, "/api/v1/calculate");
+        String legacyBody = "legado-" + UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO request_history (request_date, endpoint_id, request_body, response_body) "
+                + "VALUES (CURRENT_TIMESTAMP, ?, ?, ?)", endpointId, legacyBody, legacyBody);
+        try {
+            // Act
+            bodyStore.migrateLegacyColumns();
+
+            // Assert
+            String hash = RequestHistoryBodyStore.hash(legacyBody);
+            assertEquals(1, jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM request_history WHERE request_body_hash = ? AND response_body_hash = ?",
+                    Integer.class, hash, hash));
+            assertEquals(legacyBody, bodyStore.load(hash));
+            assertEquals(0, jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM information_schema.columns WHERE LOWER(table_name) = 'request_history' "
+                            + "AND LOWER(column_name) IN ('request_body', 'response_body')", Integer.class));
+        } finally {
+            jdbcTemplate.update("DELETE FROM request_history WHERE request_body_hash = ?",
+                    RequestHistoryBodyStore.hash(legacyBody));
+            jdbcTemplate.execute("ALTER TABLE request_history DROP COLUMN IF EXISTS request_body");
+            jdbcTemplate.execute("ALTER TABLE request_history DROP COLUMN IF EXISTS response_body");
+        }
+    }
+
+    private RequestHistoryBody findBody(String hash) {
+        return jdbcTemplate.queryForObject(
+                "SELECT content, codec, original_size FROM request_history_body WHERE hash = ?",
+                (rs, rowNum) -> {
+                    RequestHistoryBody body = new RequestHistoryBody();
+                    body.setContent(rs.getBytes(1));
+                    body.setCodec(rs.getShort(2));
+                    body.setOriginalSize(rs.getInt(3));
+                    return body;
+                }, hash);
+    }
+
+    private int countBodies(String hash) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM request_history_body WHERE hash = ?", Integer.class, hash);
+    }
+
+    private static RequestHistory history(String requestBody, String responseBody) {
+        return new RequestHistory("/api/v1/calculate", "POST", null, requestBody, "400", responseBody);
+    }
+}
@@ -0,0 +1,166 @@
+package com.tokenlabs.repository;
+
+import com.tokenlabs.model.RequestHistory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({RequestHistoryDictionary.class, RequestHistoryBodyStore.class})
+class RequestHistoryDictionaryTest {
+
+    @Autowired
+    private RequestHistoryDictionary dictionary;
+
+    @Autowired
+    private RequestHistoryRepository requestHistoryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectProvider<PlatformTransactionManager> transactionManager;
+
+    @Test
+    void idFor_ShouldResolveFromCache_WhenValueWasAlreadyRegistered() {
+        // Arrange
+        String userAgent = "agent-" + UUID.randomUUID();
+        Integer id = dictionary.idFor(RequestHistoryDictionary.Kind.USER_AGENT, userAgent);
+        jdbcTemplate.update("DELETE FROM request_history_dictionary WHERE id = ?", id);
+
+        // Act: la fila ya no existe, así que un segundo id solo puede salir de la caché
+        Integer cached = dictionary.idFor(RequestHistoryDictionary.Kind.USER_AGENT, userAgent);
+
+        // Assert
+        assertEquals(id, cached);
+        assertEquals(userAgent, dictionary.valueOf(id));
+    }
+
+    @Test
+    void idFor_ShouldGroupNewValuesAsOther_WhenKindReachesMaxValues() {
+        // Arrange: admite un único valor nuevo además de los que ya hay
+        Integer existing = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM request_history_dictionary WHERE kind = 'USER_AGENT'", Integer.class);
+        RequestHistoryDictionary limited = new RequestHistoryDictionary(jdbcTemplate, transactionManager, existing + 1);
+        String first = "agent-" + UUID.randomUUID();
+        String second = "agent-" + UUID.randomUUID();
+
+        // Act
+        Integer firstId = limited.idFor(RequestHistoryDictionary.Kind.USER_AGENT, first);
+        Integer secondId = limited.idFor(RequestHistoryDictionary.Kind.USER_AGENT, second);
+        Integer thirdId = limited.idFor(RequestHistoryDictionary.Kind.USER_AGENT, "agent-" + UUID.randomUUID());
+
+        // Assert
+        assertEquals(first, limited.valueOf(firstId));
+        assertEquals(RequestHistoryDictionary.OTHER_VALUE, limited.valueOf(secondId));
+        assertEquals(secondId, thirdId);
+        assertEquals(RequestHistoryDictionary.UNKNOWN_ID, limited.find(RequestHistoryDictionary.Kind.USER_AGENT, second));
+    }
+
+    @Test
+    void idFor_ShouldKeepKindsApart_WhenSameValueIsUsedTwice() {
+        // Act
+        Integer asEndpoint = dictionary.idFor(RequestHistoryDictionary.Kind.ENDPOINT, "/same");
+        Integer asUserAgent = dictionary.idFor(RequestHistoryDictionary.Kind.USER_AGENT, "/same");
+
+        // Assert
+        assertNotEquals(asEndpoint, asUserAgent);
+        assertEquals(asEndpoint, dictionary.find(RequestHistoryDictionary.Kind.ENDPOINT, "/same"));
+    }
+
+    @Test
+    void find_ShouldReturnUnknownIdWithoutInserting_WhenValueDoesNotExist() {
+        // Arrange
+        String value = "missing-" + UUID.randomUUID();
+
+        // Act
+        Integer id = dictionary.find(RequestHistoryDictionary.Kind.HTTP_METHOD, value);
+
+        // Assert
+        assertEquals(RequestHistoryDictionary.UNKNOWN_ID, id);
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM request_history_dictionary WHERE entry_value = ?", Integer.class, value));
+        assertNull(dictionary.find(RequestHistoryDictionary.Kind.HTTP_METHOD, null));
+    }
+
+    @Test
+    void findValuesContaining_ShouldMatchLikeWildcardsLiterally() {
+        // Arrange
+        String suffix = UUID.randomUUID().toString();
+        dictionary.idFor(RequestHistoryDictionary.Kind.ENDPOINT, "/a_b\\c%" + suffix);
+        dictionary.idFor(RequestHistoryDictionary.Kind.ENDPOINT, "/axb\\cz" + suffix);
+
+        // Act
+        List<String> underscore = dictionary.findValuesContaining(RequestHistoryDictionary.Kind.ENDPOINT, "A_B");
+        List<String> backslashAndPercent = dictionary.findValuesContaining(
+                RequestHistoryDictionary.Kind.ENDPOINT, "\\c%" + suffix);
+
+        // Assert
+        assertTrue(underscore.contains("/a_b\\c%" + suffix));
+        assertFalse(underscore.contains("/axb\\cz" + suffix));
+        assertEquals(List.of("/a_b\\c%" + suffix), backslashAndPercent);
+    }
+
+    @Test
+    void repository_ShouldStoreIdsAndFilterByThem_WhenEntityIsSaved() {
+        // Arrange
+        RequestHistory history = new RequestHistory("/api/dictionary", "PATCH", null, null, "202", null);
+        history.setUserAgent("JUnit");
+        requestHistoryRepository.saveAndFlush(history);
+
+        // Act
+        Integer storedMethodId = jdbcTemplate.queryForObject(
+                "SELECT http_method_id FROM request_history WHERE id = ?", Integer.class, history.getId());
+        List<RequestHistory> byMethod = requestHistoryRepository
+                .findByHttpMethodOrderByRequestDateDesc("PATCH", PageRequest.of(0, 10)).getContent();
+        List<RequestHistory> byUnknownMethod = requestHistoryRepository
+                .findByHttpMethodOrderByRequestDateDesc("BREW", PageRequest.of(0, 10)).getContent();
+
+        // Assert
+        assertEquals(dictionary.find(RequestHistoryDictionary.Kind.HTTP_METHOD, "PATCH"), storedMethodId);
+        assertEquals(1, byMethod.size());
+        assertEquals("/api/dictionary", byMethod.get(0).getEndpoint());
+        assertEquals("JUnit", byMethod.get(0).getUserAgent());
+        assertTrue(byUnknownMethod.isEmpty());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void migrateLegacyColumns_ShouldMoveTextValuesToDictionaryAndDropColumn_WhenLegacyColumnExists() {
+        // Arrange: columna de texto de una versión anterior del esquema
+        jdbcTemplate.execute("ALTER TABLE request_history ADD COLUMN user_agent TEXT");
+        jdbcTemplate.update("INSERT INTO request_history (request_date, endpoint_id, user_agent) "
+                + "VALUES (CURRENT_TIMESTAMP, ?, 'legacy-agent')",
+                dictionary.idFor(RequestHistoryDictionary.Kind.ENDPOINT, "/legacy"));
+        try {
+            // Act
+            dictionary.migrateLegacyColumns();
+
+            // Assert
+            Integer userAgentId = jdbcTemplate.queryForObject(
+                    "SELECT user_agent_id FROM request_history WHERE endpoint_id = ?", Integer.class,
+                    dictionary.find(RequestHistoryDictionary.Kind.ENDPOINT, "/legacy"));
+            assertEquals("legacy-agent", dictionary.valueOf(userAgentId));
+            assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.columns "
+                    + "WHERE LOWER(table_name) = 'request_history' AND LOWER(column_name) = 'user_agent'",
+                    Integer.class));
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE request_history DROP COLUMN IF EXISTS user_agent");
+            jdbcTemplate.update("DELETE FROM request_history");
+        }
+    }
+}
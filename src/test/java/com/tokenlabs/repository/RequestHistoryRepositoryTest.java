@@ -1,15 +1,20 @@
 package com.tokenlabs.repository;
 
 import com.tokenlabs.model.RequestHistory;
+import com.tokenlabs.util.PageCursor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.time.LocalDateTime;
@@ -18,6 +23,7 @@ import java.util.List;
 import static org.junit.jupiter.api.Assertions.*;
 
 @DataJpaTest
+@Import({RequestHistoryDictionary.class, RequestHistoryBodyStore.class})
 @ActiveProfiles("test")
 class RequestHistoryRepositoryTest {
 
@@ -97,13 +103,13 @@ class RequestHistoryRepositoryTest {
     }
 
     @Test
-    void findByEndpointContainingIgnoreCaseOrderByRequestDateDesc_ShouldReturnFilteredResults_WhenCalled() {
+    void findByEndpointInOrderByRequestDateDesc_ShouldReturnFilteredResults_WhenCalled() {
         // Arrange
         Pageable pageable = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "requestDate"));
 
         // Act
-        Page<RequestHistory> result = requestHistoryRepository.findByEndpointContainingIgnoreCaseOrderByRequestDateDesc(
-                "calculate", pageable);
+        Page<RequestHistory> result = requestHistoryRepository.findByEndpointInOrderByRequestDateDesc(
+                List.of("/api/calculate", "/api/unknown"), pageable);
 
         // Assert
         assertNotNull(result);
@@ -304,14 +310,14 @@ class RequestHistoryRepositoryTest {
     }
 
     @Test
-    void findWithFilters_ShouldReturnFilteredResults_WhenMultipleFiltersApplied() {
+    void findAllWithFilters_ShouldReturnFilteredResults_WhenMultipleFiltersApplied() {
         // Arrange
         Pageable pageable = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "requestDate"));
 
         // Act
-        Page<RequestHistory> result = requestHistoryRepository.findWithFilters(
-                "/api/calculate", "POST", "200", false,
-                testDate.minusHours(4), testDate, pageable);
+        Page<RequestHistory> result = requestHistoryRepository.findAll(RequestHistorySpecifications.withFilters(
+                List.of("/api/calculate"), "POST", "200", false,
+                testDate.minusHours(4), testDate), pageable);
 
         // Assert
         assertNotNull(result);
@@ -326,13 +332,13 @@ class RequestHistoryRepositoryTest {
     }
 
     @Test
-    void findWithFilters_ShouldReturnAllResults_WhenNoFiltersApplied() {
+    void findAllWithFilters_ShouldReturnAllResults_WhenNoFiltersApplied() {
         // Arrange
         Pageable pageable = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "requestDate"));
 
         // Act
-        Page<RequestHistory> result = requestHistoryRepository.findWithFilters(
-                null, null, null, null, null, null, pageable);
+        Page<RequestHistory> result = requestHistoryRepository.findAll(RequestHistorySpecifications.withFilters(
+                null, null, null, null, null, null), pageable);
 
         // Assert
         assertNotNull(result);
@@ -340,6 +346,22 @@ class RequestHistoryRepositoryTest {
         assertEquals(3, result.getContent().size());
     }
 
+    @Test
+    void findAllWithFilters_ShouldReturnOnlyRecordsInsideRange_WhenDatesApplied() {
+        // Arrange
+        Pageable pageable = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "requestDate"));
+
+        // Act
+        Page<RequestHistory> inRange = requestHistoryRepository.findAll(RequestHistorySpecifications.withFilters(
+                null, null, null, null, testDate.minusHours(4), testDate), pageable);
+        Page<RequestHistory> startOnly = requestHistoryRepository.findAll(RequestHistorySpecifications.withFilters(
+                null, null, null, null, testDate.minusMinutes(150), null), pageable);
+
+        // Assert
+        assertEquals(3, inRange.getTotalElements());
+        assertEquals(2, startOnly.getTotalElements());
+    }
+
     @Test
     void deleteOldRecords_ShouldDeleteRecordsOlderThanCutoffDate_WhenCalled() {
         // Arrange
@@ -356,4 +378,97 @@ class RequestHistoryRepositoryTest {
         Page<RequestHistory> remainingRecords = requestHistoryRepository.findAllByOrderByRequestDateDesc(pageable);
         assertEquals(2, remainingRecords.getTotalElements());
     }
+
+    @Test
+    void estimateTotalRequests_ShouldWeightSampledRows_WhenSampleWeightIsSet() {
+        // Arrange
+        RequestHistory sampled = new RequestHistory();
+        sampled.setRequestDate(testDate);
+        sampled.setEndpoint("/api/calculate");
+        sampled.setHttpMethod("POST");
+        sampled.setResponseStatus("200");
+        sampled.setExecutionTimeMs(120L);
+        sampled.setSampleWeight(10.0);
+        entityManager.persistAndFlush(sampled);
+
+        // Act
+        long total = requestHistoryRepository.estimateTotalRequests();
+        List<Object[]> byEndpoint = requestHistoryRepository.countRequestsByEndpoint();
+
+        // Assert
+        assertEquals(13L, total); // tres filas sin peso + una fila que representa 10 requests
+        assertEquals("/api/calculate", byEndpoint.get(0)[0]);
+        assertEquals(12L, byEndpoint.get(0)[1]);
+    }
+
+    @Test
+    void findAllWithSeek_ShouldContinueAfterCursor_WhenRequestDatesAreEqual() {
+        // Arrange
+        LocalDateTime start = LocalDateTime.of(2001, 3, 1, 0, 0);
+        RequestHistory newest = persistRequest(start.plusHours(3), "POST");
+        RequestHistory tiedFirst = persistRequest(start.plusHours(2), "GET");
+        RequestHistory tiedSecond = persistRequest(start.plusHours(2), "GET");
+        RequestHistory oldest = persistRequest(start.plusHours(1), "POST");
+        entityManager.clear();
+        Specification<RequestHistory> range = RequestHistorySpecifications.withFilters(
+                null, null, null, null, start, start.plusDays(1));
+        Sort sort = Sort.by(Sort.Direction.DESC, "requestDate", "id");
+
+        // Act
+        List<RequestHistory> firstPage = requestHistoryRepository.findAll(range, sort, Limit.of(2));
+        RequestHistory last = firstPage.get(1);
+        List<RequestHistory> secondPage = requestHistoryRepository.findAll(
+                range.and(RequestHistorySpecifications.seek(new PageCursor(last.getRequestDate(), last.getId(), true))),
+                sort, Limit.of(2));
+
+        // Assert
+        assertEquals(List.of(newest.getId(), tiedSecond.getId()),
+                firstPage.stream().map(RequestHistory::getId).toList());
+        assertEquals(List.of(tiedFirst.getId(), oldest.getId()),
+                secondPage.stream().map(RequestHistory::getId).toList());
+    }
+
+    @Test
+    void findAllWithSeek_ShouldReturnAscendingPageAfterCursor_WhenFiltersApplied() {
+        // Arrange
+        LocalDateTime start = LocalDateTime.of(2001, 3, 1, 0, 0);
+        RequestHistory oldest = persistRequest(start.plusHours(1), "POST");
+        persistRequest(start.plusHours(2), "GET");
+        RequestHistory newest = persistRequest(start.plusHours(3), "POST");
+        entityManager.clear();
+
+        // Act
+        List<RequestHistory> result = requestHistoryRepository.findAll(
+                RequestHistorySpecifications.withFilters(null, "POST", null, null, start, start.plusDays(1))
+                        .and(RequestHistorySpecifications.seek(new PageCursor(oldest.getRequestDate(), oldest.getId(), false))),
+                Sort.by(Sort.Direction.ASC, "requestDate", "id"), Limit.of(10));
+
+        // Assert
+        assertEquals(List.of(newest.getId()), result.stream().map(RequestHistory::getId).toList());
+    }
+
+    @Test
+    void findSlice_ShouldReportNextPageWithoutTotal_WhenMoreRowsExist() {
+        // Arrange
+        Pageable pageable = PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "requestDate").and(Sort.by("id")));
+
+        // Act
+        Slice<RequestHistory> result = requestHistoryRepository.findSlice(
+                RequestHistorySpecifications.withFilters(null, null, null, null, testDate.minusHours(4), testDate),
+                pageable);
+
+        // Assert
+        assertFalse(result instanceof Page);
+        assertEquals(2, result.getNumberOfElements());
+        assertTrue(result.hasNext());
+    }
+
+    private RequestHistory persistRequest(LocalDateTime requestDate, String httpMethod) {
+        RequestHistory request = new RequestHistory();
+        request.setRequestDate(requestDate);
+        request.setEndpoint("/api/calculate");
+        request.setHttpMethod(httpMethod);
+        request.setResponseStatus("200");
+        return entityManager.persistAndFlush(request);
+    }
 }
@@ -0,0 +1,184 @@
+package com.tokenlabs.repository;
+
+import com.tokenlabs.model.RequestHistory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({RequestHistoryRollupRepository.class, RequestHistoryDictionary.class, RequestHistoryBodyStore.class})
+class RequestHistoryRollupRepositoryTest {
+
+    private static final LocalDateTime HOUR = LocalDateTime.of(2025, 1, 1, 10, 0);
+
+    @Autowired
+    private RequestHistoryRollupRepository rollupRepository;
+
+    @Autowired
+    private RequestHistoryRepository requestHistoryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        save(HOUR.plusMinutes(1), "/api/calculate", "200", 100L, null, 10.0);
+        save(HOUR.plusMinutes(2), "/api/calculate", "200", 300L, null, 10.0);
+        save(HOUR.plusMinutes(3), "/api/calculate", "500", 900L, "boom", 1.0);
+        save(HOUR.plusHours(1).plusMinutes(5), "/api/history", "200", 20L, null, null);
+    }
+
+    @Test
+    void rollupHour_ShouldAggregateWeightedRowsPerGroup_WhenHourHasRows() {
+        // Act
+        int groups = rollupRepository.rollupHour(HOUR);
+
+        // Assert
+        assertEquals(2, groups);
+        Map<String, Object> ok = jdbcTemplate.queryForMap("SELECT * FROM " + RequestHistoryRollupRepository.HOURLY_TABLE
+                + " WHERE bucket_start = ? AND response_status = '200'", HOUR);
+        assertEquals(20.0, ((Number) ok.get("REQUEST_COUNT")).doubleValue());
+        assertEquals(0.0, ((Number) ok.get("ERROR_COUNT")).doubleValue());
+        assertEquals(4000.0, ((Number) ok.get("EXECUTION_TIME_SUM")).doubleValue());
+        assertEquals(100L, ((Number) ok.get("MIN_EXECUTION_TIME_MS")).longValue());
+        assertEquals(300L, ((Number) ok.get("MAX_EXECUTION_TIME_MS")).longValue());
+        assertEquals(2L, ((Number) ok.get("STORED_ROWS")).longValue());
+        assertEquals(HOUR, rollupRepository.findLatestHourlyBucket());
+    }
+
+    @Test
+    void rollupHour_ShouldDoNothing_WhenHourIsAlreadyRolledUp() {
+        // Arrange
+        rollupRepository.rollupHour(HOUR);
+
+        // Act
+        int groups = rollupRepository.rollupHour(HOUR);
+
+        // Assert
+        assertEquals(0, groups);
+    }
+
+    @Test
+    void rollupDay_ShouldAggregateHourlyRollups_WhenDayHasHours() {
+        // Arrange
+        rollupRepository.rollupHour(HOUR);
+        rollupRepository.rollupHour(HOUR.plusHours(1));
+        LocalDateTime day = HOUR.toLocalDate().atStartOfDay();
+
+        // Act
+        int groups = rollupRepository.rollupDay(day);
+
+        // Assert
+        assertEquals(3, groups);
+        Double total = jdbcTemplate.queryForObject("SELECT SUM(request_count) FROM "
+                + RequestHistoryRollupRepository.DAILY_TABLE + " WHERE bucket_start = ?", Double.class, day);
+        assertEquals(22.0, total);
+        assertEquals(new RequestHistoryRollupRepository.Coverage(day.plusDays(1), day.plusDays(1)),
+                rollupRepository.findCoverage());
+    }
+
+    @Test
+    void statistics_ShouldCountEachRequestOnce_WhenRowsAreRolledUpButNotDeleted() {
+        // Arrange: la primera hora queda en un rollup y sus filas siguen en request_history
+        RequestHistoryRollupRepository.Coverage before = rollupRepository.findCoverage();
+        long totalBefore = rollupRepository.estimateTotalRequests(before);
+        rollupRepository.rollupHour(HOUR);
+
+        // Act
+        RequestHistoryRollupRepository.Coverage coverage = rollupRepository.findCoverage();
+        long total = rollupRepository.estimateTotalRequests(coverage);
+        List<Object[]> byEndpoint = rollupRepository.countRequestsBy(
+                RequestHistoryRollupRepository.Dimension.ENDPOINT, coverage);
+        List<Object[]> errors = rollupRepository.countErrorsByEndpoint(coverage);
+        List<Object[]> times = rollupRepository.getExecutionTimeStatsByEndpoint(coverage);
+
+        // Assert
+        assertEquals(HOUR.plusHours(1), coverage.hourlyUntil());
+        assertEquals(22L, totalBefore);
+        assertEquals(22L, total);
+        assertEquals("/api/calculate", byEndpoint.get(0)[0]);
+        assertEquals(21L, byEndpoint.get(0)[1]);
+        assertEquals(1, errors.size());
+        assertEquals(1L, errors.get(0)[1]);
+        Object[] calculate = times.stream().filter(row -> "/api/calculate".equals(row[0])).findFirst().orElseThrow();
+        assertEquals(4900.0 / 21.0, (Double) calculate[1], 0.001);
+        assertEquals(100L, calculate[2]);
+        assertEquals(900L, calculate[3]);
+    }
+
+    @Test
+    void getPhaseBreakdownByEndpoint_ShouldAverageTimedRequests_AcrossRollupsAndRawRows() {
+        // Arrange: dos requests medidos en la hora agregada y uno en filas originales
+        timed(HOUR.plusMinutes(10), "/api/timed", 1_000L, 400L, 2.0);
+        timed(HOUR.plusMinutes(20), "/api/timed", 3_000L, 800L, 2.0);
+        timed(HOUR.plusHours(1).plusMinutes(10), "/api/timed", 2_000L, 600L, null);
+        rollupRepository.rollupHour(HOUR);
+
+        // Act
+        List<RequestHistoryRollupRepository.PhaseBreakdown> breakdown =
+                rollupRepository.getPhaseBreakdownByEndpoint(rollupRepository.findCoverage());
+
+        // Assert: los requests sin tiempos por fase no cuentan
+        assertEquals(1, breakdown.size());
+        RequestHistoryRollupRepository.PhaseBreakdown timed = breakdown.get(0);
+        assertEquals("/api/timed", timed.endpoint());
+        assertEquals(5L, timed.timedRequests());
+        assertEquals((2 * 1_000.0 + 2 * 3_000.0 + 2_000.0) / 5, timed.totalMicros(), 0.001);
+        assertEquals((2 * 400.0 + 2 * 800.0 + 600.0) / 5, timed.externalFetchMicros(), 0.001);
+        assertEquals(timed.totalMicros() - 100.0, timed.handlerMicros(), 0.001);
+        assertEquals(100.0, timed.serializationMicros(), 0.001);
+    }
+
+    @Test
+    void deleteRequestsBefore_ShouldDeleteAtMostLimitRows_WhenCalled() {
+        // Act
+        int first = rollupRepository.deleteRequestsBefore(HOUR.plusHours(1), 2);
+        int second = rollupRepository.deleteRequestsBefore(HOUR.plusHours(1), 2);
+
+        // Assert
+        assertEquals(2, first);
+        assertEquals(1, second);
+        assertEquals(1, requestHistoryRepository.count());
+    }
+
+    @Test
+    void findFirstRequestDate_ShouldSkipEmptyPeriods_WhenCalled() {
+        assertEquals(HOUR.plusHours(1).plusMinutes(5), rollupRepository.findFirstRequestDate(HOUR.plusMinutes(10)));
+        assertNull(rollupRepository.findFirstRequestDate(HOUR.plusHours(2)));
+    }
+
+    private void save(LocalDateTime date, String endpoint, String status, Long executionTimeMs,
+                      String errorMessage, Double sampleWeight) {
+        RequestHistory history = new RequestHistory(endpoint, "POST", null, null, status, null);
+        history.setRequestDate(date);
+        history.setExecutionTimeMs(executionTimeMs);
+        history.setErrorMessage(errorMessage);
+        history.setSampleWeight(sampleWeight);
+        requestHistoryRepository.saveAndFlush(history);
+    }
+
+    private void timed(LocalDateTime date, String endpoint, long totalMicros, long externalFetchMicros,
+                       Double sampleWeight) {
+        RequestHistory history = new RequestHistory(endpoint, "POST", null, null, "200", null);
+        history.setRequestDate(date);
+        history.setExecutionTimeMs(totalMicros / 1_000);
+        history.setSampleWeight(sampleWeight);
+        history.setHandlerMicros(totalMicros - 100);
+        history.setExternalFetchMicros(externalFetchMicros);
+        history.setDbInsertMicros(50L);
+        history.setSerializationMicros(100L);
+        history.setTotalMicros(totalMicros);
+        requestHistoryRepository.saveAndFlush(history);
+    }
+}
@@ -0,0 +1,159 @@
+package com.tokenlabs.repository;
+
+import com.tokenlabs.model.RequestHistory;
+import com.tokenlabs.util.PageCursor;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Comprueba el SQL que generan las Specifications y, con EXPLAIN de H2, el
+ * índice que elige el planificador para cada combinación de filtros.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.tokenlabs.repository.RequestHistorySpecificationsTest$SqlRecorder")
+@Import({RequestHistoryDictionary.class, RequestHistoryBodyStore.class})
+@ActiveProfiles("test")
+class RequestHistorySpecificationsTest {
+
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "requestDate", "id");
+
+    @Autowired
+    private RequestHistoryRepository requestHistoryRepository;
+
+    @Autowired
+    private RequestHistoryDictionary dictionary;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        now = LocalDateTime.now();
+        dictionary.idFor(RequestHistoryDictionary.Kind.ENDPOINT, "/api/v1/calculate");
+        dictionary.idFor(RequestHistoryDictionary.Kind.RESPONSE_STATUS, "500");
+        SqlRecorder.STATEMENTS.clear();
+    }
+
+    @Test
+    void withFilters_ShouldRenderOnlyActiveFilters() {
+        // Act
+        requestHistoryRepository.findAll(
+                RequestHistorySpecifications.withFilters(null, null, null, null, null, null), NEWEST_FIRST, Limit.of(20));
+        String unfiltered = lastSelect();
+        requestHistoryRepository.findAll(
+                RequestHistorySpecifications.withFilters(null, "GET", null, null, null, null), NEWEST_FIRST, Limit.of(20));
+        String byMethod = lastSelect();
+
+        // Assert
+        assertFalse(unfiltered.contains(" where "));
+        assertTrue(byMethod.contains(" where rh1_0.http_method_id=? order by"));
+        assertFalse(byMethod.contains("is null"));
+    }
+
+    @Test
+    void withFilters_ShouldUseEndpointIndex_WhenFilteringByEndpoint() {
+        // Act
+        requestHistoryRepository.findAll(RequestHistorySpecifications.withFilters(
+                List.of("/api/v1/calculate"), null, null, null, now.minusDays(1), null), NEWEST_FIRST, Limit.of(21));
+        String plan = explainLastSelect(endpointId(), now.minusDays(1), 21);
+
+        // Assert
+        assertTrue(plan.contains("IDX_REQUEST_HISTORY_ENDPOINT_REQUEST_DATE"), plan);
+    }
+
+    @Test
+    void endpointContains_ShouldFilterWithDictionarySubquery_AndMatchWildcardsLiterally() {
+        // Arrange
+        RequestHistory percent = new RequestHistory("/api/v1/100%_off", "GET", null, null, "200", null);
+        RequestHistory other = new RequestHistory("/api/v1/100x-off", "GET", null, null, "200", null);
+        requestHistoryRepository.saveAllAndFlush(List.of(percent, other));
+        SqlRecorder.STATEMENTS.clear();
+
+        // Act
+        List<RequestHistory> rows = requestHistoryRepository.findAll(
+                RequestHistorySpecifications.endpointContains("0%_O"), NEWEST_FIRST, Limit.of(20));
+        String select = lastSelect();
+
+        // Assert
+        assertEquals(List.of("/api/v1/100%_off"), rows.stream().map(RequestHistory::getEndpoint).toList());
+        assertTrue(select.contains("endpoint_id in ((select"), select);
+        assertTrue(select.contains("escape '\\'"), select);
+    }
+
+    @Test
+    void withFilters_ShouldUseResponseStatusIndex_WhenFilteringByStatus() {
+        // Act
+        requestHistoryRepository.findSlice(RequestHistorySpecifications.withFilters(
+                null, null, "500", null, now.minusHours(1), now), PageRequest.of(0, 20, NEWEST_FIRST));
+        String plan = explainLastSelect(responseStatusId(), now.minusHours(1), now, 0, 21);
+
+        // Assert
+        assertTrue(plan.contains("IDX_REQUEST_HISTORY_RESPONSE_STATUS_REQUEST_DATE"), plan);
+    }
+
+    @Test
+    void seek_ShouldStartIndexScanAtCursor_WhenPagingByCursor() {
+        // Arrange
+        PageCursor cursor = new PageCursor(now.minusMinutes(5), 1_000L, true);
+
+        // Act
+        requestHistoryRepository.findAll(RequestHistorySpecifications.withFilters(null, null, null, null, null, null)
+                .and(RequestHistorySpecifications.seek(cursor)), NEWEST_FIRST, Limit.of(21));
+        String plan = explainLastSelect(cursor.date(), cursor.date(), cursor.date(), cursor.id(), 21);
+
+        // Assert
+        assertTrue(plan.contains("IDX_REQUEST_HISTORY_REQUEST_DATE_ID: REQUEST_DATE <= ?1"), plan);
+        assertFalse(plan.contains("OFFSET"), plan);
+    }
+
+    private Integer endpointId() {
+        return dictionary.find(RequestHistoryDictionary.Kind.ENDPOINT, "/api/v1/calculate");
+    }
+
+    private Integer responseStatusId() {
+        return dictionary.find(RequestHistoryDictionary.Kind.RESPONSE_STATUS, "500");
+    }
+
+    private String lastSelect() {
+        return SqlRecorder.STATEMENTS.stream()
+                .filter(sql -> sql.startsWith("select") && sql.contains("from request_history "))
+                .reduce((first, second) -> second)
+                .orElseThrow();
+    }
+
+    private String explainLastSelect(Object... parameters) {
+        return jdbcTemplate.queryForObject("EXPLAIN " + lastSelect(), String.class, parameters)
+                .replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Guarda el SQL que Hibernate envía a la base de datos.
+     */
+    public static class SqlRecorder implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.tokenlabs.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tamaño en disco de request_history (tabla e índices) con las columnas de
+ * texto originales frente a ids de diccionario, con los mismos datos y sobre
+ * una base H2 en fichero.
+ *
+ * Ejecutar con: mvn test -Dbenchmarks=true -Dtest=RequestHistoryStorageBenchmarkTest
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class RequestHistoryStorageBenchmarkTest {
+
+    private static final int ROWS = 200_000;
+
+    private static final String[] ENDPOINTS = {"/api/v1/calculate", "/api/v1/calculate/async",
+            "/api/v1/calculations/history", "/api/v1/history/stats", "/actuator/health"};
+    private static final String[] METHODS = {"GET", "POST"};
+    private static final String[] STATUSES = {"200", "201", "400", "404", "500", "503"};
+    private static final String[] USER_AGENTS = {
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/124.0 Safari/537.36",
+            "Mozilla/5.0 (Macintosh; Intel Mac OS X 14_4) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.4 Safari/605.1.15",
+            "okhttp/4.12.0", "curl/8.5.0", "Apache-HttpClient/5.3 (Java/21)", "kube-probe/1.29"};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void dictionaryIds_ShouldShrinkTableAndIndexes_ComparedToTextColumns() throws SQLException {
+        // Act
+        long textBytes = measure("text", """
+                CREATE TABLE request_history (id BIGINT AUTO_INCREMENT PRIMARY KEY, request_date TIMESTAMP NOT NULL,
+                  endpoint VARCHAR(255) NOT NULL, http_method VARCHAR(10), response_status VARCHAR(10),
+                  execution_time_ms BIGINT, user_agent TEXT)""",
+                "CREATE INDEX idx_endpoint ON request_history (endpoint, request_date)",
+                "CREATE INDEX idx_method ON request_history (http_method)",
+                false);
+        long idBytes = measure("ids", """
+                CREATE TABLE request_history (id BIGINT AUTO_INCREMENT PRIMARY KEY, request_date TIMESTAMP NOT NULL,
+                  endpoint_id INTEGER, http_method_id INTEGER, response_status_id INTEGER,
+                  execution_time_ms BIGINT, user_agent_id INTEGER)""",
+                "CREATE INDEX idx_endpoint ON request_history (endpoint_id, request_date)",
+                "CREATE INDEX idx_method ON request_history (http_method_id)",
+                true);
+
+        // Assert
+        System.out.printf("request_history con %d filas: texto %d KB, ids %d KB (%.1f%% menos)%n",
+                ROWS, textBytes / 1024, idBytes / 1024, 100.0 * (textBytes - idBytes) / textBytes);
+        assertTrue(idBytes < textBytes * 0.7, "texto " + textBytes + " B, ids " + idBytes + " B");
+    }
+
+    private long measure(String name, String createTable, String endpointIndex, String methodIndex,
+                         boolean dictionaryIds) throws SQLException {
+        String url = "jdbc:h2:file:" + directory.resolve(name).toAbsolutePath();
+        try (Connection connection = DriverManager.getConnection(url, "sa", "")) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(createTable);
+                statement.execute(endpointIndex);
+                statement.execute(methodIndex);
+            }
+            connection.setAutoCommit(false);
+            String sql = dictionaryIds
+                    ? "INSERT INTO request_history (request_date, endpoint_id, http_method_id, response_status_id, "
+                      + "execution_time_ms, user_agent_id) VALUES (?, ?, ?, ?, ?, ?)"
+                    : "INSERT INTO request_history (request_date, endpoint, http_method, response_status, "
+                      + "execution_time_ms, user_agent) VALUES (?, ?, ?, ?, ?, ?)";
+            LocalDateTime start = LocalDateTime.of(2025, 1, 1, 0, 0);
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                for (int i = 0; i < ROWS; i++) {
+                    ps.setTimestamp(1, Timestamp.valueOf(start.plusSeconds(i)));
+                    int endpoint = i % ENDPOINTS.length;
+                    int method = i % METHODS.length;
+                    int status = (i / 7) % STATUSES.length;
+                    int userAgent = (i / 3) % USER_AGENTS.length;
+                    if (dictionaryIds) {
+                        ps.setInt(2, endpoint + 1);
+                        ps.setInt(3, ENDPOINTS.length + method + 1);
+                        ps.setInt(4, 100 + status);
+                        ps.setLong(5, i % 500);
+                        ps.setInt(6, 200 + userAgent);
+                    } else {
+                        ps.setString(2, ENDPOINTS[endpoint]);
+                        ps.setString(3, METHODS[method]);
+                        ps.setString(4, STATUSES[status]);
+                        ps.setLong(5, i % 500);
+                        ps.setString(6, USER_AGENTS[userAgent]);
+                    }
+                    ps.addBatch();
+                    if (i % 1000 == 999) {
+                        ps.executeBatch();
+                        connection.commit();
+                    }
+                }
+                ps.executeBatch();
+                connection.commit();
+            }
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT DISK_SPACE_USED('REQUEST_HISTORY')")) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.tokenlabs.repository;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({RequestLatencyDigestRepository.class, RequestHistoryDictionary.class, RequestHistoryBodyStore.class})
+class RequestLatencyDigestRepositoryTest {
+
+    private static final LocalDateTime MINUTE = LocalDateTime.of(2025, 1, 7, 14, 0);
+    private static final long HIGHEST_TRACKABLE = 60_000_000L;
+
+    @Autowired
+    private RequestLatencyDigestRepository digestRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void forEachDigest_ShouldReturnStoredHistograms_InRangeAndEndpoint() {
+        // Arrange
+        digestRepository.saveMinute(MINUTE, "node-a", Map.of(
+                "/api/v1/calculate", histogram(1_000L, 2_000L),
+                "/api/v1/history", histogram(500L)));
+        digestRepository.saveMinute(MINUTE, "node-b", Map.of("/api/v1/calculate", histogram(3_000L)));
+        digestRepository.saveMinute(MINUTE.plusHours(1), "node-a", Map.of("/api/v1/calculate", histogram(4_000L)));
+
+        // Act
+        List<Histogram> calculate = new ArrayList<>();
+        digestRepository.forEachDigest(MINUTE, MINUTE.plusHours(1), "/api/v1/calculate", HIGHEST_TRACKABLE,
+                (endpoint, histogram) -> calculate.add(histogram));
+        List<String> all = new ArrayList<>();
+        digestRepository.forEachDigest(MINUTE, MINUTE.plusMinutes(1), null, HIGHEST_TRACKABLE,
+                (endpoint, histogram) -> all.add(endpoint));
+
+        // Assert
+        assertEquals(2, calculate.size());
+        assertEquals(3, calculate.stream().mapToLong(Histogram::getTotalCount).sum());
+        assertEquals(3, all.size());
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT request_count FROM "
+                + RequestLatencyDigestRepository.TABLE + " WHERE node_id = 'node-a' AND endpoint = '/api/v1/calculate' "
+                + "AND bucket_start = ?", Long.class, MINUTE));
+    }
+
+    @Test
+    void encode_ShouldRoundTripHistogram_WithCompressedEncoding() {
+        // Arrange
+        Histogram original = histogram(1L, 150L, 150L, 59_000_000L);
+
+        // Act
+        Histogram decoded = RequestLatencyDigestRepository.decode(
+                RequestLatencyDigestRepository.encode(original), HIGHEST_TRACKABLE);
+
+        // Assert
+        assertEquals(original, decoded);
+    }
+
+    @Test
+    void deleteBefore_ShouldDeleteOnlyOlderMinutes() {
+        // Arrange
+        digestRepository.saveMinute(MINUTE, "node-a", Map.of("/api/v1/calculate", histogram(1_000L)));
+        digestRepository.saveMinute(MINUTE.plusDays(1), "node-a", Map.of("/api/v1/calculate", histogram(1_000L)));
+
+        // Act
+        int deleted = digestRepository.deleteBefore(MINUTE.plusMinutes(1));
+
+        // Assert
+        assertEquals(1, deleted);
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM " + RequestLatencyDigestRepository.TABLE, Integer.class));
+    }
+
+    private static Histogram histogram(long... values) {
+        Histogram histogram = new Histogram(1, HIGHEST_TRACKABLE, 2);
+        for (long value : values) {
+            histogram.recordValue(value);
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,69 @@
+package com.tokenlabs.repository;
+
+import com.tokenlabs.repository.RequestHistoryRollupRepository.Dimension;
+import com.tokenlabs.repository.RequestStatisticsSummaryRepository.SummaryRow;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({RequestStatisticsSummaryRepository.class, RequestHistoryDictionary.class, RequestHistoryBodyStore.class})
+class RequestStatisticsSummaryRepositoryTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 1, 7, 14, 0);
+
+    @Autowired
+    private RequestStatisticsSummaryRepository summaryRepository;
+
+    @Test
+    void saveAll_ShouldInsertMissingRows_AndReplaceExistingOnes() {
+        // Arrange
+        summaryRepository.saveAll(List.of(
+                row("node-a", Dimension.ENDPOINT, "/api/v1/calculate", 10, null),
+                row("node-b", Dimension.ENDPOINT, "/api/v1/calculate", 5, 40L)), NOW);
+
+        // Act
+        summaryRepository.saveAll(List.of(
+                row("node-a", Dimension.ENDPOINT, "/api/v1/calculate", 12, 30L),
+                row("node-a", Dimension.HTTP_METHOD, "POST", 12, 30L)), NOW.plusSeconds(30));
+        List<SummaryRow> rows = summaryRepository.findAll();
+
+        // Assert
+        assertEquals(3, rows.size());
+        SummaryRow updated = rows.stream()
+                .filter(r -> r.nodeId().equals("node-a") && r.dimension() == Dimension.ENDPOINT)
+                .findFirst().orElseThrow();
+        assertEquals(12, updated.requests());
+        assertEquals(1, updated.errors());
+        assertEquals(30L, updated.minExecutionTimeMs());
+        assertArrayEquals(new long[]{1, 2, 3, 4, 5}, updated.phaseMicrosSums());
+        assertEquals(7, updated.phaseTimingCount());
+    }
+
+    @Test
+    void saveAll_ShouldKeepNullExtremes_WhenNoExecutionTimes() {
+        // Arrange
+        summaryRepository.saveAll(List.of(row("node-a", Dimension.RESPONSE_STATUS, "200", 3, null)), NOW);
+
+        // Act
+        SummaryRow row = summaryRepository.findAll().get(0);
+
+        // Assert
+        assertNull(row.minExecutionTimeMs());
+        assertNull(row.maxExecutionTimeMs());
+        assertEquals(Dimension.RESPONSE_STATUS, row.dimension());
+    }
+
+    private static SummaryRow row(String nodeId, Dimension dimension, String value, long requests, Long extreme) {
+        return new SummaryRow(nodeId, dimension, value, requests, 1, requests, requests * 10, requests,
+                extreme, extreme, new long[]{1, 2, 3, 4, 5}, 7);
+    }
+}
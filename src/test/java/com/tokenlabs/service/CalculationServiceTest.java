@@ -2,19 +2,27 @@ package com.tokenlabs.service;
 
 import com.tokenlabs.dto.CalculationRequest;
 import com.tokenlabs.dto.CalculationResponse;
+import com.tokenlabs.dto.CursorPage;
 import com.tokenlabs.model.CalculationHistory;
 import com.tokenlabs.repository.CalculationHistoryRepository;
+import com.tokenlabs.util.PageCursor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -99,6 +107,44 @@ class CalculationServiceTest {
         ));
     }
     
+    @Test
+    void calculateAsync_ShouldRunPhasesOnDedicatedExecutors_WhenCalled() throws Exception {
+        // Arrange
+        List<String> executedOn = new java.util.concurrent.CopyOnWriteArrayList<>();
+        ReflectionTestUtils.setField(calculationService, "externalCallExecutor",
+            (Executor) task -> { executedOn.add("external"); task.run(); });
+        ReflectionTestUtils.setField(calculationService, "persistenceExecutor",
+            (Executor) task -> { executedOn.add("persistence"); task.run(); });
+        when(externalPercentageService.getPercentage()).thenReturn(testPercentage);
+        when(calculationHistoryRepository.save(any(CalculationHistory.class)))
+            .thenAnswer(invocation -> invocation.getArgument(0));
+        
+        // Act
+        CalculationResponse response = calculationService.calculateAsync(testRequest).get(5, TimeUnit.SECONDS);
+        
+        // Assert
+        assertEquals(new BigDecimal("35.59"), response.getResult());
+        assertEquals(List.of("external", "persistence"), executedOn);
+        verify(calculationHistoryRepository).save(any(CalculationHistory.class));
+    }
+    
+    @Test
+    void calculateAsync_ShouldCompleteExceptionally_WhenExternalServiceFails() {
+        // Arrange
+        ReflectionTestUtils.setField(calculationService, "externalCallExecutor", (Executor) Runnable::run);
+        ReflectionTestUtils.setField(calculationService, "persistenceExecutor", (Executor) Runnable::run);
+        when(externalPercentageService.getPercentage())
+            .thenThrow(new RuntimeException("Servicio externo no disponible"));
+        
+        // Act
+        CompletableFuture<CalculationResponse> future = calculationService.calculateAsync(testRequest);
+        
+        // Assert
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertEquals("Servicio externo no disponible", ex.getCause().getMessage());
+        verify(calculationHistoryRepository, never()).save(any(CalculationHistory.class));
+    }
+    
     @Test
     void getCalculationHistory_ShouldReturnOrderedList_WhenHistoryExists() {
         // Arrange
@@ -266,6 +312,39 @@ class CalculationServiceTest {
         verify(calculationHistoryRepository).findByCreatedAtBetween(startDate, endDate);
     }
     
+    @Test
+    void scrollCalculationHistory_ShouldQueryAfterCursor_AndReturnNextCursor() {
+        // Arrange
+        LocalDateTime createdAt = LocalDateTime.now();
+        String cursor = new PageCursor(createdAt, 40L, true).encode();
+        CalculationHistory first = new CalculationHistory();
+        first.setId(39L);
+        first.setCreatedAt(createdAt);
+        CalculationHistory extra = new CalculationHistory();
+        extra.setId(12L);
+        extra.setCreatedAt(createdAt.minusSeconds(1));
+        when(calculationHistoryRepository.findByCreatedAtBetweenBefore(
+            PageCursor.MIN_DATE, PageCursor.MAX_DATE, createdAt, 40L, Limit.of(2)))
+            .thenReturn(List.of(first, extra));
+        
+        // Act
+        CursorPage<CalculationHistory> result = calculationService.scrollCalculationHistory(
+            cursor, 1, "desc", null, null);
+        
+        // Assert
+        assertEquals(List.of(first), result.getContent());
+        assertTrue(result.hasNext());
+        assertEquals(new PageCursor(createdAt, 39L, true), PageCursor.decode(result.getNextCursor()));
+    }
+    
+    @Test
+    void scrollCalculationHistory_ShouldRejectInvalidCursor() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+            () -> calculationService.scrollCalculationHistory("cursor-invalido", 20, "desc", null, null));
+        verifyNoInteractions(calculationHistoryRepository);
+    }
+    
     @Test
     void calculate_ShouldHandleRepositoryException_WhenSaveFails() {
         // Arrange
@@ -0,0 +1,409 @@
+package com.tokenlabs.service;
+
+import com.tokenlabs.repository.RequestLatencyDigestRepository;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EndpointLatencyHistogramsTest {
+
+    private static final int SLICES_PER_MINUTE = 6;
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 7, 14, 0);
+
+    @Mock
+    private RequestLatencyDigestRepository digestRepository;
+
+    private MutableClock clock;
+    private EndpointLatencyHistograms histograms;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(START.toInstant(ZoneOffset.UTC));
+        histograms = new EndpointLatencyHistograms(digestRepository, Runnable::run, Duration.ofSeconds(10),
+                Duration.ofSeconds(60), 2, 3, true, "node-a", Duration.ofDays(90), clock);
+    }
+
+    @Test
+    void snapshot_ShouldServePercentilesInMicros_AfterSliceIsRotated() {
+        // Arrange
+        for (int i = 1; i <= 1000; i++) {
+            histograms.record("/api/v1/calculate", i * 100L);
+        }
+
+        // Act
+        Map<String, EndpointLatencyHistograms.Percentiles> beforeRotation =
+                histograms.snapshot().get("/api/v1/calculate");
+        advance(1);
+        Map<String, EndpointLatencyHistograms.Percentiles> windows = histograms.snapshot().get("/api/v1/calculate");
+
+        // Assert
+        assertEquals(0, beforeRotation.get("1m").count());
+        EndpointLatencyHistograms.Percentiles oneMinute = windows.get("1m");
+        assertEquals(1000, oneMinute.count());
+        assertEquals(50_000, oneMinute.p50(), 50_000 * 0.01);
+        assertEquals(90_000, oneMinute.p90(), 90_000 * 0.01);
+        assertEquals(99_000, oneMinute.p99(), 99_000 * 0.01);
+        assertEquals(99_900, oneMinute.p999(), 99_900 * 0.01);
+        assertEquals(100_000, oneMinute.max(), 100_000 * 0.01);
+        assertEquals(oneMinute, windows.get("5m"));
+        assertEquals(oneMinute, windows.get("1h"));
+    }
+
+    @Test
+    void rotate_ShouldDropSlicesThatLeaveEachWindow_WhenTimePasses() {
+        // Arrange
+        histograms.record("/api/v1/calculate", 5_000_000L);
+        advance(1);
+
+        // Act: un minuto más tarde el tramo lento ya no está en la ventana de 1 minuto
+        for (int i = 0; i < SLICES_PER_MINUTE; i++) {
+            histograms.record("/api/v1/calculate", 1_000L);
+            advance(1);
+        }
+        Map<String, EndpointLatencyHistograms.Percentiles> afterMinute = histograms.snapshot().get("/api/v1/calculate");
+        advance(4 * SLICES_PER_MINUTE);
+        Map<String, EndpointLatencyHistograms.Percentiles> afterFiveMinutes =
+                histograms.snapshot().get("/api/v1/calculate");
+
+        // Assert
+        assertEquals(6, afterMinute.get("1m").count());
+        assertEquals(1_000, afterMinute.get("1m").max(), 10);
+        assertEquals(7, afterMinute.get("5m").count());
+        assertEquals(5_000_000, afterMinute.get("5m").max(), 50_000);
+        assertEquals(0, afterFiveMinutes.get("1m").count());
+        assertEquals(6, afterFiveMinutes.get("5m").count());
+        assertEquals(7, afterFiveMinutes.get("1h").count());
+    }
+
+    @Test
+    void rotate_ShouldKeepOneHourWindow_ThenDropOldestMinute() {
+        // Arrange
+        histograms.record("/api/v1/calculate", 2_000L);
+
+        // Act
+        advance(59 * SLICES_PER_MINUTE);
+        long withinHour = histograms.snapshot().get("/api/v1/calculate").get("1h").count();
+        advance(SLICES_PER_MINUTE);
+        long afterHour = histograms.snapshot().get("/api/v1/calculate").get("1h").count();
+
+        // Assert
+        assertEquals(1, withinHour);
+        assertEquals(0, afterHour);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void rotate_ShouldSaveCompletedMinute_WhenClockCrossesMinuteBoundary() {
+        // Arrange
+        histograms.record("/api/v1/calculate", 1_000L);
+        histograms.record("/api/v1/calculate", 3_000L);
+        histograms.record("/api/v1/history", 500L);
+
+        // Act
+        advance(SLICES_PER_MINUTE - 1);
+        verifyNoInteractions(digestRepository);
+        advance(1);
+
+        // Assert
+        ArgumentCaptor<Map<String, Histogram>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(digestRepository).saveMinute(eq(START), eq("node-a"), captor.capture());
+        assertEquals(2, captor.getValue().get("/api/v1/calculate").getTotalCount());
+        assertEquals(1, captor.getValue().get("/api/v1/history").getTotalCount());
+    }
+
+    @Test
+    void tick_ShouldHandCompletedMinuteToExecutor_WithoutWritingItself() {
+        // Arrange: el executor solo acumula las tareas
+        List<Runnable> pending = new ArrayList<>();
+        histograms = new EndpointLatencyHistograms(digestRepository, pending::add, Duration.ofSeconds(10),
+                Duration.ofSeconds(60), 2, 3, true, "node-a", Duration.ofDays(90), clock);
+        histograms.record("/api/v1/calculate", 1_000L);
+
+        // Act
+        advance(SLICES_PER_MINUTE);
+
+        // Assert
+        verifyNoInteractions(digestRepository);
+        assertEquals(1, pending.size());
+        pending.get(0).run();
+        verify(digestRepository).saveMinute(eq(START), eq("node-a"), any(Map.class));
+    }
+
+    @Test
+    void tick_ShouldKeepWindows_WhenDigestExecutorRejectsMinute() {
+        // Arrange
+        histograms = new EndpointLatencyHistograms(digestRepository, task -> {
+            throw new RejectedExecutionException("cola llena");
+        }, Duration.ofSeconds(10), Duration.ofSeconds(60), 2, 3, true, "node-a", Duration.ofDays(90), clock);
+        histograms.record("/api/v1/calculate", 1_000L);
+
+        // Act
+        advance(SLICES_PER_MINUTE);
+
+        // Assert
+        verifyNoInteractions(digestRepository);
+        assertEquals(1, histograms.snapshot().get("/api/v1/calculate").get("1h").count());
+    }
+
+    @Test
+    void rotate_ShouldNotSaveMinute_WhenNoRequestsWereRecorded() {
+        // Arrange
+        histograms.record("/api/v1/calculate", 1_000L);
+        advance(SLICES_PER_MINUTE);
+        clearInvocations(digestRepository);
+
+        // Act
+        advance(SLICES_PER_MINUTE);
+
+        // Assert
+        verifyNoInteractions(digestRepository);
+    }
+
+    @Test
+    void rotate_ShouldKeepWindows_WhenDigestCannotBeSaved() {
+        // Arrange
+        doThrow(new DataAccessResourceFailureException("sin conexión"))
+                .when(digestRepository).saveMinute(any(), any(), any());
+        histograms.record("/api/v1/calculate", 1_000L);
+
+        // Act
+        advance(SLICES_PER_MINUTE);
+
+        // Assert
+        assertEquals(1, histograms.snapshot().get("/api/v1/calculate").get("1h").count());
+    }
+
+    @Test
+    void tick_ShouldRotateOnlyWhenSliceBoundaryIsCrossed() {
+        // Arrange
+        histograms.record("/api/v1/calculate", 1_000L);
+
+        // Act
+        clock.advance(Duration.ofSeconds(9));
+        histograms.tick();
+        long beforeBoundary = histograms.snapshot().get("/api/v1/calculate").get("1m").count();
+        clock.advance(Duration.ofSeconds(1));
+        histograms.tick();
+        histograms.tick();
+        long afterBoundary = histograms.snapshot().get("/api/v1/calculate").get("1m").count();
+
+        // Assert
+        assertEquals(0, beforeBoundary);
+        assertEquals(1, afterBoundary);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void tick_ShouldRotateOncePerElapsedSlice_WhenSeveralSlicesPassedAtOnce() {
+        // Arrange
+        histograms.record("/api/v1/calculate", 1_000L);
+        advance(2);
+        histograms.record("/api/v1/calculate", 2_000L);
+
+        // Act: el hilo se retrasa 3 minutos y 2 tramos
+        clock.advance(Duration.ofSeconds(10 * (3 * SLICES_PER_MINUTE + 2)));
+        histograms.tick();
+        Map<String, EndpointLatencyHistograms.Percentiles> windows = histograms.snapshot().get("/api/v1/calculate");
+        histograms.record("/api/v1/calculate", 3_000L);
+        advance(SLICES_PER_MINUTE - 4);
+
+        // Assert: cada minuto se cierra con su propio inicio y los vacíos no se guardan
+        assertEquals(0, windows.get("1m").count());
+        assertEquals(2, windows.get("5m").count());
+        assertEquals(2, windows.get("1h").count());
+        ArgumentCaptor<Map<String, Histogram>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(digestRepository).saveMinute(eq(START), eq("node-a"), captor.capture());
+        verify(digestRepository).saveMinute(eq(START.plusMinutes(3)), eq("node-a"), captor.capture());
+        verifyNoMoreInteractions(digestRepository);
+        assertEquals(2, captor.getAllValues().get(0).get("/api/v1/calculate").getTotalCount());
+        assertEquals(1, captor.getAllValues().get(1).get("/api/v1/calculate").getTotalCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void tick_ShouldEmptyWindowsAndStayAligned_WhenMoreThanAnHourPassedAtOnce() {
+        // Arrange
+        histograms.record("/api/v1/calculate", 1_000L);
+
+        // Act
+        clock.advance(Duration.ofHours(25).plusSeconds(30));
+        histograms.tick();
+        Map<String, EndpointLatencyHistograms.Percentiles> windows = histograms.snapshot().get("/api/v1/calculate");
+        histograms.record("/api/v1/calculate", 2_000L);
+        advance(SLICES_PER_MINUTE / 2);
+
+        // Assert
+        assertEquals(0, windows.get("1h").count());
+        assertEquals(0, windows.get("5m").count());
+        verify(digestRepository).saveMinute(eq(START), eq("node-a"), any(Map.class));
+        verify(digestRepository).saveMinute(eq(START.plusHours(25)), eq("node-a"), any(Map.class));
+        verifyNoMoreInteractions(digestRepository);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void percentilesBetween_ShouldMergeStoredMinutes_PerEndpoint() {
+        // Arrange: dos minutos de dos instancias
+        Histogram nodeA = histogram(1_000L, 2_000L);
+        Histogram nodeB = histogram(9_000L);
+        doAnswer(invocation -> {
+            BiConsumer<String, Histogram> consumer = invocation.getArgument(4);
+            consumer.accept("/api/v1/calculate", nodeA);
+            consumer.accept("/api/v1/calculate", nodeB);
+            return null;
+        }).when(digestRepository).forEachDigest(eq(START), eq(START.plusHours(1)), eq("/api/v1/calculate"),
+                anyLong(), any(BiConsumer.class));
+
+        // Act
+        Map<String, EndpointLatencyHistograms.Percentiles> percentiles =
+                histograms.percentilesBetween(START, START.plusHours(1), "/api/v1/calculate");
+
+        // Assert
+        EndpointLatencyHistograms.Percentiles calculate = percentiles.get("/api/v1/calculate");
+        assertEquals(3, calculate.count());
+        assertEquals(2_000, calculate.p50(), 20);
+        assertEquals(9_000, calculate.max(), 90);
+    }
+
+    @Test
+    void purgeDigests_ShouldDeleteMinutesOlderThanRetention() {
+        // Act
+        histograms.purgeDigests();
+
+        // Assert
+        verify(digestRepository).deleteBefore(START.minusDays(90));
+    }
+
+    @Test
+    void record_ShouldGroupExtraEndpoints_WhenLimitIsReached() {
+        // Act
+        histograms.record("/a", 100L);
+        histograms.record("/b", 100L);
+        histograms.record("/c", 100L);
+        histograms.record("/d", 100L);
+        histograms.record("/e", 100L);
+        advance(1);
+
+        // Assert
+        Map<String, Map<String, EndpointLatencyHistograms.Percentiles>> snapshot = histograms.snapshot();
+        assertEquals(4, snapshot.size());
+        assertEquals(2, snapshot.get(EndpointLatencyHistograms.OTHER_ENDPOINT).get("1m").count());
+    }
+
+    @Test
+    void record_ShouldClampValues_AboveHighestTrackable() {
+        // Act
+        histograms.record("/slow", Duration.ofMinutes(5).toNanos() / 1_000);
+        advance(1);
+
+        // Assert
+        assertEquals(60_000_000, histograms.snapshot().get("/slow").get("1m").max(), 600_000);
+    }
+
+    @Test
+    void record_ShouldNotLoseValues_WhenRecordedConcurrentlyWithRotation() throws Exception {
+        // Arrange
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(4);
+
+        // Act
+        for (int t = 0; t < 4; t++) {
+            executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histograms.record("/api/v1/calculate", 500L);
+                }
+                done.countDown();
+            });
+        }
+        for (int i = 0; i < 100 && done.getCount() > 0; i++) {
+            advance(1);
+            Thread.sleep(1);
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        advance(1);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        // Assert
+        assertEquals(40_000, histograms.snapshot().get("/api/v1/calculate").get("1h").count());
+    }
+
+    @Test
+    void constructor_ShouldReject_SliceThatDoesNotDivideOneMinute() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new EndpointLatencyHistograms(digestRepository, Runnable::run, Duration.ofSeconds(7),
+                        Duration.ofSeconds(60), 2, 10, true, "node-a", Duration.ofDays(90)));
+    }
+
+    /**
+     * Avanza el reloj tramo a tramo, rotando al final de cada uno.
+     */
+    private void advance(int slices) {
+        for (int i = 0; i < slices; i++) {
+            clock.advance(Duration.ofSeconds(10));
+            histograms.tick();
+        }
+    }
+
+    private static Histogram histogram(long... values) {
+        Histogram histogram = new Histogram(1, 60_000_000L, 2);
+        for (long value : values) {
+            histogram.recordValue(value);
+        }
+        return histogram;
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private volatile Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
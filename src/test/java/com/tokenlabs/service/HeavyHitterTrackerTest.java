@@ -0,0 +1,175 @@
+package com.tokenlabs.service;
+
+import com.tokenlabs.model.RequestHistory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeavyHitterTrackerTest {
+
+    private static final Duration SLICE = Duration.ofSeconds(10);
+
+    private MutableClock clock;
+    private HeavyHitterTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2025-01-07T14:00:00Z"));
+        tracker = new HeavyHitterTracker(SLICE, 256, 4, 10, clock);
+    }
+
+    @Test
+    void top_ShouldRankEndpointsAndClients_AfterSliceRotates() {
+        // Arrange
+        for (int i = 0; i < 100; i++) {
+            tracker.onRequestLogged(request("/api/v1/calculate", "10.0.0.1"));
+        }
+        for (int i = 0; i < 30; i++) {
+            tracker.onRequestLogged(request("/api/v1/history", "10.0.0." + (i + 2)));
+        }
+        advance(1);
+
+        // Act
+        Map<String, List<HeavyHitterTracker.HeavyHitter>> endpoints = tracker.top(HeavyHitterTracker.Dimension.ENDPOINT, 2);
+        Map<String, List<HeavyHitterTracker.HeavyHitter>> clients = tracker.top(HeavyHitterTracker.Dimension.CLIENT_IP, 1);
+
+        // Assert
+        HeavyHitterTracker.HeavyHitter first = endpoints.get("1m").get(0);
+        assertEquals("/api/v1/calculate", first.key());
+        assertEquals(100, first.count());
+        assertEquals(100, first.guaranteedCount());
+        assertEquals(100.0 / 130, first.share(), 0.001);
+        assertEquals("/api/v1/history", endpoints.get("5m").get(1).key());
+        assertEquals(List.of("10.0.0.1"), clients.get("1h").stream().map(HeavyHitterTracker.HeavyHitter::key).toList());
+    }
+
+    @Test
+    void top_ShouldNotIncludeCurrentSlice_UntilItRotates() {
+        // Arrange
+        tracker.onRequestLogged(request("/api/v1/calculate", "10.0.0.1"));
+
+        // Act
+        Map<String, List<HeavyHitterTracker.HeavyHitter>> result = tracker.top(HeavyHitterTracker.Dimension.ENDPOINT, 5);
+
+        // Assert
+        assertTrue(result.get("1m").isEmpty());
+        assertTrue(result.get("1h").isEmpty());
+    }
+
+    @Test
+    void top_ShouldDropSlicesThatLeaveTheWindow() {
+        // Arrange
+        tracker.onRequestLogged(request("/api/v1/old", "10.0.0.1"));
+        advance(1);
+        tracker.onRequestLogged(request("/api/v1/new", "10.0.0.1"));
+
+        // Act
+        advance(6);
+        Map<String, List<HeavyHitterTracker.HeavyHitter>> afterMinute = tracker.top(HeavyHitterTracker.Dimension.ENDPOINT, 5);
+        advance(25);
+        Map<String, List<HeavyHitterTracker.HeavyHitter>> afterFiveMinutes = tracker.top(HeavyHitterTracker.Dimension.ENDPOINT, 5);
+
+        // Assert
+        assertEquals(List.of("/api/v1/new"), keys(afterMinute.get("1m")));
+        assertEquals(List.of("/api/v1/new", "/api/v1/old"), keys(afterMinute.get("5m")));
+        assertTrue(afterFiveMinutes.get("5m").isEmpty());
+        assertEquals(List.of("/api/v1/new", "/api/v1/old"), keys(afterFiveMinutes.get("1h")));
+    }
+
+    @Test
+    void tick_ShouldRotateOncePerElapsedSlice_WhenSeveralSlicesPassedAtOnce() {
+        // Arrange
+        tracker.onRequestLogged(request("/api/v1/calculate", "10.0.0.1"));
+
+        // Act: el hilo se retrasa 2 minutos
+        clock.instant = clock.instant.plus(SLICE.multipliedBy(12));
+        tracker.tick();
+        Map<String, List<HeavyHitterTracker.HeavyHitter>> afterDelay = tracker.top(HeavyHitterTracker.Dimension.ENDPOINT, 5);
+        clock.instant = clock.instant.plus(Duration.ofMinutes(59));
+        tracker.tick();
+        Map<String, List<HeavyHitterTracker.HeavyHitter>> afterHour = tracker.top(HeavyHitterTracker.Dimension.ENDPOINT, 5);
+
+        // Assert
+        assertTrue(afterDelay.get("1m").isEmpty());
+        assertEquals(List.of("/api/v1/calculate"), keys(afterDelay.get("5m")));
+        assertEquals(List.of("/api/v1/calculate"), keys(afterDelay.get("1h")));
+        assertTrue(afterHour.get("1h").isEmpty());
+    }
+
+    @Test
+    void top_ShouldKeepBoundedCandidates_WithHighCardinality() {
+        // Arrange
+        for (int i = 0; i < 50_000; i++) {
+            tracker.onRequestLogged(request("/api/v1/calculate", "192.168." + (i / 256) + "." + (i % 256)));
+            if (i % 5 == 0) {
+                tracker.onRequestLogged(request("/api/v1/calculate", "203.0.113.9"));
+            }
+        }
+        advance(1);
+
+        // Act
+        List<HeavyHitterTracker.HeavyHitter> result = tracker.top(HeavyHitterTracker.Dimension.CLIENT_IP, 100).get("1m");
+
+        // Assert
+        assertEquals(10, result.size());
+        assertEquals("203.0.113.9", result.get(0).key());
+        assertTrue(result.get(0).count() >= 10_000);
+    }
+
+    @Test
+    void constructor_ShouldRejectSlice_ThatDoesNotDivideAMinute() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> new HeavyHitterTracker(Duration.ofSeconds(7), 256, 4, 10, clock));
+    }
+
+    private void advance(int slices) {
+        for (int i = 0; i < slices; i++) {
+            clock.instant = clock.instant.plus(SLICE);
+            tracker.tick();
+        }
+    }
+
+    private static List<String> keys(List<HeavyHitterTracker.HeavyHitter> hitters) {
+        return hitters.stream().map(HeavyHitterTracker.HeavyHitter::key).toList();
+    }
+
+    private static RequestHistory request(String endpoint, String clientIp) {
+        RequestHistory request = new RequestHistory();
+        request.setEndpoint(endpoint);
+        request.setClientIp(clientIp);
+        return request;
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.tokenlabs.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.tokenlabs.dto.CalculationRequest;
+import com.tokenlabs.dto.CalculationResponse;
+import com.tokenlabs.exception.IdempotencyException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpStatus;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class IdempotencyServiceTest {
+
+    private IdempotencyService idempotencyService;
+    private CalculationRequest testRequest;
+    private CalculationResponse testResponse;
+    private AtomicInteger executions;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = newService(null);
+        testRequest = new CalculationRequest(new BigDecimal("10.50"), new BigDecimal("20.25"));
+        testResponse = new CalculationResponse(
+                new BigDecimal("10.50"), new BigDecimal("20.25"),
+                new BigDecimal("15.75"), new BigDecimal("35.59"));
+        executions = new AtomicInteger();
+    }
+
+    private IdempotencyService newService(StringRedisTemplate redisTemplate) {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        return new IdempotencyService(objectMapper, redisTemplate, "auto",
+                Duration.ofMinutes(5), Duration.ofSeconds(5), 100, 1000, 0.01);
+    }
+
+    private CalculationResponse calculate() {
+        executions.incrementAndGet();
+        return testResponse;
+    }
+
+    @Test
+    void execute_ShouldRunActionOnce_WhenKeyIsReplayed() {
+        // Act
+        IdempotencyService.IdempotentResult first = idempotencyService.execute("key-1", testRequest, this::calculate);
+        IdempotencyService.IdempotentResult second = idempotencyService.execute("key-1", testRequest, this::calculate);
+
+        // Assert
+        assertEquals(1, executions.get());
+        assertFalse(first.replayed());
+        assertTrue(second.replayed());
+        assertEquals(0, first.response().getResult().compareTo(second.response().getResult()));
+        assertEquals(first.response().getTimestamp(), second.response().getTimestamp());
+    }
+
+    @Test
+    void execute_ShouldRunActionPerKey_WhenKeysDiffer() {
+        // Act
+        idempotencyService.execute("key-1", testRequest, this::calculate);
+        idempotencyService.execute("key-2", testRequest, this::calculate);
+
+        // Assert
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void execute_ShouldTreatEquivalentNumbersAsSamePayload_WhenScaleDiffers() {
+        // Arrange
+        CalculationRequest sameValues = new CalculationRequest(new BigDecimal("10.5"), new BigDecimal("20.250"));
+
+        // Act
+        idempotencyService.execute("key-1", testRequest, this::calculate);
+        IdempotencyService.IdempotentResult replay = idempotencyService.execute("key-1", sameValues, this::calculate);
+
+        // Assert
+        assertTrue(replay.replayed());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void execute_ShouldRejectKeyReuse_WhenPayloadDiffers() {
+        // Arrange
+        idempotencyService.execute("key-1", testRequest, this::calculate);
+        CalculationRequest otherRequest = new CalculationRequest(new BigDecimal("1"), new BigDecimal("2"));
+
+        // Act & Assert
+        IdempotencyException ex = assertThrows(IdempotencyException.class,
+                () -> idempotencyService.execute("key-1", otherRequest, this::calculate));
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, ex.getStatus());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void execute_ShouldRejectInvalidKey_WhenBlankOrTooLong() {
+        // Act & Assert
+        IdempotencyException blank = assertThrows(IdempotencyException.class,
+                () -> idempotencyService.execute(" ", testRequest, this::calculate));
+        IdempotencyException tooLong = assertThrows(IdempotencyException.class,
+                () -> idempotencyService.execute("k".repeat(256), testRequest, this::calculate));
+        assertEquals(HttpStatus.BAD_REQUEST, blank.getStatus());
+        assertEquals(HttpStatus.BAD_REQUEST, tooLong.getStatus());
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void execute_ShouldAllowRetry_WhenActionFails() {
+        // Act
+        assertThrows(RuntimeException.class, () -> idempotencyService.execute("key-1", testRequest, () -> {
+            throw new RuntimeException("Servicio externo no disponible");
+        }));
+        IdempotencyService.IdempotentResult retry = idempotencyService.execute("key-1", testRequest, this::calculate);
+
+        // Assert
+        assertFalse(retry.replayed());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void execute_ShouldWaitForInFlightResult_WhenDuplicatesArriveConcurrently() throws Exception {
+        // Arrange
+        int concurrentRequests = 8;
+        CountDownLatch actionStarted = new CountDownLatch(1);
+        CountDownLatch releaseAction = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(concurrentRequests);
+
+        // Act
+        List<Future<IdempotencyService.IdempotentResult>> results = new ArrayList<>();
+        results.add(executor.submit(() -> idempotencyService.execute("key-1", testRequest, () -> {
+            actionStarted.countDown();
+            try {
+                releaseAction.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return calculate();
+        })));
+        assertTrue(actionStarted.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < concurrentRequests; i++) {
+            results.add(executor.submit(() -> idempotencyService.execute("key-1", testRequest, this::calculate)));
+        }
+        releaseAction.countDown();
+
+        // Assert
+        int replayed = 0;
+        for (Future<IdempotencyService.IdempotentResult> result : results) {
+            if (result.get(5, TimeUnit.SECONDS).replayed()) {
+                replayed++;
+            }
+        }
+        executor.shutdown();
+        assertEquals(1, executions.get());
+        assertEquals(concurrentRequests - 1, replayed);
+    }
+
+    @Test
+    void execute_ShouldFallbackToLocalStore_WhenRedisFails() {
+        // Arrange
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        when(redisTemplate.opsForValue()).thenThrow(new RedisConnectionFailureException("Redis caído"));
+        IdempotencyService service = newService(redisTemplate);
+
+        // Act
+        IdempotencyService.IdempotentResult first = service.execute("key-1", testRequest, this::calculate);
+        IdempotencyService.IdempotentResult second = service.execute("key-1", testRequest, this::calculate);
+
+        // Assert
+        assertFalse(first.replayed());
+        assertTrue(second.replayed());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void decode_ShouldParseStoredRedisValues_WhenFormatIsValid() {
+        // Act
+        IdempotencyStore.IdempotencyRecord pending = RedisIdempotencyStore.decode("P|10.5:20.25");
+        IdempotencyStore.IdempotencyRecord completed = RedisIdempotencyStore.decode("C|10.5:20.25|{\"result\":1}");
+
+        // Assert
+        assertFalse(pending.isCompleted());
+        assertEquals("10.5:20.25", pending.fingerprint());
+        assertTrue(completed.isCompleted());
+        assertEquals("{\"result\":1}", completed.responseJson());
+        assertNull(RedisIdempotencyStore.decode(null));
+        assertNull(RedisIdempotencyStore.decode("X|invalid"));
+    }
+}
@@ -0,0 +1,111 @@
+package com.tokenlabs.service;
+
+import com.tokenlabs.repository.RequestHistoryRollupRepository.Dimension;
+import com.tokenlabs.repository.RequestStatisticsSummaryRepository.SummaryRow;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RedisRequestStatisticsStoreTest {
+
+    @Test
+    void encode_ShouldRoundTripThroughDecode_IncludingValuesWithSeparators() {
+        // Arrange
+        SummaryRow row = new SummaryRow("node-a", Dimension.ENDPOINT, "/api/v1/a|b", 10, 2, 8, 1_500, 10,
+                5L, 900L, new long[]{1, 2, 3, 4, 5}, 6);
+
+        // Act
+        List<String> arguments = RedisRequestStatisticsStore.encode(List.of(row));
+        Map<Object, Object> hash = new HashMap<>();
+        for (int i = 0; i < arguments.size(); i += 2) {
+            hash.put(arguments.get(i), arguments.get(i + 1));
+        }
+        List<SummaryRow> decoded = RedisRequestStatisticsStore.decode("node-a", hash);
+
+        // Assert
+        assertEquals(1, decoded.size());
+        SummaryRow result = decoded.get(0);
+        assertEquals("/api/v1/a|b", result.value());
+        assertEquals(10, result.requests());
+        assertEquals(8, result.stored());
+        assertEquals(5L, result.minExecutionTimeMs());
+        assertEquals(900L, result.maxExecutionTimeMs());
+        assertArrayEquals(new long[]{1, 2, 3, 4, 5}, result.phaseMicrosSums());
+        assertEquals(6, result.phaseTimingCount());
+    }
+
+    @Test
+    void join_ShouldKeepLargestCountersAndSmallestMinimum() {
+        // Arrange
+        SummaryRow older = new SummaryRow("node-a", Dimension.ENDPOINT, "/api/v1/calculate", 10, 3, 10, 100, 10,
+                4L, 50L, new long[]{9, 0, 0, 0, 9}, 1);
+        SummaryRow newer = new SummaryRow("node-a", Dimension.ENDPOINT, "/api/v1/calculate", 12, 2, 12, 130, 12,
+                null, 70L, new long[]{5, 1, 1, 1, 5}, 2);
+
+        // Act
+        SummaryRow result = RedisRequestStatisticsStore.join(older, newer);
+
+        // Assert
+        assertEquals(12, result.requests());
+        assertEquals(3, result.errors());
+        assertEquals(4L, result.minExecutionTimeMs());
+        assertEquals(70L, result.maxExecutionTimeMs());
+        assertArrayEquals(new long[]{9, 1, 1, 1, 9}, result.phaseMicrosSums());
+        assertEquals(2, result.phaseTimingCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void merge_ShouldRegisterNodeAndRunMergeScript_OnNodeHash() {
+        // Arrange
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        SetOperations<String, String> setOperations = mock(SetOperations.class);
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        RedisRequestStatisticsStore store = new RedisRequestStatisticsStore(redisTemplate);
+        SummaryRow row = new SummaryRow("node-a", Dimension.HTTP_METHOD, "POST", 1, 0, 1, 0, 0,
+                null, null, new long[5], 0);
+
+        // Act
+        store.merge("node-a", List.of(row));
+
+        // Assert
+        verify(setOperations).add(RedisRequestStatisticsStore.NODES_KEY, "node-a");
+        verify(redisTemplate).execute(any(RedisScript.class),
+                eq(List.of(RedisRequestStatisticsStore.NODE_KEY_PREFIX + "node-a")), any(Object[].class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void findAll_ShouldDecodeEveryRegisteredNode() {
+        // Arrange
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        SetOperations<String, String> setOperations = mock(SetOperations.class);
+        HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        doReturn(hashOperations).when(redisTemplate).opsForHash();
+        when(setOperations.members(RedisRequestStatisticsStore.NODES_KEY)).thenReturn(Set.of("node-a", "node-b"));
+        when(hashOperations.entries(RedisRequestStatisticsStore.NODE_KEY_PREFIX + "node-a"))
+                .thenReturn(Map.of("requests|ENDPOINT|/a", "3"));
+        when(hashOperations.entries(RedisRequestStatisticsStore.NODE_KEY_PREFIX + "node-b"))
+                .thenReturn(Map.of("requests|ENDPOINT|/a", "4", "requests|UNKNOWN|/a", "1"));
+        RedisRequestStatisticsStore store = new RedisRequestStatisticsStore(redisTemplate);
+
+        // Act
+        List<SummaryRow> rows = store.findAll();
+
+        // Assert
+        assertEquals(2, rows.size());
+        assertEquals(7, rows.stream().mapToLong(SummaryRow::requests).sum());
+    }
+}
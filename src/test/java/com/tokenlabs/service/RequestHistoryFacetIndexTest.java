@@ -0,0 +1,225 @@
+package com.tokenlabs.service;
+
+import com.tokenlabs.model.RequestHistory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestHistoryFacetIndexTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 1, 7, 14, 0);
+
+    private MutableClock clock;
+    private RequestHistoryFacetIndex index;
+    private long nextId;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(NOW.toInstant(ZoneOffset.UTC));
+        index = new RequestHistoryFacetIndex(null, null, Duration.ofHours(1), false, clock);
+        nextId = 1;
+    }
+
+    @Test
+    void count_ShouldReturnFacetDistributions_WhenNoFilterIsGiven() {
+        // Arrange
+        index.onInserted(List.of(
+                row("/api/v1/calculate", "POST", "200", null, NOW),
+                row("/api/v1/calculate", "POST", "400", "HTTP Error 400", NOW),
+                row("/api/v1/history", "GET", "200", null, NOW)));
+
+        // Act
+        RequestHistoryFacetIndex.FacetCounts counts = index.count(query(null, null, null, null, null, null));
+
+        // Assert
+        assertEquals(3, counts.total());
+        assertEquals(3, counts.indexedRows());
+        assertEquals(Map.of("/api/v1/calculate", 2L, "/api/v1/history", 1L), counts.facets().get("endpoint"));
+        assertEquals(List.of("/api/v1/calculate", "/api/v1/history"),
+                List.copyOf(counts.facets().get("endpoint").keySet()));
+        assertEquals(Map.of("POST", 2L, "GET", 1L), counts.facets().get("httpMethod"));
+        assertEquals(Map.of("200", 2L, "400", 1L), counts.facets().get("responseStatus"));
+        assertEquals(Map.of("false", 2L, "true", 1L), counts.facets().get("hasError"));
+    }
+
+    @Test
+    void count_ShouldApplyOtherFiltersButNotOwn_WhenComputingEachFacet() {
+        // Arrange
+        index.onInserted(List.of(
+                row("/api/v1/calculate", "POST", "200", null, NOW),
+                row("/api/v1/calculate", "POST", "400", "HTTP Error 400", NOW),
+                row("/api/v1/history", "GET", "200", null, NOW),
+                row("/api/v1/history", "GET", "500", "HTTP Error 500", NOW)));
+
+        // Act
+        RequestHistoryFacetIndex.FacetCounts counts = index.count(
+                query(List.of("/api/v1/calculate"), null, "200", null, null, null));
+
+        // Assert
+        assertEquals(1, counts.total());
+        // Con responseStatus=200 pero sin su propio filtro de endpoint
+        assertEquals(Map.of("/api/v1/calculate", 1L, "/api/v1/history", 1L), counts.facets().get("endpoint"));
+        // Con endpoint=/api/v1/calculate pero sin su propio filtro de estado
+        assertEquals(Map.of("200", 1L, "400", 1L), counts.facets().get("responseStatus"));
+        assertEquals(Map.of("POST", 1L), counts.facets().get("httpMethod"));
+    }
+
+    @Test
+    void count_ShouldFilterByDate_WithSecondResolutionAcrossMinutes() {
+        // Arrange
+        index.onInserted(List.of(
+                row("/a", "GET", "200", null, NOW.minusMinutes(10)),
+                row("/a", "GET", "200", null, NOW.minusMinutes(3).plusSeconds(59)),
+                row("/a", "GET", "200", null, NOW.minusMinutes(2).plusSeconds(30)),
+                row("/a", "GET", "200", null, NOW.minusMinutes(1).plusSeconds(5)),
+                row("/a", "GET", "200", null, NOW.minusMinutes(1).plusSeconds(6))));
+
+        // Act: el primer rango tiene un minuto completo y segundos sueltos en ambos extremos
+        long inRange = index.count(query(null, null, null, null,
+                NOW.minusMinutes(3).plusSeconds(59), NOW.minusMinutes(1).plusSeconds(5))).total();
+        long openEnded = index.count(query(null, null, null, null, NOW.minusMinutes(2), null)).total();
+        long sameSecond = index.count(query(null, null, null, null,
+                NOW.minusMinutes(10), NOW.minusMinutes(10))).total();
+        long inverted = index.count(query(null, null, null, null, NOW, NOW.minusHours(1))).total();
+
+        // Assert
+        assertEquals(3, inRange);
+        assertEquals(3, openEnded);
+        assertEquals(1, sameSecond);
+        assertEquals(0, inverted);
+    }
+
+    @Test
+    void count_ShouldReturnNothing_WhenFilterValueIsUnknown() {
+        // Arrange
+        index.onInserted(List.of(row("/a", "GET", "200", null, NOW)));
+
+        // Act
+        RequestHistoryFacetIndex.FacetCounts unknownMethod = index.count(query(null, "DELETE", null, null, null, null));
+        RequestHistoryFacetIndex.FacetCounts noEndpoints = index.count(query(List.of(), null, null, null, null, null));
+
+        // Assert
+        assertEquals(0, unknownMethod.total());
+        assertTrue(unknownMethod.facets().get("responseStatus").isEmpty());
+        assertEquals(0, noEndpoints.total());
+    }
+
+    @Test
+    void matchingIds_ShouldPageFromNewestId_WhenBeforeIdIsGiven() {
+        // Arrange
+        for (int i = 0; i < 10; i++) {
+            index.onInserted(List.of(row(i % 2 == 0 ? "/even" : "/odd", "GET", "200", null, NOW)));
+        }
+
+        // Act
+        long[] firstPage = index.matchingIds(query(List.of("/even"), null, null, null, null, null), Long.MAX_VALUE, 3);
+        long[] secondPage = index.matchingIds(query(List.of("/even"), null, null, null, null, null), firstPage[2], 3);
+
+        // Assert
+        assertArrayEquals(new long[]{9, 7, 5}, firstPage);
+        assertArrayEquals(new long[]{3, 1}, secondPage);
+    }
+
+    @Test
+    void onInserted_ShouldSkipRecords_WithoutGeneratedId() {
+        // Arrange
+        RequestHistory withoutId = row("/a", "GET", "200", null, NOW);
+        withoutId.setId(null);
+
+        // Act
+        index.onInserted(List.of(withoutId));
+
+        // Assert
+        assertEquals(0, index.count(query(null, null, null, null, null, null)).total());
+    }
+
+    @Test
+    void count_ShouldWeightRowsBySampleWeight_AndReportStoredRows() {
+        // Arrange
+        RequestHistory sampled = row("/api/v1/calculate", "POST", "200", null, NOW);
+        sampled.setSampleWeight(10.0);
+        RequestHistory sampledAgain = row("/api/v1/calculate", "GET", "200", null, NOW);
+        sampledAgain.setSampleWeight(10.0);
+        RequestHistory kept = row("/api/v1/calculate", "POST", "500", "HTTP Error 500", NOW);
+        kept.setSampleWeight(1.0);
+        index.onInserted(List.of(sampled, sampledAgain, kept, row("/api/v1/history", "GET", "200", null, NOW)));
+
+        // Act
+        RequestHistoryFacetIndex.FacetCounts counts = index.count(query(null, "POST", null, null, null, null));
+
+        // Assert
+        assertEquals(11, counts.total());
+        assertEquals(2, counts.storedRows());
+        assertEquals(4, counts.indexedRows());
+        assertEquals(Map.of("POST", 11L, "GET", 11L), counts.facets().get("httpMethod"));
+        assertEquals(Map.of("200", 10L, "500", 1L), counts.facets().get("responseStatus"));
+        assertEquals(Map.of("/api/v1/calculate", 11L), counts.facets().get("endpoint"));
+    }
+
+    @Test
+    void evict_ShouldDropMinutesOutsideWindow() {
+        // Arrange
+        index.onInserted(List.of(
+                row("/old", "GET", "200", null, NOW.minusMinutes(5)),
+                row("/new", "GET", "500", "HTTP Error 500", NOW.plusMinutes(30))));
+        clock.instant = NOW.plusMinutes(65).toInstant(ZoneOffset.UTC);
+
+        // Act
+        index.evict();
+        RequestHistoryFacetIndex.FacetCounts counts = index.count(query(null, null, null, null, null, null));
+
+        // Assert
+        assertEquals(1, counts.total());
+        assertEquals(Map.of("/new", 1L), counts.facets().get("endpoint"));
+        assertEquals(Map.of("true", 1L), counts.facets().get("hasError"));
+        assertEquals(NOW.plusMinutes(5), counts.coveredSince());
+        assertEquals(0, index.count(query(null, null, null, null, NOW.minusHours(1), NOW)).total());
+    }
+
+    private RequestHistory row(String endpoint, String method, String status, String error, LocalDateTime date) {
+        RequestHistory history = new RequestHistory(endpoint, method, null, null, status, null);
+        history.setId(nextId++);
+        history.setRequestDate(date);
+        history.setErrorMessage(error);
+        return history;
+    }
+
+    private static RequestHistoryFacetIndex.Query query(List<String> endpoints, String httpMethod,
+                                                        String responseStatus, Boolean hasError,
+                                                        LocalDateTime startDate, LocalDateTime endDate) {
+        return new RequestHistoryFacetIndex.Query(endpoints, httpMethod, responseStatus, hasError, startDate, endDate);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.tokenlabs.service;
+
+import com.tokenlabs.repository.RequestHistoryBodyStore;
+import com.tokenlabs.repository.RequestHistoryDictionary;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RequestHistoryLegacyMigrationTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private RequestHistoryDictionary dictionary;
+
+    @Mock
+    private RequestHistoryBodyStore bodyStore;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private DatabaseMetaData metaData;
+
+    @Mock
+    private PreparedStatement statement;
+
+    @Test
+    void migrate_ShouldDoNothing_WhenDisabled() {
+        // Arrange
+        RequestHistoryLegacyMigration migration =
+                new RequestHistoryLegacyMigration(jdbcTemplate, dictionary, bodyStore, false);
+
+        // Act
+        migration.migrate();
+
+        // Assert
+        verifyNoInteractions(jdbcTemplate, dictionary, bodyStore);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void migrate_ShouldRunBothMigrationsUnderAdvisoryLock_WhenEnabledOnPostgreSql() throws Exception {
+        // Arrange
+        RequestHistoryLegacyMigration migration =
+                new RequestHistoryLegacyMigration(jdbcTemplate, dictionary, bodyStore, true);
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenAnswer(invocation ->
+                invocation.getArgument(0, ConnectionCallback.class).doInConnection(connection));
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.getDatabaseProductName()).thenReturn("PostgreSQL");
+        when(connection.prepareStatement(any())).thenReturn(statement);
+
+        // Act
+        migration.migrate();
+
+        // Assert
+        InOrder inOrder = inOrder(connection, dictionary, bodyStore);
+        inOrder.verify(connection).prepareStatement("SELECT pg_advisory_lock(?)");
+        inOrder.verify(dictionary).migrateLegacyColumns();
+        inOrder.verify(bodyStore).migrateLegacyColumns();
+        inOrder.verify(connection).prepareStatement("SELECT pg_advisory_unlock(?)");
+        verify(statement, times(2)).setLong(1, RequestHistoryLegacyMigration.LOCK_KEY);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void migrate_ShouldReleaseLock_WhenMigrationFails() throws Exception {
+        // Arrange
+        RequestHistoryLegacyMigration migration =
+                new RequestHistoryLegacyMigration(jdbcTemplate, dictionary, bodyStore, true);
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenAnswer(invocation ->
+                invocation.getArgument(0, ConnectionCallback.class).doInConnection(connection));
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.getDatabaseProductName()).thenReturn("PostgreSQL");
+        when(connection.prepareStatement(any())).thenReturn(statement);
+        doThrow(new IllegalStateException("fallo")).when(dictionary).migrateLegacyColumns();
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, migration::migrate);
+        verify(connection).prepareStatement("SELECT pg_advisory_unlock(?)");
+        verifyNoInteractions(bodyStore);
+    }
+}
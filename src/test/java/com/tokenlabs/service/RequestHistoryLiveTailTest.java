@@ -0,0 +1,160 @@
+package com.tokenlabs.service;
+
+import com.tokenlabs.dto.RequestHistoryEvent;
+import com.tokenlabs.model.RequestHistory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class RequestHistoryLiveTailTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 1, 7, 14, 0);
+
+    private SimpleMeterRegistry meterRegistry;
+    private RequestHistoryLiveTail liveTail;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        liveTail = new RequestHistoryLiveTail(meterRegistry, 2, 3, Duration.ofMinutes(1), Duration.ofMinutes(30));
+    }
+
+    @AfterEach
+    void tearDown() {
+        liveTail.shutdown();
+    }
+
+    @Test
+    void filter_ShouldMatchLikeHistoryFilters() {
+        // Arrange
+        RequestHistoryEvent event = RequestHistoryEvent.of(request("/api/v1/calculate", "POST", "503", "timeout"));
+
+        // Act & Assert
+        assertTrue(filter(null, null, null, null, null, null).matches(event));
+        assertTrue(filter("CALC", "POST", "503", true, NOW, NOW).matches(event));
+        assertFalse(filter("/history", null, null, null, null, null).matches(event));
+        assertFalse(filter(null, "GET", null, null, null, null).matches(event));
+        assertFalse(filter(null, null, "200", null, null, null).matches(event));
+        assertFalse(filter(null, null, null, false, null, null).matches(event));
+        assertFalse(filter(null, null, null, null, NOW.plusSeconds(1), null).matches(event));
+        assertFalse(filter(null, null, null, null, null, NOW.minusSeconds(1)).matches(event));
+    }
+
+    @Test
+    void offer_ShouldDropOldestEvent_WhenBufferIsFull() throws InterruptedException {
+        // Arrange
+        RequestHistoryLiveTail.Subscriber subscriber = new RequestHistoryLiveTail.Subscriber(
+                mock(SseEmitter.class), filter(null, null, null, null, null, null), 2);
+        RequestHistoryEvent first = RequestHistoryEvent.of(request("/first", "GET", "200", null));
+        RequestHistoryEvent second = RequestHistoryEvent.of(request("/second", "GET", "200", null));
+        RequestHistoryEvent third = RequestHistoryEvent.of(request("/third", "GET", "200", null));
+
+        // Act
+        boolean firstKept = subscriber.offer(first);
+        subscriber.offer(second);
+        boolean thirdKept = subscriber.offer(third);
+        RequestHistoryLiveTail.Batch batch = subscriber.await(Duration.ZERO);
+        RequestHistoryLiveTail.Batch empty = subscriber.await(Duration.ZERO);
+
+        // Assert
+        assertTrue(firstKept);
+        assertFalse(thirdKept);
+        assertEquals(List.of(second, third), batch.events());
+        assertEquals(1, batch.dropped());
+        assertTrue(empty.isEmpty());
+    }
+
+    @Test
+    void await_ShouldReturnNull_WhenSubscriberIsClosed() throws InterruptedException {
+        // Arrange
+        RequestHistoryLiveTail.Subscriber subscriber = new RequestHistoryLiveTail.Subscriber(
+                mock(SseEmitter.class), filter(null, null, null, null, null, null), 2);
+        subscriber.offer(RequestHistoryEvent.of(request("/a", "GET", "200", null)));
+
+        // Act
+        subscriber.close();
+
+        // Assert
+        assertNull(subscriber.await(Duration.ofSeconds(1)));
+    }
+
+    @Test
+    void onRequestLogged_ShouldSendMatchingRequests_ToSubscriber() throws Exception {
+        // Arrange
+        SseEmitter emitter = mock(SseEmitter.class);
+        liveTail.subscribe(filter(null, null, null, true, null, null), emitter);
+        RequestHistory unsampled = request("/api/v1/calculate", "POST", "503", "timeout");
+        unsampled.setSampleWeight(0.0);
+
+        // Act
+        liveTail.onRequestLogged(request("/api/v1/calculate", "POST", "200", null));
+        liveTail.onRequestLogged(unsampled);
+
+        // Assert
+        ArgumentCaptor<SseEmitter.SseEventBuilder> sent = ArgumentCaptor.forClass(SseEmitter.SseEventBuilder.class);
+        verify(emitter, timeout(1000)).send(sent.capture());
+        Set<ResponseBodyEmitter.DataWithMediaType> data = sent.getValue().build();
+        assertTrue(data.stream().anyMatch(part -> part.getData() instanceof RequestHistoryEvent event
+                && event.errorMessage().equals("timeout") && !event.stored()));
+        assertEquals(1, liveTail.getSubscriberCount());
+    }
+
+    @Test
+    void subscribe_ShouldReject_WhenMaxSubscribersIsReached() {
+        // Arrange
+        liveTail.subscribe(filter(null, null, null, null, null, null), mock(SseEmitter.class));
+        liveTail.subscribe(filter(null, null, null, null, null, null), mock(SseEmitter.class));
+
+        // Act & Assert
+        assertThrows(TaskRejectedException.class,
+                () -> liveTail.subscribe(filter(null, null, null, null, null, null), mock(SseEmitter.class)));
+        assertEquals(2.0, meterRegistry.get(RequestHistoryLiveTail.METRIC_PREFIX + ".subscribers").gauge().value());
+    }
+
+    @Test
+    void subscriber_ShouldBeRemoved_WhenSendFails() throws Exception {
+        // Arrange
+        SseEmitter emitter = mock(SseEmitter.class);
+        doThrow(new IOException("Broken pipe")).when(emitter).send(any(SseEmitter.SseEventBuilder.class));
+        liveTail.subscribe(filter(null, null, null, null, null, null), emitter);
+
+        // Act
+        liveTail.onRequestLogged(request("/a", "GET", "200", null));
+
+        // Assert
+        long deadline = System.nanoTime() + Duration.ofSeconds(1).toNanos();
+        while (liveTail.getSubscriberCount() > 0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(0, liveTail.getSubscriberCount());
+    }
+
+    private static RequestHistory request(String endpoint, String method, String status, String error) {
+        RequestHistory history = new RequestHistory(endpoint, method, null, null, status, null);
+        history.setRequestDate(NOW);
+        history.setErrorMessage(error);
+        history.setSampleWeight(1.0);
+        return history;
+    }
+
+    private static RequestHistoryLiveTail.Filter filter(String endpoint, String httpMethod, String responseStatus,
+                                                        Boolean hasError, LocalDateTime startDate,
+                                                        LocalDateTime endDate) {
+        return new RequestHistoryLiveTail.Filter(endpoint, httpMethod, responseStatus, hasError, startDate, endDate);
+    }
+}
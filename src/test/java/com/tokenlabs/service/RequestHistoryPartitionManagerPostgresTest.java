@@ -0,0 +1,145 @@
+package com.tokenlabs.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Conversión a tabla particionada contra un PostgreSQL real (se omite sin Docker).
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class RequestHistoryPartitionManagerPostgresTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private JdbcTemplate jdbcTemplate;
+    private RequestHistoryPartitionManager manager;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS request_history CASCADE");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS request_history_legacy CASCADE");
+        jdbcTemplate.execute("DROP SEQUENCE IF EXISTS request_history_partitioned_id_seq");
+        // Mismo esquema que genera Hibernate para la entidad
+        jdbcTemplate.execute("CREATE TABLE request_history ("
+                + "id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                + "request_date timestamp(6) NOT NULL, "
+                + "endpoint_id integer)");
+        jdbcTemplate.execute("CREATE INDEX idx_request_history_request_date_id ON request_history (request_date, id)");
+        manager = new RequestHistoryPartitionManager(jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                true, RequestHistoryPartitionManager.Interval.DAILY, 2);
+    }
+
+    @Test
+    void initialize_ShouldConvertTable_KeepingRowsInLegacyPartition() {
+        // Arrange
+        LocalDateTime now = LocalDateTime.now();
+        insert(now.minusDays(40));
+        insert(now.minusDays(1));
+        insert(now);
+
+        // Act
+        manager.initialize();
+
+        // Assert
+        assertTrue(manager.isActive());
+        assertEquals("p", relationKind("request_history"));
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM request_history", Integer.class));
+        RequestHistoryPartitionManager.Partition legacy = manager.partitions().stream()
+                .filter(partition -> partition.name().equals(RequestHistoryPartitionManager.LEGACY_PARTITION))
+                .findFirst().orElseThrow();
+        assertNull(legacy.start());
+        assertEquals(now.toLocalDate().plusDays(2).atStartOfDay(), legacy.end());
+        assertEquals(List.of("id", "request_date"), primaryKeyColumns(RequestHistoryPartitionManager.LEGACY_PARTITION));
+        assertEquals(List.of("id", "request_date"), primaryKeyColumns("request_history"));
+        // Los ids nuevos siguen después del máximo de la tabla original
+        Long id = jdbcTemplate.queryForObject(
+                "INSERT INTO request_history (request_date) VALUES (?) RETURNING id", Long.class,
+                Timestamp.valueOf(now.plusDays(5)));
+        assertEquals(4L, id);
+    }
+
+    @Test
+    void initialize_ShouldDoNothing_WhenTableIsAlreadyPartitioned() {
+        // Arrange
+        manager.initialize();
+        int partitions = manager.partitions().size();
+
+        // Act
+        manager.initialize();
+
+        // Assert
+        assertTrue(manager.isActive());
+        assertEquals(partitions, manager.partitions().size());
+    }
+
+    @Test
+    void initialize_ShouldLeaveTableUsable_WhenRowsFallOutsideLegacyRange() {
+        // Arrange: una fila con fecha futura hace fallar la validación del CHECK
+        insert(LocalDateTime.now().plusDays(30));
+
+        // Act
+        manager.initialize();
+
+        // Assert
+        assertFalse(manager.isActive());
+        assertEquals("r", relationKind("request_history"));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_constraint WHERE conname = ?", Integer.class,
+                RequestHistoryPartitionManager.LEGACY_BOUND_CONSTRAINT));
+        insert(LocalDateTime.now().plusDays(60));
+    }
+
+    @Test
+    void dropExpiredPartitions_ShouldDropLegacyPartition_WhenItEndsBeforeCutoff() {
+        // Arrange
+        insert(LocalDateTime.now().minusDays(40));
+        manager.initialize();
+
+        // Act
+        int dropped = manager.dropExpiredPartitions(LocalDateTime.now().plusDays(3));
+
+        // Assert
+        assertTrue(dropped >= 1);
+        assertNull(relationKind(RequestHistoryPartitionManager.LEGACY_PARTITION));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM request_history", Integer.class));
+    }
+
+    private void insert(LocalDateTime requestDate) {
+        jdbcTemplate.update("INSERT INTO request_history (request_date, endpoint_id) VALUES (?, 1)",
+                Timestamp.valueOf(requestDate));
+    }
+
+    private String relationKind(String table) {
+        List<String> kinds = jdbcTemplate.queryForList(
+                "SELECT relkind::text FROM pg_class WHERE relname = ?", String.class, table);
+        return kinds.isEmpty() ? null : kinds.get(0);
+    }
+
+    private List<String> primaryKeyColumns(String table) {
+        return jdbcTemplate.queryForList(
+                "SELECT a.attname FROM pg_constraint c "
+                        + "JOIN pg_class t ON t.oid = c.conrelid "
+                        + "JOIN unnest(c.conkey) WITH ORDINALITY k(attnum, position) ON true "
+                        + "JOIN pg_attribute a ON a.attrelid = t.oid AND a.attnum = k.attnum "
+                        + "WHERE t.relname = ? AND c.contype = 'p' ORDER BY k.position",
+                String.class, table);
+    }
+}
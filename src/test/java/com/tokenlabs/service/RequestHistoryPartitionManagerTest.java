@@ -0,0 +1,191 @@
+package com.tokenlabs.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RequestHistoryPartitionManagerTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void parseBound_ShouldReadRangeLimits_WhenBoundHasTimestamps() {
+        // Act
+        RequestHistoryPartitionManager.Partition partition = RequestHistoryPartitionManager.parseBound(
+                "request_history_p20261019",
+                "FOR VALUES FROM ('2026-10-19 00:00:00') TO ('2026-10-20 00:00:00')");
+
+        // Assert
+        assertEquals("request_history_p20261019", partition.name());
+        assertEquals(LocalDateTime.of(2026, 10, 19, 0, 0), partition.start());
+        assertEquals(LocalDateTime.of(2026, 10, 20, 0, 0), partition.end());
+    }
+
+    @Test
+    void parseBound_ShouldUseNull_WhenBoundIsMinValueOrDefault() {
+        // Act
+        RequestHistoryPartitionManager.Partition legacy = RequestHistoryPartitionManager.parseBound(
+                "request_history_legacy", "FOR VALUES FROM (MINVALUE) TO ('2026-10-20 00:00:00')");
+        RequestHistoryPartitionManager.Partition defaultPartition = RequestHistoryPartitionManager.parseBound(
+                "request_history_default", "DEFAULT");
+
+        // Assert
+        assertNull(legacy.start());
+        assertEquals(LocalDateTime.of(2026, 10, 20, 0, 0), legacy.end());
+        assertNull(defaultPartition);
+    }
+
+    @Test
+    void periodStart_ShouldStartOnMonday_WhenIntervalIsWeekly() {
+        // Arrange
+        RequestHistoryPartitionManager manager = newManager(RequestHistoryPartitionManager.Interval.WEEKLY, 1);
+
+        // Act
+        LocalDateTime start = manager.periodStart(LocalDateTime.of(2026, 10, 22, 13, 45));
+
+        // Assert
+        assertEquals(LocalDateTime.of(2026, 10, 19, 0, 0), start);
+        assertEquals(LocalDateTime.of(2026, 10, 26, 0, 0), manager.next(start));
+    }
+
+    @Test
+    void createUpcomingPartitions_ShouldCreateMissingDailyPartitions_WhenSomeAlreadyExist() throws SQLException {
+        // Arrange: la partición legacy cubre hasta el 20 de octubre
+        RequestHistoryPartitionManager manager = newManager(RequestHistoryPartitionManager.Interval.DAILY, 2);
+        existingPartitions(
+                new String[]{"request_history_legacy", "FOR VALUES FROM (MINVALUE) TO ('2026-10-20 00:00:00')"},
+                new String[]{"request_history_default", "DEFAULT"});
+
+        // Act
+        int created = manager.createUpcomingPartitions(LocalDateTime.of(2026, 10, 19, 10, 0));
+
+        // Assert
+        assertEquals(2, created);
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS request_history_p20261020 PARTITION OF request_history"
+                + " FOR VALUES FROM ('2026-10-20 00:00:00') TO ('2026-10-21 00:00:00')");
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS request_history_p20261021 PARTITION OF request_history"
+                + " FOR VALUES FROM ('2026-10-21 00:00:00') TO ('2026-10-22 00:00:00')");
+        verify(jdbcTemplate, never()).execute(contains("request_history_p20261019"));
+    }
+
+    @Test
+    void dropExpiredPartitions_ShouldDetachAndDropOnlyPartitionsEndingBeforeCutoff() throws SQLException {
+        // Arrange
+        RequestHistoryPartitionManager manager = newManager(RequestHistoryPartitionManager.Interval.DAILY, 2);
+        ReflectionTestUtils.setField(manager, "active", true);
+        existingPartitions(
+                new String[]{"request_history_legacy", "FOR VALUES FROM (MINVALUE) TO ('2026-09-01 00:00:00')"},
+                new String[]{"request_history_p20260901", "FOR VALUES FROM ('2026-09-01 00:00:00') TO ('2026-09-02 00:00:00')"},
+                new String[]{"request_history_p20261019", "FOR VALUES FROM ('2026-10-19 00:00:00') TO ('2026-10-20 00:00:00')"},
+                new String[]{"request_history_default", "DEFAULT"});
+
+        // Act
+        int dropped = manager.dropExpiredPartitions(LocalDateTime.of(2026, 9, 2, 0, 0));
+
+        // Assert
+        assertEquals(2, dropped);
+        verify(jdbcTemplate).execute("ALTER TABLE request_history DETACH PARTITION request_history_legacy");
+        verify(jdbcTemplate).execute("DROP TABLE request_history_legacy");
+        verify(jdbcTemplate).execute("ALTER TABLE request_history DETACH PARTITION request_history_p20260901");
+        verify(jdbcTemplate).execute("DROP TABLE request_history_p20260901");
+        verify(jdbcTemplate, never()).execute(contains("request_history_p20261019"));
+        verify(jdbcTemplate, never()).execute(contains("request_history_default"));
+    }
+
+    @Test
+    void dropExpiredPartitions_ShouldDoNothing_WhenPartitioningIsInactive() {
+        // Arrange
+        RequestHistoryPartitionManager manager = newManager(RequestHistoryPartitionManager.Interval.DAILY, 2);
+
+        // Act
+        int dropped = manager.dropExpiredPartitions(LocalDateTime.now());
+
+        // Assert
+        assertEquals(0, dropped);
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void initialize_ShouldStayInactive_WhenDisabled() {
+        // Arrange
+        RequestHistoryPartitionManager manager = new RequestHistoryPartitionManager(jdbcTemplate, transactionTemplate,
+                false, RequestHistoryPartitionManager.Interval.DAILY, 7);
+
+        // Act
+        manager.initialize();
+
+        // Assert
+        assertFalse(manager.isActive());
+        verifyNoInteractions(jdbcTemplate, transactionTemplate);
+    }
+
+    @Test
+    void convertToPartitioned_ShouldPrepareKeyAndBound_BeforeTakingExclusiveLock() {
+        // Arrange
+        RequestHistoryPartitionManager manager = newManager(RequestHistoryPartitionManager.Interval.DAILY, 2);
+        when(jdbcTemplate.queryForList(contains("pg_index"), eq(Boolean.class), any())).thenReturn(List.of());
+        when(jdbcTemplate.queryForObject(contains("pg_constraint"), eq(Integer.class), any())).thenReturn(0);
+        when(jdbcTemplate.queryForList(contains("relkind"), eq(String.class), any())).thenReturn(List.of("r"));
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        // Act
+        manager.convertToPartitioned(LocalDateTime.of(2026, 10, 19, 23, 50));
+
+        // Assert: índice y CHECK validado fuera del bloqueo; la clave primaria cambia antes del ATTACH
+        InOrder inOrder = inOrder(jdbcTemplate, transactionTemplate);
+        inOrder.verify(jdbcTemplate).execute("CREATE UNIQUE INDEX CONCURRENTLY request_history_legacy_id_request_date_key"
+                + " ON request_history (id, request_date)");
+        inOrder.verify(jdbcTemplate).execute("ALTER TABLE request_history ADD CONSTRAINT request_history_legacy_bound"
+                + " CHECK (request_date IS NOT NULL AND request_date < '2026-10-21 00:00:00') NOT VALID");
+        inOrder.verify(jdbcTemplate).execute("ALTER TABLE request_history VALIDATE CONSTRAINT request_history_legacy_bound");
+        inOrder.verify(transactionTemplate).executeWithoutResult(any());
+        inOrder.verify(jdbcTemplate).execute("LOCK TABLE request_history IN ACCESS EXCLUSIVE MODE");
+        inOrder.verify(jdbcTemplate).execute("ALTER TABLE request_history_legacy DROP CONSTRAINT request_history_pkey");
+        inOrder.verify(jdbcTemplate).execute("ALTER TABLE request_history_legacy ADD CONSTRAINT request_history_legacy_pkey"
+                + " PRIMARY KEY USING INDEX request_history_legacy_id_request_date_key");
+        inOrder.verify(jdbcTemplate).execute("ALTER TABLE request_history ATTACH PARTITION request_history_legacy"
+                + " FOR VALUES FROM (MINVALUE) TO ('2026-10-21 00:00:00')");
+    }
+
+    private RequestHistoryPartitionManager newManager(RequestHistoryPartitionManager.Interval interval, int premake) {
+        return new RequestHistoryPartitionManager(jdbcTemplate, transactionTemplate, true, interval, premake);
+    }
+
+    private void existingPartitions(String[]... rows) throws SQLException {
+        ResultSet resultSet = mock(ResultSet.class);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (String[] row : rows) {
+                when(resultSet.getString(1)).thenReturn(row[0]);
+                when(resultSet.getString(2)).thenReturn(row[1]);
+                handler.processRow(resultSet);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), eq("request_history"));
+    }
+}
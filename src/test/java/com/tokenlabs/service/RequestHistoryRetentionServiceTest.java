@@ -0,0 +1,163 @@
+package com.tokenlabs.service;
+
+import com.tokenlabs.repository.RequestHistoryBodyStore;
+import com.tokenlabs.repository.RequestHistoryRollupRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RequestHistoryRetentionServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 10, 19, 12, 30);
+
+    @Mock
+    private RequestHistoryRollupRepository rollupRepository;
+
+    @Mock
+    private RequestHistoryPartitionManager partitionManager;
+
+    @Mock
+    private RequestHistoryBodyStore bodyStore;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void rollupHours_ShouldRollUpCompleteHoursAndSkipEmptyOnes_WhenBehind() {
+        // Arrange: último rollup a las 08:00, hay filas a las 09:xx y 11:xx
+        RequestHistoryRetentionService service = newService(5000, 20000);
+        when(rollupRepository.findLatestHourlyBucket()).thenReturn(NOW.withHour(8).withMinute(0));
+        when(rollupRepository.rollupHour(any(LocalDateTime.class))).thenAnswer(invocation ->
+                invocation.getArgument(0, LocalDateTime.class).getHour() == 9 ? 2 : 0);
+        when(rollupRepository.findFirstRequestDate(NOW.withHour(11).withMinute(0)))
+                .thenReturn(NOW.withHour(11).withMinute(20));
+        lenient().when(rollupRepository.findFirstRequestDate(NOW.withHour(12).withMinute(0))).thenReturn(null);
+
+        // Act: solo se agregan horas anteriores a las 12:00
+        int processed = service.rollupHours(NOW.withHour(12).withMinute(0));
+
+        // Assert
+        assertEquals(3, processed);
+        verify(rollupRepository).rollupHour(NOW.withHour(9).withMinute(0));
+        verify(rollupRepository).rollupHour(NOW.withHour(10).withMinute(0));
+        verify(rollupRepository).rollupHour(NOW.withHour(11).withMinute(0));
+        verify(rollupRepository, never()).rollupHour(NOW.withHour(12).withMinute(0));
+        assertEquals(3.0, meterRegistry.get(RequestHistoryRetentionService.METRIC_PREFIX + ".rollups")
+                .tag("granularity", "hourly").counter().count());
+    }
+
+    @Test
+    void run_ShouldNeverPurgeRowsWithoutRollup_WhenRollupIsBehindRetention() {
+        // Arrange: los rollups horarios solo llegan a hace 40 días
+        RequestHistoryRetentionService service = newService(5000, 20000);
+        LocalDateTime hourlyUntil = NOW.minusDays(40);
+        RequestHistoryRollupRepository.Coverage coverage = new RequestHistoryRollupRepository.Coverage(
+                RequestHistoryRollupRepository.NO_COVERAGE, hourlyUntil);
+        when(rollupRepository.findCoverage()).thenReturn(coverage);
+        when(rollupRepository.deleteRequestsBefore(any(LocalDateTime.class), anyInt())).thenReturn(10);
+
+        // Act
+        RequestHistoryRetentionService.RetentionResult result = service.run(NOW);
+
+        // Assert
+        assertEquals(10, result.rowsDeleted());
+        verify(rollupRepository).deleteRequestsBefore(hourlyUntil, 5000);
+        verify(partitionManager, never()).dropExpiredPartitions(any());
+    }
+
+    @Test
+    void run_ShouldDropPartitionsUpToRetention_WhenPartitioningIsActive() {
+        // Arrange
+        RequestHistoryRetentionService service = newService(5000, 20000);
+        RequestHistoryRollupRepository.Coverage coverage = new RequestHistoryRollupRepository.Coverage(
+                NOW.minusDays(1).toLocalDate().atStartOfDay(), NOW.withMinute(0));
+        when(rollupRepository.findCoverage()).thenReturn(coverage);
+        when(partitionManager.isActive()).thenReturn(true);
+        when(partitionManager.dropExpiredPartitions(NOW.minusDays(30))).thenReturn(1);
+
+        // Act
+        RequestHistoryRetentionService.RetentionResult result = service.run(NOW);
+
+        // Assert
+        assertEquals(1, result.partitionsDropped());
+        verify(rollupRepository, never()).deleteRequestsBefore(any(), anyInt());
+        verify(rollupRepository).deleteHourlyRollupsBefore(NOW.minusDays(90));
+    }
+
+    @Test
+    void purgeRequests_ShouldDeleteInChunksAndRespectRate_WhenManyRowsAreExpired() {
+        // Arrange: 3 lotes de 100 filas a 1000 filas/s = al menos 200 ms de espera
+        RequestHistoryRetentionService service = newService(100, 1000);
+        when(rollupRepository.deleteRequestsBefore(any(LocalDateTime.class), eq(100)))
+                .thenReturn(100, 100, 40);
+
+        // Act
+        long start = System.nanoTime();
+        long deleted = service.purgeRequests(NOW.minusDays(30));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        // Assert
+        assertEquals(240, deleted);
+        verify(rollupRepository, times(3)).deleteRequestsBefore(any(LocalDateTime.class), eq(100));
+        assertTrue(elapsedMs >= 180, "Tardó " + elapsedMs + " ms");
+        assertEquals(240.0, meterRegistry.get(RequestHistoryRetentionService.METRIC_PREFIX + ".deleted.rows")
+                .counter().count());
+    }
+
+    @Test
+    void purgeBodies_ShouldKeepBodiesOfRemainingRows_WhenPurgeDidNotReachCutoff() {
+        // Arrange: el borrado por lotes se quedó en filas de hace 35 días
+        RequestHistoryRetentionService service = newService(5000, 20000);
+        LocalDateTime oldestRow = NOW.minusDays(35);
+        when(rollupRepository.findFirstRequestDate(RequestHistoryRollupRepository.NO_COVERAGE)).thenReturn(oldestRow);
+        when(bodyStore.deleteUnreferencedBefore(oldestRow.toLocalDate())).thenReturn(4);
+
+        // Act
+        int deleted = service.purgeBodies(NOW.minusDays(30));
+
+        // Assert
+        assertEquals(4, deleted);
+        verify(bodyStore).deleteUnreferencedBefore(oldestRow.toLocalDate());
+        assertEquals(4.0, meterRegistry.get(RequestHistoryRetentionService.METRIC_PREFIX + ".deleted.bodies")
+                .counter().count());
+    }
+
+    @Test
+    void purgeBodies_ShouldUseCutoff_WhenNoRowsRemain() {
+        // Arrange
+        RequestHistoryRetentionService service = newService(5000, 20000);
+        when(rollupRepository.findFirstRequestDate(RequestHistoryRollupRepository.NO_COVERAGE)).thenReturn(null);
+
+        // Act
+        service.purgeBodies(NOW.minusDays(30));
+
+        // Assert
+        verify(bodyStore).deleteUnreferencedBefore(NOW.minusDays(30).toLocalDate());
+    }
+
+    @Test
+    void constructor_ShouldRejectNonPositiveChunkSize() {
+        assertThrows(IllegalArgumentException.class, () -> newService(0, 1000));
+    }
+
+    private RequestHistoryRetentionService newService(int chunkSize, int maxRowsPerSecond) {
+        return new RequestHistoryRetentionService(rollupRepository, partitionManager, bodyStore, meterRegistry,
+                Duration.ofDays(30), Duration.ofMinutes(10), 168, Duration.ofDays(90),
+                chunkSize, maxRowsPerSecond, Duration.ofMinutes(1));
+    }
+}
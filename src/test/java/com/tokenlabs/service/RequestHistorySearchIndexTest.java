@@ -0,0 +1,115 @@
+package com.tokenlabs.service;
+
+import com.tokenlabs.model.RequestHistory;
+import com.tokenlabs.repository.RequestHistoryBodyStore;
+import com.tokenlabs.util.InvertedIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class RequestHistorySearchIndexTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 1, 7, 14, 0);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private RequestHistoryBodyStore bodyStore;
+
+    @TempDir
+    Path directory;
+
+    private InvertedIndex index;
+    private SimpleMeterRegistry meterRegistry;
+    private RequestHistorySearchIndex searchIndex;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        index = InvertedIndex.open(directory, 10);
+        meterRegistry = new SimpleMeterRegistry();
+        searchIndex = new RequestHistorySearchIndex(index, jdbcTemplate, bodyStore, meterRegistry,
+                Duration.ofDays(30), false, 64);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        index.close();
+    }
+
+    @Test
+    void search_ShouldMatchBodiesParametersAndErrors_OfInsertedRecords() {
+        // Arrange
+        searchIndex.onInserted(List.of(
+                history(1L, "{\"firstNumber\": 10}", "{\"result\": 23.15}", null, NOW),
+                history(2L, "{\"firstNumber\": 99}", null, "External service timeout", NOW),
+                history(3L, null, null, null, NOW)));
+
+        // Act & Assert
+        assertArrayEquals(new long[]{2, 1}, searchIndex.search("FirstNumber", Long.MAX_VALUE, 10));
+        assertArrayEquals(new long[]{2}, searchIndex.search("service TIMEOUT", Long.MAX_VALUE, 10));
+        assertArrayEquals(new long[]{1}, searchIndex.search("23.15", Long.MAX_VALUE, 10));
+        assertArrayEquals(new long[]{3, 2, 1}, searchIndex.search("page=0", Long.MAX_VALUE, 10));
+        assertArrayEquals(new long[]{2}, searchIndex.search("time*", Long.MAX_VALUE, 10));
+    }
+
+    @Test
+    void search_ShouldRejectQuery_WithoutWords() {
+        assertThrows(IllegalArgumentException.class, () -> searchIndex.search(" ,; ", Long.MAX_VALUE, 10));
+    }
+
+    @Test
+    void onInserted_ShouldSkipRecords_WithoutGeneratedId() {
+        // Arrange
+        RequestHistory withoutId = history(null, "{\"firstNumber\": 10}", null, null, NOW);
+
+        // Act
+        searchIndex.onInserted(List.of(withoutId));
+
+        // Assert
+        assertEquals(0, index.getDocCount());
+    }
+
+    @Test
+    void deleteBefore_ShouldDropSegments_OlderThanRetentionCutoff() {
+        // Arrange
+        searchIndex.onInserted(List.of(history(1L, "expired", null, null, NOW.minusDays(31))));
+        searchIndex.refresh();
+        searchIndex.onInserted(List.of(history(2L, "kept", null, null, NOW)));
+        searchIndex.refresh();
+
+        // Act
+        int deleted = searchIndex.deleteBefore(NOW.minusDays(30));
+
+        // Assert
+        assertEquals(1, deleted);
+        assertArrayEquals(new long[0], searchIndex.search("expired", Long.MAX_VALUE, 10));
+        assertArrayEquals(new long[]{2}, searchIndex.search("kept", Long.MAX_VALUE, 10));
+        assertEquals(1.0, meterRegistry.get(RequestHistorySearchIndex.METRIC_PREFIX + ".segments").gauge().value());
+    }
+
+    private static RequestHistory history(Long id, String requestBody, String responseBody, String error,
+                                          LocalDateTime date) {
+        RequestHistory history = new RequestHistory("/api/v1/calculate", "POST", "page=0", requestBody,
+                error != null ? "503" : "200", responseBody);
+        history.setId(id);
+        history.setRequestDate(date);
+        history.setErrorMessage(error);
+        return history;
+    }
+}
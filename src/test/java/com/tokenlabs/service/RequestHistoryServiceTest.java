@@ -1,23 +1,37 @@
 package com.tokenlabs.service;
 
+import com.tokenlabs.dto.CursorPage;
+import com.tokenlabs.dto.RequestStatisticsResponse;
 import com.tokenlabs.model.RequestHistory;
+import com.tokenlabs.repository.RequestHistoryBodyStore;
+import com.tokenlabs.repository.RequestHistoryDictionary;
 import com.tokenlabs.repository.RequestHistoryRepository;
+import com.tokenlabs.util.PageCursor;
+import com.tokenlabs.util.RequestTimings;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -30,6 +44,27 @@ class RequestHistoryServiceTest {
     @Mock
     private RequestHistoryRepository requestHistoryRepository;
 
+    @Mock
+    private RequestHistoryWriter requestHistoryWriter;
+
+    @Mock
+    private RequestLogSampler requestLogSampler;
+
+    @Mock
+    private RequestStatisticsAggregator statisticsAggregator;
+
+    @Mock
+    private RequestHistoryRetentionService retentionService;
+
+    @Mock
+    private RequestHistoryDictionary dictionary;
+
+    @Mock
+    private RequestHistoryBodyStore bodyStore;
+
+    @Mock
+    private RequestHistoryFacetIndex facetIndex;
+
     @InjectMocks
     private RequestHistoryService requestHistoryService;
 
@@ -51,12 +86,13 @@ class RequestHistoryServiceTest {
         testRequestHistory.setExecutionTimeMs(150L);
         testRequestHistory.setClientIp("192.168.1.1");
         testRequestHistory.setUserAgent("Mozilla/5.0");
+        lenient().when(requestLogSampler.sampleWeight(any(), any(), any(), any())).thenReturn(1.0);
     }
 
     @Test
-    void logRequestAsync_ShouldSaveRequestHistory_WhenCalled() {
+    void logRequestAsync_ShouldEnqueueRequestHistory_WhenCalled() {
         // Arrange
-        when(requestHistoryRepository.save(any(RequestHistory.class))).thenReturn(testRequestHistory);
+        when(requestHistoryWriter.enqueue(any(RequestHistory.class))).thenReturn(true);
 
         // Act
         CompletableFuture<Void> result = requestHistoryService.logRequestAsync(
@@ -67,14 +103,100 @@ class RequestHistoryServiceTest {
 
         // Assert
         assertNotNull(result);
-        verify(requestHistoryRepository, timeout(1000)).save(any(RequestHistory.class));
+        assertTrue(result.isDone());
+        ArgumentCaptor<RequestHistory> captor = ArgumentCaptor.forClass(RequestHistory.class);
+        verify(requestHistoryWriter).enqueue(captor.capture());
+        RequestHistory queued = captor.getValue();
+        assertEquals("/api/test", queued.getEndpoint());
+        assertEquals("GET", queued.getHttpMethod());
+        assertEquals("200", queued.getResponseStatus());
+        assertEquals(150L, queued.getExecutionTimeMs());
+        assertNotNull(queued.getRequestDate());
+        assertEquals(1.0, queued.getSampleWeight());
+        verify(requestHistoryRepository, never()).save(any(RequestHistory.class));
     }
 
     @Test
-    void logRequestAsync_ShouldHandleErrorGracefully_WhenRepositoryThrowsException() {
+    void logRequestAsync_ShouldStoreSampleWeight_WhenRequestIsSampled() {
         // Arrange
-        when(requestHistoryRepository.save(any(RequestHistory.class)))
-                .thenThrow(new RuntimeException("Database error"));
+        when(requestLogSampler.sampleWeight("/api/test", "200", null, 150L)).thenReturn(10.0);
+        when(requestHistoryWriter.enqueue(any(RequestHistory.class))).thenReturn(true);
+
+        // Act
+        requestHistoryService.logRequestAsync(
+                "/api/test", "GET", "param=value", null,
+                "200", null, null, 150L,
+                "192.168.1.1", "Mozilla/5.0"
+        );
+
+        // Assert
+        ArgumentCaptor<RequestHistory> captor = ArgumentCaptor.forClass(RequestHistory.class);
+        verify(requestHistoryWriter).enqueue(captor.capture());
+        assertEquals(10.0, captor.getValue().getSampleWeight());
+    }
+
+    @Test
+    void logRequestAsync_ShouldStorePhaseMicros_WhenRequestWasTimed() {
+        // Arrange
+        when(requestHistoryWriter.enqueue(any(RequestHistory.class))).thenReturn(true);
+        RequestTimings.PhaseMicros phaseMicros = new RequestTimings.PhaseMicros(1_200L, 800L, 150L, 90L, 1_400L);
+
+        // Act
+        requestHistoryService.logRequestAsync(
+                "/api/test", "POST", null, null,
+                "200", null, null, 1L,
+                "192.168.1.1", "Mozilla/5.0", phaseMicros
+        );
+
+        // Assert
+        ArgumentCaptor<RequestHistory> captor = ArgumentCaptor.forClass(RequestHistory.class);
+        verify(requestHistoryWriter).enqueue(captor.capture());
+        RequestHistory queued = captor.getValue();
+        assertEquals(1_200L, queued.getHandlerMicros());
+        assertEquals(800L, queued.getExternalFetchMicros());
+        assertEquals(150L, queued.getDbInsertMicros());
+        assertEquals(90L, queued.getSerializationMicros());
+        assertEquals(1_400L, queued.getTotalMicros());
+    }
+
+    @Test
+    void logRequestAsync_ShouldNotEnqueue_WhenSamplerSkipsRequest() {
+        // Arrange
+        when(requestLogSampler.sampleWeight("/api/test", "200", null, 150L)).thenReturn(RequestLogSampler.SKIP);
+
+        // Act
+        CompletableFuture<Void> result = requestHistoryService.logRequestAsync(
+                "/api/test", "GET", "param=value", null,
+                "200", null, null, 150L,
+                "192.168.1.1", "Mozilla/5.0"
+        );
+
+        // Assert
+        assertTrue(result.isDone());
+        verify(requestHistoryWriter, never()).enqueue(any(RequestHistory.class));
+    }
+
+    @Test
+    void logRequestAsync_ShouldNotThrow_WhenWriterDropsRecord() {
+        // Arrange
+        when(requestHistoryWriter.enqueue(any(RequestHistory.class))).thenReturn(false);
+
+        // Act & Assert
+        assertDoesNotThrow(() -> {
+            CompletableFuture<Void> result = requestHistoryService.logRequestAsync(
+                    "/api/test", "GET", "param=value", "{\"test\": \"data\"}",
+                    "200", "{\"result\": \"success\"}", null, 150L,
+                    "192.168.1.1", "Mozilla/5.0"
+            );
+            assertNotNull(result);
+        });
+    }
+
+    @Test
+    void logRequestAsync_ShouldHandleErrorGracefully_WhenWriterThrowsException() {
+        // Arrange
+        when(requestHistoryWriter.enqueue(any(RequestHistory.class)))
+                .thenThrow(new RuntimeException("Writer error"));
 
         // Act & Assert
         assertDoesNotThrow(() -> {
@@ -111,10 +233,7 @@ class RequestHistoryServiceTest {
         Pageable pageable = PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "requestDate"));
         Page<RequestHistory> expectedPage = new PageImpl<>(Arrays.asList(testRequestHistory), pageable, 1);
         
-        when(requestHistoryRepository.findWithFilters(
-                eq("/api/test"), eq("GET"), eq("200"), eq(false),
-                any(LocalDateTime.class), any(LocalDateTime.class), eq(pageable)
-        )).thenReturn(expectedPage);
+        when(requestHistoryRepository.findAll(any(Specification.class), eq(pageable))).thenReturn(expectedPage);
 
         // Act
         Page<RequestHistory> result = requestHistoryService.searchRequests(
@@ -123,13 +242,11 @@ class RequestHistoryServiceTest {
                 0, 20, "requestDate", "desc"
         );
 
-        // Assert
+        // Assert: el texto de endpoint se resuelve en SQL, sin leer el diccionario
         assertNotNull(result);
         assertEquals(1, result.getContent().size());
-        verify(requestHistoryRepository).findWithFilters(
-                eq("/api/test"), eq("GET"), eq("200"), eq(false),
-                any(LocalDateTime.class), any(LocalDateTime.class), eq(pageable)
-        );
+        verify(requestHistoryRepository).findAll(any(Specification.class), eq(pageable));
+        verifyNoInteractions(dictionary);
     }
 
     @Test
@@ -138,10 +255,7 @@ class RequestHistoryServiceTest {
         Pageable pageable = PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "requestDate"));
         Page<RequestHistory> expectedPage = new PageImpl<>(Arrays.asList(testRequestHistory), pageable, 1);
         
-        when(requestHistoryRepository.findWithFilters(
-                isNull(), isNull(), isNull(), isNull(),
-                isNull(), isNull(), eq(pageable)
-        )).thenReturn(expectedPage);
+        when(requestHistoryRepository.findAll(any(Specification.class), eq(pageable))).thenReturn(expectedPage);
 
         // Act
         Page<RequestHistory> result = requestHistoryService.searchRequests(
@@ -153,86 +267,270 @@ class RequestHistoryServiceTest {
         // Assert
         assertNotNull(result);
         assertEquals(1, result.getContent().size());
-        verify(requestHistoryRepository).findWithFilters(
-                isNull(), isNull(), isNull(), isNull(),
-                isNull(), isNull(), eq(pageable)
-        );
+        verifyNoInteractions(dictionary);
     }
 
     @Test
-    void getRequestStatistics_ShouldReturnStatistics_WhenCalled() {
+    void searchRequestsSlice_ShouldQueryWithoutCount_AndTieBreakById() {
         // Arrange
-        List<Object[]> endpointStats = new ArrayList<>();
-        endpointStats.add(new Object[]{"/api/test", 10L});
-        
-        List<Object[]> methodStats = new ArrayList<>();
-        methodStats.add(new Object[]{"GET", 8L});
-        methodStats.add(new Object[]{"POST", 2L});
-        
-        List<Object[]> statusStats = new ArrayList<>();
-        statusStats.add(new Object[]{"200", 9L});
-        statusStats.add(new Object[]{"400", 1L});
-        
-        List<Object[]> timeStats = new ArrayList<>();
-        timeStats.add(new Object[]{"/api/test", 150.0, 100L, 200L});
-        
-        when(requestHistoryRepository.countRequestsByEndpoint()).thenReturn(endpointStats);
-        when(requestHistoryRepository.countRequestsByHttpMethod()).thenReturn(methodStats);
-        when(requestHistoryRepository.countRequestsByResponseStatus()).thenReturn(statusStats);
-        when(requestHistoryRepository.getExecutionTimeStatsByEndpoint()).thenReturn(timeStats);
+        Pageable pageable = PageRequest.of(3, 20, Sort.by(Sort.Direction.DESC, "requestDate").and(Sort.by("id")));
+        when(requestHistoryRepository.findSlice(any(), eq(pageable)))
+                .thenReturn(new SliceImpl<>(List.of(testRequestHistory), pageable, true));
 
         // Act
-        Object result = requestHistoryService.getRequestStatistics();
+        Slice<RequestHistory> result = requestHistoryService.searchRequestsSlice(
+                null, null, null, null, null, null, 3, 20, "requestDate", "desc");
 
         // Assert
-        assertNotNull(result);
-        verify(requestHistoryRepository).countRequestsByEndpoint();
-        verify(requestHistoryRepository).countRequestsByHttpMethod();
-        verify(requestHistoryRepository).countRequestsByResponseStatus();
-        verify(requestHistoryRepository).getExecutionTimeStatsByEndpoint();
+        assertTrue(result.hasNext());
+        assertEquals(1, result.getNumberOfElements());
+        verify(requestHistoryRepository, never()).findAll(any(Specification.class), any(Pageable.class));
     }
 
     @Test
-    void cleanOldRecords_ShouldReturnDeletedCount_WhenCalled() {
+    void scrollRequests_ShouldReturnNextCursor_WhenMoreRowsThanSize() {
         // Arrange
-        int expectedDeletedCount = 5;
-        when(requestHistoryRepository.deleteOldRecords(any(LocalDateTime.class)))
-                .thenReturn(expectedDeletedCount);
+        RequestHistory second = new RequestHistory();
+        second.setId(7L);
+        second.setRequestDate(testDate.minusMinutes(1));
+        RequestHistory extra = new RequestHistory();
+        extra.setId(3L);
+        extra.setRequestDate(testDate.minusMinutes(2));
+        when(requestHistoryRepository.findAll(any(), eq(Sort.by(Sort.Direction.DESC, "requestDate", "id")), eq(Limit.of(3))))
+                .thenReturn(List.of(testRequestHistory, second, extra));
+
+        // Act
+        CursorPage<RequestHistory> result = requestHistoryService.scrollRequests(
+                null, null, null, null, null, null, null, 2, "desc");
+
+        // Assert
+        assertEquals(List.of(testRequestHistory, second), result.getContent());
+        assertTrue(result.hasNext());
+        assertEquals(new PageCursor(second.getRequestDate(), 7L, true), PageCursor.decode(result.getNextCursor()));
+    }
+
+    @Test
+    void scrollRequests_ShouldContinueFromCursor_InAscendingOrder() {
+        // Arrange
+        String cursor = new PageCursor(testDate, 5L, false).encode();
+        when(requestHistoryRepository.findAll(any(), eq(Sort.by(Sort.Direction.ASC, "requestDate", "id")), eq(Limit.of(21))))
+                .thenReturn(List.of(testRequestHistory));
+
+        // Act
+        CursorPage<RequestHistory> result = requestHistoryService.scrollRequests(
+                null, "GET", null, null, null, null, cursor, 20, "asc");
+
+        // Assert
+        assertEquals(1, result.getNumberOfElements());
+        assertFalse(result.hasNext());
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    void scrollRequests_ShouldRejectCursor_FromOtherSortDirection() {
+        // Arrange
+        String cursor = new PageCursor(testDate, 5L, true).encode();
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> requestHistoryService.scrollRequests(
+                null, null, null, null, null, null, cursor, 20, "asc"));
+        verifyNoInteractions(requestHistoryRepository);
+    }
+
+    @Test
+    void getFacets_ShouldResolveEndpointText_BeforeQueryingIndex() {
+        // Arrange
+        RequestHistoryFacetIndex.FacetCounts counts = new RequestHistoryFacetIndex.FacetCounts(
+                2, 2, Map.of(), testDate, 10);
+        when(dictionary.findValuesContaining(RequestHistoryDictionary.Kind.ENDPOINT, "calc"))
+                .thenReturn(List.of("/api/v1/calculate"));
+        when(facetIndex.count(new RequestHistoryFacetIndex.Query(
+                List.of("/api/v1/calculate"), null, "200", null, null, null))).thenReturn(counts);
+
+        // Act
+        RequestHistoryFacetIndex.FacetCounts result = requestHistoryService.getFacets(
+                "calc", null, "200", null, null, null);
+
+        // Assert
+        assertSame(counts, result);
+        verifyNoInteractions(requestHistoryRepository);
+    }
+
+    @Test
+    void scrollRecentRequests_ShouldHydrateIndexIds_InIdOrder() {
+        // Arrange
+        RequestHistory older = new RequestHistory();
+        older.setId(4L);
+        older.setRequestDate(testDate.minusMinutes(1));
+        RequestHistory newest = new RequestHistory();
+        newest.setId(9L);
+        newest.setRequestDate(testDate);
+        String cursor = new PageCursor(testDate, 12L, true).encode();
+        when(facetIndex.matchingIds(any(), eq(12L), eq(3))).thenReturn(new long[]{9L, 6L, 4L});
+        // La fila 6 ya no existe (retención) y findAllById no garantiza el orden
+        when(requestHistoryRepository.findAllById(List.of(9L, 6L, 4L))).thenReturn(List.of(older, newest));
+
+        // Act
+        CursorPage<RequestHistory> result = requestHistoryService.scrollRecentRequests(
+                null, "GET", null, null, null, null, cursor, 2);
+
+        // Assert
+        assertEquals(List.of(newest, older), result.getContent());
+        assertFalse(result.hasNext());
+    }
+
+    @Test
+    void scrollRecentRequests_ShouldRejectAscendingCursor() {
+        // Arrange
+        String cursor = new PageCursor(testDate, 5L, false).encode();
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> requestHistoryService.scrollRecentRequests(
+                null, null, null, null, null, null, cursor, 20));
+        verifyNoInteractions(facetIndex);
+    }
+
+    @Test
+    void searchText_ShouldHydrateMatchingIds_FromSearchIndex() {
+        // Arrange
+        RequestHistorySearchIndex searchIndex = mock(RequestHistorySearchIndex.class);
+        ReflectionTestUtils.setField(requestHistoryService, "searchIndex", searchIndex);
+        when(searchIndex.search("timeout", Long.MAX_VALUE, 21)).thenReturn(new long[]{1L});
+        when(requestHistoryRepository.findAllById(List.of(1L))).thenReturn(List.of(testRequestHistory));
+
+        // Act
+        CursorPage<RequestHistory> result = requestHistoryService.searchText("timeout", null, 20);
+
+        // Assert
+        assertEquals(List.of(testRequestHistory), result.getContent());
+        assertFalse(result.hasNext());
+    }
+
+    @Test
+    void searchText_ShouldFail_WhenSearchIsDisabled() {
+        assertThrows(IllegalStateException.class, () -> requestHistoryService.searchText("timeout", null, 20));
+    }
+
+    @Test
+    void getRequestStatistics_ShouldReturnAggregatorSnapshot_WithoutQueryingHistory() {
+        // Arrange
+        RequestStatisticsResponse snapshot = new RequestStatisticsResponse();
+        snapshot.setTotalRequests(10L);
+        when(statisticsAggregator.snapshot()).thenReturn(snapshot);
+
+        // Act
+        RequestStatisticsResponse result = requestHistoryService.getRequestStatistics();
+
+        // Assert
+        assertSame(snapshot, result);
+        verifyNoInteractions(requestHistoryRepository);
+    }
+
+    @Test
+    void logRequestAsync_ShouldNotifyListeners_WhenRequestIsNotStored() {
+        // Arrange
+        RequestLogListener listener = mock(RequestLogListener.class);
+        RequestLogListener failing = mock(RequestLogListener.class);
+        doThrow(new IllegalStateException("boom")).when(failing).onRequestLogged(any(RequestHistory.class));
+        ReflectionTestUtils.setField(requestHistoryService, "requestLogListeners", List.of(failing, listener));
+        when(requestLogSampler.sampleWeight("/api/test", "200", null, 150L)).thenReturn(RequestLogSampler.SKIP);
+
+        // Act
+        requestHistoryService.logRequestAsync(
+                "/api/test", "GET", null, null,
+                "200", null, null, 150L,
+                "192.168.1.1", "Mozilla/5.0"
+        );
+
+        // Assert
+        ArgumentCaptor<RequestHistory> captor = ArgumentCaptor.forClass(RequestHistory.class);
+        verify(listener).onRequestLogged(captor.capture());
+        assertEquals("/api/test", captor.getValue().getEndpoint());
+        assertEquals(RequestLogSampler.SKIP, captor.getValue().getSampleWeight());
+        verify(requestHistoryWriter, never()).enqueue(any(RequestHistory.class));
+    }
+
+    @Test
+    void cleanOldRecords_ShouldReturnDeletedCount_WhenCalled() throws Exception {
+        // Arrange
+        when(retentionService.run(any(LocalDateTime.class)))
+                .thenReturn(new RequestHistoryRetentionService.RetentionResult(3, 0, 5, 0, 0, 0));
 
         // Act
         CompletableFuture<Integer> result = requestHistoryService.cleanOldRecords();
 
         // Assert
-        assertNotNull(result);
-        verify(requestHistoryRepository, timeout(1000)).deleteOldRecords(any(LocalDateTime.class));
+        assertEquals(5, result.get());
+        verify(retentionService).run(any(LocalDateTime.class));
+        verify(requestHistoryRepository, never()).deleteOldRecords(any(LocalDateTime.class));
     }
 
     @Test
-    void cleanOldRecords_ShouldHandleException_WhenRepositoryThrowsException() {
+    void cleanOldRecords_ShouldReturnDroppedPartitions_WhenPartitioningIsActive() throws Exception {
         // Arrange
-        when(requestHistoryRepository.deleteOldRecords(any(LocalDateTime.class)))
+        when(retentionService.run(any(LocalDateTime.class)))
+                .thenReturn(new RequestHistoryRetentionService.RetentionResult(3, 1, 0, 2, 0, 0));
+
+        // Act
+        Integer result = requestHistoryService.cleanOldRecords().get();
+
+        // Assert
+        assertEquals(2, result);
+    }
+
+    @Test
+    void cleanOldRecords_ShouldHandleException_WhenRetentionFails() throws Exception {
+        // Arrange
+        when(retentionService.run(any(LocalDateTime.class)))
                 .thenThrow(new RuntimeException("Database error"));
 
         // Act
         CompletableFuture<Integer> result = requestHistoryService.cleanOldRecords();
 
         // Assert
-        assertNotNull(result);
-        verify(requestHistoryRepository, timeout(1000)).deleteOldRecords(any(LocalDateTime.class));
+        assertEquals(0, result.get());
+    }
+
+    @Test
+    void getRequestDetail_ShouldResolveBodies_WhenRequestExists() {
+        // Arrange
+        when(requestHistoryRepository.findById(1L)).thenReturn(Optional.of(testRequestHistory));
+        when(bodyStore.resolveBodies(testRequestHistory)).thenReturn(testRequestHistory);
+
+        // Act
+        Optional<RequestHistory> result = requestHistoryService.getRequestDetail(1L);
+
+        // Assert
+        assertTrue(result.isPresent());
+        verify(bodyStore).resolveBodies(testRequestHistory);
+    }
+
+    @Test
+    void getRequestDetail_ShouldReturnEmpty_WhenRequestDoesNotExist() {
+        // Arrange
+        when(requestHistoryRepository.findById(99L)).thenReturn(Optional.empty());
+
+        // Act
+        Optional<RequestHistory> result = requestHistoryService.getRequestDetail(99L);
+
+        // Assert
+        assertTrue(result.isEmpty());
+        verifyNoInteractions(bodyStore);
     }
 
     @Test
-    void getTotalRequests_ShouldReturnCount_WhenCalled() {
+    void getTotalRequests_ShouldReturnExactCount_FromAggregator() {
         // Arrange
-        long expectedCount = 100L;
-        when(requestHistoryRepository.count()).thenReturn(expectedCount);
+        RequestStatisticsResponse snapshot = new RequestStatisticsResponse();
+        snapshot.setTotalRequests(100L);
+        when(statisticsAggregator.snapshot()).thenReturn(snapshot);
 
         // Act
         long result = requestHistoryService.getTotalRequests();
 
         // Assert
-        assertEquals(expectedCount, result);
-        verify(requestHistoryRepository).count();
+        assertEquals(100L, result);
+        verifyNoInteractions(requestHistoryRepository);
     }
 
     @Test
@@ -241,9 +539,7 @@ class RequestHistoryServiceTest {
         Pageable pageable = PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "requestDate"));
         Page<RequestHistory> expectedPage = new PageImpl<>(Arrays.asList(testRequestHistory), pageable, 1);
         
-        when(requestHistoryRepository.findByEndpointContainingIgnoreCaseOrderByRequestDateDesc(
-                "/api/test", pageable
-        )).thenReturn(expectedPage);
+        when(requestHistoryRepository.findAll(any(Specification.class), eq(pageable))).thenReturn(expectedPage);
 
         // Act
         Page<RequestHistory> result = requestHistoryService.getRequestsByEndpoint("/api/test", 0, 20);
@@ -251,9 +547,8 @@ class RequestHistoryServiceTest {
         // Assert
         assertNotNull(result);
         assertEquals(1, result.getContent().size());
-        verify(requestHistoryRepository).findByEndpointContainingIgnoreCaseOrderByRequestDateDesc(
-                "/api/test", pageable
-        );
+        verify(requestHistoryRepository).findAll(any(Specification.class), eq(pageable));
+        verifyNoInteractions(dictionary);
     }
 
     @Test
@@ -0,0 +1,83 @@
+package com.tokenlabs.service;
+
+import com.tokenlabs.model.RequestHistory;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestHistoryWalCodecTest {
+
+    @Test
+    void decode_ShouldRestoreEveryField_WhenEncoded() {
+        // Arrange
+        RequestHistory history = new RequestHistory();
+        history.setRequestDate(LocalDateTime.of(2025, 3, 14, 15, 9, 26, 535_897_000));
+        history.setEndpoint("/api/v1/calculate");
+        history.setHttpMethod("POST");
+        history.setRequestBody("{\"firstNumber\": 10, \"secondNumber\": 20}");
+        history.setResponseStatus("503");
+        history.setErrorMessage("Servicio externo no disponible – reintente");
+        history.setExecutionTimeMs(1234L);
+        history.setClientIp("203.0.113.195");
+        history.setSampleWeight(10.0);
+        history.setHandlerMicros(1_200_000L);
+        history.setExternalFetchMicros(1_150_000L);
+        history.setDbInsertMicros(0L);
+        history.setSerializationMicros(85L);
+
+        // Act
+        RequestHistory decoded = RequestHistoryWalCodec.decode(RequestHistoryWalCodec.VERSION,
+                RequestHistoryWalCodec.encode(history));
+
+        // Assert
+        assertEquals(history.getRequestDate(), decoded.getRequestDate());
+        assertEquals(history.getEndpoint(), decoded.getEndpoint());
+        assertEquals(history.getHttpMethod(), decoded.getHttpMethod());
+        assertNull(decoded.getRequestParameters());
+        assertEquals(history.getRequestBody(), decoded.getRequestBody());
+        assertEquals(history.getResponseStatus(), decoded.getResponseStatus());
+        assertNull(decoded.getResponseBody());
+        assertEquals(history.getErrorMessage(), decoded.getErrorMessage());
+        assertEquals(1234L, decoded.getExecutionTimeMs());
+        assertEquals(history.getClientIp(), decoded.getClientIp());
+        assertNull(decoded.getUserAgent());
+        assertEquals(10.0, decoded.getSampleWeight());
+        assertEquals(1_200_000L, decoded.getHandlerMicros());
+        assertEquals(1_150_000L, decoded.getExternalFetchMicros());
+        assertEquals(0L, decoded.getDbInsertMicros());
+        assertEquals(85L, decoded.getSerializationMicros());
+        assertNull(decoded.getTotalMicros());
+    }
+
+    @Test
+    void decode_ShouldReadRecordWithoutPhaseTimings_WhenWrittenWithVersion1() {
+        // Arrange: la versión 1 es la 2 sin los cinco indicadores de tiempos por fase
+        RequestHistory history = new RequestHistory();
+        history.setEndpoint("/api/v1/calculate");
+        history.setExecutionTimeMs(7L);
+        byte[] current = RequestHistoryWalCodec.encode(history);
+        byte[] version1 = Arrays.copyOf(current, current.length - 5);
+
+        // Act
+        RequestHistory decoded = RequestHistoryWalCodec.decode(RequestHistoryWalCodec.VERSION_1, version1);
+
+        // Assert
+        assertEquals("/api/v1/calculate", decoded.getEndpoint());
+        assertEquals(7L, decoded.getExecutionTimeMs());
+        assertNull(decoded.getTotalMicros());
+    }
+
+    @Test
+    void decode_ShouldRejectRecord_WhenVersionIsUnknown() {
+        // Arrange
+        byte[] payload = RequestHistoryWalCodec.encode(new RequestHistory());
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> RequestHistoryWalCodec.decode((byte) 99, payload));
+        assertThrows(IllegalArgumentException.class,
+                () -> RequestHistoryWalCodec.decode(RequestHistoryWalCodec.VERSION, new byte[3]));
+    }
+}
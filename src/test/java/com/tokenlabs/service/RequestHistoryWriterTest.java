@@ -0,0 +1,371 @@
+package com.tokenlabs.service;
+
+import com.tokenlabs.model.RequestHistory;
+import com.tokenlabs.repository.RequestHistoryBatchRepository;
+import com.tokenlabs.util.WriteAheadLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RequestHistoryWriterTest {
+
+    @Mock
+    private RequestHistoryBatchRepository batchRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private RequestHistoryWriter writer;
+    private WriteAheadLog writeAheadLog;
+
+    @TempDir
+    Path walDirectory;
+    private final List<List<String>> insertedBatches = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        lenient().when(batchRepository.insertAll(anyList())).thenAnswer(invocation -> {
+            List<RequestHistory> batch = invocation.getArgument(0);
+            synchronized (insertedBatches) {
+                insertedBatches.add(batch.stream().map(RequestHistory::getEndpoint).toList());
+            }
+            return batch.size();
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (writer != null) {
+            writer.stop();
+        }
+        if (writeAheadLog != null) {
+            writeAheadLog.close();
+        }
+    }
+
+    @Test
+    void enqueue_ShouldFlushBatch_WhenBatchSizeIsReached() {
+        // Arrange
+        writer = newWriter(100, 3, Duration.ofSeconds(30), RequestHistoryWriter.OverflowPolicy.DROP_NEWEST);
+        writer.start();
+
+        // Act
+        writer.enqueue(history("/a"));
+        writer.enqueue(history("/b"));
+        writer.enqueue(history("/c"));
+
+        // Assert: no espera al intervalo de 30 s
+        verify(batchRepository, timeout(2000)).insertAll(anyList());
+        assertEquals(List.of(List.of("/a", "/b", "/c")), awaitBatches(1));
+        long deadline = System.currentTimeMillis() + 2000;
+        while (counter("flushed") < 3.0 && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(3.0, counter("flushed"));
+    }
+
+    @Test
+    void enqueue_ShouldFlushPartialBatch_WhenFlushIntervalElapses() {
+        // Arrange
+        writer = newWriter(100, 500, Duration.ofMillis(50), RequestHistoryWriter.OverflowPolicy.DROP_NEWEST);
+        writer.start();
+
+        // Act
+        writer.enqueue(history("/a"));
+        writer.enqueue(history("/b"));
+
+        // Assert
+        verify(batchRepository, timeout(2000)).insertAll(anyList());
+        assertEquals(List.of(List.of("/a", "/b")), awaitBatches(1));
+    }
+
+    @Test
+    void enqueue_ShouldDropNewest_WhenQueueIsFull() {
+        // Arrange: el escritor no se inicia para que la cola se llene
+        writer = newWriter(2, 10, Duration.ofMillis(50), RequestHistoryWriter.OverflowPolicy.DROP_NEWEST);
+
+        // Act
+        boolean first = writer.enqueue(history("/a"));
+        boolean second = writer.enqueue(history("/b"));
+        boolean third = writer.enqueue(history("/c"));
+
+        // Assert
+        assertTrue(first);
+        assertTrue(second);
+        assertFalse(third);
+        assertEquals(2, writer.getQueueSize());
+        assertEquals(2.0, counter("enqueued"));
+        assertEquals(1.0, droppedCounter("queue_full"));
+    }
+
+    @Test
+    void enqueue_ShouldDropOldest_WhenQueueIsFull() {
+        // Arrange
+        writer = newWriter(2, 10, Duration.ofMillis(50), RequestHistoryWriter.OverflowPolicy.DROP_OLDEST);
+
+        // Act
+        writer.enqueue(history("/a"));
+        writer.enqueue(history("/b"));
+        boolean third = writer.enqueue(history("/c"));
+        writer.start();
+
+        // Assert
+        assertTrue(third);
+        verify(batchRepository, timeout(2000)).insertAll(anyList());
+        assertEquals(List.of(List.of("/b", "/c")), awaitBatches(1));
+        assertEquals(1.0, droppedCounter("queue_full"));
+    }
+
+    @Test
+    void enqueue_ShouldWaitThenDrop_WhenPolicyIsBlockAndQueueStaysFull() {
+        // Arrange
+        writer = newWriter(1, 10, Duration.ofMillis(50), RequestHistoryWriter.OverflowPolicy.BLOCK);
+        writer.enqueue(history("/a"));
+
+        // Act
+        long start = System.nanoTime();
+        boolean accepted = writer.enqueue(history("/b"));
+        long waitedMs = (System.nanoTime() - start) / 1_000_000;
+
+        // Assert
+        assertFalse(accepted);
+        assertTrue(waitedMs >= 40, "Esperó " + waitedMs + " ms");
+        assertEquals(1.0, droppedCounter("queue_full"));
+    }
+
+    @Test
+    void flush_ShouldCountDroppedRecords_WhenInsertFails() {
+        // Arrange
+        when(batchRepository.insertAll(anyList())).thenThrow(new RuntimeException("Database error"));
+        writer = newWriter(100, 2, Duration.ofMillis(50), RequestHistoryWriter.OverflowPolicy.DROP_NEWEST);
+        writer.start();
+
+        // Act
+        writer.enqueue(history("/a"));
+        writer.enqueue(history("/b"));
+
+        // Assert
+        verify(batchRepository, timeout(2000)).insertAll(anyList());
+        long deadline = System.currentTimeMillis() + 2000;
+        while (droppedCounter("flush_error") < 2.0 && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(2.0, droppedCounter("flush_error"));
+        assertEquals(0.0, counter("flushed"));
+    }
+
+    @Test
+    void stop_ShouldFlushPendingRecords() {
+        // Arrange
+        writer = newWriter(100, 500, Duration.ofSeconds(30), RequestHistoryWriter.OverflowPolicy.DROP_NEWEST);
+        writer.start();
+        writer.enqueue(history("/a"));
+
+        // Act
+        writer.stop();
+
+        // Assert
+        verify(batchRepository).insertAll(anyList());
+        assertEquals(List.of(List.of("/a")), batches());
+        assertEquals(0, writer.getQueueSize());
+    }
+
+    @Test
+    void enqueue_ShouldAppendToLogAndReplayIntoDatabase_WhenWriteAheadLogIsEnabled() throws IOException {
+        // Arrange
+        writer = newWriter(100, 2, Duration.ofMillis(50), RequestHistoryWriter.OverflowPolicy.DROP_NEWEST);
+        writer.setWriteAheadLog(openLog());
+        writer.start();
+
+        // Act
+        writer.enqueue(history("/a"));
+        writer.enqueue(history("/b"));
+        writer.enqueue(history("/c"));
+
+        // Assert
+        verify(batchRepository, timeout(2000).atLeast(2)).insertAll(anyList());
+        awaitPendingBytes(0);
+        assertEquals(List.of("/a", "/b", "/c"), batches().stream().flatMap(List::stream).toList());
+        assertEquals(0, writer.getQueueSize());
+        assertEquals(0.0, counter("wal.append.errors"));
+    }
+
+    @Test
+    void replay_ShouldKeepRecordsInLogAndRetry_WhenDatabaseIsDown() throws IOException {
+        // Arrange
+        doThrow(new RuntimeException("Connection refused"))
+                .doAnswer(invocation -> {
+                    List<RequestHistory> batch = invocation.getArgument(0);
+                    synchronized (insertedBatches) {
+                        insertedBatches.add(batch.stream().map(RequestHistory::getEndpoint).toList());
+                    }
+                    return batch.size();
+                })
+                .when(batchRepository).insertAll(anyList());
+        writer = newWriter(100, 10, Duration.ofMillis(20), RequestHistoryWriter.OverflowPolicy.DROP_NEWEST);
+        writer.setWriteAheadLog(openLog());
+        writer.start();
+
+        // Act
+        writer.enqueue(history("/a"));
+        writer.enqueue(history("/b"));
+
+        // Assert: el primer intento falla, el reintento inserta todo sin descartar
+        verify(batchRepository, timeout(5000).times(2)).insertAll(anyList());
+        awaitPendingBytes(0);
+        assertEquals(List.of(List.of("/a", "/b")), awaitBatches(1));
+        assertEquals(1.0, counter("wal.replay.errors"));
+        assertEquals(0.0, droppedCounter("flush_error"));
+    }
+
+    @Test
+    void replay_ShouldRetryCheckpointWithoutReinserting_WhenAcknowledgeFails() throws IOException {
+        // Arrange: un directorio en lugar del fichero temporal hace fallar el checkpoint
+        Path blockedCheckpoint = Files.createDirectories(walDirectory.resolve("checkpoint.tmp"));
+        Files.createFile(blockedCheckpoint.resolve("blocker"));
+        writer = newWriter(100, 10, Duration.ofMillis(20), RequestHistoryWriter.OverflowPolicy.DROP_NEWEST);
+        writer.setWriteAheadLog(openLog());
+        writer.start();
+
+        // Act
+        writer.enqueue(history("/a"));
+        long deadline = System.currentTimeMillis() + 2000;
+        while (counter("wal.checkpoint.errors") == 0 && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        Files.delete(blockedCheckpoint.resolve("blocker"));
+        Files.delete(blockedCheckpoint);
+
+        // Assert: el lote no se vuelve a insertar y el checkpoint se guarda al reintentarlo
+        awaitPendingBytes(0);
+        assertEquals(List.of(List.of("/a")), batches());
+        assertTrue(counter("wal.checkpoint.errors") >= 1.0);
+        assertEquals(0.0, counter("wal.replay.errors"));
+    }
+
+    @Test
+    void flush_ShouldNotifyInsertListeners_OnlyAfterSuccessfulInsert() {
+        // Arrange
+        List<String> notified = new ArrayList<>();
+        RequestHistoryInsertListener failing = batch -> {
+            throw new IllegalStateException("listener error");
+        };
+        RequestHistoryInsertListener recording = batch -> {
+            synchronized (notified) {
+                batch.forEach(history -> notified.add(history.getEndpoint()));
+            }
+        };
+        when(batchRepository.insertAll(anyList()))
+                .thenThrow(new RuntimeException("Database error"))
+                .thenReturn(1);
+        writer = newWriter(100, 1, Duration.ofMillis(20), RequestHistoryWriter.OverflowPolicy.DROP_NEWEST);
+        writer.setInsertListeners(List.of(failing, recording));
+        writer.start();
+
+        // Act
+        writer.enqueue(history("/lost"));
+        verify(batchRepository, timeout(2000)).insertAll(anyList());
+        writer.enqueue(history("/saved"));
+
+        // Assert: el listener que falla no impide avisar al siguiente
+        verify(batchRepository, timeout(2000).times(2)).insertAll(anyList());
+        long deadline = System.currentTimeMillis() + 2000;
+        while (System.currentTimeMillis() < deadline) {
+            synchronized (notified) {
+                if (!notified.isEmpty()) {
+                    break;
+                }
+            }
+            Thread.onSpinWait();
+        }
+        synchronized (notified) {
+            assertEquals(List.of("/saved"), notified);
+        }
+    }
+
+    @Test
+    void start_ShouldReplayRecordsLeftInLog_WhenPreviousRunStoppedBeforeReplaying() throws IOException {
+        // Arrange: registros escritos por una ejecución anterior que no llegó a replicarlos
+        try (WriteAheadLog previousRun = WriteAheadLog.open(walDirectory, 4096, 1 << 20)) {
+            previousRun.append(RequestHistoryWalCodec.VERSION, RequestHistoryWalCodec.encode(history("/before-crash")));
+        }
+        writer = newWriter(100, 10, Duration.ofMillis(20), RequestHistoryWriter.OverflowPolicy.DROP_NEWEST);
+        writer.setWriteAheadLog(openLog());
+
+        // Act
+        writer.start();
+
+        // Assert
+        verify(batchRepository, timeout(2000)).insertAll(anyList());
+        assertEquals(List.of(List.of("/before-crash")), awaitBatches(1));
+    }
+
+    private WriteAheadLog openLog() throws IOException {
+        writeAheadLog = WriteAheadLog.open(walDirectory, 4096, 1 << 20);
+        return writeAheadLog;
+    }
+
+    private void awaitPendingBytes(long expected) {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (writeAheadLog.getPendingBytes() != expected && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(expected, writeAheadLog.getPendingBytes());
+    }
+
+    private RequestHistoryWriter newWriter(int capacity, int batchSize, Duration flushInterval,
+                                           RequestHistoryWriter.OverflowPolicy policy) {
+        return new RequestHistoryWriter(batchRepository, meterRegistry, capacity, batchSize, flushInterval,
+                policy, Duration.ofMillis(50), Duration.ofSeconds(5));
+    }
+
+    /**
+     * Mockito registra la invocación antes de ejecutar la respuesta, así que verify(timeout) puede
+     * pasar antes de que el lote quede anotado en insertedBatches.
+     */
+    private List<List<String>> awaitBatches(int expected) {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (batches().size() < expected && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        return batches();
+    }
+
+    private List<List<String>> batches() {
+        synchronized (insertedBatches) {
+            return List.copyOf(insertedBatches);
+        }
+    }
+
+    private double counter(String name) {
+        return meterRegistry.get(RequestHistoryWriter.METRIC_PREFIX + "." + name).counter().count();
+    }
+
+    private double droppedCounter(String reason) {
+        return meterRegistry.get(RequestHistoryWriter.METRIC_PREFIX + ".dropped").tag("reason", reason).counter().count();
+    }
+
+    private static RequestHistory history(String endpoint) {
+        RequestHistory history = new RequestHistory();
+        history.setEndpoint(endpoint);
+        history.setHttpMethod("GET");
+        history.setResponseStatus("200");
+        return history;
+    }
+}
@@ -0,0 +1,90 @@
+package com.tokenlabs.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestLogSamplerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private RequestLogSampler sampler(double defaultRate, String rates) {
+        return new RequestLogSampler(meterRegistry, defaultRate, rates, Duration.ofSeconds(1));
+    }
+
+    @Test
+    void sampleWeight_ShouldKeepErrors_WhenRateIsZero() {
+        // Arrange
+        RequestLogSampler sampler = sampler(0.0, "");
+
+        // Act & Assert
+        assertEquals(1.0, sampler.sampleWeight("/api/v1/calculate", "400", null, 10L));
+        assertEquals(1.0, sampler.sampleWeight("/api/v1/calculate", "503", null, 10L));
+        assertEquals(1.0, sampler.sampleWeight("/api/v1/calculate", "200", "Timeout", 10L));
+        assertEquals(3.0, meterRegistry.get("request_history.sampling.kept").tag("reason", "error").counter().count());
+    }
+
+    @Test
+    void sampleWeight_ShouldKeepSlowRequests_WhenOverThreshold() {
+        // Arrange
+        RequestLogSampler sampler = sampler(0.0, "");
+
+        // Act & Assert
+        assertEquals(1.0, sampler.sampleWeight("/api/v1/calculate", "200", null, 1000L));
+        assertEquals(RequestLogSampler.SKIP, sampler.sampleWeight("/api/v1/calculate", "200", null, 999L));
+        assertEquals(1.0, meterRegistry.get("request_history.sampling.skipped").counter().count());
+    }
+
+    @Test
+    void sampleWeight_ShouldReturnInverseRate_WhenRequestIsSampled() {
+        // Arrange
+        RequestLogSampler sampler = sampler(1.0, "/api/v1/calculate=0.1");
+        int samples = 20_000;
+        double weightSum = 0.0;
+        int kept = 0;
+
+        // Act
+        for (int i = 0; i < samples; i++) {
+            double weight = sampler.sampleWeight("/api/v1/calculate", "200", null, 5L);
+            if (weight != RequestLogSampler.SKIP) {
+                assertEquals(10.0, weight, 1e-9);
+                weightSum += weight;
+                kept++;
+            }
+        }
+
+        // Assert
+        assertTrue(kept > 1_500 && kept < 2_500, "guardados: " + kept);
+        assertEquals(samples, weightSum, samples * 0.1); // el total estimado se mantiene
+    }
+
+    @Test
+    void rateFor_ShouldPreferExactPathThenLongestPrefix_WhenSeveralPatternsMatch() {
+        // Arrange
+        RequestLogSampler sampler = sampler(0.5, "/api/*=0.2, /api/v1/*=0.3, /api/v1/calculate=0.05");
+
+        // Act & Assert
+        assertEquals(0.05, sampler.rateFor("/api/v1/calculate"));
+        assertEquals(0.3, sampler.rateFor("/api/v1/calculate/async"));
+        assertEquals(0.2, sampler.rateFor("/api/v2/history"));
+        assertEquals(0.5, sampler.rateFor("/actuator/health"));
+    }
+
+    @Test
+    void constructor_ShouldRejectInvalidRates_WhenConfigured() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> sampler(1.5, ""));
+        assertThrows(IllegalArgumentException.class, () -> sampler(1.0, "/api/v1/calculate=2"));
+        assertThrows(IllegalArgumentException.class, () -> sampler(1.0, "/api/v1/calculate"));
+        assertThrows(IllegalArgumentException.class, () -> sampler(1.0, "/api/v1/calculate=abc"));
+    }
+}
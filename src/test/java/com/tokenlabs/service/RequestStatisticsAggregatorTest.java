@@ -0,0 +1,305 @@
+package com.tokenlabs.service;
+
+import com.tokenlabs.dto.RequestStatisticsResponse;
+import com.tokenlabs.model.RequestHistory;
+import com.tokenlabs.repository.RequestHistoryRollupRepository;
+import com.tokenlabs.repository.RequestHistoryRollupRepository.Dimension;
+import com.tokenlabs.repository.RequestStatisticsSummaryRepository;
+import com.tokenlabs.repository.RequestStatisticsSummaryRepository.SummaryRow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RequestStatisticsAggregatorTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2025-01-07T14:00:00Z"), ZoneOffset.UTC);
+    private static final LocalDateTime NOW = LocalDateTime.now(CLOCK);
+
+    @Mock
+    private RequestStatisticsSummaryRepository summaryRepository;
+
+    @Mock
+    private RequestHistoryRollupRepository rollupRepository;
+
+    private RequestStatisticsAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        aggregator = new RequestStatisticsAggregator(summaryRepository, rollupRepository, "node-a", 3, CLOCK);
+    }
+
+    @Test
+    void snapshot_ShouldCountEveryRequest_IncludingUnsampledOnes() {
+        // Arrange
+        aggregator.onRequestLogged(request("/api/v1/calculate", "POST", "200", null, 100L, 1.0));
+        aggregator.onRequestLogged(request("/api/v1/calculate", "POST", "200", null, 300L, 0.0));
+        aggregator.onRequestLogged(request("/api/v1/calculate", "POST", "500", "boom", 50L, 1.0));
+        aggregator.onRequestLogged(request("/api/v1/history", "GET", "200", null, 20L, 1.0));
+
+        // Act
+        RequestStatisticsResponse result = aggregator.snapshot();
+
+        // Assert
+        assertEquals(4, result.getTotalRequests());
+        assertEquals(3, result.getStoredRequests());
+        assertEquals(List.of("/api/v1/calculate", "/api/v1/history"), List.copyOf(result.getRequestsByEndpoint().keySet()));
+        assertEquals(3L, result.getRequestsByEndpoint().get("/api/v1/calculate"));
+        assertEquals(3L, result.getRequestsByHttpMethod().get("POST"));
+        assertEquals(3L, result.getRequestsByResponseStatus().get("200"));
+        assertEquals(1L, result.getErrorsByEndpoint().get("/api/v1/calculate"));
+        assertFalse(result.getErrorsByEndpoint().containsKey("/api/v1/history"));
+        RequestStatisticsResponse.ExecutionTimeStats calculate = result.getExecutionTimeStats().get("/api/v1/calculate");
+        assertEquals(150.0, calculate.getAverage(), 0.001);
+        assertEquals(50L, calculate.getMin());
+        assertEquals(300L, calculate.getMax());
+        verifyNoInteractions(summaryRepository, rollupRepository);
+    }
+
+    @Test
+    void snapshot_ShouldAveragePhases_OnlyOverTimedRequests() {
+        // Arrange
+        RequestHistory timed = request("/api/v1/calculate", "POST", "200", null, 1L, 1.0);
+        timed.setHandlerMicros(800L);
+        timed.setExternalFetchMicros(500L);
+        timed.setDbInsertMicros(100L);
+        timed.setSerializationMicros(50L);
+        timed.setTotalMicros(1_000L);
+        aggregator.onRequestLogged(timed);
+        aggregator.onRequestLogged(request("/api/v1/calculate", "POST", "200", null, 1L, 1.0));
+
+        // Act
+        RequestStatisticsResponse.PhaseBreakdown result = aggregator.snapshot()
+                .getPhaseBreakdownByEndpoint().get("/api/v1/calculate");
+
+        // Assert
+        assertEquals(1, result.getTimedRequests());
+        assertEquals(800.0, result.getHandlerMicros(), 0.001);
+        assertEquals(1_000.0, result.getTotalMicros(), 0.001);
+    }
+
+    @Test
+    void onRequestLogged_ShouldGroupValuesBeyondLimit_IntoOther() {
+        // Arrange
+        for (String endpoint : List.of("/a", "/b", "/c", "/d", "/e")) {
+            aggregator.onRequestLogged(request(endpoint, "GET", "200", null, 1L, 1.0));
+        }
+
+        // Act
+        RequestStatisticsResponse result = aggregator.snapshot();
+
+        // Assert
+        assertEquals(4, result.getRequestsByEndpoint().size());
+        assertEquals(2L, result.getRequestsByEndpoint().get(RequestStatisticsAggregator.OTHER_VALUE));
+        assertEquals(5, result.getTotalRequests());
+    }
+
+    @Test
+    void checkpoint_ShouldLoadOwnRowsAndAddOtherNodes_WhenTableHasRows() {
+        // Arrange
+        SummaryRow own = row("node-a", Dimension.ENDPOINT, "/api/v1/calculate", 10, 2);
+        SummaryRow other = row("node-b", Dimension.ENDPOINT, "/api/v1/calculate", 5, 1);
+        when(summaryRepository.findAll()).thenReturn(List.of(own, other));
+        aggregator.onRequestLogged(request("/api/v1/calculate", "POST", "200", null, 100L, 1.0));
+
+        // Act
+        aggregator.checkpoint();
+        RequestStatisticsResponse result = aggregator.snapshot();
+
+        // Assert
+        assertEquals(16, result.getTotalRequests());
+        assertEquals(3L, result.getErrorsByEndpoint().get("/api/v1/calculate"));
+        assertEquals(NOW, result.getCheckpointedAt());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<SummaryRow>> saved = ArgumentCaptor.forClass(List.class);
+        verify(summaryRepository).saveAll(saved.capture(), eq(NOW));
+        SummaryRow savedEndpoint = saved.getValue().stream()
+                .filter(row -> row.dimension() == Dimension.ENDPOINT).findFirst().orElseThrow();
+        assertEquals("node-a", savedEndpoint.nodeId());
+        assertEquals(11, savedEndpoint.requests());
+        verifyNoInteractions(rollupRepository);
+    }
+
+    @Test
+    void checkpoint_ShouldSeedFromRollups_WhenTableIsEmpty() {
+        // Arrange
+        RequestHistoryRollupRepository.Coverage coverage = new RequestHistoryRollupRepository.Coverage(
+                RequestHistoryRollupRepository.NO_COVERAGE, NOW.minusHours(1));
+        when(summaryRepository.findAll()).thenReturn(List.of());
+        when(rollupRepository.findCoverage()).thenReturn(coverage);
+        when(rollupRepository.countRequestsBy(any(Dimension.class), eq(coverage))).thenReturn(List.of());
+        when(rollupRepository.countRequestsBy(Dimension.ENDPOINT, coverage))
+                .thenReturn(List.<Object[]>of(new Object[]{"/api/v1/calculate", 40L}));
+        when(rollupRepository.countErrorsByEndpoint(coverage))
+                .thenReturn(List.<Object[]>of(new Object[]{"/api/v1/calculate", 4L}));
+        when(rollupRepository.getExecutionTimeStatsByEndpoint(coverage))
+                .thenReturn(List.<Object[]>of(new Object[]{"/api/v1/calculate", 25.0, 5L, 90L}));
+        when(rollupRepository.getPhaseBreakdownByEndpoint(coverage)).thenReturn(List.of());
+
+        // Act
+        aggregator.checkpoint();
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<SummaryRow>> saved = ArgumentCaptor.forClass(List.class);
+        verify(summaryRepository, times(2)).saveAll(saved.capture(), eq(NOW));
+        SummaryRow seed = saved.getAllValues().get(0).get(0);
+        assertEquals(RequestStatisticsAggregator.SEED_NODE, seed.nodeId());
+        assertEquals(40, seed.requests());
+        assertEquals(4, seed.errors());
+        assertEquals(1_000, seed.executionTimeSum());
+        assertEquals(5L, seed.minExecutionTimeMs());
+    }
+
+    @Test
+    void checkpoint_ShouldKeepCounters_WhenDatabaseFails() {
+        // Arrange
+        aggregator.onRequestLogged(request("/api/v1/calculate", "POST", "200", null, 100L, 1.0));
+        when(summaryRepository.findAll())
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenReturn(List.of(row("node-a", Dimension.ENDPOINT, "/api/v1/calculate", 10, 0)));
+
+        // Act
+        aggregator.checkpoint();
+        long beforeLoad = aggregator.snapshot().getTotalRequests();
+        aggregator.checkpoint();
+
+        // Assert
+        assertEquals(1, beforeLoad);
+        assertEquals(11, aggregator.snapshot().getTotalRequests());
+        verify(summaryRepository, times(1)).saveAll(anyList(), any(LocalDateTime.class));
+    }
+
+    @Test
+    void onRequestLogged_ShouldNotLoseCounts_UnderConcurrentUpdates() throws Exception {
+        // Arrange
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Runnable> tasks = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            tasks.add(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    aggregator.onRequestLogged(request("/api/v1/calculate", "POST", "200", null, 1L, 1.0));
+                }
+            });
+        }
+
+        // Act
+        tasks.forEach(executor::execute);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        // Assert
+        assertEquals(40_000, aggregator.snapshot().getTotalRequests());
+    }
+
+    @Test
+    void mergeCluster_ShouldPublishCountersAndClients_AndAddOtherNodes() {
+        // Arrange
+        RedisRequestStatisticsStore clusterStore = mock(RedisRequestStatisticsStore.class);
+        RequestStatisticsAggregator clustered = new RequestStatisticsAggregator(
+                summaryRepository, rollupRepository, "node-a", 3, clusterStore, 100, CLOCK);
+        when(summaryRepository.findAll()).thenReturn(List.of(row("node-b", Dimension.ENDPOINT, "/api/v1/calculate", 5, 0)));
+        when(clusterStore.findNode("node-a")).thenReturn(List.of());
+        when(clusterStore.findAll()).thenReturn(List.of(
+                row("node-a", Dimension.ENDPOINT, "/api/v1/calculate", 2, 0),
+                row("node-b", Dimension.ENDPOINT, "/api/v1/calculate", 8, 0),
+                row("node-c", Dimension.ENDPOINT, "/api/v1/calculate", 4, 0)));
+        when(clusterStore.countClients()).thenReturn(42L);
+        RequestHistory fromClient = request("/api/v1/calculate", "POST", "200", null, 1L, 1.0);
+        fromClient.setClientIp("10.0.0.1");
+        clustered.onRequestLogged(fromClient);
+        clustered.onRequestLogged(fromClient);
+        clustered.checkpoint();
+
+        // Act
+        clustered.mergeCluster();
+        RequestStatisticsResponse result = clustered.snapshot();
+
+        // Assert
+        verify(clusterStore).merge(eq("node-a"), anyList());
+        verify(clusterStore).addClients(List.of("10.0.0.1"));
+        assertEquals(14, result.getTotalRequests());
+        assertEquals(3, result.getClusterNodes());
+        assertEquals(42L, result.getUniqueClients());
+        assertEquals(NOW, result.getClusterMergedAt());
+    }
+
+    @Test
+    void mergeCluster_ShouldKeepCheckpointRowsAndPendingClients_WhenRedisFails() {
+        // Arrange
+        RedisRequestStatisticsStore clusterStore = mock(RedisRequestStatisticsStore.class);
+        RequestStatisticsAggregator clustered = new RequestStatisticsAggregator(
+                summaryRepository, rollupRepository, "node-a", 3, clusterStore, 100, CLOCK);
+        when(summaryRepository.findAll()).thenReturn(List.of(row("node-b", Dimension.ENDPOINT, "/api/v1/calculate", 5, 0)));
+        when(clusterStore.findNode("node-a")).thenReturn(List.of());
+        doThrow(new RedisConnectionFailureException("Redis caído")).when(clusterStore).merge(eq("node-a"), anyList());
+        RequestHistory fromClient = request("/api/v1/calculate", "POST", "200", null, 1L, 1.0);
+        fromClient.setClientIp("10.0.0.1");
+        clustered.onRequestLogged(fromClient);
+        clustered.checkpoint();
+
+        // Act
+        clustered.mergeCluster();
+        clustered.mergeCluster();
+        RequestStatisticsResponse result = clustered.snapshot();
+
+        // Assert
+        verify(clusterStore, times(1)).merge(eq("node-a"), anyList());
+        verify(clusterStore, never()).addClients(anyList());
+        assertEquals(6, result.getTotalRequests());
+        assertNull(result.getUniqueClients());
+        assertNull(result.getClusterMergedAt());
+    }
+
+    @Test
+    void checkpoint_ShouldStartFromNewestOwnState_AcrossDatabaseAndRedis() {
+        // Arrange
+        RedisRequestStatisticsStore clusterStore = mock(RedisRequestStatisticsStore.class);
+        RequestStatisticsAggregator clustered = new RequestStatisticsAggregator(
+                summaryRepository, rollupRepository, "node-a", 3, clusterStore, 100, CLOCK);
+        when(summaryRepository.findAll()).thenReturn(List.of(row("node-a", Dimension.ENDPOINT, "/api/v1/calculate", 90, 0)));
+        when(clusterStore.findNode("node-a")).thenReturn(List.of(row("node-a", Dimension.ENDPOINT, "/api/v1/calculate", 100, 0)));
+
+        // Act
+        clustered.checkpoint();
+
+        // Assert
+        assertEquals(100, clustered.snapshot().getTotalRequests());
+    }
+
+    private static RequestHistory request(String endpoint, String httpMethod, String responseStatus,
+                                          String errorMessage, Long executionTimeMs, double sampleWeight) {
+        RequestHistory request = new RequestHistory();
+        request.setEndpoint(endpoint);
+        request.setHttpMethod(httpMethod);
+        request.setResponseStatus(responseStatus);
+        request.setErrorMessage(errorMessage);
+        request.setExecutionTimeMs(executionTimeMs);
+        request.setSampleWeight(sampleWeight);
+        return request;
+    }
+
+    private static SummaryRow row(String nodeId, Dimension dimension, String value, long requests, long errors) {
+        return new SummaryRow(nodeId, dimension, value, requests, errors, requests, 0, 0, null, null,
+                new long[5], 0);
+    }
+}
@@ -0,0 +1,97 @@
+package com.tokenlabs.service;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark: hilos de plataforma (pool de 200, como Tomcat por defecto) frente a
+ * un hilo virtual por tarea, con la latencia bloqueante de 100 ms del simulador
+ * del servicio externo y 1k, 5k y 10k clientes concurrentes.
+ *
+ * Con 200 hilos de plataforma el techo es ~2000 llamadas/s; con hilos virtuales
+ * el tiempo total se acerca a una sola latencia del simulador.
+ *
+ * Ejecutar con: mvn test -Dtest=VirtualThreadBenchmarkTest -Dbenchmarks=true
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class VirtualThreadBenchmarkTest {
+
+    private static final int PLATFORM_POOL_SIZE = 200;
+
+    private static final Logger simulatorLogger = (Logger) LoggerFactory.getLogger(ExternalServiceFailureSimulator.class);
+    private static Level previousLevel;
+
+    private final ExternalServiceFailureSimulator simulator = new ExternalServiceFailureSimulator();
+
+    @BeforeAll
+    static void silenceSimulator() {
+        // Un log INFO por llamada distorsionaría la medición
+        previousLevel = simulatorLogger.getLevel();
+        simulatorLogger.setLevel(Level.WARN);
+    }
+
+    @AfterAll
+    static void restoreSimulatorLogger() {
+        simulatorLogger.setLevel(previousLevel);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1_000, 5_000, 10_000})
+    void virtualThreads_ShouldOutperformPlatformPool_UnderBlockingLatency(int clients) throws Exception {
+        // Calentamiento
+        run(Executors.newFixedThreadPool(PLATFORM_POOL_SIZE), 400);
+        run(Executors.newVirtualThreadPerTaskExecutor(), 400);
+
+        // Act
+        long platformNanos = run(Executors.newFixedThreadPool(PLATFORM_POOL_SIZE), clients);
+        long virtualNanos = run(Executors.newVirtualThreadPerTaskExecutor(), clients);
+
+        // Assert
+        double platformThroughput = clients / (platformNanos / 1_000_000_000.0);
+        double virtualThroughput = clients / (virtualNanos / 1_000_000_000.0);
+        System.out.printf("%d clientes -> plataforma(%d): %.0f llamadas/s (%d ms), virtuales: %.0f llamadas/s (%d ms), x%.1f%n",
+                clients, PLATFORM_POOL_SIZE, platformThroughput, platformNanos / 1_000_000,
+                virtualThroughput, virtualNanos / 1_000_000, virtualThroughput / platformThroughput);
+        assertTrue(virtualThroughput > platformThroughput,
+                "Se esperaba mayor throughput con hilos virtuales para " + clients + " clientes");
+    }
+
+    /**
+     * Lanza todos los clientes a la vez (barrera de inicio) y mide hasta que
+     * termina el último.
+     */
+    private long run(ExecutorService executor, int clients) throws Exception {
+        CountDownLatch startSignal = new CountDownLatch(1);
+        List<Future<BigDecimal>> futures = new ArrayList<>(clients);
+        try (executor) {
+            for (int i = 0; i < clients; i++) {
+                futures.add(executor.submit(() -> {
+                    startSignal.await();
+                    return simulator.callExternalService();
+                }));
+            }
+            long start = System.nanoTime();
+            startSignal.countDown();
+            for (Future<BigDecimal> future : futures) {
+                assertNotNull(future.get());
+            }
+            return System.nanoTime() - start;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.tokenlabs.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class VirtualThreadPinningMonitorTest {
+
+    private final Object lock = new Object();
+    private VirtualThreadPinningMonitor monitor;
+
+    @AfterEach
+    void tearDown() {
+        if (monitor != null) {
+            monitor.stop();
+        }
+    }
+
+    @Test
+    void start_ShouldNotRecord_WhenDisabled() {
+        // Arrange
+        monitor = new VirtualThreadPinningMonitor(false, Duration.ofMillis(20));
+
+        // Act
+        monitor.start();
+        VirtualThreadPinningMonitor.PinningReport report = monitor.getReport();
+
+        // Assert
+        assertFalse(report.enabled());
+        assertFalse(report.active());
+        assertEquals(0, report.pinnedEvents());
+        assertTrue(report.sites().isEmpty());
+    }
+
+    @Test
+    void record_ShouldReportApplicationSite_WhenVirtualThreadBlocksInsideSynchronized() throws Exception {
+        // A partir de JDK 24 (JEP 491) synchronized ya no fija el hilo virtual
+        assumeTrue(Runtime.version().feature() < 24);
+
+        // Arrange
+        monitor = new VirtualThreadPinningMonitor(true, Duration.ofMillis(10));
+        monitor.start();
+        assumeTrue(monitor.getReport().active(), "JFR no disponible");
+
+        // Act
+        Thread.ofVirtual().start(this::sleepWhileHoldingMonitor).join();
+        long deadline = System.nanoTime() + Duration.ofSeconds(15).toNanos();
+        while (monitor.getPinnedEventCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+
+        // Assert
+        VirtualThreadPinningMonitor.PinningReport report = monitor.getReport();
+        assertTrue(report.pinnedEvents() >= 1);
+        VirtualThreadPinningMonitor.PinningSiteSummary site = report.sites().stream()
+                .filter(s -> s.site().contains("VirtualThreadPinningMonitorTest.sleepWhileHoldingMonitor"))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("Sitio no reportado: " + report.sites()));
+        assertEquals("Application", site.source());
+        assertTrue(site.maxPinnedMicros() >= 10_000);
+    }
+
+    private void sleepWhileHoldingMonitor() {
+        synchronized (lock) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
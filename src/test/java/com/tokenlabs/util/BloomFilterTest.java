@@ -0,0 +1,61 @@
+package com.tokenlabs.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void mightContain_ShouldReturnTrue_WhenKeyWasAdded() {
+        // Arrange
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+
+        // Act
+        for (int i = 0; i < 1000; i++) {
+            filter.put("key-" + i);
+        }
+
+        // Assert
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain("key-" + i));
+        }
+    }
+
+    @Test
+    void mightContain_ShouldKeepFalsePositiveRateNearTarget_WhenFilledToCapacity() {
+        // Arrange
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("seen-" + i);
+        }
+
+        // Act
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("unseen-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        // Assert
+        assertTrue(falsePositives < 300, "Tasa de falsos positivos demasiado alta: " + falsePositives);
+    }
+
+    @Test
+    void constructor_ShouldRejectInvalidParameters_WhenOutOfRange() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 1.5));
+    }
+
+    @Test
+    void constructor_ShouldSizeFilter_WhenParametersAreValid() {
+        // Act
+        BloomFilter filter = new BloomFilter(1_000_000, 0.01);
+
+        // Assert
+        assertTrue(filter.getBitCount() >= 9_585_059L);
+        assertEquals(7, filter.getHashFunctions());
+    }
+}
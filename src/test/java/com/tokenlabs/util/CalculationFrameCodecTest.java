@@ -0,0 +1,100 @@
+package com.tokenlabs.util;
+
+import com.tokenlabs.dto.CalculationRequest;
+import com.tokenlabs.dto.CalculationResponse;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CalculationFrameCodecTest {
+
+    @Test
+    void decodeRequest_ShouldRoundTripIdAndExactDecimals() {
+        // Arrange
+        CalculationRequest request = new CalculationRequest(new BigDecimal("10.50"), new BigDecimal("123456789012345678901234.000001"));
+
+        // Act
+        CalculationFrameCodec.DecodedRequest decoded = CalculationFrameCodec.decodeRequest(
+                CalculationFrameCodec.encodeRequest(42L, request));
+
+        // Assert
+        assertEquals(42L, decoded.id());
+        assertEquals(new BigDecimal("10.50"), decoded.request().getFirstNumber());
+        assertEquals(2, decoded.request().getFirstNumber().scale());
+        assertEquals(new BigDecimal("123456789012345678901234.000001"), decoded.request().getSecondNumber());
+    }
+
+    @Test
+    void encodeRequest_ShouldBeCompact() {
+        // Act
+        ByteBuffer frame = CalculationFrameCodec.encodeRequest(1L,
+                new CalculationRequest(new BigDecimal("10.50"), new BigDecimal("20.25")));
+
+        // Assert: 8 (id) + 2 * (4 scale + 1 len + 2 dígitos)
+        assertEquals(22, frame.remaining());
+    }
+
+    @Test
+    void decodeResponse_ShouldRoundTripAllFields() {
+        // Arrange
+        CalculationResponse response = new CalculationResponse(new BigDecimal("10.50"), new BigDecimal("20.25"),
+                new BigDecimal("15.75"), new BigDecimal("35.59"));
+
+        // Act
+        ByteBuffer frame = CalculationFrameCodec.encodeResponse(7L, response);
+        CalculationResponse decoded = CalculationFrameCodec.decodeResponse(frame);
+
+        // Assert
+        assertEquals(7L, CalculationFrameCodec.peekId(frame));
+        assertEquals(CalculationFrameCodec.STATUS_OK, CalculationFrameCodec.status(frame));
+        assertEquals(response, decoded);
+    }
+
+    @Test
+    void decodeRequest_ShouldRejectTruncatedFrame() {
+        // Arrange
+        ByteBuffer frame = CalculationFrameCodec.encodeRequest(1L,
+                new CalculationRequest(new BigDecimal("1"), new BigDecimal("2")));
+        ByteBuffer truncated = frame.limit(frame.limit() - 1);
+
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> CalculationFrameCodec.decodeRequest(truncated));
+        assertEquals("Frame binario truncado", exception.getMessage());
+        assertEquals(1L, CalculationFrameCodec.peekId(truncated));
+    }
+
+    @Test
+    void decodeRequest_ShouldRejectTrailingBytes() {
+        // Arrange
+        ByteBuffer frame = CalculationFrameCodec.encodeRequest(1L,
+                new CalculationRequest(new BigDecimal("1"), new BigDecimal("2")));
+        ByteBuffer padded = ByteBuffer.allocate(frame.remaining() + 1).put(frame).put((byte) 0).flip();
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> CalculationFrameCodec.decodeRequest(padded));
+    }
+
+    @Test
+    void encodeError_ShouldCarryStatusAndMessage() {
+        // Act
+        ByteBuffer frame = CalculationFrameCodec.encodeError(9L, CalculationFrameCodec.STATUS_OVERLOADED, "Saturado");
+
+        // Assert
+        assertEquals(9L, frame.getLong());
+        assertEquals(CalculationFrameCodec.STATUS_OVERLOADED, frame.get());
+        byte[] message = new byte[frame.getShort()];
+        frame.get(message);
+        assertEquals("Saturado", new String(message, StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class, () -> CalculationFrameCodec.decodeResponse(frame.rewind()));
+    }
+
+    @Test
+    void peekId_ShouldReturnMinusOne_WhenFrameIsTooShort() {
+        assertEquals(-1L, CalculationFrameCodec.peekId(ByteBuffer.allocate(3)));
+    }
+}
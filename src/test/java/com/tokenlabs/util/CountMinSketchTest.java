@@ -0,0 +1,65 @@
+package com.tokenlabs.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountMinSketchTest {
+
+    @Test
+    void estimate_ShouldNeverUnderestimate_AndStayWithinErrorBound() {
+        // Arrange
+        CountMinSketch sketch = new CountMinSketch(512, 4);
+        for (int i = 0; i < 20_000; i++) {
+            sketch.add("client-" + (i % 5_000), 1);
+        }
+        sketch.add("heavy", 3_000);
+
+        // Act
+        long heavy = sketch.estimate("heavy");
+        int overBound = 0;
+        for (int i = 0; i < 5_000; i++) {
+            long estimate = sketch.estimate("client-" + i);
+            assertTrue(estimate >= 4);
+            if (estimate - 4 > Math.E / 512 * sketch.getTotal()) {
+                overBound++;
+            }
+        }
+
+        // Assert
+        assertTrue(heavy >= 3_000);
+        assertTrue(heavy - 3_000 <= Math.E / 512 * sketch.getTotal());
+        assertTrue(overBound < 5_000 * 0.05, "Claves fuera de la cota: " + overBound);
+        assertEquals(23_000, sketch.getTotal());
+    }
+
+    @Test
+    void subtract_ShouldUndoMerge() {
+        // Arrange
+        CountMinSketch window = new CountMinSketch(64, 3);
+        CountMinSketch first = new CountMinSketch(64, 3);
+        CountMinSketch second = new CountMinSketch(64, 3);
+        first.add("/api/v1/calculate", 5);
+        second.add("/api/v1/calculate", 2);
+        second.add("/api/v1/history", 1);
+        window.merge(first);
+        window.merge(second);
+
+        // Act
+        window.subtract(first);
+
+        // Assert
+        assertEquals(3, window.getTotal());
+        assertTrue(window.estimate("/api/v1/calculate") >= 2);
+        assertTrue(window.estimate("/api/v1/calculate") <= 3);
+    }
+
+    @Test
+    void merge_ShouldRejectSketchesWithDifferentDimensions() {
+        // Arrange
+        CountMinSketch sketch = new CountMinSketch(64, 3);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> sketch.merge(new CountMinSketch(32, 3)));
+    }
+}
@@ -0,0 +1,161 @@
+package com.tokenlabs.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InvertedIndexTest {
+
+    @TempDir
+    Path directory;
+
+    private InvertedIndex index;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (index != null) {
+            index.close();
+        }
+    }
+
+    @Test
+    void tokenize_ShouldSplitOnNonWordCharacters_AndLowercase() {
+        // Act
+        List<String> terms = InvertedIndex.tokenize("{\"firstNumber\": 10, \"error\":\"HTTP Error 400\"}", 5);
+
+        // Assert
+        assertEquals(List.of("first", "10", "error", "http", "error", "400"), terms);
+        assertTrue(InvertedIndex.tokenize(null, 64).isEmpty());
+    }
+
+    @Test
+    void search_ShouldFindBufferedDocuments_BeforeRefresh() throws IOException {
+        // Arrange
+        index = InvertedIndex.open(directory, 10);
+        index.add(1, 100, List.of("http", "error", "400"));
+        index.add(2, 101, List.of("http", "error", "500"));
+        index.add(3, 102, List.of("ok"));
+
+        // Act & Assert
+        assertArrayEquals(new long[]{2, 1}, index.search(List.of("error"), Long.MAX_VALUE, 10));
+        assertArrayEquals(new long[]{1}, index.search(List.of("error", "400"), Long.MAX_VALUE, 10));
+        assertArrayEquals(new long[0], index.search(List.of("error", "ok"), Long.MAX_VALUE, 10));
+        assertEquals(0, index.getSegmentCount());
+    }
+
+    @Test
+    void search_ShouldCombineSegmentsAndBuffer_NewestFirst() throws IOException {
+        // Arrange
+        index = InvertedIndex.open(directory, 10);
+        index.add(1, 100, List.of("timeout", "external"));
+        index.add(2, 100, List.of("timeout"));
+        index.refresh();
+        index.add(5, 200, List.of("timeout", "external"));
+
+        // Act
+        long[] firstPage = index.search(List.of("timeout"), Long.MAX_VALUE, 2);
+        long[] secondPage = index.search(List.of("timeout"), firstPage[1], 2);
+
+        // Assert
+        assertEquals(1, index.getSegmentCount());
+        assertArrayEquals(new long[]{5, 2}, firstPage);
+        assertArrayEquals(new long[]{1}, secondPage);
+    }
+
+    @Test
+    void search_ShouldMatchPrefix_WhenTermEndsWithWildcard() throws IOException {
+        // Arrange
+        index = InvertedIndex.open(directory, 10);
+        index.add(1, 100, List.of("calculation"));
+        index.add(2, 100, List.of("calculate"));
+        index.refresh();
+        index.add(3, 100, List.of("calendar"));
+        index.add(4, 100, List.of("cache"));
+
+        // Act & Assert
+        assertArrayEquals(new long[]{3, 2, 1}, index.search(List.of("cal*"), Long.MAX_VALUE, 10));
+        assertArrayEquals(new long[]{2, 1}, index.search(List.of("calcul*"), Long.MAX_VALUE, 10));
+    }
+
+    @Test
+    void open_ShouldLoadPersistedSegments_AndDiscardTemporaryFiles() throws IOException {
+        // Arrange
+        index = InvertedIndex.open(directory, 10);
+        index.add(7, 100, List.of("persisted"));
+        index.refresh();
+        index.add(8, 100, List.of("lost"));
+        index.close();
+        Files.writeString(directory.resolve("99.seg.tmp"), "partial");
+
+        // Act
+        index = InvertedIndex.open(directory, 10);
+
+        // Assert: lo que estaba en el buffer no se persistió
+        assertArrayEquals(new long[]{7}, index.search(List.of("persisted"), Long.MAX_VALUE, 10));
+        assertArrayEquals(new long[0], index.search(List.of("lost"), Long.MAX_VALUE, 10));
+        assertEquals(7, index.getMaxId());
+        assertFalse(Files.exists(directory.resolve("99.seg.tmp")));
+    }
+
+    @Test
+    void open_ShouldFail_WhenDirectoryIsInUse() throws IOException {
+        // Arrange
+        index = InvertedIndex.open(directory, 10);
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> InvertedIndex.open(directory, 10));
+    }
+
+    @Test
+    void refresh_ShouldMergeSegments_WhenMoreThanMergeFactor() throws IOException {
+        // Arrange
+        index = InvertedIndex.open(directory, 3);
+
+        // Act
+        for (int i = 1; i <= 4; i++) {
+            index.add(i, i * 100L, List.of("common", "doc" + i));
+            index.refresh();
+        }
+
+        // Assert
+        assertEquals(2, index.getSegmentCount());
+        assertEquals(2, segmentFiles());
+        assertEquals(4, index.getDocCount());
+        assertArrayEquals(new long[]{4, 3, 2, 1}, index.search(List.of("common"), Long.MAX_VALUE, 10));
+        assertArrayEquals(new long[]{2}, index.search(List.of("doc2"), Long.MAX_VALUE, 10));
+    }
+
+    @Test
+    void deleteBefore_ShouldDropOnlySegmentsEntirelyBeforeTimestamp() throws IOException {
+        // Arrange
+        index = InvertedIndex.open(directory, 10);
+        index.add(1, 100, List.of("old"));
+        index.refresh();
+        index.add(2, 150, List.of("old"));
+        index.add(3, 300, List.of("new"));
+        index.refresh();
+
+        // Act
+        int deleted = index.deleteBefore(200);
+
+        // Assert: el segundo segmento tiene un documento posterior y se conserva
+        assertEquals(1, deleted);
+        assertEquals(1, segmentFiles());
+        assertArrayEquals(new long[]{2}, index.search(List.of("old"), Long.MAX_VALUE, 10));
+        assertEquals(0, index.deleteBefore(200));
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".seg")).count();
+        }
+    }
+}
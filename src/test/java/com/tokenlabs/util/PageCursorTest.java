@@ -0,0 +1,46 @@
+package com.tokenlabs.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageCursorTest {
+
+    @Test
+    void decode_ShouldReturnEncodedPosition() {
+        // Arrange
+        PageCursor cursor = new PageCursor(LocalDateTime.of(2025, 1, 7, 14, 30, 15, 123_456_000), 42L, true);
+
+        // Act
+        String token = cursor.encode();
+        PageCursor decoded = PageCursor.decode(token);
+
+        // Assert
+        assertEquals(cursor, decoded);
+        assertTrue(token.matches("[A-Za-z0-9_-]+"));
+    }
+
+    @Test
+    void first_ShouldStartBeforeAnyRow_InBothDirections() {
+        // Act
+        PageCursor descending = PageCursor.first(true);
+        PageCursor ascending = PageCursor.first(false);
+
+        // Assert
+        assertEquals(PageCursor.MAX_DATE, descending.date());
+        assertEquals(Long.MAX_VALUE, descending.id());
+        assertEquals(PageCursor.MIN_DATE, ascending.date());
+        assertFalse(ascending.descending());
+    }
+
+    @Test
+    void decode_ShouldRejectInvalidTokens() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("no es base64!"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("eHx5eg"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(
+                java.util.Base64.getUrlEncoder().encodeToString("d|ayer|1".getBytes())));
+    }
+}
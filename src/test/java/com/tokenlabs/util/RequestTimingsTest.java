@@ -0,0 +1,90 @@
+package com.tokenlabs.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestTimingsTest {
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void finish_ShouldSplitHandlerAndSerialization_WhenBodyWasWritten() {
+        // Arrange
+        RequestTimings timings = RequestTimings.startedAt(System.nanoTime() - 5_000_000L);
+
+        // Act
+        timings.markHandlerEnd();
+        timings.markResponseWritten();
+        timings.finish();
+
+        // Assert
+        assertTrue(timings.nanos(RequestTimings.Phase.HANDLER) >= 5_000_000L);
+        assertTrue(timings.nanos(RequestTimings.Phase.SERIALIZATION) >= 0);
+        assertTrue(timings.nanos(RequestTimings.Phase.TOTAL)
+                >= timings.nanos(RequestTimings.Phase.HANDLER) + timings.nanos(RequestTimings.Phase.SERIALIZATION));
+    }
+
+    @Test
+    void markResponseWritten_ShouldCountEverythingAsHandler_WhenThereWasNoBody() {
+        // Arrange
+        RequestTimings timings = RequestTimings.startedAt(System.nanoTime() - 2_000_000L);
+
+        // Act
+        timings.markResponseWritten();
+        timings.finish();
+
+        // Assert
+        assertTrue(timings.nanos(RequestTimings.Phase.HANDLER) >= 2_000_000L);
+        assertEquals(0, timings.nanos(RequestTimings.Phase.SERIALIZATION));
+    }
+
+    @Test
+    void add_ShouldAccumulateNestedPhases_WhenRecordedSeveralTimes() {
+        // Arrange
+        RequestTimings timings = RequestTimings.start();
+
+        // Act
+        timings.add(RequestTimings.Phase.EXTERNAL_FETCH, 1_500_000L);
+        timings.add(RequestTimings.Phase.EXTERNAL_FETCH, 500_000L);
+        timings.add(RequestTimings.Phase.DB_INSERT, 250_999L);
+
+        // Assert
+        RequestTimings.PhaseMicros micros = timings.snapshot();
+        assertEquals(2_000, micros.externalFetch());
+        assertEquals(250, micros.get(RequestTimings.Phase.DB_INSERT));
+    }
+
+    @Test
+    void current_ShouldReturnRequestInstance_WhenBoundToThread() {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        RequestTimings timings = RequestTimings.start();
+        request.setAttribute(RequestTimings.ATTRIBUTE, timings);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        // Act & Assert
+        assertSame(timings, RequestTimings.current());
+    }
+
+    @Test
+    void current_ShouldReturnDisabledInstance_WhenOutsideRequest() {
+        // Act
+        RequestTimings timings = RequestTimings.current();
+        timings.add(RequestTimings.Phase.DB_INSERT, 1_000_000L);
+        timings.finish();
+
+        // Assert
+        assertSame(RequestTimings.NONE, timings);
+        assertFalse(timings.isEnabled());
+        assertEquals(0, timings.nanos(RequestTimings.Phase.DB_INSERT));
+        assertEquals(0, timings.nanos(RequestTimings.Phase.TOTAL));
+    }
+}
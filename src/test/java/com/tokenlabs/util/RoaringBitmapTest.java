@@ -0,0 +1,136 @@
+package com.tokenlabs.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoaringBitmapTest {
+
+    @Test
+    void add_ShouldStoreIdsAcrossContainers_WhenIdsAreSparseAndDense() {
+        // Arrange
+        RoaringBitmap bitmap = new RoaringBitmap();
+
+        // Act: 10 000 ids consecutivos pasan el contenedor a bitmap; el resto quedan en arrays
+        for (long id = 1; id <= 10_000; id++) {
+            bitmap.add(id);
+        }
+        bitmap.add(1L << 20);
+        bitmap.add(RoaringBitmap.MAX_VALUE);
+        bitmap.add(5);
+
+        // Assert
+        assertEquals(10_002, bitmap.cardinality());
+        assertTrue(bitmap.contains(1));
+        assertTrue(bitmap.contains(10_000));
+        assertFalse(bitmap.contains(10_001));
+        assertTrue(bitmap.contains(1L << 20));
+        assertTrue(bitmap.contains(RoaringBitmap.MAX_VALUE));
+        assertFalse(bitmap.contains(-1));
+        assertTrue(bitmap.sizeInBytes() < 10_000 * 2);
+    }
+
+    @Test
+    void add_ShouldRejectIds_WhenOutOfRange() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+
+        assertThrows(IllegalArgumentException.class, () -> bitmap.add(-1));
+        assertThrows(IllegalArgumentException.class, () -> bitmap.add(RoaringBitmap.MAX_VALUE + 1));
+    }
+
+    @Test
+    void setOperations_ShouldMatchTreeSet_WhenIdsAreRandom() {
+        // Arrange: mezcla de contenedores densos (bitmap) y dispersos (array)
+        Random random = new Random(42);
+        TreeSet<Long> expectedA = new TreeSet<>();
+        TreeSet<Long> expectedB = new TreeSet<>();
+        RoaringBitmap a = new RoaringBitmap();
+        RoaringBitmap b = new RoaringBitmap();
+        for (int i = 0; i < 50_000; i++) {
+            long denseId = random.nextInt(100_000);
+            long sparseId = random.nextInt(5_000_000);
+            add(a, expectedA, denseId);
+            add(b, expectedB, random.nextBoolean() ? denseId : sparseId);
+            if (i % 10 == 0) {
+                add(a, expectedA, sparseId);
+            }
+        }
+
+        // Act
+        RoaringBitmap and = RoaringBitmap.and(a, b);
+        RoaringBitmap or = RoaringBitmap.or(a, b);
+        RoaringBitmap andNot = a.andNot(b);
+
+        // Assert
+        TreeSet<Long> expectedAnd = new TreeSet<>(expectedA);
+        expectedAnd.retainAll(expectedB);
+        TreeSet<Long> expectedOr = new TreeSet<>(expectedA);
+        expectedOr.addAll(expectedB);
+        TreeSet<Long> expectedAndNot = new TreeSet<>(expectedA);
+        expectedAndNot.removeAll(expectedB);
+        assertEquals(expectedA.size(), a.cardinality());
+        assertEquals(expectedAnd.size(), and.cardinality());
+        assertEquals(expectedAnd.size(), RoaringBitmap.andCardinality(a, b));
+        assertEquals(expectedOr.size(), or.cardinality());
+        assertEquals(expectedAndNot.size(), andNot.cardinality());
+        assertArrayEquals(toArray(expectedAnd), and.descending(Long.MAX_VALUE, expectedAnd.size()));
+        assertArrayEquals(toArray(expectedOr), or.descending(Long.MAX_VALUE, expectedOr.size()));
+        assertArrayEquals(toArray(expectedAndNot), andNot.descending(Long.MAX_VALUE, expectedAndNot.size()));
+    }
+
+    @Test
+    void descending_ShouldReturnIdsBelowBound_FromHighestToLowest() {
+        // Arrange
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (long id = 65_000; id < 75_000; id++) {
+            bitmap.add(id);
+        }
+        bitmap.add(3);
+
+        // Act
+        long[] firstPage = bitmap.descending(Long.MAX_VALUE, 3);
+        long[] acrossContainers = bitmap.descending(65_538, 4);
+        long[] tail = bitmap.descending(65_000, 10);
+
+        // Assert
+        assertArrayEquals(new long[]{74_999, 74_998, 74_997}, firstPage);
+        assertArrayEquals(new long[]{65_537, 65_536, 65_535, 65_534}, acrossContainers);
+        assertArrayEquals(new long[]{3}, tail);
+    }
+
+    @Test
+    void andNot_ShouldLeaveOperandsUnchanged() {
+        // Arrange
+        RoaringBitmap a = new RoaringBitmap();
+        RoaringBitmap b = new RoaringBitmap();
+        for (long id = 0; id < 5_000; id++) {
+            a.add(id);
+            if (id % 2 == 0) {
+                b.add(id);
+            }
+        }
+
+        // Act
+        RoaringBitmap result = a.andNot(b);
+
+        // Assert
+        assertEquals(2_500, result.cardinality());
+        assertFalse(result.contains(0));
+        assertTrue(result.contains(1));
+        assertEquals(5_000, a.cardinality());
+        assertEquals(2_500, b.cardinality());
+        assertTrue(a.andNot(a).isEmpty());
+    }
+
+    private static void add(RoaringBitmap bitmap, TreeSet<Long> expected, long id) {
+        bitmap.add(id);
+        expected.add(id);
+    }
+
+    private static long[] toArray(TreeSet<Long> ids) {
+        return ids.descendingSet().stream().mapToLong(Long::longValue).toArray();
+    }
+}
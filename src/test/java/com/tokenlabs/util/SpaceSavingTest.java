@@ -0,0 +1,68 @@
+package com.tokenlabs.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpaceSavingTest {
+
+    @Test
+    void entries_ShouldContainFrequentKeys_WhenStreamHasLongTail() {
+        // Arrange
+        SpaceSaving summary = new SpaceSaving(20);
+        for (int i = 0; i < 10_000; i++) {
+            summary.add("tail-" + i, 1);
+            if (i % 4 == 0) {
+                summary.add("heavy-a", 1);
+            }
+            if (i % 10 == 0) {
+                summary.add("heavy-b", 1);
+            }
+        }
+
+        // Act
+        List<SpaceSaving.Entry> entries = summary.entries();
+
+        // Assert
+        assertEquals(20, entries.size());
+        assertEquals("heavy-a", entries.get(0).key());
+        assertEquals("heavy-b", entries.get(1).key());
+        SpaceSaving.Entry heavyA = entries.get(0);
+        assertTrue(heavyA.count() >= 2_500);
+        assertTrue(heavyA.count() - heavyA.error() <= 2_500);
+    }
+
+    @Test
+    void add_ShouldReplaceMinimumAndRecordError_WhenFull() {
+        // Arrange
+        SpaceSaving summary = new SpaceSaving(2);
+        summary.add("a", 5);
+        summary.add("b", 2);
+
+        // Act
+        summary.add("c", 1);
+
+        // Assert
+        List<SpaceSaving.Entry> entries = summary.entries();
+        assertEquals(List.of(new SpaceSaving.Entry("a", 5, 0), new SpaceSaving.Entry("c", 3, 2)), entries);
+    }
+
+    @Test
+    void merge_ShouldSumCountsAndKeepLargest() {
+        // Arrange
+        SpaceSaving first = new SpaceSaving(3);
+        first.add("a", 4);
+        first.add("b", 1);
+        SpaceSaving second = new SpaceSaving(3);
+        second.add("b", 5);
+        second.add("c", 2);
+
+        // Act
+        SpaceSaving merged = SpaceSaving.merge(2, List.of(first, second));
+
+        // Assert
+        assertEquals(List.of(new SpaceSaving.Entry("b", 6, 0), new SpaceSaving.Entry("a", 4, 0)), merged.entries());
+    }
+}
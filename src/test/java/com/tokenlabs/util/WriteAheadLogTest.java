@@ -0,0 +1,159 @@
+package com.tokenlabs.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+
+    private static final int SEGMENT_BYTES = 1024;
+
+    @TempDir
+    Path directory;
+
+    private static byte[] payload(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> readAll(WriteAheadLog log, WriteAheadLog.Position from) {
+        List<WriteAheadLog.LogRecord> records = new ArrayList<>();
+        log.read(from, Integer.MAX_VALUE, records);
+        return records.stream().map(record -> new String(record.payload(), StandardCharsets.UTF_8)).toList();
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".wal")).count();
+        }
+    }
+
+    @Test
+    void read_ShouldReturnAppendedRecordsInOrder_WhenSeveralAreWritten() throws IOException {
+        // Arrange
+        try (WriteAheadLog log = WriteAheadLog.open(directory, SEGMENT_BYTES, 1 << 20)) {
+            log.append((byte) 1, payload("a"));
+            log.append((byte) 2, payload("bb"));
+
+            // Act
+            List<WriteAheadLog.LogRecord> records = new ArrayList<>();
+            WriteAheadLog.Position next = log.read(log.getCheckpoint(), 10, records);
+
+            // Assert
+            assertEquals(2, records.size());
+            assertEquals(1, records.get(0).version());
+            assertEquals("bb", new String(records.get(1).payload(), StandardCharsets.UTF_8));
+            assertEquals(log.getWritePosition(), next);
+            assertTrue(readAll(log, next).isEmpty());
+        }
+    }
+
+    @Test
+    void append_ShouldRollSegments_AndAcknowledgeShouldDeleteOldOnes() throws IOException {
+        // Arrange
+        try (WriteAheadLog log = WriteAheadLog.open(directory, SEGMENT_BYTES, 1 << 20)) {
+            byte[] record = new byte[300];
+            for (int i = 0; i < 10; i++) {
+                record[0] = (byte) i;
+                log.append((byte) 1, record);
+            }
+            assertTrue(log.getSegmentCount() >= 4);
+
+            // Act
+            List<WriteAheadLog.LogRecord> records = new ArrayList<>();
+            WriteAheadLog.Position next = log.read(log.getCheckpoint(), 100, records);
+            log.acknowledge(next);
+
+            // Assert
+            assertEquals(10, records.size());
+            for (int i = 0; i < 10; i++) {
+                assertEquals(i, records.get(i).payload()[0]);
+            }
+            assertEquals(1, log.getSegmentCount());
+            assertEquals(1, segmentFiles());
+            assertEquals(0, log.getPendingBytes());
+        }
+    }
+
+    @Test
+    void open_ShouldResumeFromCheckpoint_WhenReopened() throws IOException {
+        // Arrange
+        try (WriteAheadLog log = WriteAheadLog.open(directory, SEGMENT_BYTES, 1 << 20)) {
+            log.append((byte) 1, payload("acked"));
+            log.acknowledge(log.getWritePosition());
+            log.append((byte) 1, payload("pending"));
+        }
+
+        // Act
+        try (WriteAheadLog reopened = WriteAheadLog.open(directory, SEGMENT_BYTES, 1 << 20)) {
+            reopened.append((byte) 1, payload("after restart"));
+
+            // Assert
+            assertEquals(List.of("pending", "after restart"), readAll(reopened, reopened.getCheckpoint()));
+        }
+    }
+
+    @Test
+    void open_ShouldTruncateTornRecord_WhenProcessCrashedMidAppend() throws IOException {
+        // Arrange
+        WriteAheadLog.Position end;
+        try (WriteAheadLog log = WriteAheadLog.open(directory, SEGMENT_BYTES, 1 << 20)) {
+            log.append((byte) 1, payload("complete"));
+            end = log.getWritePosition();
+        }
+        // Registro a medio escribir: longitud escrita pero payload y CRC incorrectos
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(path -> path.toString().endsWith(".wal")).findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(16).putInt(40).putInt(1234).put((byte) 1).put(payload("torn")).flip(),
+                    end.offset());
+        }
+
+        // Act
+        try (WriteAheadLog recovered = WriteAheadLog.open(directory, SEGMENT_BYTES, 1 << 20)) {
+            WriteAheadLog.Position recoveredEnd = recovered.getWritePosition();
+            recovered.append((byte) 1, payload("next"));
+
+            // Assert
+            assertEquals(end, recoveredEnd);
+            assertEquals(List.of("complete", "next"), readAll(recovered, recovered.getCheckpoint()));
+        }
+    }
+
+    @Test
+    void append_ShouldFail_WhenMaxSizeIsReached() throws IOException {
+        // Arrange
+        try (WriteAheadLog log = WriteAheadLog.open(directory, SEGMENT_BYTES, 2 * SEGMENT_BYTES)) {
+            byte[] record = new byte[600];
+            log.append((byte) 1, record);
+            log.append((byte) 1, record);
+
+            // Act & Assert
+            assertThrows(WriteAheadLog.LogFullException.class, () -> log.append((byte) 1, record));
+            assertThrows(IllegalArgumentException.class, () -> log.append((byte) 1, new byte[SEGMENT_BYTES]));
+        }
+    }
+
+    @Test
+    void open_ShouldFail_WhenDirectoryIsAlreadyInUse() throws IOException {
+        // Arrange
+        try (WriteAheadLog ignored = WriteAheadLog.open(directory, SEGMENT_BYTES, 1 << 20)) {
+
+            // Act & Assert
+            assertThrows(IOException.class, () -> WriteAheadLog.open(directory, SEGMENT_BYTES, 1 << 20));
+        }
+    }
+}